@@ -0,0 +1,49 @@
+package com.iftech.todo;
+
+import com.iftech.todo.domain.TodoItem;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * 基准测试共用的数据构造：固定随机种子，同一规模每次生成的数据相同，结果可以在版本之间对比。
+ */
+public final class BenchmarkData {
+    private static final DateTimeFormatter DUE_DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
+    private static final String[] CATEGORIES = {"工作", "学习", "生活", "运动", "购物", "阅读", "旅行", "家务"};
+    private static final LocalDateTime BASE_DUE = LocalDateTime.of(2026, 1, 1, 9, 0);
+    private static final Instant BASE_CREATED = Instant.parse("2025-01-01T00:00:00Z");
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * 生成 {@code size} 条待办：分类、优先级、完成态均匀分布，约 1/10 没有截止时间。
+     *
+     * @param size 条数
+     * @return 待办列表
+     */
+    public static List<TodoItem> items(int size) {
+        SplittableRandom random = new SplittableRandom(42L);
+        List<TodoItem> items = new ArrayList<TodoItem>(size);
+        for (int i = 0; i < size; i++) {
+            Instant createdAt = BASE_CREATED.plusSeconds(random.nextInt(365 * 24 * 3600));
+            String dueDate = random.nextInt(10) == 0 ? null : BASE_DUE.plusMinutes(random.nextInt(365 * 24 * 60)).format(DUE_DATE_FORMATTER);
+            items.add(new TodoItem(String.format("bench-%08d", i), "待办事项 " + i, i % 3 == 0 ? "描述 " + i : null,
+                    CATEGORIES[random.nextInt(CATEGORIES.length)], 1 + random.nextInt(3), dueDate, random.nextBoolean(),
+                    createdAt, createdAt));
+        }
+        return items;
+    }
+
+    /**
+     * @param index 序号
+     * @return 与 {@link #items(int)} 中第 {@code index} 条相同的 id
+     */
+    public static String id(int index) {
+        return String.format("bench-%08d", index);
+    }
+}
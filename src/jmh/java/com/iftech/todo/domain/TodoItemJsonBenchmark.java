@@ -0,0 +1,83 @@
+package com.iftech.todo.domain;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.iftech.todo.BenchmarkData;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * {@link TodoItem} 的 Jackson 序列化基准，ObjectMapper 与 Spring MVC 使用同样的配置构造。
+ *
+ * <p>单条的序列化/反序列化对应接口与日志记录；列表序列化对应全量列表接口与快照写入。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class TodoItemJsonBenchmark {
+    private static final ObjectMapper OBJECT_MAPPER = Jackson2ObjectMapperBuilder.json().build();
+
+    @State(Scope.Benchmark)
+    public static class Single {
+        private final ObjectWriter writer = OBJECT_MAPPER.writerFor(TodoItem.class);
+        private final ObjectReader reader = OBJECT_MAPPER.readerFor(TodoItem.class);
+        private TodoItem item;
+        private byte[] json;
+
+        @Setup(Level.Trial)
+        public void load() throws IOException {
+            item = BenchmarkData.items(1).get(0);
+            json = writer.writeValueAsBytes(item);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Sized {
+        /**
+         * 列表序列化的条数。
+         */
+        @Param({"1000", "10000", "100000", "1000000"})
+        public int size;
+
+        private final ObjectWriter writer = OBJECT_MAPPER.writerFor(
+                OBJECT_MAPPER.getTypeFactory().constructCollectionType(List.class, TodoItem.class));
+        private List<TodoItem> items;
+
+        @Setup(Level.Trial)
+        public void load() {
+            items = BenchmarkData.items(size);
+        }
+    }
+
+    @Benchmark
+    public byte[] serializeItem(Single state) throws IOException {
+        return state.writer.writeValueAsBytes(state.item);
+    }
+
+    @Benchmark
+    public TodoItem deserializeItem(Single state) throws IOException {
+        return state.reader.readValue(state.json);
+    }
+
+    @Benchmark
+    public byte[] serializeList(Sized state) throws IOException {
+        return state.writer.writeValueAsBytes(state.items);
+    }
+}
@@ -0,0 +1,49 @@
+package com.iftech.todo.service;
+
+import com.iftech.todo.domain.TodoSort;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 每个列表/新增请求都会经过的参数解析：排序参数与截止时间解析。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TodoServiceBenchmark {
+    private final TodoService service = new TodoService(null, null);
+
+    /**
+     * 排序参数：规范写法与别名。
+     */
+    @Param({"createdAt", "priority", "due_date_desc"})
+    public String sort;
+
+    /**
+     * 截止时间：完整格式与只有日期。
+     */
+    @Param({"2026-03-15T18:45", "2026-03-15"})
+    public String dueDate;
+
+    @Benchmark
+    public TodoSort parseSort() {
+        return service.parseSort(sort);
+    }
+
+    @Benchmark
+    public long parseDueDate() {
+        return service.parseDueDate(dueDate);
+    }
+}
@@ -0,0 +1,57 @@
+package com.iftech.todo.service;
+
+import com.iftech.todo.BenchmarkData;
+import com.iftech.todo.domain.TodoItem;
+import com.iftech.todo.domain.TodoSort;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 列表排序的基准。
+ *
+ * <p>排序已由服务层的 sortList 下沉为 {@link TodoSort#comparator()}，文件存储每次查询都用它对候选集排序；
+ * 这里按同样的方式从未排序的顺序开始排。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class TodoSortBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"CREATED_AT_DESC", "PRIORITY_DESC", "DUE_DATE_ASC"})
+    public TodoSort sort;
+
+    private List<TodoItem> items;
+    private List<TodoItem> scratch;
+
+    @Setup(Level.Trial)
+    public void load() {
+        items = BenchmarkData.items(size);
+        scratch = new ArrayList<TodoItem>(size);
+    }
+
+    @Benchmark
+    public List<TodoItem> sortList() {
+        scratch.clear();
+        scratch.addAll(items);
+        scratch.sort(sort.comparator());
+        return scratch;
+    }
+}
@@ -0,0 +1,160 @@
+package com.iftech.todo.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iftech.todo.BenchmarkData;
+import com.iftech.todo.domain.TodoField;
+import com.iftech.todo.domain.TodoItem;
+import com.iftech.todo.domain.TodoSort;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * 文件存储读写路径的基准。
+ *
+ * <p>单线程基准分别测量 list / findById / update；{@code readHeavy}、{@code writeHeavy} 两组让读线程与写线程同时运行，
+ * 在同一把 {@link java.util.concurrent.locks.ReentrantReadWriteLock} 上竞争（读:写 分别为 7:1 与 1:3），结果按组内各方法分别给出。
+ *
+ * <p>为了测量锁与内存索引本身的开销，使用日志模式 + 定时落盘，写入路径上没有 fsync；落盘策略之间的对比见
+ * {@code FileTodoRepositoryWriteBenchmark}。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class FileTodoRepositoryBenchmark {
+    private static final Set<TodoField> TITLE = EnumSet.of(TodoField.TITLE);
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private Path dir;
+    private FileTodoRepository repository;
+    private TodoQuery firstPage;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        dir = Files.createTempDirectory("todo-jmh");
+        repository = new FileTodoRepository(objectMapper, dir.resolve("todos.json").toString(), FileTodoRepository.MODE_JOURNAL,
+                FileTodoRepository.FORMAT_BINARY, Long.MAX_VALUE, SyncPolicy.INTERVAL.name(), 0L, 1000L, 1000, 604_800_000L, new SimpleMeterRegistry());
+        TodoBatch batch = new TodoBatch();
+        for (TodoItem item : BenchmarkData.items(size)) {
+            batch.create(item);
+        }
+        repository.apply(batch);
+
+        firstPage = new TodoQuery();
+        firstPage.setCategory("工作");
+        firstPage.setSort(TodoSort.DUE_DATE_ASC);
+        firstPage.setLimit(50);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        repository.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * 全量列表：复制全部数据并按创建时间排序。
+     */
+    @Benchmark
+    public List<TodoItem> listAll() {
+        return repository.list();
+    }
+
+    /**
+     * 按分类过滤、按截止时间排序的第一页（页面的常见请求）。
+     */
+    @Benchmark
+    public List<TodoItem> listFirstPage() {
+        return repository.list(firstPage);
+    }
+
+    @Benchmark
+    public TodoItem findById() {
+        return repository.findById(randomId());
+    }
+
+    @Benchmark
+    public TodoItem update() {
+        return updateRandom();
+    }
+
+    @Benchmark
+    @Group("readHeavy")
+    @GroupThreads(7)
+    public void readHeavyRead(Blackhole blackhole) {
+        blackhole.consume(repository.findById(randomId()));
+    }
+
+    @Benchmark
+    @Group("readHeavy")
+    @GroupThreads(1)
+    public TodoItem readHeavyWrite() {
+        return updateRandom();
+    }
+
+    @Benchmark
+    @Group("writeHeavy")
+    @GroupThreads(1)
+    public void writeHeavyRead(Blackhole blackhole) {
+        blackhole.consume(repository.list(firstPage));
+    }
+
+    @Benchmark
+    @Group("writeHeavy")
+    @GroupThreads(3)
+    public TodoItem writeHeavyWrite() {
+        return updateRandom();
+    }
+
+    /**
+     * 服务层的更新路径：读出当前版本、修改标题、按版本条件写回；并发写同一条时的版本冲突计为一次操作。
+     */
+    private TodoItem updateRandom() {
+        TodoItem item = repository.findById(randomId());
+        item.setTitle("更新 " + ThreadLocalRandom.current().nextInt(1000));
+        item.setUpdatedAt(Instant.now());
+        try {
+            return repository.update(item, TITLE);
+        } catch (TodoConflictException e) {
+            return null;
+        }
+    }
+
+    private String randomId() {
+        return BenchmarkData.id(ThreadLocalRandom.current().nextInt(size));
+    }
+}
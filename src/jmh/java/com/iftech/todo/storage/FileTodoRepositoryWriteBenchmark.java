@@ -0,0 +1,137 @@
+package com.iftech.todo.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iftech.todo.domain.TodoItem;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * 文件存储写入吞吐基准：对比不同落盘策略在 1 / 8 / 64 个并发写入方下的 writes/sec 与 fsync 次数，
+ * 以及分片存储在 1 / 2 / 4 / 8 个分片下的 writes/sec。
+ *
+ * <p>{@code shards} 为 1 时测量单个 {@link FileTodoRepository}，大于 1 时测量 {@link ShardedTodoRepository}；
+ * 每次迭代的 fsync 次数作为辅助计数 {@code fsyncs} 与吞吐一起输出。全部组合较多，可以用 {@code -p} 缩小范围，例如
+ * {@code -Djmh.args="FileTodoRepositoryWriteBenchmark -p shards=1"} 只对比落盘策略，
+ * {@code -Djmh.args="FileTodoRepositoryWriteBenchmark.create64 -p policy=GROUP"} 只对比分片数。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileTodoRepositoryWriteBenchmark {
+    @Param({"PER_WRITE", "GROUP", "INTERVAL", "WRITE_BEHIND"})
+    public String policy;
+
+    @Param({"1", "2", "4", "8"})
+    public int shards;
+
+    private Path dir;
+    private TodoRepository repository;
+
+    @Setup(Level.Trial)
+    public void open() throws IOException {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        dir = Files.createTempDirectory("todo-jmh");
+        if (shards == 1) {
+            repository = new FileTodoRepository(objectMapper, dir.resolve("todos.json").toString(), FileTodoRepository.MODE_JOURNAL,
+                    FileTodoRepository.FORMAT_BINARY, Long.MAX_VALUE, policy, 0L, 1000L, 1000, 604_800_000L, new SimpleMeterRegistry());
+        } else {
+            repository = new ShardedTodoRepository(objectMapper, dir.toString(), shards, FileTodoRepository.MODE_JOURNAL,
+                    FileTodoRepository.FORMAT_BINARY, Long.MAX_VALUE, policy, 0L, 1000L, 1000, 604_800_000L, new SimpleMeterRegistry());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        if (repository instanceof ShardedTodoRepository) {
+            ((ShardedTodoRepository) repository).close();
+        } else {
+            ((FileTodoRepository) repository).close();
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * 已执行的落盘（fsync）次数。
+     */
+    long syncCount() {
+        return repository instanceof ShardedTodoRepository ? ((ShardedTodoRepository) repository).syncCount()
+                : ((FileTodoRepository) repository).syncCount();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public TodoItem create1(Syncs syncs) {
+        return repository.create(newItem());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public TodoItem create8(Syncs syncs) {
+        return repository.create(newItem());
+    }
+
+    @Benchmark
+    @Threads(64)
+    public TodoItem create64(Syncs syncs) {
+        return repository.create(newItem());
+    }
+
+    private static TodoItem newItem() {
+        Instant now = Instant.now();
+        return new TodoItem(UUID.randomUUID().toString(), "bench", null, "bench", TodoItem.DEFAULT_PRIORITY, "2026-01-02T10:30", false,
+                now, now);
+    }
+
+    /**
+     * 每次迭代的 fsync 次数：只由第一个线程记录，JMH 对各线程的计数求和后即为整次迭代的次数。
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Syncs {
+        public long fsyncs;
+
+        private long start;
+
+        @Setup(Level.Iteration)
+        public void begin(FileTodoRepositoryWriteBenchmark benchmark, ThreadParams thread) {
+            fsyncs = 0L;
+            start = thread.getThreadIndex() == 0 ? benchmark.syncCount() : 0L;
+        }
+
+        @TearDown(Level.Iteration)
+        public void end(FileTodoRepositoryWriteBenchmark benchmark, ThreadParams thread) {
+            if (thread.getThreadIndex() == 0) {
+                fsyncs = benchmark.syncCount() - start;
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.iftech.todo.storage;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iftech.todo.BenchmarkData;
+import com.iftech.todo.domain.TodoItem;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * 启动载入快照的耗时：二进制快照对比旧的 JSON 文件（整文件读成字符串后交给 Jackson），以及二进制快照的写出耗时。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class TodoSnapshotBenchmark {
+    private static final TypeReference<List<TodoItem>> LIST_TYPE = new TypeReference<List<TodoItem>>() {
+    };
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private Path dir;
+    private Path binary;
+    private Path json;
+    private Path out;
+    private List<TodoItem> items;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        dir = Files.createTempDirectory("todo-jmh-snapshot");
+        binary = dir.resolve("todos.bin");
+        json = dir.resolve("todos.json");
+        out = dir.resolve("out.bin");
+        items = BenchmarkData.items(size);
+        try (FileChannel channel = FileChannel.open(binary, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            TodoSnapshot.write(channel, items);
+        }
+        Files.write(json, objectMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(items));
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public List<TodoItem> readBinary() {
+        return TodoSnapshot.read(binary);
+    }
+
+    /**
+     * 改动前 {@code readFromDisk} 的做法。
+     */
+    @Benchmark
+    public List<TodoItem> readJson() throws IOException {
+        String text = new String(Files.readAllBytes(json), StandardCharsets.UTF_8);
+        return objectMapper.readValue(text, LIST_TYPE);
+    }
+
+    @Benchmark
+    public long writeBinary() throws IOException {
+        try (FileChannel channel = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            return TodoSnapshot.write(channel, items);
+        }
+    }
+}
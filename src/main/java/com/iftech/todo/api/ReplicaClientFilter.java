@@ -0,0 +1,42 @@
+package com.iftech.todo.api;
+
+import com.iftech.todo.storage.ReplicaRouter;
+import java.io.IOException;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * 把每个请求归到一个客户端名下，供 {@link ReplicaRouter} 判断读己之写的粘滞窗口。
+ *
+ * <p>客户端标识取请求头 {@code X-Client-Id}（页面在本地生成并持久保存），未携带时退回客户端地址。
+ */
+@Profile("!file & !mapped & !sharded")
+@Component
+@ConditionalOnProperty(name = "todo.jdbc.replica.enabled", havingValue = "true")
+public class ReplicaClientFilter extends OncePerRequestFilter {
+    static final String CLIENT_ID_HEADER = "X-Client-Id";
+
+    private final ReplicaRouter replicaRouter;
+
+    public ReplicaClientFilter(ReplicaRouter replicaRouter) {
+        this.replicaRouter = replicaRouter;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String clientId = request.getHeader(CLIENT_ID_HEADER);
+        replicaRouter.bind(clientId == null || clientId.isEmpty() ? request.getRemoteAddr() : clientId);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            replicaRouter.unbind();
+        }
+    }
+}
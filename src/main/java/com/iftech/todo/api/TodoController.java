@@ -1,12 +1,30 @@
 package com.iftech.todo.api;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.iftech.todo.api.dto.BatchOperationRequest;
 import com.iftech.todo.api.dto.CreateTodoRequest;
 import com.iftech.todo.api.dto.UpdateTodoRequest;
+import com.iftech.todo.domain.TodoBatchResult;
+import com.iftech.todo.domain.TodoCategoryCount;
+import com.iftech.todo.domain.TodoChanges;
+import com.iftech.todo.domain.TodoEvent;
 import com.iftech.todo.domain.TodoItem;
+import com.iftech.todo.domain.TodoPage;
+import com.iftech.todo.service.TodoEventHub;
 import com.iftech.todo.service.TodoService;
+import com.iftech.todo.storage.TodoQuery;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 import javax.validation.Valid;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PatchMapping;
@@ -17,39 +35,257 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/todos")
 public class TodoController {
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int DEFAULT_SEARCH_SIZE = 20;
+
     private final TodoService todoService;
+    private final ObjectMapper objectMapper;
+    private final TodoEventHub eventHub;
+    private final long streamTimeoutMillis;
 
     /**
      * 构造方法，通过依赖注入获取业务服务。
      *
-     * @param todoService TODO 业务服务
+     * @param todoService         TODO 业务服务
+     * @param objectMapper        JSON 序列化工具（流式导出使用）
+     * @param eventHub            变更事件扇出（事件流使用）
+     * @param streamTimeoutMillis 单个事件流连接的最长存活时间（毫秒），到期后由客户端自动重连
      */
-    public TodoController(TodoService todoService) {
+    public TodoController(TodoService todoService, ObjectMapper objectMapper, TodoEventHub eventHub,
+                          @Value("${todo.events.timeout-ms:1800000}") long streamTimeoutMillis) {
         this.todoService = todoService;
+        this.objectMapper = objectMapper;
+        this.eventHub = eventHub;
+        this.streamTimeoutMillis = streamTimeoutMillis;
     }
 
     /**
      * 查询待办事项列表。
      *
      * <p>返回值为 JSON 数组，默认按创建时间倒序（由存储层/服务层控制）。
+     * 传入 {@code limit} 或 {@code cursor} 时按页返回，下一页游标通过响应头 {@value #NEXT_CURSOR_HEADER} 给出，
+     * 没有该响应头表示已是最后一页。
      *
-     * @return 待办列表
+     * <p>存储只由本进程写入时，响应带有基于存储变更版本的 ETag；请求头 {@code If-None-Match} 命中时直接返回 304，不查询存储也不做序列化。
+     *
+     * @param category  分类（可选）
+     * @param completed 完成态（可选）
+     * @param priority  优先级（可选）
+     * @param dueFrom   截止时间下界（可选，包含）
+     * @param dueTo     截止时间上界（可选，不包含）
+     * @param sort      排序方式（可选）
+     * @param limit     单页条数（可选）
+     * @param cursor    上一页返回的游标（可选）
+     * @param request   当前请求（用于条件请求判断）
+     * @return 待办列表；未变化时为 {@code null}（304）
      */
     @GetMapping
-    public List<TodoItem> list(
+    public ResponseEntity<List<TodoItem>> list(
+            @RequestParam(value = "category", required = false) String category,
+            @RequestParam(value = "completed", required = false) Boolean completed,
+            @RequestParam(value = "priority", required = false) Integer priority,
+            @RequestParam(value = "dueFrom", required = false) String dueFrom,
+            @RequestParam(value = "dueTo", required = false) String dueTo,
+            @RequestParam(value = "sort", required = false) String sort,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            WebRequest request
+    ) {
+        String etag = changeETag();
+        if (etag != null && request.checkNotModified(etag)) {
+            return null;
+        }
+        TodoQuery query = todoService.buildQuery(category, completed, priority, dueFrom, dueTo, todoService.parseSort(sort));
+        if (limit == null && cursor == null) {
+            return revalidate(etag).body(todoService.list(query));
+        }
+        TodoPage page = todoService.listPage(query, cursor, limit == null ? DEFAULT_PAGE_SIZE : limit);
+        ResponseEntity.BodyBuilder builder = revalidate(etag);
+        if (page.getNextCursor() != null) {
+            builder.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return builder.body(page.getItems());
+    }
+
+    /**
+     * 以流式方式导出待办列表，过滤与排序参数同 {@link #list}，不分页。
+     *
+     * <p>存储层逐条产出数据（MySQL 下为只进流式结果集），每条立即经 Jackson 流式生成器写入响应，
+     * 单个请求的堆占用与结果集大小无关。
+     *
+     * @param category  分类（可选）
+     * @param completed 完成态（可选）
+     * @param priority  优先级（可选）
+     * @param dueFrom   截止时间下界（可选，包含）
+     * @param dueTo     截止时间上界（可选，不包含）
+     * @param sort      排序方式（可选）
+     * @return JSON 数组形式的响应体
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(
             @RequestParam(value = "category", required = false) String category,
+            @RequestParam(value = "completed", required = false) Boolean completed,
+            @RequestParam(value = "priority", required = false) Integer priority,
+            @RequestParam(value = "dueFrom", required = false) String dueFrom,
+            @RequestParam(value = "dueTo", required = false) String dueTo,
             @RequestParam(value = "sort", required = false) String sort
     ) {
-        return todoService.list(category, todoService.parseSort(sort));
+        TodoQuery query = todoService.buildQuery(category, completed, priority, dueFrom, dueTo, todoService.parseSort(sort));
+        // 默认每写一个值就 flush 一次，逐行导出时会变成大量小包；由生成器自身的缓冲决定何时写出
+        ObjectWriter writer = objectMapper.writerFor(TodoItem.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.writeStartArray();
+                todoService.stream(query, item -> {
+                    try {
+                        writer.writeValue(generator, item);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
     }
 
+    /**
+     * 按标题与描述全文搜索（中文按单字/双字切分，字母数字词按前缀匹配），结果按相关度排序，支持与列表相同的 ETag 条件请求。
+     *
+     * @param q        搜索串
+     * @param category 分类（可选）
+     * @param limit    至多返回的条数（可选，默认 20）
+     * @param request  当前请求
+     * @return 待办列表；未变化时为 {@code null}（304）
+     */
+    @GetMapping("/search")
+    public ResponseEntity<List<TodoItem>> search(
+            @RequestParam(value = "q", required = false) String q,
+            @RequestParam(value = "category", required = false) String category,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            WebRequest request
+    ) {
+        String etag = searchETag();
+        if (etag != null && request.checkNotModified(etag)) {
+            return null;
+        }
+        return revalidate(etag).body(todoService.search(q, category, limit == null ? DEFAULT_SEARCH_SIZE : limit));
+    }
+
+    /**
+     * 已逾期的未完成待办，按截止时间从早到晚。结果随时间变化而不只随写入变化，因此不带 ETag。
+     *
+     * @param limit 至多返回的条数（可选，默认 50）
+     * @return 待办列表
+     */
+    @GetMapping("/overdue")
+    public List<TodoItem> overdue(@RequestParam(value = "limit", required = false) Integer limit) {
+        return todoService.overdue(limit == null ? DEFAULT_PAGE_SIZE : limit);
+    }
+
+    /**
+     * 尚未逾期、且在给定时长内到期的未完成待办，按截止时间从早到晚；不带 ETag。
+     *
+     * @param within 时长：分钟数或 ISO-8601 时长（如 {@code PT2H}）
+     * @param limit  至多返回的条数（可选，默认 50）
+     * @return 待办列表
+     */
+    @GetMapping("/due")
+    public List<TodoItem> due(
+            @RequestParam(value = "within", required = false) String within,
+            @RequestParam(value = "limit", required = false) Integer limit
+    ) {
+        return todoService.dueWithin(within, limit == null ? DEFAULT_PAGE_SIZE : limit);
+    }
+
+    /**
+     * 增量同步：返回令牌之后变化过的待办、被删除的 id 与新令牌，数据量与变化量成正比。
+     *
+     * @param since 上次响应中的 {@code token}（可选，首次同步不传）
+     * @return 变化集合
+     */
+    @GetMapping("/changes")
+    public TodoChanges changes(@RequestParam(value = "since", required = false) String since) {
+        return todoService.changes(since);
+    }
+
+    /**
+     * 订阅变更事件（Server-Sent Events）。
+     *
+     * <p>每次新增/更新/切换/删除成功后推送一条事件，未完成的待办到期时推送 {@code overdue}，事件名为类型，数据为 {@link TodoEvent} 的 JSON。
+     * 不补发连接建立前或断线期间的事件：客户端每次（重新）连上后应先全量拉取一次列表。
+     * 消费过慢（积压超过 {@code todo.events.buffer-size}）的连接会被服务端断开。
+     *
+     * @return 事件流
+     */
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream() {
+        SseEmitter emitter = new SseEmitter(streamTimeoutMillis);
+        Runnable unsubscribe = eventHub.subscribe(new SseSink(emitter));
+        emitter.onCompletion(unsubscribe);
+        emitter.onError(e -> unsubscribe.run());
+        emitter.onTimeout(emitter::complete);
+        return emitter;
+    }
+
+    /**
+     * 查询已有分类，支持与列表相同的 ETag 条件请求。
+     *
+     * @param request 当前请求
+     * @return 分类列表；未变化时为 {@code null}（304）
+     */
     @GetMapping("/categories")
-    public List<String> categories() {
-        return todoService.listCategories();
+    public ResponseEntity<List<String>> categories(WebRequest request) {
+        String etag = changeETag();
+        if (etag != null && request.checkNotModified(etag)) {
+            return null;
+        }
+        return revalidate(etag).body(todoService.listCategories());
+    }
+
+    /**
+     * 查询各分类的未完成/已完成数量，支持与列表相同的 ETag 条件请求。
+     *
+     * @param request 当前请求
+     * @return 分类计数（按分类名排序）；未变化时为 {@code null}（304）
+     */
+    @GetMapping("/categories/counts")
+    public ResponseEntity<List<TodoCategoryCount>> categoryCounts(WebRequest request) {
+        String etag = changeETag();
+        if (etag != null && request.checkNotModified(etag)) {
+            return null;
+        }
+        return revalidate(etag).body(todoService.listCategoryCounts());
+    }
+
+    /**
+     * 查询单个待办。
+     *
+     * <p>ETag 取自待办自身的版本号，其它待办的写入不会使它失效；命中 {@code If-None-Match} 时返回 304，不做序列化。
+     *
+     * @param id      待办 id
+     * @param request 当前请求
+     * @return 待办对象；未变化时为 {@code null}（304）
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<TodoItem> get(@PathVariable("id") String id, WebRequest request) {
+        TodoItem item = todoService.get(id);
+        String etag = "\"" + item.getVersion() + "\"";
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return revalidate(etag).body(item);
     }
 
     /**
@@ -66,6 +302,21 @@ public class TodoController {
         return todoService.create(request.getTitle(), request.getDescription(), request.getCategory(), request.getPriority(), request.getDueDate());
     }
 
+    /**
+     * 批量执行新增/更新/切换/删除，整批在同一事务中写入。
+     *
+     * <p>全部成功返回 200；任一条校验失败时整批不生效并返回 400，失败的操作在逐条结果中带有状态码与原因；
+     * 写入时发现目标已被并发删除返回 409。分片文件存储下跨分片的批次经意图日志提交，崩溃后启动时补齐，同样整批生效或整批不生效。
+     *
+     * @param operations 操作列表
+     * @return 逐条结果
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<TodoBatchResult> batch(@RequestBody List<BatchOperationRequest> operations) {
+        TodoBatchResult result = todoService.batch(operations);
+        return ResponseEntity.status(result.isApplied() ? HttpStatus.OK : HttpStatus.BAD_REQUEST).body(result);
+    }
+
     /**
      * 按 id 更新待办事项的部分字段。
      *
@@ -103,4 +354,60 @@ public class TodoController {
     public void delete(@PathVariable("id") String id) {
         todoService.delete(id);
     }
+
+    /**
+     * 列表、分类等聚合接口共用的 ETag：任意写入都会使其变化；无法给出时（见 {@link TodoService#changeTag()}）为 null。
+     */
+    private String changeETag() {
+        return quote(todoService.changeTag());
+    }
+
+    /**
+     * 搜索接口的 ETag，另见 {@link TodoService#searchTag()}。
+     */
+    private String searchETag() {
+        return quote(todoService.searchTag());
+    }
+
+    private static String quote(String tag) {
+        return tag == null ? null : "\"" + tag + "\"";
+    }
+
+    /**
+     * 200 响应带上 ETag（有的话），并要求客户端每次使用前先用 ETag 回源确认。
+     */
+    private static ResponseEntity.BodyBuilder revalidate(String etag) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok().cacheControl(CacheControl.noCache());
+        return etag == null ? builder : builder.eTag(etag);
+    }
+
+    /**
+     * 把事件扇出的输出端适配到 SSE 连接。
+     */
+    private static final class SseSink implements TodoEventHub.Sink {
+        private final SseEmitter emitter;
+
+        private SseSink(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        @Override
+        public void send(TodoEvent event) throws IOException {
+            emitter.send(SseEmitter.event().name(event.getType()).data(event, MediaType.APPLICATION_JSON));
+        }
+
+        @Override
+        public void heartbeat() throws IOException {
+            emitter.send(SseEmitter.event().comment("ping"));
+        }
+
+        @Override
+        public void close() {
+            try {
+                emitter.complete();
+            } catch (RuntimeException ignored) {
+                // 连接已结束
+            }
+        }
+    }
 }
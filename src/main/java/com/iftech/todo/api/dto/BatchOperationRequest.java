@@ -0,0 +1,109 @@
+package com.iftech.todo.api.dto;
+
+/**
+ * 批量变更中的一条操作。
+ *
+ * <p>{@code op} 取值 {@code create} / {@code update} / {@code toggle} / {@code delete}：
+ * create 使用 title/description/category/priority/dueDate；update 与 {@link UpdateTodoRequest} 一样按需传字段；
+ * update/toggle/delete 需要 {@code id}。
+ */
+public class BatchOperationRequest {
+    private String op;
+    private String id;
+    private String title;
+    private String description;
+    private String category;
+    private Integer priority;
+    private String dueDate;
+    private Boolean completed;
+
+    /**
+     * 获取操作类型。
+     *
+     * @return create / update / toggle / delete
+     */
+    public String getOp() {
+        return op;
+    }
+
+    public void setOp(String op) {
+        this.op = op;
+    }
+
+    /**
+     * 获取目标待办 id（create 时忽略）。
+     *
+     * @return 待办 id
+     */
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(String category) {
+        this.category = category;
+    }
+
+    public Integer getPriority() {
+        return priority;
+    }
+
+    public void setPriority(Integer priority) {
+        this.priority = priority;
+    }
+
+    public String getDueDate() {
+        return dueDate;
+    }
+
+    public void setDueDate(String dueDate) {
+        this.dueDate = dueDate;
+    }
+
+    public Boolean getCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(Boolean completed) {
+        this.completed = completed;
+    }
+
+    /**
+     * 转换为单条更新请求，复用 {@code PATCH /api/todos/{id}} 的字段校验。
+     *
+     * @return 更新请求
+     */
+    public UpdateTodoRequest toUpdateRequest() {
+        UpdateTodoRequest request = new UpdateTodoRequest();
+        request.setTitle(title);
+        request.setDescription(description);
+        request.setCategory(category);
+        request.setPriority(priority);
+        request.setDueDate(dueDate);
+        request.setCompleted(completed);
+        return request;
+    }
+}
@@ -7,6 +7,7 @@ public class UpdateTodoRequest {
     private Integer priority;
     private String dueDate;
     private Boolean completed;
+    private Long version;
 
     /**
      * 获取待办标题（用于更新）。
@@ -85,4 +86,17 @@ public class UpdateTodoRequest {
     public void setCompleted(Boolean completed) {
         this.completed = completed;
     }
+
+    /**
+     * 获取客户端读到的版本号（用于乐观并发控制）。
+     *
+     * @return 版本号；为 null 表示不校验，以服务端读取到的版本为准
+     */
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
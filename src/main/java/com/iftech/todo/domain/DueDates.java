@@ -0,0 +1,135 @@
+package com.iftech.todo.domain;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * 截止时间的内部表示：不带时区的本地时间折算成的“纪元分钟数”（把本地时间当作 UTC 计算，仅用于比较与还原，不代表真实时刻）。
+ *
+ * <p>内存中只保存一个 long，比较与排序不再解析字符串、不分配对象；只在 JSON、SQL 与游标这些边界上与
+ * {@code yyyy-MM-ddTHH:mm} 文本或 {@link LocalDateTime} 互相转换。未设置截止时间用 {@link #NONE} 表示。
+ */
+public final class DueDates {
+    /**
+     * 未设置截止时间。
+     */
+    public static final long NONE = Long.MIN_VALUE;
+
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
+
+    private DueDates() {
+    }
+
+    /**
+     * 解析截止时间文本：{@code yyyy-MM-ddTHH:mm}（可带秒，截断到分钟）或只有日期（取当天 00:00）。
+     *
+     * @param text 文本（可为 null）
+     * @return 纪元分钟数；null 或空白返回 {@link #NONE}
+     * @throws DateTimeException 格式非法或日期不存在
+     */
+    public static long parse(String text) {
+        if (text == null) {
+            return NONE;
+        }
+        String trimmed = text.trim();
+        if (trimmed.isEmpty()) {
+            return NONE;
+        }
+        if (trimmed.length() == 16) {
+            long fast = parseCanonical(trimmed);
+            if (fast != NONE) {
+                return fast;
+            }
+        }
+        if (trimmed.length() == 10) {
+            return of(LocalDate.parse(trimmed).atStartOfDay());
+        }
+        return of(LocalDateTime.parse(trimmed));
+    }
+
+    /**
+     * @param dateTime 本地时间（可为 null）
+     * @return 纪元分钟数（秒及以下截断）；null 返回 {@link #NONE}
+     */
+    public static long of(LocalDateTime dateTime) {
+        return dateTime == null ? NONE : Math.floorDiv(dateTime.toEpochSecond(ZoneOffset.UTC), 60L);
+    }
+
+    /**
+     * @param minute 纪元分钟数
+     * @return 本地时间；{@link #NONE} 返回 null
+     */
+    public static LocalDateTime toLocalDateTime(long minute) {
+        return minute == NONE ? null : LocalDateTime.ofEpochSecond(minute * 60L, 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * 格式化为 {@code yyyy-MM-ddTHH:mm}。
+     *
+     * @param minute 纪元分钟数
+     * @return 文本；{@link #NONE} 返回 null
+     */
+    public static String format(long minute) {
+        if (minute == NONE) {
+            return null;
+        }
+        LocalDateTime dateTime = toLocalDateTime(minute);
+        int year = dateTime.getYear();
+        if (year < 0 || year > 9999) {
+            return dateTime.format(FORMATTER);
+        }
+        char[] chars = new char[16];
+        digits(chars, 0, year, 4);
+        chars[4] = '-';
+        digits(chars, 5, dateTime.getMonthValue(), 2);
+        chars[7] = '-';
+        digits(chars, 8, dateTime.getDayOfMonth(), 2);
+        chars[10] = 'T';
+        digits(chars, 11, dateTime.getHour(), 2);
+        chars[13] = ':';
+        digits(chars, 14, dateTime.getMinute(), 2);
+        return new String(chars);
+    }
+
+    /**
+     * 规范写法 {@code yyyy-MM-ddTHH:mm} 的快速路径；不是规范写法时返回 {@link #NONE}，由调用方走通用解析。
+     */
+    private static long parseCanonical(String text) {
+        if (text.charAt(4) != '-' || text.charAt(7) != '-' || text.charAt(10) != 'T' || text.charAt(13) != ':') {
+            return NONE;
+        }
+        int year = number(text, 0, 4);
+        int month = number(text, 5, 2);
+        int day = number(text, 8, 2);
+        int hour = number(text, 11, 2);
+        int minute = number(text, 14, 2);
+        if (year < 0 || month < 0 || day < 0 || hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+            return NONE;
+        }
+        // LocalDate.of 校验月份与当月天数，非法日期抛 DateTimeException，与通用解析一致
+        long epochDay = LocalDate.of(year, month, day).toEpochDay();
+        return epochDay * 1440L + hour * 60L + minute;
+    }
+
+    private static int number(String text, int start, int length) {
+        int value = 0;
+        for (int i = start; i < start + length; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static void digits(char[] chars, int start, int value, int length) {
+        for (int i = start + length - 1; i >= start; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.iftech.todo.domain;
+
+import java.util.List;
+
+/**
+ * 批量变更的执行结果。
+ *
+ * <p>批量操作是“全部成功或全部不生效”的：只要有一条操作校验失败，整批都不会写入，
+ * 此时 {@link #isApplied()} 为 false，失败的操作在结果中带有错误状态码与原因。
+ */
+public class TodoBatchResult {
+    private final boolean applied;
+    private final List<Operation> results;
+
+    /**
+     * 构造方法。
+     *
+     * @param applied 是否已整体写入
+     * @param results 按请求顺序排列的逐条结果
+     */
+    public TodoBatchResult(boolean applied, List<Operation> results) {
+        this.applied = applied;
+        this.results = results;
+    }
+
+    public boolean isApplied() {
+        return applied;
+    }
+
+    public List<Operation> getResults() {
+        return results;
+    }
+
+    /**
+     * 单条操作的结果。
+     */
+    public static class Operation {
+        private final int index;
+        private final String op;
+        private final String id;
+        private final int status;
+        private final String error;
+        private final TodoItem item;
+
+        /**
+         * 构造方法。
+         *
+         * @param index  在请求中的下标
+         * @param op     操作类型
+         * @param id     目标待办 id
+         * @param status 与单条接口一致的 HTTP 状态码（成功时为 201/200/204，失败时为 400/404）
+         * @param error  失败原因；成功时为 null
+         * @param item   操作后的待办；删除或失败时为 null
+         */
+        public Operation(int index, String op, String id, int status, String error, TodoItem item) {
+            this.index = index;
+            this.op = op;
+            this.id = id;
+            this.status = status;
+            this.error = error;
+            this.item = item;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public String getOp() {
+            return op;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public TodoItem getItem() {
+            return item;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.iftech.todo.domain;
+
+/**
+ * 一个分类下未完成与已完成的待办数量。
+ */
+public class TodoCategoryCount {
+    private final String category;
+    private final long open;
+    private final long completed;
+
+    /**
+     * 构造方法。
+     *
+     * @param category  分类
+     * @param open      未完成数量
+     * @param completed 已完成数量
+     */
+    public TodoCategoryCount(String category, long open, long completed) {
+        this.category = category;
+        this.open = open;
+        this.completed = completed;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public long getOpen() {
+        return open;
+    }
+
+    public long getCompleted() {
+        return completed;
+    }
+}
@@ -0,0 +1,47 @@
+package com.iftech.todo.domain;
+
+import java.util.List;
+
+/**
+ * 增量同步的结果：令牌之后变化过的待办、被删除的 id，以及下一次同步使用的令牌。
+ *
+ * <p>{@code full} 为 true 表示无法按增量返回（首次同步、令牌过旧或来自重启前的进程），
+ * 此时 {@code items} 为全部待办，客户端应以其替换本地数据。
+ */
+public class TodoChanges {
+    private final List<TodoItem> items;
+    private final List<String> deleted;
+    private final String token;
+    private final boolean full;
+
+    /**
+     * 构造方法。
+     *
+     * @param items   变化过的待办（全量时为全部待办）
+     * @param deleted 被删除的 id
+     * @param token   下一次同步使用的令牌
+     * @param full    是否为全量结果
+     */
+    public TodoChanges(List<TodoItem> items, List<String> deleted, String token, boolean full) {
+        this.items = items;
+        this.deleted = deleted;
+        this.token = token;
+        this.full = full;
+    }
+
+    public List<TodoItem> getItems() {
+        return items;
+    }
+
+    public List<String> getDeleted() {
+        return deleted;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public boolean isFull() {
+        return full;
+    }
+}
@@ -0,0 +1,52 @@
+package com.iftech.todo.domain;
+
+/**
+ * 一次写入产生的变更事件，通过 {@code GET /api/todos/stream} 推送给订阅方。
+ *
+ * <p>{@code type} 为 create/update/toggle/delete；删除事件只有 id，其余事件带写入后的完整待办。
+ * {@code overdue} 不是写入：未完成的待办到了截止时间时发出，带当时的待办。
+ */
+public class TodoEvent {
+    public static final String CREATE = "create";
+    public static final String UPDATE = "update";
+    public static final String TOGGLE = "toggle";
+    public static final String DELETE = "delete";
+    public static final String OVERDUE = "overdue";
+
+    private final String type;
+    private final String id;
+    private final TodoItem item;
+
+    /**
+     * 构造方法。
+     *
+     * @param type 事件类型
+     * @param id   待办 id
+     * @param item 写入后的待办（删除事件为 {@code null}）
+     */
+    public TodoEvent(String type, String id, TodoItem item) {
+        this.type = type;
+        this.id = id;
+        this.item = item;
+    }
+
+    public static TodoEvent of(String type, TodoItem item) {
+        return new TodoEvent(type, item.getId(), item);
+    }
+
+    public static TodoEvent deleted(String id) {
+        return new TodoEvent(DELETE, id, null);
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public TodoItem getItem() {
+        return item;
+    }
+}
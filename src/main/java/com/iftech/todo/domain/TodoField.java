@@ -0,0 +1,13 @@
+package com.iftech.todo.domain;
+
+/**
+ * 待办中可被 PATCH 修改的字段，存储层据此只写入请求中出现的列。
+ */
+public enum TodoField {
+    TITLE,
+    DESCRIPTION,
+    CATEGORY,
+    PRIORITY,
+    DUE_DATE,
+    COMPLETED
+}
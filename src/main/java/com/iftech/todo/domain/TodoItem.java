@@ -1,6 +1,8 @@
 package com.iftech.todo.domain;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import java.time.DateTimeException;
 import java.time.Instant;
 
 public class TodoItem {
@@ -11,8 +13,12 @@ public class TodoItem {
     private String description;
     private String category;
     private int priority = DEFAULT_PRIORITY;
-    private String dueDate;
+    /**
+     * 截止时间的纪元分钟数（见 {@link DueDates}），未设置为 {@link DueDates#NONE}；JSON 中仍以 {@code dueDate} 文本出现。
+     */
+    private long dueMinute = DueDates.NONE;
     private boolean completed;
+    private long version;
 
     @JsonFormat(shape = JsonFormat.Shape.STRING)
     private Instant createdAt;
@@ -38,17 +44,38 @@ public class TodoItem {
      */
     public TodoItem(String id, String title, String description, String category, int priority, String dueDate, boolean completed,
             Instant createdAt, Instant updatedAt) {
+        this(id, title, description, category, priority, parseDueDate(dueDate), completed, createdAt, updatedAt);
+    }
+
+    /**
+     * 以纪元分钟数给出截止时间的完整构造方法。
+     *
+     * @param dueMinute 截止时间的纪元分钟数，未设置为 {@link DueDates#NONE}
+     */
+    public TodoItem(String id, String title, String description, String category, int priority, long dueMinute, boolean completed,
+            Instant createdAt, Instant updatedAt) {
         this.id = id;
         this.title = title;
         this.description = description;
         this.category = category;
         this.priority = priority;
-        this.dueDate = dueDate;
+        this.dueMinute = dueMinute;
         this.completed = completed;
         this.createdAt = createdAt;
         this.updatedAt = updatedAt;
     }
 
+    /**
+     * 复制一份字段相同的对象（含版本号）。
+     *
+     * @return 副本
+     */
+    public TodoItem copy() {
+        TodoItem copy = new TodoItem(id, title, description, category, priority, dueMinute, completed, createdAt, updatedAt);
+        copy.version = version;
+        return copy;
+    }
+
     /**
      * 获取待办 id。
      *
@@ -119,12 +146,48 @@ public class TodoItem {
         this.priority = priority;
     }
 
+    /**
+     * 获取截止时间文本（JSON 边界上的表示）。
+     *
+     * @return {@code yyyy-MM-ddTHH:mm}；未设置返回 null
+     */
     public String getDueDate() {
-        return dueDate;
+        return DueDates.format(dueMinute);
     }
 
+    /**
+     * 设置截止时间文本（JSON 边界上的表示）。
+     *
+     * @param dueDate {@code yyyy-MM-ddTHH:mm} 或只有日期；null、空白或格式非法视为未设置
+     */
     public void setDueDate(String dueDate) {
-        this.dueDate = dueDate;
+        this.dueMinute = parseDueDate(dueDate);
+    }
+
+    /**
+     * 获取截止时间的纪元分钟数，用于比较、排序与范围过滤。
+     *
+     * @return 纪元分钟数；未设置返回 {@link DueDates#NONE}
+     */
+    @JsonIgnore
+    public long getDueMinute() {
+        return dueMinute;
+    }
+
+    @JsonIgnore
+    public void setDueMinute(long dueMinute) {
+        this.dueMinute = dueMinute;
+    }
+
+    /**
+     * 宽松解析：格式非法时视为未设置（与旧数据中无法解析的截止时间在比较时的处理一致）；入参校验由服务层负责。
+     */
+    private static long parseDueDate(String dueDate) {
+        try {
+            return DueDates.parse(dueDate);
+        } catch (DateTimeException e) {
+            return DueDates.NONE;
+        }
     }
 
     /**
@@ -145,6 +208,19 @@ public class TodoItem {
         this.completed = completed;
     }
 
+    /**
+     * 获取版本号：每次写入加一，用于乐观并发控制（更新时带上读到的版本号，不一致则冲突）。
+     *
+     * @return 版本号
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     /**
      * 获取创建时间。
      *
@@ -0,0 +1,30 @@
+package com.iftech.todo.domain;
+
+import java.util.List;
+
+/**
+ * 一页待办数据。
+ */
+public class TodoPage {
+    private final List<TodoItem> items;
+    private final String nextCursor;
+
+    /**
+     * 构造方法。
+     *
+     * @param items      本页数据
+     * @param nextCursor 下一页游标；为 null 表示已经是最后一页
+     */
+    public TodoPage(List<TodoItem> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<TodoItem> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
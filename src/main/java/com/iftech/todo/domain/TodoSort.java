@@ -0,0 +1,50 @@
+package com.iftech.todo.domain;
+
+import java.util.Comparator;
+
+/**
+ * 待办列表的排序方式。
+ *
+ * <p>每种排序最终都以 createdAt 倒序、id 倒序兜底，保证顺序是全序的，游标分页才能稳定地“接着上一页往后读”。
+ */
+public enum TodoSort {
+    CREATED_AT_DESC,
+    PRIORITY_DESC,
+    DUE_DATE_ASC,
+    DUE_DATE_DESC;
+
+    private static final Comparator<TodoItem> CREATED_DESC = Comparator
+            .comparing(TodoItem::getCreatedAt, Comparator.nullsLast(Comparator.naturalOrder()))
+            .reversed()
+            .thenComparing(TodoItem::getId, Comparator.nullsLast(Comparator.<String>naturalOrder()).reversed());
+
+    /**
+     * 获取与该排序方式一致的内存比较器（供文件存储与服务层使用）。
+     *
+     * <p>截止时间升序时无截止时间的排在最后；降序时排在最前，与 SQL 实现保持一致。
+     * 截止时间直接比较预先算好的纪元分钟数，排序过程中不解析文本、不分配对象。
+     *
+     * @return 比较器
+     */
+    public Comparator<TodoItem> comparator() {
+        switch (this) {
+            case PRIORITY_DESC:
+                return Comparator.comparingInt(TodoItem::getPriority).reversed().thenComparing(CREATED_DESC);
+            case DUE_DATE_ASC:
+                return Comparator.comparingLong(TodoSort::dueKey).thenComparing(CREATED_DESC);
+            case DUE_DATE_DESC:
+                return Comparator.comparingLong(TodoSort::dueKey).reversed().thenComparing(CREATED_DESC);
+            case CREATED_AT_DESC:
+            default:
+                return CREATED_DESC;
+        }
+    }
+
+    /**
+     * 截止时间的排序键：未设置映射为 {@link Long#MAX_VALUE}，升序时排在最后。
+     */
+    private static long dueKey(TodoItem item) {
+        long minute = item.getDueMinute();
+        return minute == DueDates.NONE ? Long.MAX_VALUE : minute;
+    }
+}
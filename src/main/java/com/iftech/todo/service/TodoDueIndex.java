@@ -0,0 +1,226 @@
+package com.iftech.todo.service;
+
+import com.iftech.todo.domain.DueDates;
+import com.iftech.todo.domain.TodoItem;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * 未完成且设置了截止时间的待办按截止分钟排序的索引，供 {@code GET /api/todos/overdue} 与 {@code GET /api/todos/due} 使用，
+ * 并在待办到期的那一分钟发出“已逾期”通知。
+ *
+ * <p>截止时间是不带时区的本地时间（见 {@link DueDates}），“现在”取服务端默认时区的本地时间；截止分钟不晚于当前分钟即为逾期。
+ *
+ * <p>到期通知不做周期性全量扫描：只为最早一个尚未逾期的截止分钟挂一个一次性定时任务，触发时取出
+ * 上次触发之后到当前分钟之间到期的待办逐条通知，再为下一个截止分钟挂任务。写入使更早的截止分钟进入索引时改挂定时任务；
+ * 定时至多等待 {@value #MAX_DELAY_MINUTES} 分钟后重新核对，系统时间被调整时不会错过。
+ * 创建或修改时截止时间已过、以及重新打开的逾期待办不会补发通知，只有“从未逾期变为逾期”才通知。
+ *
+ * <p>写入由 {@link TodoService} 在每次写入成功后同步调用，启动时全量重建；只覆盖经由本进程的写入。
+ * 删除留下墓碑（见 {@link TodoTombstones}），并发更新迟于删除到达时不会把已删除的待办加回索引、也不会为它发出逾期通知。
+ */
+final class TodoDueIndex {
+    static final long MAX_DELAY_MINUTES = 60L;
+
+    private static final long MILLIS_PER_MINUTE = 60_000L;
+
+    /**
+     * 截止分钟 → (id → 待办)。
+     */
+    private final NavigableMap<Long, Map<String, TodoItem>> byDue = new TreeMap<Long, Map<String, TodoItem>>();
+    private final Map<String, TodoItem> byId = new HashMap<String, TodoItem>();
+    private final TodoTombstones removed = new TodoTombstones(System::nanoTime);
+    private final LongSupplier localMillis;
+    private final ScheduledExecutorService timer;
+    private final Consumer<TodoItem> onOverdue;
+    /**
+     * 已发出过通知（或启动时已逾期）的截止分钟上界，截止分钟不大于它的待办不再通知。
+     */
+    private long notifiedThrough;
+    private long armedMinute = DueDates.NONE;
+    private ScheduledFuture<?> armed;
+
+    /**
+     * 构造方法。
+     *
+     * @param localMillis 当前本地时间（按 UTC 折算的纪元毫秒，与 {@link DueDates} 的口径一致）
+     * @param timer       执行到期通知的定时线程；为 null 时不自动触发，由调用方调用 {@link #fire()}
+     * @param onOverdue   到期通知（在定时线程上调用，不应阻塞）
+     */
+    TodoDueIndex(LongSupplier localMillis, ScheduledExecutorService timer, Consumer<TodoItem> onOverdue) {
+        this.localMillis = localMillis;
+        this.timer = timer;
+        this.onOverdue = onOverdue;
+        this.notifiedThrough = nowMinute();
+    }
+
+    /**
+     * 服务端默认时区的当前本地时间，按 UTC 折算为纪元毫秒。
+     */
+    static long systemLocalMillis() {
+        return LocalDateTime.now().toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    /**
+     * 新增或替换一条待办：已完成或未设置截止时间的移出索引；版本号低于已索引版本的、以及已删除的（并发写入乱序到达）忽略。
+     *
+     * @param item 待办
+     */
+    synchronized void put(TodoItem item) {
+        if (removed.contains(item.getId())) {
+            return;
+        }
+        TodoItem old = byId.get(item.getId());
+        if (old != null) {
+            if (old.getVersion() > item.getVersion()) {
+                return;
+            }
+            unlink(old);
+        }
+        if (item.isCompleted() || item.getDueMinute() == DueDates.NONE) {
+            return;
+        }
+        TodoItem copy = item.copy();
+        byId.put(copy.getId(), copy);
+        byDue.computeIfAbsent(copy.getDueMinute(), key -> new LinkedHashMap<String, TodoItem>()).put(copy.getId(), copy);
+        if (copy.getDueMinute() > notifiedThrough && (armedMinute == DueDates.NONE || copy.getDueMinute() < armedMinute)) {
+            arm();
+        }
+    }
+
+    /**
+     * 移除一条待办并留下墓碑，之后迟到的写入不再加回。已挂的定时任务不撤销：触发时找不到到期的待办，只会改挂下一个截止分钟。
+     *
+     * @param id 待办 id
+     */
+    synchronized void remove(String id) {
+        removed.add(id);
+        TodoItem old = byId.get(id);
+        if (old != null) {
+            unlink(old);
+        }
+    }
+
+    /**
+     * 清空索引（全量重建前调用），重建期间已逾期的待办不补发通知。
+     */
+    synchronized void clear() {
+        byDue.clear();
+        byId.clear();
+        removed.clear();
+        notifiedThrough = nowMinute();
+        if (armed != null) {
+            armed.cancel(false);
+            armed = null;
+        }
+        armedMinute = DueDates.NONE;
+    }
+
+    synchronized int size() {
+        return byId.size();
+    }
+
+    private void unlink(TodoItem item) {
+        byId.remove(item.getId());
+        Map<String, TodoItem> sameMinute = byDue.get(item.getDueMinute());
+        if (sameMinute != null && sameMinute.remove(item.getId()) != null && sameMinute.isEmpty()) {
+            byDue.remove(item.getDueMinute());
+        }
+    }
+
+    /**
+     * 已逾期的待办，按截止时间从早到晚。
+     *
+     * @param limit 至多返回的条数
+     * @return 待办副本
+     */
+    synchronized List<TodoItem> overdue(int limit) {
+        return collect(byDue.headMap(nowMinute(), true), limit);
+    }
+
+    /**
+     * 尚未逾期、且在给定分钟数内到期的待办，按截止时间从早到晚。
+     *
+     * @param withinMinutes 从现在起的分钟数
+     * @param limit         至多返回的条数
+     * @return 待办副本
+     */
+    synchronized List<TodoItem> dueWithin(long withinMinutes, int limit) {
+        long now = nowMinute();
+        return collect(byDue.subMap(now, false, now + withinMinutes, true), limit);
+    }
+
+    private static List<TodoItem> collect(NavigableMap<Long, Map<String, TodoItem>> range, int limit) {
+        List<TodoItem> items = new ArrayList<TodoItem>();
+        for (Map<String, TodoItem> sameMinute : range.values()) {
+            for (TodoItem item : sameMinute.values()) {
+                if (items.size() == limit) {
+                    return items;
+                }
+                items.add(item.copy());
+            }
+        }
+        return items;
+    }
+
+    /**
+     * 取出上次触发之后到当前分钟之间到期的待办并逐条通知，然后为下一个截止分钟挂定时任务。
+     * 只遍历这段时间内到期的条目，与索引总量无关。
+     */
+    void fire() {
+        List<TodoItem> due;
+        synchronized (this) {
+            long now = nowMinute();
+            due = now > notifiedThrough ? collect(byDue.subMap(notifiedThrough, false, now, true), Integer.MAX_VALUE)
+                    : new ArrayList<TodoItem>();
+            notifiedThrough = Math.max(notifiedThrough, now);
+            armed = null;
+            armedMinute = DueDates.NONE;
+            arm();
+        }
+        for (TodoItem item : due) {
+            onOverdue.accept(item);
+        }
+    }
+
+    /**
+     * 下一次定时触发对应的截止分钟；没有待触发的条目时为 {@link DueDates#NONE}。
+     */
+    synchronized long armedMinute() {
+        return armedMinute;
+    }
+
+    /**
+     * 为最早一个尚未通知的截止分钟（重新）挂定时任务。
+     */
+    private void arm() {
+        Long next = byDue.higherKey(notifiedThrough);
+        if (next == null) {
+            return;
+        }
+        if (armed != null) {
+            armed.cancel(false);
+        }
+        armedMinute = next;
+        if (timer != null) {
+            long delay = Math.min(next * MILLIS_PER_MINUTE - localMillis.getAsLong(), MAX_DELAY_MINUTES * MILLIS_PER_MINUTE);
+            armed = timer.schedule(this::fire, Math.max(0L, delay), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private long nowMinute() {
+        return Math.floorDiv(localMillis.getAsLong(), MILLIS_PER_MINUTE);
+    }
+}
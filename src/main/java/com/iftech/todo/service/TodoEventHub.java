@@ -0,0 +1,204 @@
+package com.iftech.todo.service;
+
+import com.iftech.todo.domain.TodoEvent;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 变更事件的扇出中心。
+ *
+ * <p>{@link #publish} 只把事件放进每个订阅方自己的有界缓冲并唤醒发送线程，不做任何 I/O，写入方不会被慢连接拖住；
+ * 发送由少量共享线程完成，同一订阅方同一时刻至多占用一个发送线程，事件按发布顺序送达。
+ * 缓冲已满说明该订阅方跟不上，直接断开（客户端重连后自行全量刷新），不影响其它订阅方。
+ * 空闲时定期发送心跳，及时发现已断开的连接。
+ */
+@Component
+public class TodoEventHub {
+    /**
+     * 订阅方的输出端，由接口层适配到具体连接（如 SSE）。
+     */
+    public interface Sink {
+        void send(TodoEvent event) throws IOException;
+
+        void heartbeat() throws IOException;
+
+        /**
+         * 结束连接；可能在发送线程之外被调用，须可重复调用。
+         */
+        void close();
+    }
+
+    /**
+     * 心跳占位，与事件共用缓冲以保持顺序。
+     */
+    private static final Object HEARTBEAT = new Object();
+
+    private final int bufferSize;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService senders;
+    private final ScheduledExecutorService heartbeats;
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * 构造方法。
+     *
+     * @param bufferSize      每个订阅方最多积压的事件数，超过即断开
+     * @param senderThreads   发送线程数
+     * @param heartbeatMillis 心跳间隔（毫秒，0 表示不发送）
+     */
+    public TodoEventHub(
+            @Value("${todo.events.buffer-size:256}") int bufferSize,
+            @Value("${todo.events.sender-threads:2}") int senderThreads,
+            @Value("${todo.events.heartbeat-ms:15000}") long heartbeatMillis
+    ) {
+        if (bufferSize < 1 || senderThreads < 1) {
+            throw new IllegalArgumentException("todo.events.buffer-size and todo.events.sender-threads must be positive");
+        }
+        this.bufferSize = bufferSize;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(senderThreads,
+                runnable -> daemon(runnable, "todo-event-sender-" + threadNumber.incrementAndGet()));
+        if (heartbeatMillis > 0) {
+            this.heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> daemon(runnable, "todo-event-heartbeat"));
+            this.heartbeats.scheduleWithFixedDelay(this::heartbeat, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.heartbeats = null;
+        }
+    }
+
+    /**
+     * 登记一个订阅方。
+     *
+     * @param sink 输出端
+     * @return 取消订阅的动作（连接正常结束时调用）
+     */
+    public Runnable subscribe(Sink sink) {
+        Subscriber subscriber = new Subscriber(sink, bufferSize);
+        subscribers.add(subscriber);
+        return () -> subscribers.remove(subscriber);
+    }
+
+    /**
+     * 把事件投递给全部订阅方，不阻塞。
+     *
+     * @param event 事件
+     */
+    public void publish(TodoEvent event) {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(event);
+        }
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * 因缓冲溢出或发送失败被断开的订阅方数量。
+     */
+    public long evictionCount() {
+        return evictions.get();
+    }
+
+    private void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(HEARTBEAT);
+        }
+    }
+
+    private void evict(Subscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            evictions.incrementAndGet();
+        }
+        subscriber.sink.close();
+    }
+
+    @PreDestroy
+    public void close() {
+        if (heartbeats != null) {
+            heartbeats.shutdownNow();
+        }
+        senders.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.sink.close();
+        }
+        subscribers.clear();
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * 单个订阅方：有界缓冲 + “是否已排队发送”标记。
+     */
+    private final class Subscriber implements Runnable {
+        private final Sink sink;
+        private final BlockingQueue<Object> buffer;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private Subscriber(Sink sink, int capacity) {
+            this.sink = sink;
+            this.buffer = new ArrayBlockingQueue<Object>(capacity);
+        }
+
+        void offer(Object message) {
+            if (!buffer.offer(message)) {
+                evict(this);
+                return;
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this);
+                } catch (RejectedExecutionException e) {
+                    subscribers.remove(this);
+                    sink.close();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                Object message;
+                while ((message = buffer.poll()) != null) {
+                    if (message == HEARTBEAT) {
+                        sink.heartbeat();
+                    } else {
+                        sink.send((TodoEvent) message);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                buffer.clear();
+                evict(this);
+                return;
+            } finally {
+                scheduled.set(false);
+            }
+            // 清空缓冲与复位标记之间到达的事件不会再触发调度，这里补一次
+            if (!buffer.isEmpty() && subscribers.contains(this)) {
+                schedule();
+            }
+        }
+    }
+}
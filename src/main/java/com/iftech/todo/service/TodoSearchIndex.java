@@ -0,0 +1,582 @@
+package com.iftech.todo.service;
+
+import com.iftech.todo.domain.TodoItem;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 标题与描述上的内存倒排索引，供 {@code GET /api/todos/search} 使用。
+ *
+ * <p>分词：文本先做 NFKC 规范化（全角转半角）并转小写；连续的字母/数字为一个词，查询时按前缀匹配；
+ * 中日韩文字没有分隔符，连续的一段按单字与相邻两字（bigram）同时入索引，查询中单个汉字按单字匹配，
+ * 两个及以上按其中每个 bigram 匹配，效果近似子串匹配。查询中的每个词都必须命中（AND）。
+ *
+ * <p>打分：每个查询词取其命中的各索引词中最高的 {@code idf × 字段权重}（标题高于描述，前缀命中低于完整命中）后相加，
+ * 标题包含整个查询串时再加权；同分按创建时间倒序。
+ *
+ * <p>查询只遍历候选最少的一个查询词（或分类过滤）的倒排表，其余查询词在候选自身的有序词表上二分查找，
+ * 耗时取决于该最小候选集，与索引中的待办总数无关；前缀至多展开 {@value #MAX_PREFIX_EXPANSIONS} 个索引词。
+ *
+ * <p>每条待办占一个整数槽位，倒排表是槽位的开放寻址整数集合，不为每个（词, 待办）对分配对象，百万级数据全量重建时不会被 GC 拖慢。
+ * 写入由 {@link TodoService} 在每次写入成功后同步调用，启动时全量重建；只覆盖经由本进程的写入。
+ * 删除留下墓碑（见 {@link TodoTombstones}），并发更新迟于删除到达时不会把已删除的待办加回索引。
+ */
+final class TodoSearchIndex {
+    static final int MAX_PREFIX_EXPANSIONS = 64;
+
+    private static final byte IN_TITLE = 1;
+    private static final byte IN_DESCRIPTION = 2;
+    private static final double TITLE_WEIGHT = 3.0;
+    private static final double DESCRIPTION_WEIGHT = 1.0;
+    private static final double PREFIX_WEIGHT = 0.5;
+    private static final double TITLE_PHRASE_BOOST = 1.5;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /**
+     * 索引词 → 含该词的槽位。
+     */
+    private final Map<String, Slots> postings = new HashMap<String, Slots>();
+    /**
+     * 索引中的字母/数字词，有序，用于前缀展开（中日韩单字与 bigram 不做前缀匹配，不放在这里）。
+     */
+    private final TreeSet<String> words = new TreeSet<String>();
+    private final Map<String, Slots> byCategory = new HashMap<String, Slots>();
+    private final Map<String, Integer> slotById = new HashMap<String, Integer>();
+    private final TodoTombstones removed = new TodoTombstones(System::nanoTime);
+    private Doc[] docs = new Doc[64];
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int nextSlot;
+
+    /**
+     * 新增或替换一条待办；版本号低于已索引版本的、以及已删除的（并发写入乱序到达）忽略。
+     *
+     * @param item 待办
+     */
+    void put(TodoItem item) {
+        Doc doc = document(item);
+        lock.writeLock().lock();
+        try {
+            if (removed.contains(doc.id)) {
+                return;
+            }
+            Integer existing = slotById.get(doc.id);
+            int slot;
+            if (existing != null) {
+                slot = existing;
+                Doc old = docs[slot];
+                if (old.version > doc.version) {
+                    return;
+                }
+                unlink(slot, old);
+            } else {
+                slot = allocate();
+                slotById.put(doc.id, slot);
+            }
+            docs[slot] = doc;
+            for (int i = 0; i < doc.terms.length; i++) {
+                String term = doc.terms[i];
+                Slots slots = postings.get(term);
+                if (slots == null) {
+                    slots = new Slots(term);
+                    postings.put(term, slots);
+                    if (!isCjk(term.codePointAt(0))) {
+                        words.add(term);
+                    }
+                }
+                // 各待办共用倒排表里的同一个词对象，百万级数据下省去大量重复的短字符串
+                doc.terms[i] = slots.term;
+                slots.add(slot);
+            }
+            if (doc.category != null) {
+                byCategory.computeIfAbsent(doc.category, Slots::new).add(slot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 移除一条待办并留下墓碑，之后迟到的写入不再加回。
+     *
+     * @param id 待办 id
+     */
+    void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            removed.add(id);
+            Integer slot = slotById.remove(id);
+            if (slot != null) {
+                unlink(slot, docs[slot]);
+                docs[slot] = null;
+                if (freeCount == freeSlots.length) {
+                    freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+                }
+                freeSlots[freeCount++] = slot;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 清空索引（全量重建前调用）。
+     */
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            words.clear();
+            byCategory.clear();
+            slotById.clear();
+            removed.clear();
+            docs = new Doc[64];
+            freeCount = 0;
+            nextSlot = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return slotById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int allocate() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (nextSlot == docs.length) {
+            docs = Arrays.copyOf(docs, docs.length * 2);
+        }
+        return nextSlot++;
+    }
+
+    private void unlink(int slot, Doc doc) {
+        for (String term : doc.terms) {
+            Slots slots = postings.get(term);
+            if (slots != null && slots.remove(slot) && slots.size() == 0) {
+                postings.remove(term);
+                words.remove(term);
+            }
+        }
+        if (doc.category != null) {
+            Slots slots = byCategory.get(doc.category);
+            if (slots != null && slots.remove(slot) && slots.size() == 0) {
+                byCategory.remove(doc.category);
+            }
+        }
+    }
+
+    /**
+     * 按相关度查询。
+     *
+     * @param text     查询串
+     * @param category 只返回该分类下的待办（可为 null）
+     * @param limit    至多返回的条数
+     * @return 按相关度从高到低排列的待办 id；查询串中没有可检索的字符时为空
+     */
+    List<String> search(String text, String category, int limit) {
+        List<Clause> clauses = parse(text);
+        if (clauses.isEmpty()) {
+            return new ArrayList<String>();
+        }
+        String phrase = normalize(text).trim();
+        lock.readLock().lock();
+        try {
+            // 候选集取最小的一个：某个查询词的倒排表（含前缀展开），或分类过滤
+            Clause driver = null;
+            for (Clause clause : clauses) {
+                expand(clause);
+                if (clause.size == 0) {
+                    return new ArrayList<String>();
+                }
+                if (driver == null || clause.size < driver.size) {
+                    driver = clause;
+                }
+            }
+            List<Slots> sources = driver.sources;
+            if (category != null) {
+                Slots inCategory = byCategory.get(category);
+                if (inCategory == null) {
+                    return new ArrayList<String>();
+                }
+                if (inCategory.size() < driver.size) {
+                    sources = Collections.singletonList(inCategory);
+                }
+            }
+
+            PriorityQueue<Hit> top = new PriorityQueue<Hit>(Math.max(1, limit) + 1);
+            Set<Integer> seen = sources.size() > 1 ? new HashSet<Integer>() : null;
+            for (Slots source : sources) {
+                for (int slot : source.table) {
+                    if (slot == Slots.EMPTY || (seen != null && !seen.add(slot))) {
+                        continue;
+                    }
+                    Doc doc = docs[slot];
+                    if (category != null && !category.equals(doc.category)) {
+                        continue;
+                    }
+                    double score = score(clauses, doc);
+                    if (score <= 0) {
+                        continue;
+                    }
+                    if (!phrase.isEmpty() && doc.title.contains(phrase)) {
+                        score *= TITLE_PHRASE_BOOST;
+                    }
+                    top.add(new Hit(doc.id, score, doc.createdAtMillis));
+                    if (top.size() > limit) {
+                        top.poll();
+                    }
+                }
+            }
+            List<Hit> hits = new ArrayList<Hit>(top);
+            hits.sort(Collections.reverseOrder());
+            List<String> ids = new ArrayList<String>(hits.size());
+            for (Hit hit : hits) {
+                ids.add(hit.id);
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 所有查询词都命中时返回各词得分之和，否则返回 0。查询词在待办自身的有序词表上二分定位，以它为前缀的词紧随其后。
+     */
+    private static double score(List<Clause> clauses, Doc doc) {
+        double total = 0;
+        for (Clause clause : clauses) {
+            double best = 0;
+            int i = Arrays.binarySearch(doc.terms, clause.term);
+            if (i < 0) {
+                i = -i - 1;
+            }
+            for (; i < doc.terms.length && doc.terms[i].startsWith(clause.term); i++) {
+                Double weight = clause.weights.get(doc.terms[i]);
+                if (weight != null) {
+                    double fieldWeight = (doc.fields[i] & IN_TITLE) != 0 ? TITLE_WEIGHT : DESCRIPTION_WEIGHT;
+                    best = Math.max(best, weight * fieldWeight);
+                }
+                if (!clause.prefix) {
+                    break;
+                }
+            }
+            if (best == 0) {
+                return 0;
+            }
+            total += best;
+        }
+        return total;
+    }
+
+    /**
+     * 找出查询词命中的索引词及各自的权重（idf，前缀命中再打折）。
+     */
+    private void expand(Clause clause) {
+        int docCount = slotById.size();
+        Slots exact = postings.get(clause.term);
+        if (exact != null) {
+            clause.add(clause.term, exact, idf(docCount, exact.size()));
+        }
+        if (clause.prefix) {
+            int expanded = 0;
+            for (String word : words.subSet(clause.term, false, clause.term + Character.MAX_VALUE, false)) {
+                if (expanded++ == MAX_PREFIX_EXPANSIONS) {
+                    break;
+                }
+                Slots slots = postings.get(word);
+                clause.add(word, slots, idf(docCount, slots.size()) * PREFIX_WEIGHT);
+            }
+        }
+    }
+
+    private static double idf(int docCount, int docFrequency) {
+        return Math.log(1.0 + (double) docCount / docFrequency);
+    }
+
+    private static Doc document(TodoItem item) {
+        Map<String, Byte> fields = new HashMap<String, Byte>();
+        for (String term : indexTerms(item.getTitle())) {
+            fields.put(term, IN_TITLE);
+        }
+        for (String term : indexTerms(item.getDescription())) {
+            fields.merge(term, IN_DESCRIPTION, (a, b) -> (byte) (a | b));
+        }
+        String[] terms = fields.keySet().toArray(new String[0]);
+        Arrays.sort(terms);
+        byte[] termFields = new byte[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            termFields[i] = fields.get(terms[i]);
+        }
+        return new Doc(item.getId(), item.getCategory(), item.getCreatedAt() == null ? 0L : item.getCreatedAt().toEpochMilli(),
+                item.getVersion(), normalize(item.getTitle()), terms, termFields);
+    }
+
+    /**
+     * 把查询串拆成查询词：字母/数字词按前缀匹配；单个汉字按单字匹配，连续多个汉字拆成 bigram。重复的词只保留一个。
+     */
+    static List<Clause> parse(String text) {
+        Map<String, Clause> clauses = new LinkedHashMap<String, Clause>();
+        scan(normalize(text), new Sink() {
+            @Override
+            public void word(String word) {
+                clauses.putIfAbsent(word, new Clause(word, true));
+            }
+
+            @Override
+            public void cjk(String run) {
+                if (run.length() == 1) {
+                    clauses.putIfAbsent(run, new Clause(run, false));
+                    return;
+                }
+                for (int i = 0; i + 1 < run.length(); i++) {
+                    String bigram = run.substring(i, i + 2);
+                    clauses.putIfAbsent(bigram, new Clause(bigram, false));
+                }
+            }
+        });
+        return new ArrayList<Clause>(clauses.values());
+    }
+
+    /**
+     * 文本的索引词：字母/数字词，以及中日韩文字的单字与 bigram。
+     */
+    static Set<String> indexTerms(String text) {
+        Set<String> terms = new HashSet<String>();
+        if (text == null) {
+            return terms;
+        }
+        scan(normalize(text), new Sink() {
+            @Override
+            public void word(String word) {
+                terms.add(word);
+            }
+
+            @Override
+            public void cjk(String run) {
+                for (int i = 0; i < run.length(); i++) {
+                    terms.add(run.substring(i, i + 1));
+                    if (i + 1 < run.length()) {
+                        terms.add(run.substring(i, i + 2));
+                    }
+                }
+            }
+        });
+        return terms;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 把规范化后的文本切成字母/数字词与中日韩文字段，其余字符视为分隔符。
+     *
+     * <p>中日韩文字段按 char 切分：常用汉字都在基本多文种平面内，补充平面的字只会多出无意义的半个字符，不影响匹配。
+     */
+    private static void scan(String text, Sink sink) {
+        int i = 0;
+        while (i < text.length()) {
+            int cp = text.codePointAt(i);
+            if (isCjk(cp)) {
+                int start = i;
+                while (i < text.length() && isCjk(text.codePointAt(i))) {
+                    i += Character.charCount(text.codePointAt(i));
+                }
+                sink.cjk(text.substring(start, i));
+            } else if (Character.isLetterOrDigit(cp)) {
+                int start = i;
+                while (i < text.length() && Character.isLetterOrDigit(text.codePointAt(i)) && !isCjk(text.codePointAt(i))) {
+                    i += Character.charCount(text.codePointAt(i));
+                }
+                sink.word(text.substring(start, i));
+            } else {
+                i += Character.charCount(cp);
+            }
+        }
+    }
+
+    private static boolean isCjk(int cp) {
+        if (cp < 0x1100) {
+            return false;
+        }
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HANGUL;
+    }
+
+    private interface Sink {
+        void word(String word);
+
+        void cjk(String run);
+    }
+
+    /**
+     * 一个查询词，及其命中的各索引词的倒排表与权重。
+     */
+    static final class Clause {
+        final String term;
+        final boolean prefix;
+        final List<Slots> sources = new ArrayList<Slots>();
+        final Map<String, Double> weights = new HashMap<String, Double>();
+        int size;
+
+        Clause(String term, boolean prefix) {
+            this.term = term;
+            this.prefix = prefix;
+        }
+
+        void add(String word, Slots slots, double weight) {
+            sources.add(slots);
+            weights.put(word, weight);
+            size += slots.size();
+        }
+    }
+
+    /**
+     * 槽位的开放寻址整数集合：线性探测，删除时把探测链上的后续元素回移，不留墓碑。
+     */
+    static final class Slots {
+        static final int EMPTY = -1;
+
+        final String term;
+        int[] table = newTable(4);
+        private int size;
+
+        Slots(String term) {
+            this.term = term;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void add(int slot) {
+            if ((size + 1) * 2 > table.length) {
+                int[] old = table;
+                table = newTable(old.length * 2);
+                for (int value : old) {
+                    if (value != EMPTY) {
+                        insert(value);
+                    }
+                }
+            }
+            if (insert(slot)) {
+                size++;
+            }
+        }
+
+        boolean remove(int slot) {
+            int mask = table.length - 1;
+            int i = home(slot, mask);
+            while (table[i] != slot) {
+                if (table[i] == EMPTY) {
+                    return false;
+                }
+                i = (i + 1) & mask;
+            }
+            int gap = i;
+            for (int j = (gap + 1) & mask; table[j] != EMPTY; j = (j + 1) & mask) {
+                // 元素的起始位置不在 (gap, j] 之间时，移到空位上才不会让查找提前遇到空位而漏掉它
+                if (((j - home(table[j], mask)) & mask) >= ((j - gap) & mask)) {
+                    table[gap] = table[j];
+                    gap = j;
+                }
+            }
+            table[gap] = EMPTY;
+            size--;
+            return true;
+        }
+
+        private boolean insert(int slot) {
+            int mask = table.length - 1;
+            int i = home(slot, mask);
+            while (table[i] != EMPTY) {
+                if (table[i] == slot) {
+                    return false;
+                }
+                i = (i + 1) & mask;
+            }
+            table[i] = slot;
+            return true;
+        }
+
+        private static int home(int value, int mask) {
+            int h = value * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & mask;
+        }
+
+        private static int[] newTable(int capacity) {
+            int[] table = new int[capacity];
+            Arrays.fill(table, EMPTY);
+            return table;
+        }
+    }
+
+    private static final class Doc {
+        final String id;
+        final String category;
+        final long createdAtMillis;
+        final long version;
+        final String title;
+        /**
+         * 有序的索引词，与 {@link #fields}（出现的字段位图）一一对应。
+         */
+        final String[] terms;
+        final byte[] fields;
+
+        Doc(String id, String category, long createdAtMillis, long version, String title, String[] terms, byte[] fields) {
+            this.id = id;
+            this.category = category;
+            this.createdAtMillis = createdAtMillis;
+            this.version = version;
+            this.title = title;
+            this.terms = terms;
+            this.fields = fields;
+        }
+    }
+
+    /**
+     * 命中结果；自然顺序为相关度升序（同分时较早创建的在前），堆顶即当前最差的结果。
+     */
+    private static final class Hit implements Comparable<Hit> {
+        final String id;
+        final double score;
+        final long createdAtMillis;
+
+        Hit(String id, double score, long createdAtMillis) {
+            this.id = id;
+            this.score = score;
+            this.createdAtMillis = createdAtMillis;
+        }
+
+        @Override
+        public int compareTo(Hit other) {
+            int byScore = Double.compare(score, other.score);
+            if (byScore != 0) {
+                return byScore;
+            }
+            int byCreated = Long.compare(createdAtMillis, other.createdAtMillis);
+            return byCreated != 0 ? byCreated : other.id.compareTo(id);
+        }
+    }
+}
@@ -1,17 +1,43 @@
 package com.iftech.todo.service;
 
+import com.iftech.todo.api.dto.BatchOperationRequest;
 import com.iftech.todo.api.dto.UpdateTodoRequest;
+import com.iftech.todo.domain.DueDates;
+import com.iftech.todo.domain.TodoBatchResult;
+import com.iftech.todo.domain.TodoCategoryCount;
+import com.iftech.todo.domain.TodoChanges;
+import com.iftech.todo.domain.TodoEvent;
+import com.iftech.todo.domain.TodoField;
 import com.iftech.todo.domain.TodoItem;
+import com.iftech.todo.domain.TodoPage;
+import com.iftech.todo.domain.TodoSort;
+import com.iftech.todo.storage.TodoBatch;
+import com.iftech.todo.storage.TodoConflictException;
+import com.iftech.todo.storage.TodoCursor;
+import com.iftech.todo.storage.TodoQuery;
 import com.iftech.todo.storage.TodoRepository;
 import java.time.Instant;
-import java.time.LocalDate;
+import java.time.DateTimeException;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
@@ -19,22 +45,143 @@ import org.springframework.web.server.ResponseStatusException;
 @Service
 public class TodoService {
     private final TodoRepository todoRepository;
-    private static final DateTimeFormatter DUE_DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
+    private final TodoEventHub eventHub;
+    private final TodoSearchIndex searchIndex = new TodoSearchIndex();
+    private final ScheduledExecutorService dueTimer;
+    private final TodoDueIndex dueIndex;
+    /**
+     * 本进程的变更版本号：每次写入成功后单调递增。本进程是唯一写入方时用作列表/分类接口的 ETag，
+     * 否则只代表进程内的搜索索引（见 {@link #searchTag()}）。前缀为进程启动时间，重启后旧 ETag 不会与新进程的版本号撞上。
+     */
+    private final String changeEpoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong changeVersion = new AtomicLong();
 
-    public enum Sort {
-        CREATED_AT_DESC,
-        PRIORITY_DESC,
-        DUE_DATE_ASC,
-        DUE_DATE_DESC
-    }
+    /**
+     * 分页查询时单页允许的最大条数。
+     */
+    public static final int MAX_PAGE_SIZE = 500;
+
+    /**
+     * 单次批量请求允许的最大操作数。
+     */
+    public static final int MAX_BATCH_SIZE = 1000;
+
+    /**
+     * 搜索串允许的最大长度。
+     */
+    public static final int MAX_SEARCH_LENGTH = 100;
+
+    /**
+     * {@code within} 允许的最大分钟数（一年）。
+     */
+    public static final long MAX_DUE_WITHIN_MINUTES = 366L * 24 * 60;
+
+    private static final String BATCH_CREATE = "create";
+    private static final String BATCH_UPDATE = "update";
+    private static final String BATCH_TOGGLE = "toggle";
+    private static final String BATCH_DELETE = "delete";
 
     /**
      * 构造方法，通过依赖注入获取存储层实现。
      *
+     * <p>注入的是 {@code TodoRepositoryConfiguration} 装配好的存储，缓存与指标等装饰器已在其中。
+     *
      * @param todoRepository TODO 存储接口
+     * @param eventHub       变更事件扇出（写入成功后发布）
      */
-    public TodoService(TodoRepository todoRepository) {
+    public TodoService(TodoRepository todoRepository, TodoEventHub eventHub) {
         this.todoRepository = todoRepository;
+        this.eventHub = eventHub;
+        this.dueTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "todo-due-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 逾期通知不改变数据，不推进变更版本号
+        this.dueIndex = new TodoDueIndex(TodoDueIndex::systemLocalMillis, dueTimer,
+                item -> eventHub.publish(TodoEvent.of(TodoEvent.OVERDUE, item)));
+    }
+
+    /**
+     * 返回当前的存储变更标签。
+     *
+     * <p>在写入对读可见之后才递增，因此先取标签再读数据时，标签不会比数据新；
+     * 标签不变即可断定列表、分类等聚合结果未变，无需访问存储层。
+     *
+     * <p>本进程是唯一写入方时使用进程内的版本号；数据库可能由多个实例共享或被直接修改（见 {@link TodoRepository#exclusiveWriter()}），
+     * 此时改用存储自身维护的标签（{@link TodoRepository#changeTag()}），存储给不出时不给出标签，
+     * 否则其他来源的写入之后客户端仍会拿着旧结果得到 304。
+     *
+     * @return 变更标签（不含引号）；无法给出时返回 null
+     */
+    public String changeTag() {
+        if (todoRepository.exclusiveWriter()) {
+            return localChangeTag();
+        }
+        return todoRepository.changeTag();
+    }
+
+    /**
+     * 返回搜索结果的变更标签。
+     *
+     * <p>搜索先查进程内的索引、再按 id 从存储取回待办：索引只随本进程的写入变化，待办内容还可能被其他写入方修改，
+     * 因此存储不是本进程独占时标签由两部分拼成，任一部分变化都会使其变化。
+     *
+     * @return 变更标签（不含引号）；无法给出时返回 null
+     */
+    public String searchTag() {
+        if (todoRepository.exclusiveWriter()) {
+            return localChangeTag();
+        }
+        String shared = todoRepository.changeTag();
+        return shared == null ? null : localChangeTag() + "." + shared;
+    }
+
+    private String localChangeTag() {
+        return changeEpoch + "-" + changeVersion.get();
+    }
+
+    /**
+     * 启动时从存储全量重建搜索索引与截止时间索引，之后由每次写入增量维护。
+     */
+    @PostConstruct
+    public void rebuildIndexes() {
+        searchIndex.clear();
+        dueIndex.clear();
+        todoRepository.stream(new TodoQuery(), item -> {
+            searchIndex.put(item);
+            dueIndex.put(item);
+        });
+    }
+
+    /**
+     * 停止逾期通知的定时线程。
+     */
+    @PreDestroy
+    public void close() {
+        dueTimer.shutdownNow();
+    }
+
+    /**
+     * 记录一次成功的写入：更新索引，推进变更版本号并发布事件。
+     */
+    private void changed(TodoEvent event) {
+        index(event);
+        changeVersion.incrementAndGet();
+        eventHub.publish(event);
+    }
+
+    /**
+     * 按写入事件更新搜索索引与截止时间索引；在推进变更版本号之前调用，保持“标签不会比数据新”。
+     */
+    private void index(TodoEvent event) {
+        if (TodoEvent.DELETE.equals(event.getType())) {
+            searchIndex.remove(event.getId());
+            dueIndex.remove(event.getId());
+        } else {
+            searchIndex.put(event.getItem());
+            dueIndex.put(event.getItem());
+        }
     }
 
     /**
@@ -47,26 +194,232 @@ public class TodoService {
     }
 
     public List<TodoItem> list(String category) {
-        return list(category, Sort.CREATED_AT_DESC);
+        return list(category, TodoSort.CREATED_AT_DESC);
+    }
+
+    public List<TodoItem> list(String category, TodoSort sort) {
+        TodoQuery query = new TodoQuery();
+        query.setCategory(normalizeCategory(category));
+        query.setSort(sort);
+        return list(query);
+    }
+
+    /**
+     * 按查询条件查询待办列表，过滤与排序由存储层完成。
+     *
+     * @param query 查询条件（见 {@link #buildQuery}）
+     * @return 待办列表
+     */
+    public List<TodoItem> list(TodoQuery query) {
+        return todoRepository.list(query);
+    }
+
+    /**
+     * 按查询条件逐条输出待办，不在内存中构造完整列表。
+     *
+     * @param query    查询条件
+     * @param consumer 逐条接收数据（对象只读，不应在回调之外保留）
+     */
+    public void stream(TodoQuery query, Consumer<TodoItem> consumer) {
+        todoRepository.stream(query, consumer);
+    }
+
+    /**
+     * 校验并组装列表查询条件。
+     *
+     * @param category 分类（可选）
+     * @param completed 完成态（可选）
+     * @param priority 优先级（可选，1..3）
+     * @param dueFrom  截止时间下界（可选，包含）
+     * @param dueTo    截止时间上界（可选，不包含）
+     * @param sort     排序方式
+     * @return 查询条件
+     */
+    public TodoQuery buildQuery(String category, Boolean completed, Integer priority, String dueFrom, String dueTo, TodoSort sort) {
+        TodoQuery query = new TodoQuery();
+        query.setCategory(normalizeCategory(category));
+        query.setCompleted(completed);
+        query.setPriority(priority == null ? null : normalizePriority(priority));
+        query.setDueFrom(parseDueBound(dueFrom, "dueFrom"));
+        query.setDueTo(parseDueBound(dueTo, "dueTo"));
+        query.setSort(sort);
+        return query;
+    }
+
+    /**
+     * 分页查询待办列表。
+     *
+     * <p>游标必须来自同一排序方式的上一页响应；多取一条用于判断是否还有下一页。
+     *
+     * @param query  查询条件（其中的游标与条数会被覆盖）
+     * @param cursor 上一页返回的游标；为空表示第一页
+     * @param limit  单页条数，取值 1..{@value #MAX_PAGE_SIZE}
+     * @return 本页数据与下一页游标
+     */
+    public TodoPage listPage(TodoQuery query, String cursor, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be 1.." + MAX_PAGE_SIZE);
+        }
+        TodoSort sort = query.getSort();
+        TodoCursor after = null;
+        if (cursor != null && !cursor.trim().isEmpty()) {
+            try {
+                after = TodoCursor.decode(cursor.trim());
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid cursor");
+            }
+            if (after.getSort() != sort) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "cursor does not match sort");
+            }
+        }
+        query.setAfter(after);
+        query.setLimit(limit + 1);
+        List<TodoItem> items = todoRepository.list(query);
+        if (items.size() <= limit) {
+            return new TodoPage(items, null);
+        }
+        List<TodoItem> page = new ArrayList<TodoItem>(items.subList(0, limit));
+        return new TodoPage(page, TodoCursor.after(sort, page.get(limit - 1)).encode());
+    }
+
+    /**
+     * 增量同步：返回令牌之后变化过的待办与被删除的 id。
+     *
+     * <p>客户端应先应用 {@code items}（按 {@code version} 去重），再应用 {@code deleted}，并保存新令牌；
+     * {@code full} 为 true 时用 {@code items} 替换本地数据。
+     *
+     * @param since 上次返回的令牌；为空表示首次同步
+     * @return 变化集合
+     */
+    public TodoChanges changes(String since) {
+        String token = since == null || since.trim().isEmpty() ? null : since.trim();
+        try {
+            return todoRepository.changes(token);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid since token");
+        }
+    }
+
+    /**
+     * 按标题与描述全文搜索，结果按相关度排序（见 {@link TodoSearchIndex}）。
+     *
+     * <p>索引只给出 id，数据本身用一次批量查询取出；查询期间被删除的待办不出现在结果中。
+     *
+     * @param q        搜索串（必填，至多 {@value #MAX_SEARCH_LENGTH} 个字符）
+     * @param category 分类（可选）
+     * @param limit    至多返回的条数，取值 1..{@value #MAX_PAGE_SIZE}
+     * @return 待办列表
+     */
+    public List<TodoItem> search(String q, String category, int limit) {
+        String text = q == null ? "" : q.trim();
+        if (text.isEmpty() || text.length() > MAX_SEARCH_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "q must be 1.." + MAX_SEARCH_LENGTH + " characters");
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be 1.." + MAX_PAGE_SIZE);
+        }
+        List<String> ids = searchIndex.search(text, normalizeCategory(category), limit);
+        if (ids.isEmpty()) {
+            return new ArrayList<TodoItem>();
+        }
+        Map<String, TodoItem> found = todoRepository.findByIds(ids);
+        List<TodoItem> items = new ArrayList<TodoItem>(found.size());
+        for (String id : ids) {
+            TodoItem item = found.get(id);
+            if (item != null) {
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * 已逾期的未完成待办（截止时间不晚于当前分钟），按截止时间从早到晚，由内存中的截止时间索引直接给出。
+     *
+     * @param limit 至多返回的条数，取值 1..{@value #MAX_PAGE_SIZE}
+     * @return 待办列表
+     */
+    public List<TodoItem> overdue(int limit) {
+        checkLimit(limit);
+        return dueIndex.overdue(limit);
+    }
+
+    /**
+     * 尚未逾期、且在给定时长内到期的未完成待办，按截止时间从早到晚。
+     *
+     * @param within 时长：分钟数，或 ISO-8601 时长（如 {@code PT2H}、{@code P1D}）；不足一分钟的部分向上取整
+     * @param limit  至多返回的条数，取值 1..{@value #MAX_PAGE_SIZE}
+     * @return 待办列表
+     */
+    public List<TodoItem> dueWithin(String within, int limit) {
+        checkLimit(limit);
+        return dueIndex.dueWithin(parseWithinMinutes(within), limit);
+    }
+
+    long parseWithinMinutes(String within) {
+        String text = within == null ? "" : within.trim();
+        long minutes;
+        try {
+            if (!text.isEmpty() && text.chars().allMatch(Character::isDigit)) {
+                minutes = Long.parseLong(text);
+            } else {
+                Duration duration = Duration.parse(text);
+                minutes = duration.toMinutes();
+                if (duration.compareTo(Duration.ofMinutes(minutes)) > 0) {
+                    minutes++;
+                }
+            }
+        } catch (RuntimeException e) {
+            minutes = -1;
+        }
+        if (minutes < 1 || minutes > MAX_DUE_WITHIN_MINUTES) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "within must be 1.." + MAX_DUE_WITHIN_MINUTES + " minutes or an ISO-8601 duration such as PT2H");
+        }
+        return minutes;
     }
 
-    public List<TodoItem> list(String category, Sort sort) {
-        String normalized = normalizeCategory(category);
-        if (normalized == null) {
-            return sortList(todoRepository.list(), sort);
+    private static void checkLimit(int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be 1.." + MAX_PAGE_SIZE);
         }
-        List<TodoItem> list = todoRepository.list();
-        List<TodoItem> filtered = list.stream().filter(item -> normalized.equals(item.getCategory())).collect(Collectors.toList());
-        return sortList(filtered, sort);
     }
 
+    /**
+     * 按 id 查询单个待办，不存在则抛出 404。
+     *
+     * @param id 待办 id
+     * @return 待办
+     */
+    public TodoItem get(String id) {
+        TodoItem item = todoRepository.findById(id);
+        if (item == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "todo not found");
+        }
+        return item;
+    }
+
+    /**
+     * 查询已有分类（去重、排序），由存储层增量维护的分类计数得到，耗时与分类数成正比。
+     *
+     * @return 分类列表
+     */
     public List<String> listCategories() {
-        List<TodoItem> list = todoRepository.list();
-        Set<String> categories = list.stream()
-                .map(TodoItem::getCategory)
-                .filter(v -> v != null && !v.trim().isEmpty())
-                .collect(Collectors.toSet());
-        return categories.stream().sorted().collect(Collectors.toList());
+        List<TodoCategoryCount> counts = todoRepository.categoryCounts();
+        List<String> categories = new ArrayList<String>(counts.size());
+        for (TodoCategoryCount count : counts) {
+            categories.add(count.getCategory());
+        }
+        return categories;
+    }
+
+    /**
+     * 查询各分类的未完成/已完成数量。
+     *
+     * @return 分类计数（按分类名排序）
+     */
+    public List<TodoCategoryCount> listCategoryCounts() {
+        return todoRepository.categoryCounts();
     }
 
     /**
@@ -83,10 +436,15 @@ public class TodoService {
     }
 
     public TodoItem create(String title, String description, String category, Integer priority, String dueDate) {
-        Instant now = Instant.now();
-        TodoItem item = new TodoItem(UUID.randomUUID().toString(), title.trim(), normalizeDescription(description),
-                normalizeCategory(category), normalizePriority(priority), normalizeDueDate(dueDate), false, now, now);
-        return todoRepository.create(item);
+        TodoItem created = todoRepository.create(newItem(title, description, category, priority, dueDate));
+        changed(TodoEvent.of(TodoEvent.CREATE, created));
+        return created;
+    }
+
+    private TodoItem newItem(String title, String description, String category, Integer priority, String dueDate) {
+        Instant now = now();
+        return new TodoItem(UUID.randomUUID().toString(), title.trim(), normalizeDescription(description),
+                normalizeCategory(category), normalizePriority(priority), parseDueDate(dueDate), false, now, now);
     }
 
     /**
@@ -103,59 +461,85 @@ public class TodoService {
         if (existing == null) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "todo not found");
         }
+        if (request.getVersion() != null && request.getVersion() != existing.getVersion()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "todo modified concurrently");
+        }
+        Set<TodoField> fields = applyUpdate(existing, request);
+        if (fields.isEmpty()) {
+            return existing;
+        }
+        TodoItem updated;
+        try {
+            updated = todoRepository.update(existing, fields);
+        } catch (TodoConflictException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "todo modified concurrently");
+        }
+        if (updated == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "todo not found");
+        }
+        changed(TodoEvent.of(TodoEvent.UPDATE, updated));
+        return updated;
+    }
 
-        boolean changed = false;
+    /**
+     * 把更新请求中传入的字段校验后写到待办上；有字段变化时刷新更新时间。
+     *
+     * @param existing 待更新的待办（原地修改）
+     * @param request  更新请求（字段可选）
+     * @return 请求中出现的字段
+     */
+    private Set<TodoField> applyUpdate(TodoItem existing, UpdateTodoRequest request) {
+        Set<TodoField> fields = EnumSet.noneOf(TodoField.class);
         if (request.getTitle() != null) {
             String title = request.getTitle().trim();
             if (title.isEmpty()) {
                 throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "title must not be blank");
             }
             existing.setTitle(title);
-            changed = true;
+            fields.add(TodoField.TITLE);
         }
         if (request.getDescription() != null) {
             existing.setDescription(normalizeDescription(request.getDescription()));
-            changed = true;
+            fields.add(TodoField.DESCRIPTION);
         }
         if (request.getCategory() != null) {
             existing.setCategory(normalizeCategory(request.getCategory()));
-            changed = true;
+            fields.add(TodoField.CATEGORY);
         }
         if (request.getPriority() != null) {
             existing.setPriority(normalizePriority(request.getPriority()));
-            changed = true;
+            fields.add(TodoField.PRIORITY);
         }
         if (request.getDueDate() != null) {
-            existing.setDueDate(normalizeDueDate(request.getDueDate()));
-            changed = true;
+            existing.setDueMinute(parseDueDate(request.getDueDate()));
+            fields.add(TodoField.DUE_DATE);
         }
         if (request.getCompleted() != null) {
             existing.setCompleted(request.getCompleted());
-            changed = true;
+            fields.add(TodoField.COMPLETED);
         }
 
-        if (changed) {
-            existing.setUpdatedAt(Instant.now());
+        if (!fields.isEmpty()) {
+            existing.setUpdatedAt(now());
         }
-        return todoRepository.update(existing);
+        return fields;
     }
 
     /**
      * 切换待办事项完成状态。
      *
-     * <p>若待办不存在则抛出 404。
+     * <p>由存储层原子完成，并发切换不会互相覆盖；若待办不存在则抛出 404。
      *
      * @param id 待办 id
      * @return 切换后的待办
      */
     public TodoItem toggle(String id) {
-        TodoItem existing = todoRepository.findById(id);
-        if (existing == null) {
+        TodoItem toggled = todoRepository.toggle(id, now());
+        if (toggled == null) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "todo not found");
         }
-        existing.setCompleted(!existing.isCompleted());
-        existing.setUpdatedAt(Instant.now());
-        return todoRepository.update(existing);
+        changed(TodoEvent.of(TodoEvent.TOGGLE, toggled));
+        return toggled;
     }
 
     /**
@@ -170,6 +554,158 @@ public class TodoService {
         if (!deleted) {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "todo not found");
         }
+        changed(TodoEvent.deleted(id));
+    }
+
+    /**
+     * 批量执行新增/更新/切换/删除，整批在同一事务中写入。
+     *
+     * <p>先用一次批量查询取出涉及的已有数据，在内存中按请求顺序逐条执行（复用单条接口的校验），
+     * 同一 id 的多次操作折叠为最终状态；全部通过后才交给存储层一次性写入，任一条失败则整批不写入，
+     * 并在结果中标出失败的操作。
+     *
+     * @param operations 操作列表（1..{@value #MAX_BATCH_SIZE} 条）
+     * @return 逐条结果
+     */
+    public TodoBatchResult batch(List<BatchOperationRequest> operations) {
+        if (operations == null || operations.isEmpty() || operations.size() > MAX_BATCH_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "batch must contain 1.." + MAX_BATCH_SIZE + " operations");
+        }
+        Set<String> ids = new HashSet<String>();
+        for (BatchOperationRequest operation : operations) {
+            if (operation != null && operation.getId() != null && !BATCH_CREATE.equalsIgnoreCase(trimToEmpty(operation.getOp()))) {
+                ids.add(operation.getId());
+            }
+        }
+        Map<String, TodoItem> working = new HashMap<String, TodoItem>(todoRepository.findByIds(ids));
+        Set<String> created = new LinkedHashSet<String>();
+        Map<String, Long> updated = new LinkedHashMap<String, Long>();
+        Set<String> deleted = new LinkedHashSet<String>();
+
+        List<TodoBatchResult.Operation> results = new ArrayList<TodoBatchResult.Operation>(operations.size());
+        boolean failed = false;
+        for (int i = 0; i < operations.size(); i++) {
+            BatchOperationRequest operation = operations.get(i);
+            String op = operation == null || operation.getOp() == null ? null : trimToEmpty(operation.getOp()).toLowerCase(Locale.ROOT);
+            String id = operation == null ? null : operation.getId();
+            try {
+                if (op == null) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "op must be create, update, toggle or delete");
+                }
+                switch (op) {
+                    case BATCH_CREATE: {
+                        if (operation.getTitle() == null || operation.getTitle().trim().isEmpty()) {
+                            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "title must not be blank");
+                        }
+                        if (operation.getDueDate() == null || operation.getDueDate().trim().isEmpty()) {
+                            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "dueDate must be yyyy-MM-ddTHH:mm");
+                        }
+                        TodoItem item = newItem(operation.getTitle(), operation.getDescription(), operation.getCategory(),
+                                operation.getPriority(), operation.getDueDate());
+                        working.put(item.getId(), item);
+                        created.add(item.getId());
+                        results.add(new TodoBatchResult.Operation(i, op, item.getId(), HttpStatus.CREATED.value(), null, item.copy()));
+                        break;
+                    }
+                    case BATCH_UPDATE:
+                    case BATCH_TOGGLE: {
+                        TodoItem item = requireWorking(working, id);
+                        if (BATCH_UPDATE.equals(op)) {
+                            applyUpdate(item, operation.toUpdateRequest());
+                        } else {
+                            item.setCompleted(!item.isCompleted());
+                            item.setUpdatedAt(now());
+                        }
+                        if (!created.contains(id) && !updated.containsKey(id)) {
+                            // 首次修改已有数据：记下读到的版本用于条件写入，批内结果展示写入后的版本
+                            updated.put(id, item.getVersion());
+                            item.setVersion(item.getVersion() + 1);
+                        }
+                        results.add(new TodoBatchResult.Operation(i, op, id, HttpStatus.OK.value(), null, item.copy()));
+                        break;
+                    }
+                    case BATCH_DELETE: {
+                        requireWorking(working, id);
+                        working.remove(id);
+                        updated.remove(id);
+                        if (!created.remove(id)) {
+                            deleted.add(id);
+                        }
+                        results.add(new TodoBatchResult.Operation(i, op, id, HttpStatus.NO_CONTENT.value(), null, null));
+                        break;
+                    }
+                    default:
+                        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "op must be create, update, toggle or delete");
+                }
+            } catch (ResponseStatusException e) {
+                failed = true;
+                results.add(new TodoBatchResult.Operation(i, op, id, e.getStatus().value(), e.getReason(), null));
+            }
+        }
+        if (failed) {
+            return new TodoBatchResult(false, results);
+        }
+
+        TodoBatch batch = new TodoBatch();
+        for (String id : created) {
+            batch.create(working.get(id));
+        }
+        for (Map.Entry<String, Long> entry : updated.entrySet()) {
+            batch.update(working.get(entry.getKey()), entry.getValue());
+        }
+        for (String id : deleted) {
+            batch.delete(id);
+        }
+        try {
+            todoRepository.apply(batch);
+        } catch (TodoConflictException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "todo modified concurrently");
+        }
+        // 批内同一 id 的多次操作已折叠，按最终状态各发布一条事件
+        List<TodoEvent> events = new ArrayList<TodoEvent>(created.size() + updated.size() + deleted.size());
+        for (String id : created) {
+            events.add(TodoEvent.of(TodoEvent.CREATE, working.get(id).copy()));
+        }
+        for (String id : updated.keySet()) {
+            events.add(TodoEvent.of(TodoEvent.UPDATE, working.get(id).copy()));
+        }
+        for (String id : deleted) {
+            events.add(TodoEvent.deleted(id));
+        }
+        for (TodoEvent event : events) {
+            index(event);
+        }
+        changeVersion.incrementAndGet();
+        for (TodoEvent event : events) {
+            eventHub.publish(event);
+        }
+        return new TodoBatchResult(true, results);
+    }
+
+    /**
+     * 取出批内当前可见的待办（已有数据或批内新建，且未被批内删除）。
+     */
+    private TodoItem requireWorking(Map<String, TodoItem> working, String id) {
+        if (id == null || id.trim().isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "id is required");
+        }
+        TodoItem item = working.get(id);
+        if (item == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "todo not found");
+        }
+        return item;
+    }
+
+    /**
+     * 写入时间戳，截断到毫秒：MySQL 的 {@code DATETIME(3)} 会把更多的小数位四舍五入，
+     * 不截断时响应、事件与内存索引里的时间与回读的值可能相差 1 毫秒。
+     */
+    private static Instant now() {
+        return Instant.now().truncatedTo(ChronoUnit.MILLIS);
+    }
+
+    private static String trimToEmpty(String value) {
+        return value == null ? "" : value.trim();
     }
 
     /**
@@ -204,102 +740,48 @@ public class TodoService {
         return priority;
     }
 
-    private String normalizeDueDate(String dueDate) {
-        if (dueDate == null) {
-            return null;
-        }
-        String trimmed = dueDate.trim();
-        if (trimmed.isEmpty()) {
-            return null;
-        }
+    /**
+     * 解析截止时间：{@code yyyy-MM-ddTHH:mm}（秒截断到分钟）或只有日期（取当天 00:00）。包级可见，供基准测试直接调用。
+     *
+     * @return 纪元分钟数（见 {@link DueDates}）；null 或空白返回 {@link DueDates#NONE}
+     */
+    long parseDueDate(String dueDate) {
         try {
-            LocalDateTime dt;
-            if (trimmed.length() == 10) {
-                dt = LocalDate.parse(trimmed).atStartOfDay();
-            } else {
-                dt = LocalDateTime.parse(trimmed);
-            }
-            return dt.format(DUE_DATE_FORMATTER);
-        } catch (Exception e) {
+            return DueDates.parse(dueDate);
+        } catch (DateTimeException e) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "dueDate must be yyyy-MM-ddTHH:mm");
         }
     }
 
-    private List<TodoItem> sortList(List<TodoItem> list, Sort sort) {
-        if (sort == null) {
-            sort = Sort.CREATED_AT_DESC;
-        }
-        java.util.Comparator<TodoItem> createdDesc = java.util.Comparator
-                .comparing(TodoItem::getCreatedAt, java.util.Comparator.nullsLast(java.util.Comparator.naturalOrder()))
-                .reversed();
-        java.util.Comparator<TodoItem> comparator;
-        switch (sort) {
-            case PRIORITY_DESC:
-                comparator = java.util.Comparator.comparingInt(TodoItem::getPriority).reversed().thenComparing(createdDesc);
-                break;
-            case DUE_DATE_ASC:
-                comparator = java.util.Comparator
-                        .<TodoItem, LocalDateTime>comparing(
-                                item -> parseDueDateTime(item.getDueDate()),
-                                java.util.Comparator.nullsLast(java.util.Comparator.naturalOrder()))
-                        .thenComparing(createdDesc);
-                break;
-            case DUE_DATE_DESC:
-                comparator = java.util.Comparator
-                        .<TodoItem, LocalDateTime>comparing(
-                                item -> parseDueDateTime(item.getDueDate()),
-                                java.util.Comparator.nullsLast(java.util.Comparator.naturalOrder()))
-                        .reversed()
-                        .thenComparing(createdDesc);
-                break;
-            case CREATED_AT_DESC:
-            default:
-                comparator = createdDesc;
-                break;
-        }
-        list.sort(comparator);
-        return list;
-    }
-
-    private LocalDateTime parseDueDateTime(String dueDate) {
-        if (dueDate == null) {
-            return null;
-        }
-        String trimmed = dueDate.trim();
-        if (trimmed.isEmpty()) {
-            return null;
-        }
+    private LocalDateTime parseDueBound(String raw, String name) {
         try {
-            if (trimmed.length() == 10) {
-                return LocalDate.parse(trimmed).atStartOfDay();
-            }
-            return LocalDateTime.parse(trimmed);
-        } catch (Exception e) {
-            return null;
+            return DueDates.toLocalDateTime(parseDueDate(raw));
+        } catch (ResponseStatusException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, name + " must be yyyy-MM-ddTHH:mm");
         }
     }
 
-    public Sort parseSort(String raw) {
+    public TodoSort parseSort(String raw) {
         if (raw == null) {
-            return Sort.CREATED_AT_DESC;
+            return TodoSort.CREATED_AT_DESC;
         }
         String normalized = raw.trim().toLowerCase(Locale.ROOT);
         if (normalized.isEmpty()) {
-            return Sort.CREATED_AT_DESC;
+            return TodoSort.CREATED_AT_DESC;
         }
         if ("priority".equals(normalized) || "prioritydesc".equals(normalized) || "priority_desc".equals(normalized)) {
-            return Sort.PRIORITY_DESC;
+            return TodoSort.PRIORITY_DESC;
         }
         if ("duedate".equals(normalized) || "due".equals(normalized) || "due_date".equals(normalized)
                 || "duedateasc".equals(normalized) || "due_date_asc".equals(normalized) || "dueasc".equals(normalized)) {
-            return Sort.DUE_DATE_ASC;
+            return TodoSort.DUE_DATE_ASC;
         }
         if ("duedatedesc".equals(normalized) || "due_date_desc".equals(normalized) || "duedesc".equals(normalized)) {
-            return Sort.DUE_DATE_DESC;
+            return TodoSort.DUE_DATE_DESC;
         }
         if ("created".equals(normalized) || "createdat".equals(normalized) || "created_at".equals(normalized)
                 || "createddesc".equals(normalized) || "created_at_desc".equals(normalized)) {
-            return Sort.CREATED_AT_DESC;
+            return TodoSort.CREATED_AT_DESC;
         }
         throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid sort");
     }
@@ -0,0 +1,67 @@
+package com.iftech.todo.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * 内存索引中最近删除的待办 id（墓碑）。
+ *
+ * <p>索引由写入线程在写入成功之后更新，同一条待办的更新与删除并发时，更新的索引调用可能晚于删除才到达，
+ * 没有墓碑时会把已删除的待办重新加回索引。待办 id 由服务端生成且不会复用，删除之后到达的写入只可能是这种迟到的旧写入，
+ * 因此墓碑等同于“高于任何版本号”的删除标记，不需要记录被删除时的版本。
+ *
+ * <p>墓碑保留 {@link #RETENTION_NANOS}，远长于一次写入从存储返回到更新索引之间的间隔；每次登记时按登记顺序清理过期的墓碑，
+ * 占用的内存只与这段时间内的删除数有关。不是线程安全的，由所在索引的锁保护。
+ */
+final class TodoTombstones {
+    static final long RETENTION_NANOS = TimeUnit.MINUTES.toNanos(1L);
+
+    /**
+     * id → 删除时刻（纳秒），按删除先后排列。
+     */
+    private final LinkedHashMap<String, Long> removedAt = new LinkedHashMap<String, Long>();
+    private final LongSupplier nanoClock;
+
+    /**
+     * 构造方法。
+     *
+     * @param nanoClock 单调时钟（纳秒）
+     */
+    TodoTombstones(LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * 登记一次删除，并清理过期的墓碑。
+     *
+     * @param id 被删除的待办 id
+     */
+    void add(String id) {
+        long now = nanoClock.getAsLong();
+        Iterator<Map.Entry<String, Long>> it = removedAt.entrySet().iterator();
+        while (it.hasNext() && now - it.next().getValue() > RETENTION_NANOS) {
+            it.remove();
+        }
+        removedAt.remove(id);
+        removedAt.put(id, now);
+    }
+
+    /**
+     * @param id 待办 id
+     * @return 是否已被删除（墓碑尚未过期）
+     */
+    boolean contains(String id) {
+        return removedAt.containsKey(id);
+    }
+
+    void clear() {
+        removedAt.clear();
+    }
+
+    int size() {
+        return removedAt.size();
+    }
+}
@@ -0,0 +1,244 @@
+package com.iftech.todo.storage;
+
+import com.iftech.todo.domain.TodoCategoryCount;
+import com.iftech.todo.domain.TodoChanges;
+import com.iftech.todo.domain.TodoField;
+import com.iftech.todo.domain.TodoItem;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * 位于 {@link JdbcTodoRepository} 之前的按 id 读穿透缓存。
+ *
+ * <p>更新、切换、删除前的 {@code findById} 大多落在最近操作过的一小批数据上，命中缓存即可省去一次 MySQL 查询。
+ * 所有写入路径在写库之后失效对应条目；列表查询不经过缓存。
+ *
+ * <p>MySQL 不是本进程独占的：其他实例的写入与直接改库不会失效这里的条目，条目过期前读到的仍是旧版本，
+ * 基于它的更新会按旧版本号冲突。因此只用于单实例部署，陈旧时间以 {@code todo.cache.ttl-ms} 为上限。
+ *
+ * <p>通过 {@code todo.cache.enabled=true} 与 {@code todo.cache.single-instance=true} 开启，
+ * 由 {@link TodoRepositoryConfiguration} 装配在指标装饰器之内，开启只读副本时不装配；
+ * 容量与存活时间见 {@code todo.cache.max-size} / {@code todo.cache.ttl-ms}。
+ * 命中、未命中、淘汰次数与当前条目数注册为 {@code todo.cache.*} 指标。
+ */
+public class CachingTodoRepository implements TodoRepository {
+    private final TodoRepository delegate;
+    private final TodoItemCache cache;
+
+    /**
+     * 构造方法。
+     *
+     * @param delegate      被装饰的 JDBC 存储
+     * @param maxSize       最多缓存的条目数
+     * @param ttlMillis     条目存活时间（毫秒）
+     * @param meterRegistry 指标注册表
+     */
+    public CachingTodoRepository(JdbcTodoRepository delegate, int maxSize, long ttlMillis, MeterRegistry meterRegistry) {
+        this((TodoRepository) delegate, new TodoItemCache(maxSize, ttlMillis));
+        registerMeters(meterRegistry);
+    }
+
+    CachingTodoRepository(TodoRepository delegate, TodoItemCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    @Override
+    public List<TodoItem> list() {
+        return delegate.list();
+    }
+
+    @Override
+    public List<TodoItem> list(TodoQuery query) {
+        return delegate.list(query);
+    }
+
+    @Override
+    public void stream(TodoQuery query, Consumer<TodoItem> consumer) {
+        delegate.stream(query, consumer);
+    }
+
+    @Override
+    public List<TodoCategoryCount> categoryCounts() {
+        return delegate.categoryCounts();
+    }
+
+    @Override
+    public TodoChanges changes(String since) {
+        return delegate.changes(since);
+    }
+
+    /**
+     * 先查缓存，未命中时回源并放入缓存。
+     *
+     * @param id 待办 id
+     * @return 找到则返回副本；找不到返回 null
+     */
+    @Override
+    public TodoItem findById(String id) {
+        TodoItem cached = cache.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = cache.generation();
+        TodoItem loaded = delegate.findById(id);
+        if (loaded != null) {
+            cache.putIfUnchanged(loaded, generation);
+        }
+        return loaded;
+    }
+
+    /**
+     * 命中的部分直接返回，只把未命中的 id 交给被装饰的存储一次查出。
+     *
+     * @param ids 待办 id
+     * @return id 到对象的映射
+     */
+    @Override
+    public Map<String, TodoItem> findByIds(Collection<String> ids) {
+        Map<String, TodoItem> found = new LinkedHashMap<String, TodoItem>();
+        List<String> missing = new ArrayList<String>();
+        for (String id : ids) {
+            TodoItem cached = cache.get(id);
+            if (cached != null) {
+                found.put(id, cached);
+            } else {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            long generation = cache.generation();
+            for (TodoItem loaded : delegate.findByIds(missing).values()) {
+                cache.putIfUnchanged(loaded, generation);
+                found.put(loaded.getId(), loaded);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public TodoItem create(TodoItem item) {
+        try {
+            return delegate.create(item);
+        } finally {
+            cache.invalidate(item.getId());
+        }
+    }
+
+    @Override
+    public TodoItem update(TodoItem item, Set<TodoField> fields) {
+        try {
+            return delegate.update(item, fields);
+        } finally {
+            cache.invalidate(item.getId());
+        }
+    }
+
+    @Override
+    public TodoItem toggle(String id, Instant updatedAt) {
+        try {
+            return delegate.toggle(id, updatedAt);
+        } finally {
+            cache.invalidate(id);
+        }
+    }
+
+    @Override
+    public boolean delete(String id) {
+        try {
+            return delegate.delete(id);
+        } finally {
+            cache.invalidate(id);
+        }
+    }
+
+    @Override
+    public void apply(TodoBatch batch) {
+        try {
+            delegate.apply(batch);
+        } finally {
+            for (TodoItem item : batch.getCreates()) {
+                cache.invalidate(item.getId());
+            }
+            for (TodoItem item : batch.getUpdates()) {
+                cache.invalidate(item.getId());
+            }
+            for (String id : batch.getDeletes()) {
+                cache.invalidate(id);
+            }
+        }
+    }
+
+    @Override
+    public boolean exclusiveWriter() {
+        return delegate.exclusiveWriter();
+    }
+
+    @Override
+    public String changeTag() {
+        return delegate.changeTag();
+    }
+
+    /**
+     * 缓存命中次数。
+     *
+     * @return 次数
+     */
+    public long hitCount() {
+        return cache.hitCount();
+    }
+
+    /**
+     * 缓存未命中次数（每次未命中对应一次回源查询）。
+     *
+     * @return 次数
+     */
+    public long missCount() {
+        return cache.missCount();
+    }
+
+    /**
+     * 因容量淘汰或过期移除的条目数。
+     *
+     * @return 次数
+     */
+    public long evictionCount() {
+        return cache.evictionCount();
+    }
+
+    /**
+     * 当前缓存条目数。
+     *
+     * @return 条目数
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * 注册命中/未命中/淘汰计数与当前条目数：命中率为 hits / (hits + misses)。
+     */
+    private void registerMeters(MeterRegistry meterRegistry) {
+        FunctionCounter.builder("todo.cache.hits", cache, TodoItemCache::hitCount)
+                .description("Lookups served from the todo cache")
+                .register(meterRegistry);
+        FunctionCounter.builder("todo.cache.misses", cache, TodoItemCache::missCount)
+                .description("Lookups that missed the todo cache and went to the database")
+                .register(meterRegistry);
+        FunctionCounter.builder("todo.cache.evictions", cache, TodoItemCache::evictionCount)
+                .description("Entries evicted from the todo cache by size or expiry")
+                .register(meterRegistry);
+        Gauge.builder("todo.cache.size", cache, TodoItemCache::size)
+                .description("Entries currently held by the todo cache")
+                .register(meterRegistry);
+    }
+}
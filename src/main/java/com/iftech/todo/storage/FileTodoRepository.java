@@ -2,18 +2,45 @@ package com.iftech.todo.storage;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import com.iftech.todo.domain.TodoCategoryCount;
+import com.iftech.todo.domain.TodoChanges;
+import com.iftech.todo.domain.TodoField;
 import com.iftech.todo.domain.TodoItem;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Repository;
@@ -24,73 +51,251 @@ public class FileTodoRepository implements TodoRepository {
     private static final TypeReference<List<TodoItem>> LIST_TYPE = new TypeReference<List<TodoItem>>() {
     };
 
+    /**
+     * 每次变更都整体重写快照文件。
+     */
+    public static final String MODE_SNAPSHOT = "snapshot";
+
+    /**
+     * 每次变更追加一条日志记录，日志超过阈值后由后台任务压缩为快照。
+     */
+    public static final String MODE_JOURNAL = "journal";
+
+    /**
+     * 快照使用带校验和的二进制格式（见 {@link TodoSnapshot}）。
+     */
+    public static final String FORMAT_BINARY = "binary";
+
+    /**
+     * 快照使用 JSON 数组格式（旧格式，便于人工查看）。
+     */
+    public static final String FORMAT_JSON = "json";
+
     private final ObjectMapper objectMapper;
-    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TimedReadWriteLock lock;
     private final Path storagePath;
+    private final boolean binarySnapshot;
+    private final TodoJournal journal;
+    private final long compactThreshold;
+    private final ExecutorService compactor;
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private final GroupCommitter committer;
+    private final TodoChangeLog changeLog;
+    private final Timer persistTimer;
+    private final Timer compactTimer;
+    private final AtomicLong snapshotBytesWritten = new AtomicLong();
+    private final Tags tags;
+    private final boolean writeBehind;
+    private final int maxDirty;
+    /**
+     * 写后落盘时，取出脏 id 并暂存其记录的过程与日志轮转互斥，保证轮转后的新日志中不会出现早于新快照的状态。
+     */
+    private final Object drainLock = new Object();
+
+    /**
+     * 写后落盘模式下尚未写出的 id（新增、更新与删除），只在写锁内读写；同一 id 多次变更只记一次，落盘时取视图中的最新状态。
+     */
+    private Set<String> dirtyIds = new LinkedHashSet<String>();
+    private volatile int dirtyCount;
+    /**
+     * 最早一个尚未写出的变更发生的时刻（{@link System#nanoTime()}），没有积压时为 0。
+     */
+    private volatile long dirtySinceNanos;
+    private DistributionSummary flushItems;
+    private Counter flushFailures;
 
-    private List<TodoItem> cached;
+    /**
+     * 非 null 时拒绝写入，内容为原因；只在写锁内设置，见 {@link #fence(String)}。
+     */
+    private volatile String fence;
+
+    /**
+     * 当前发布的不可变视图，首次访问前为 null。只在写锁内替换，读取方直接读取。
+     */
+    private final AtomicReference<TodoView> published = new AtomicReference<TodoView>();
 
     /**
      * 构造方法。
      *
      * <p>存储路径来自配置项 {@code todo.storage.path}，默认 {@code data/todos.json}。
+     * 写入方式来自 {@code todo.storage.mode}：{@value #MODE_SNAPSHOT}（默认）或 {@value #MODE_JOURNAL}；
+     * 日志模式下日志文件为 {@code <存储路径>.log}，超过 {@code todo.storage.journal.compact-threshold-bytes} 后触发压缩。
+     * 快照格式来自 {@code todo.storage.snapshot-format}：{@value #FORMAT_BINARY}（默认）或 {@value #FORMAT_JSON}，
+     * 只影响写出；读取时按文件头自动识别，因此旧的 JSON 文件可以直接载入，下一次落盘后转为配置的格式。
+     * 落盘策略来自 {@code todo.storage.sync.policy}（见 {@link SyncPolicy}，默认 group）。组提交时，一次 fsync 进行期间到达的写入
+     * 自然合并为下一批，{@code todo.storage.sync.group-window-ms} 可再额外等待一段时间以攒更大的批；
+     * {@code todo.storage.sync.interval-ms} 为定时落盘与写后落盘的间隔。写后落盘（{@code write-behind}）时写入只登记脏 id，
+     * 积压的 id 数达到 {@code todo.storage.sync.max-dirty} 时不等间隔立即落盘一次。
+     * 增量同步使用的内存变更日志保留 {@code todo.sync.tombstone-retention-ms} 内的变化。
+     *
+     * <p>除读写锁的等待/持有时间（见 {@link TimedReadWriteLock}）外，还注册以下指标：{@code todo.file.persist}（落盘与压缩耗时，
+     * 按 {@code kind=sync|compact} 区分）、{@code todo.file.bytes.written}（累计写入字节）、{@code todo.file.size}（当前文件大小），
+     * 后两者按 {@code file=snapshot|journal} 区分。写后落盘时另有 {@code todo.file.writebehind.pending}（尚未写出的 id 数）、
+     * {@code todo.file.writebehind.lag}（最早一个未写出变更的等待时间）、{@code todo.file.writebehind.flush.items}（每次落盘写出的 id 数）
+     * 与 {@code todo.file.writebehind.flush.failures}（落盘失败次数，失败的 id 留到下次重试）。
+     *
+     * @param objectMapper      JSON 序列化工具
+     * @param storagePath       存储文件路径（相对/绝对均可）
+     * @param mode              写入方式
+     * @param snapshotFormat    快照格式
+     * @param compactThreshold  日志压缩阈值（字节）
+     * @param syncPolicy        落盘策略
+     * @param groupWindowMillis 组提交的额外合并窗口（毫秒）
+     * @param intervalMillis    定时/写后落盘间隔（毫秒）
+     * @param maxDirty          写后落盘时触发立即落盘的脏 id 数
+     * @param retentionMillis   变更日志（含删除记录）的保留时间（毫秒）
+     * @param meterRegistry     指标注册表
+     */
+    @Autowired
+    public FileTodoRepository(ObjectMapper objectMapper, @Value("${todo.storage.path:data/todos.json}") String storagePath,
+            @Value("${todo.storage.mode:" + MODE_SNAPSHOT + "}") String mode,
+            @Value("${todo.storage.snapshot-format:" + FORMAT_BINARY + "}") String snapshotFormat,
+            @Value("${todo.storage.journal.compact-threshold-bytes:4194304}") long compactThreshold,
+            @Value("${todo.storage.sync.policy:group}") String syncPolicy,
+            @Value("${todo.storage.sync.group-window-ms:0}") long groupWindowMillis,
+            @Value("${todo.storage.sync.interval-ms:1000}") long intervalMillis,
+            @Value("${todo.storage.sync.max-dirty:1000}") int maxDirty,
+            @Value("${todo.sync.tombstone-retention-ms:604800000}") long retentionMillis, MeterRegistry meterRegistry) {
+        this(objectMapper, storagePath, mode, snapshotFormat, compactThreshold, syncPolicy, groupWindowMillis, intervalMillis, maxDirty,
+                retentionMillis, meterRegistry, null);
+    }
+
+    /**
+     * 作为分片使用的构造方法（见 {@link ShardedTodoRepository}）：指标带 {@code shard} 标签，后台线程名带分片号。
      *
-     * @param objectMapper JSON 序列化工具
-     * @param storagePath  存储文件路径（相对/绝对均可）
+     * @param shard 分片号；null 表示不分片
      */
-    public FileTodoRepository(ObjectMapper objectMapper, @Value("${todo.storage.path:data/todos.json}") String storagePath) {
+    FileTodoRepository(ObjectMapper objectMapper, String storagePath, String mode, String snapshotFormat, long compactThreshold,
+            String syncPolicy, long groupWindowMillis, long intervalMillis, int maxDirty, long retentionMillis, MeterRegistry meterRegistry,
+            String shard) {
+        String threadSuffix = shard == null ? "" : "-" + shard;
+        this.tags = shard == null ? Tags.empty() : Tags.of("shard", shard);
         this.objectMapper = objectMapper;
+        this.lock = new TimedReadWriteLock(meterRegistry, tags);
         this.storagePath = Paths.get(storagePath);
+        this.compactThreshold = compactThreshold;
+        if (FORMAT_BINARY.equalsIgnoreCase(snapshotFormat)) {
+            this.binarySnapshot = true;
+        } else if (FORMAT_JSON.equalsIgnoreCase(snapshotFormat)) {
+            this.binarySnapshot = false;
+        } else {
+            throw new IllegalArgumentException("todo.storage.snapshot-format must be " + FORMAT_BINARY + " or " + FORMAT_JSON);
+        }
+        if (MODE_JOURNAL.equalsIgnoreCase(mode)) {
+            this.journal = new TodoJournal(this.storagePath.resolveSibling(this.storagePath.getFileName().toString() + ".log"), objectMapper);
+            this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "todo-journal-compactor" + threadSuffix);
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else if (MODE_SNAPSHOT.equalsIgnoreCase(mode)) {
+            this.journal = null;
+            this.compactor = null;
+        } else {
+            throw new IllegalArgumentException("todo.storage.mode must be " + MODE_SNAPSHOT + " or " + MODE_JOURNAL);
+        }
+        SyncPolicy policy = SyncPolicy.parse(syncPolicy);
+        this.writeBehind = policy == SyncPolicy.WRITE_BEHIND;
+        this.maxDirty = maxDirty;
+        this.committer = new GroupCommitter("todo-storage-sync" + threadSuffix, policy, policy.deferred() ? intervalMillis : groupWindowMillis,
+                this::persist);
+        this.changeLog = new TodoChangeLog(retentionMillis);
+        this.persistTimer = persistTimer(meterRegistry, tags, "sync");
+        this.compactTimer = persistTimer(meterRegistry, tags, "compact");
+        registerFileMeters(meterRegistry);
+        if (writeBehind) {
+            registerWriteBehindMeters(meterRegistry);
+        }
     }
 
     /**
      * 查询待办列表。
      *
-     * <p>使用读锁保证并发安全；返回的是缓存数据的副本，并按创建时间倒序排序。
+     * <p>直接返回当前视图中按创建时间倒序排好的只读列表：不加锁、不复制、不排序，写入与落盘进行中也不等待。
      *
-     * @return 待办列表（副本）
+     * @return 待办列表（只读，对象与存储共享）
      */
     @Override
     public List<TodoItem> list() {
-        lock.readLock().lock();
-        try {
-            ensureLoaded();
-            List<TodoItem> copy = new ArrayList<TodoItem>(cached);
-            copy.sort(Comparator.comparing(TodoItem::getCreatedAt, Comparator.nullsLast(Comparator.naturalOrder())).reversed());
-            return copy;
-        } finally {
-            lock.readLock().unlock();
+        return view().all();
+    }
+
+    /**
+     * 按查询条件过滤、排序并分页。
+     *
+     * <p>在当前视图上完成，不加锁；按创建时间倒序时从游标处顺序扫描，凑够 limit 条即停止。
+     *
+     * @param query 查询条件
+     * @return 待办列表（对象与存储共享）
+     */
+    @Override
+    public List<TodoItem> list(TodoQuery query) {
+        return view().select(query);
+    }
+
+    /**
+     * 按查询条件逐条输出当前视图中的对象。
+     *
+     * <p>视图与其中的对象发布后不再修改，因此不必加锁，也不必逐条复制；慢客户端不会阻塞写入。
+     *
+     * @param query    查询条件
+     * @param consumer 逐条接收数据
+     */
+    @Override
+    public void stream(TodoQuery query, Consumer<TodoItem> consumer) {
+        for (TodoItem item : view().select(query)) {
+            consumer.accept(item);
         }
     }
 
+    /**
+     * 读取当前视图中随写入增量维护的分类计数。
+     *
+     * @return 分类计数
+     */
+    @Override
+    public List<TodoCategoryCount> categoryCounts() {
+        return view().categoryCounts();
+    }
+
     /**
      * 按 id 查询待办。
      *
-     * <p>使用读锁；返回对象副本，避免外部修改影响缓存。
+     * <p>在当前视图中经 id 哈希索引定位；返回对象副本，调用方可以修改后交给 {@link #update}。
      *
      * @param id 待办 id
      * @return 找到返回副本；不存在返回 null
      */
     @Override
     public TodoItem findById(String id) {
-        lock.readLock().lock();
-        try {
-            ensureLoaded();
-            for (TodoItem item : cached) {
-                if (item.getId() != null && item.getId().equals(id)) {
-                    return cloneItem(item);
-                }
+        TodoItem item = view().get(id);
+        return item == null ? null : cloneItem(item);
+    }
+
+    /**
+     * 按 id 批量查询待办，全部取自同一个视图。
+     *
+     * @param ids 待办 id
+     * @return id 到对象副本的映射
+     */
+    @Override
+    public Map<String, TodoItem> findByIds(Collection<String> ids) {
+        Map<String, TodoItem> found = new LinkedHashMap<String, TodoItem>();
+        TodoView current = view();
+        for (String id : ids) {
+            TodoItem item = current.get(id);
+            if (item != null) {
+                found.put(id, cloneItem(item));
             }
-            return null;
-        } finally {
-            lock.readLock().unlock();
         }
+        return found;
     }
 
     /**
      * 新增待办事项并持久化到文件。
      *
-     * <p>使用写锁；会写入内存缓存，并落盘到 JSON 文件。
+     * <p>在写锁内发布包含新数据的下一个视图并暂存变更；释放写锁后按落盘策略等待持久化，使并发写入可以合并落盘。
+     * 写锁只在写入方之间互斥，读取方不受影响。
      *
      * @param item 待办对象
      * @return 新增后的对象副本
@@ -99,48 +304,79 @@ public class FileTodoRepository implements TodoRepository {
     public TodoItem create(TodoItem item) {
         lock.writeLock().lock();
         try {
-            ensureLoaded();
-            cached.add(cloneItem(item));
-            persist();
-            return cloneItem(item);
+            requireUnfenced();
+            TodoItem stored = cloneItem(item);
+            published.set(view().with(stored));
+            stagePut(stored);
         } finally {
             lock.writeLock().unlock();
         }
+        commit();
+        return cloneItem(item);
     }
 
     /**
-     * 更新待办事项并持久化到文件。
+     * 按版本号条件更新待办事项并持久化到文件。
      *
-     * <p>使用写锁；若缓存中存在同 id 则替换，否则按“补写”方式插入。
+     * <p>在写锁内比较版本号，一致才发布替换了该对象的下一个视图并把版本号加一；文件存储按整条记录落盘，{@code fields} 仅用于接口一致。
      *
-     * @param item 待办对象
-     * @return 更新后的对象副本
+     * @param item   合并了变更后的完整对象，版本号为读取时的版本
+     * @param fields 需要写入的字段
+     * @return 更新后的对象副本；目标不存在返回 null
      */
     @Override
-    public TodoItem update(TodoItem item) {
+    public TodoItem update(TodoItem item, Set<TodoField> fields) {
+        TodoItem stored = cloneItem(item);
         lock.writeLock().lock();
         try {
-            ensureLoaded();
-            for (int i = 0; i < cached.size(); i++) {
-                TodoItem existing = cached.get(i);
-                if (existing.getId() != null && existing.getId().equals(item.getId())) {
-                    cached.set(i, cloneItem(item));
-                    persist();
-                    return cloneItem(item);
-                }
+            requireUnfenced();
+            TodoView view = view();
+            TodoItem current = view.get(item.getId());
+            if (current == null) {
+                return null;
+            }
+            if (current.getVersion() != item.getVersion()) {
+                throw new TodoConflictException("todo modified concurrently");
             }
-            TodoItem toInsert = cloneItem(item);
-            if (toInsert.getCreatedAt() == null) {
-                Instant now = Instant.now();
-                toInsert.setCreatedAt(now);
-                toInsert.setUpdatedAt(now);
+            stored.setVersion(current.getVersion() + 1);
+            published.set(view.with(stored));
+            stagePut(stored);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        commit();
+        return cloneItem(stored);
+    }
+
+    /**
+     * 在写锁内切换完成态并持久化到文件。
+     *
+     * @param id        待办 id
+     * @param updatedAt 更新时间
+     * @return 切换后的对象副本；目标不存在返回 null
+     */
+    @Override
+    public TodoItem toggle(String id, Instant updatedAt) {
+        TodoItem stored;
+        lock.writeLock().lock();
+        try {
+            requireUnfenced();
+            TodoView view = view();
+            TodoItem current = view.get(id);
+            if (current == null) {
+                return null;
             }
-            cached.add(toInsert);
-            persist();
-            return cloneItem(toInsert);
+            stored = cloneItem(current);
+            stored.setCompleted(!current.isCompleted());
+            stored.setUpdatedAt(updatedAt);
+            stored.setVersion(current.getVersion() + 1);
+            published.set(view.with(stored));
+            stagePut(stored);
         } finally {
             lock.writeLock().unlock();
         }
+        commit();
+        return cloneItem(stored);
     }
 
     /**
@@ -151,75 +387,595 @@ public class FileTodoRepository implements TodoRepository {
      */
     @Override
     public boolean delete(String id) {
+        boolean removed;
         lock.writeLock().lock();
         try {
-            ensureLoaded();
-            boolean removed = cached.removeIf(item -> item.getId() != null && item.getId().equals(id));
+            requireUnfenced();
+            TodoView view = view();
+            TodoView next = view.without(id);
+            removed = next != view;
             if (removed) {
-                persist();
+                published.set(next);
+                stageDelete(id);
             }
-            return removed;
         } finally {
             lock.writeLock().unlock();
         }
+        if (removed) {
+            commit();
+        }
+        return removed;
     }
 
     /**
-     * 确保缓存已经从磁盘加载。
+     * 在一次写锁内应用整批变更，并只做一次落盘（快照模式重写一次文件，日志模式一次写入 + fsync）。
      *
-     * <p>首次访问时加载一次，后续复用内存缓存。
+     * <p>先校验待更新的数据版本号未变、待删除的数据都还在，任一不满足则整批不生效；整批变更作为一个视图发布，读取方看不到中间状态。
+     *
+     * @param batch 变更集合
      */
-    private void ensureLoaded() {
-        if (cached != null) {
+    @Override
+    public void apply(TodoBatch batch) {
+        if (batch.isEmpty()) {
             return;
         }
-        cached = readFromDisk();
+        stage(batch);
+        commit();
+    }
+
+    /**
+     * 在写锁内校验并应用整批变更、发布新视图，不等待落盘；调用方随后调用 {@link #commit()}。
+     *
+     * @param batch 变更集合
+     * @throws TodoConflictException 待更新的数据版本号已变或待删除的数据已不存在，整批不生效
+     */
+    void stage(TodoBatch batch) {
+        lock.writeLock().lock();
+        try {
+            requireUnfenced();
+            TodoView next = view();
+            check(next, batch);
+            for (TodoItem item : batch.getCreates()) {
+                TodoItem stored = cloneItem(item);
+                next = next.with(stored);
+                stagePut(stored);
+            }
+            for (TodoItem item : batch.getUpdates()) {
+                TodoItem stored = cloneItem(item);
+                next = next.with(stored);
+                stagePut(stored);
+            }
+            for (String id : batch.getDeletes()) {
+                next = next.without(id);
+                stageDelete(id);
+            }
+            published.set(next);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 校验整批变更能否在当前视图上生效，不做修改；调用方持有写锁（见 {@link #writeLock()}）时结论在释放前一直成立。
+     *
+     * @param batch 变更集合
+     * @throws TodoConflictException 待更新的数据版本号已变或待删除的数据已不存在
+     * @throws IllegalStateException  写入已被 {@link #fence(String)} 暂停
+     */
+    void check(TodoBatch batch) {
+        requireUnfenced();
+        check(view(), batch);
+    }
+
+    /**
+     * 暂停写入：之后的新增、更新、切换、删除与批量写入在写锁内直接抛出 {@link IllegalStateException}，读取与落盘不受影响。
+     * 调用方须持有写锁（见 {@link #writeLock()}），此前已暂存的变更照常由 {@link #commit()} 落盘。
+     *
+     * @param reason 暂停原因，作为异常信息
+     */
+    void fence(String reason) {
+        fence = reason;
+    }
+
+    /**
+     * 恢复写入。
+     */
+    void unfence() {
+        fence = null;
+    }
+
+    private void requireUnfenced() {
+        String reason = fence;
+        if (reason != null) {
+            throw new IllegalStateException("writes to " + storagePath + " are suspended: " + reason);
+        }
+    }
+
+    /**
+     * 本存储的写锁，供跨分片的批量写入按固定顺序同时持有多个分片的写锁；可重入。
+     *
+     * @return 写锁
+     */
+    TimedReadWriteLock.TimedLock writeLock() {
+        return lock.writeLock();
+    }
+
+    private static void check(TodoView view, TodoBatch batch) {
+        for (TodoItem item : batch.getUpdates()) {
+            TodoItem current = view.get(item.getId());
+            if (current == null || current.getVersion() != batch.expectedVersion(item.getId())) {
+                throw new TodoConflictException("todo modified concurrently");
+            }
+        }
+        for (String id : batch.getDeletes()) {
+            if (view.get(id) == null) {
+                throw new TodoConflictException("todo modified concurrently");
+            }
+        }
+    }
+
+    /**
+     * 增量同步：由内存变更日志给出令牌之后变化过的 id，仍存在的返回最新数据，不存在的作为删除记录。
+     *
+     * <p>耗时与变化的数量成正比，与总数据量无关；令牌缺失、来自重启前或早于日志保留期时返回全量。
+     * 变更日志由写入方在写锁内登记，这里取读锁，使令牌与视图对应同一时刻。
+     *
+     * @param since 上次返回的令牌（可为 null）
+     * @return 变化集合
+     */
+    @Override
+    public TodoChanges changes(String since) {
+        lock.readLock().lock();
+        try {
+            TodoView view = view();
+            List<String> ids = since == null ? null : changeLog.changedSince(since);
+            List<String> deleted = new ArrayList<String>();
+            if (ids == null) {
+                return new TodoChanges(new ArrayList<TodoItem>(view.all()), deleted, changeLog.token(), true);
+            }
+            List<TodoItem> items = new ArrayList<TodoItem>();
+            for (String id : ids) {
+                TodoItem item = view.get(id);
+                if (item == null) {
+                    deleted.add(id);
+                } else {
+                    items.add(item);
+                }
+            }
+            return new TodoChanges(items, deleted, changeLog.token(), false);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 当前发布的视图；首次访问时从磁盘加载。
+     *
+     * @return 视图
+     */
+    private TodoView view() {
+        TodoView view = published.get();
+        return view != null ? view : load();
+    }
+
+    /**
+     * 在写锁内从磁盘加载一次并发布初始视图；日志模式下在快照之上回放日志。
+     */
+    private TodoView load() {
+        lock.writeLock().lock();
+        try {
+            TodoView view = published.get();
+            if (view != null) {
+                return view;
+            }
+            TodoIndex index = new TodoIndex();
+            index.reset(readFromDisk());
+            if (journal != null) {
+                journal.replay(index);
+            }
+            view = TodoView.of(index.all());
+            published.set(view);
+            return view;
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
-     * 从磁盘读取 JSON 文件并反序列化为列表。
+     * 从磁盘读取快照：文件头为二进制快照魔数时按 {@link TodoSnapshot} 读取，否则按 JSON 数组流式解析。
      *
-     * <p>读取失败时返回空列表，避免因单次损坏导致整个服务不可用。
+     * <p>文件不存在或为空时返回空列表；读取失败或内容损坏时抛出异常，而不是当作空数据继续运行——
+     * 否则下一次落盘会用空数据覆盖原文件。
      *
      * @return 待办列表
+     * @throws IllegalStateException 读取失败或文件损坏
      */
     private List<TodoItem> readFromDisk() {
         if (!Files.exists(storagePath)) {
             return new ArrayList<TodoItem>();
         }
-        try {
-            byte[] bytes = Files.readAllBytes(storagePath);
-            String json = new String(bytes, StandardCharsets.UTF_8);
-            if (json.trim().isEmpty()) {
+        byte[] head = new byte[TodoSnapshot.MAGIC.length];
+        int length;
+        try (InputStream in = Files.newInputStream(storagePath)) {
+            length = in.read(head);
+        } catch (IOException e) {
+            throw new IllegalStateException("failed to read todos from " + storagePath, e);
+        }
+        if (length <= 0) {
+            return new ArrayList<TodoItem>();
+        }
+        if (TodoSnapshot.isSnapshot(head, length)) {
+            return TodoSnapshot.read(storagePath);
+        }
+        try (InputStream in = Files.newInputStream(storagePath)) {
+            List<TodoItem> list = objectMapper.readValue(in, LIST_TYPE);
+            return list == null ? new ArrayList<TodoItem>() : new ArrayList<TodoItem>(list);
+        } catch (MismatchedInputException e) {
+            if (isBlank(storagePath)) {
                 return new ArrayList<TodoItem>();
             }
-            List<TodoItem> list = objectMapper.readValue(json, LIST_TYPE);
-            return list == null ? new ArrayList<TodoItem>() : new ArrayList<TodoItem>(list);
+            throw new IllegalStateException("corrupt JSON todos file " + storagePath, e);
         } catch (IOException e) {
-            return new ArrayList<TodoItem>();
+            throw new IllegalStateException("failed to read todos from " + storagePath, e);
+        }
+    }
+
+    /**
+     * 旧版本在文件只有空白字符时视为空数据，这里保持一致。
+     */
+    private static boolean isBlank(Path path) {
+        try {
+            return new String(Files.readAllBytes(path), StandardCharsets.UTF_8).trim().isEmpty();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 在写锁内暂存一次新增/更新，随后由 {@link #commit()} 落盘；同时登记到增量同步的变更日志。
+     *
+     * <p>日志模式只暂存一条记录，写入量与变更大小成正比；快照模式无需暂存，落盘时整体重写快照文件。
+     * 写后落盘模式只登记脏 id，序列化推迟到后台落盘时进行。
+     *
+     * @param stored 缓存中的最新对象
+     */
+    private void stagePut(TodoItem stored) {
+        changeLog.record(stored.getId());
+        if (writeBehind) {
+            markDirty(stored.getId());
+        } else if (journal != null) {
+            journal.appendPut(stored);
+        }
+    }
+
+    /**
+     * 在写锁内暂存一次删除，随后由 {@link #commit()} 落盘。
+     *
+     * @param id 被删除的待办 id
+     */
+    private void stageDelete(String id) {
+        changeLog.record(id);
+        if (writeBehind) {
+            markDirty(id);
+        } else if (journal != null) {
+            journal.appendDelete(id);
+        }
+    }
+
+    /**
+     * 在写锁内登记一个待写出的 id。
+     */
+    private void markDirty(String id) {
+        if (dirtyIds.isEmpty()) {
+            dirtySinceNanos = System.nanoTime();
+        }
+        dirtyIds.add(id);
+        dirtyCount = dirtyIds.size();
+    }
+
+    /**
+     * 释放写锁后调用：按落盘策略等待本次变更持久化，日志模式下再视情况触发压缩。
+     *
+     * <p>写后落盘模式下立即返回，积压达到阈值时请求后台提前落盘；日志压缩改由后台落盘之后检查，请求线程上不访问文件。
+     *
+     * <p>落盘失败时调用方收到异常，但变更已在内存视图上生效、日志记录仍暂存着，由下一次成功的落盘一并持久化。
+     */
+    void commit() {
+        committer.commit();
+        if (writeBehind) {
+            if (dirtyCount >= maxDirty) {
+                committer.flushSoon();
+            }
+        } else if (journal != null) {
+            maybeCompact();
+        }
+    }
+
+    /**
+     * 组提交的落盘动作：日志模式写入暂存记录并 fsync，快照模式整体重写快照；耗时计入 {@code todo.file.persist{kind=sync}}。
+     */
+    private void persist() throws IOException {
+        long start = System.nanoTime();
+        try {
+            if (writeBehind) {
+                flushDirty();
+            } else if (journal != null) {
+                journal.sync();
+            } else {
+                flushSnapshot();
+            }
+        } finally {
+            persistTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 写后落盘的落盘动作：在写锁内取走全部脏 id 与当前视图，锁外按视图中的最新状态写出（日志模式每个 id 一条记录，
+     * 快照模式整体重写一次）并 fsync。失败时撤回本次暂存的日志记录、把取走的 id 放回，由下一次落盘按届时的最新状态重试。
+     */
+    private void flushDirty() throws IOException {
+        Set<String> ids;
+        long since;
+        TodoView view;
+        int mark;
+        synchronized (drainLock) {
+            lock.writeLock().lock();
+            try {
+                if (dirtyIds.isEmpty()) {
+                    return;
+                }
+                ids = dirtyIds;
+                since = dirtySinceNanos;
+                dirtyIds = new LinkedHashSet<String>();
+                dirtyCount = 0;
+                dirtySinceNanos = 0L;
+                view = view();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            mark = journal == null ? 0 : journal.staged();
+            if (journal != null) {
+                try {
+                    for (String id : ids) {
+                        TodoItem item = view.get(id);
+                        if (item == null) {
+                            journal.appendDelete(id);
+                        } else {
+                            journal.appendPut(item);
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    journal.unstage(mark);
+                    requeue(ids, since);
+                    throw e;
+                }
+            }
+        }
+        try {
+            if (journal != null) {
+                journal.sync();
+            } else {
+                writeSnapshot(view.all(), true);
+            }
+        } catch (IOException | RuntimeException e) {
+            if (journal != null) {
+                journal.unstage(mark);
+            }
+            requeue(ids, since);
+            throw e;
+        }
+        flushItems.record(ids.size());
+        if (journal != null) {
+            maybeCompact();
+        }
+    }
+
+    /**
+     * 落盘失败时把取走的 id 放回脏集合，积压时长从最早的变更算起。
+     */
+    private void requeue(Set<String> ids, long since) {
+        flushFailures.increment();
+        lock.writeLock().lock();
+        try {
+            if (dirtyIds.isEmpty() || since - dirtySinceNanos < 0) {
+                dirtySinceNanos = since;
+            }
+            dirtyIds.addAll(ids);
+            dirtyCount = dirtyIds.size();
+        } finally {
+            lock.writeLock().unlock();
         }
     }
 
     /**
-     * 将内存缓存写回到磁盘（JSON 文件）。
+     * 快照模式的落盘动作：取当前发布的视图直接序列化写盘，不加锁也不复制。
+     */
+    private void flushSnapshot() {
+        writeSnapshot(view().all(), true);
+    }
+
+    /**
+     * 日志超过阈值时提交一次后台压缩；同一时刻至多一个压缩任务。
+     */
+    private void maybeCompact() {
+        if (journal.size() >= compactThreshold && compacting.compareAndSet(false, true)) {
+            compactor.execute(this::compact);
+        }
+    }
+
+    /**
+     * 把日志压缩为快照。
      *
-     * <p>采用“写临时文件 + 原子替换”的方式，尽量避免进程中断导致文件半写入。
+     * <p>只在写锁内取得当前视图并轮转日志，耗时的快照序列化与落盘在锁外进行；视图不可变，之后的写入不影响正在写出的快照。
+     * 快照落盘前进程退出时，启动会依次回放旧快照、轮转日志与新日志，不丢数据。
      */
-    private void persist() {
+    private void compact() {
+        long start = System.nanoTime();
+        try {
+            TodoView snapshot;
+            synchronized (drainLock) {
+                lock.writeLock().lock();
+                try {
+                    snapshot = view();
+                    journal.rotate();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            writeSnapshot(snapshot.all(), false);
+            journal.discardRotated();
+        } finally {
+            compactTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            compacting.set(false);
+        }
+    }
+
+    /**
+     * 已执行的落盘（fsync）次数。
+     *
+     * @return 次数
+     */
+    long syncCount() {
+        return committer.flushCount();
+    }
+
+    /**
+     * 落盘尚未持久化的变更，并关闭日志文件与后台线程。
+     */
+    @PreDestroy
+    public void close() throws IOException {
+        committer.close();
+        if (compactor != null) {
+            compactor.shutdown();
+            try {
+                compactor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (journal != null) {
+            lock.writeLock().lock();
+            try {
+                journal.close();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * 将待办列表写到磁盘（按配置为二进制快照或 JSON 文件）。
+     *
+     * <p>采用“写临时文件 + fsync + 原子替换”的方式，尽量避免进程中断导致文件半写入。
+     *
+     * @param items  待办列表
+     * @param pretty JSON 格式时是否格式化输出（压缩生成的快照不格式化，减小体积）
+     */
+    private void writeSnapshot(Collection<TodoItem> items, boolean pretty) {
         try {
             Path parent = storagePath.getParent();
             if (parent != null) {
                 Files.createDirectories(parent);
             }
             Path tmp = storagePath.resolveSibling(storagePath.getFileName().toString() + ".tmp");
-            String json = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(cached);
-            Files.write(tmp, json.getBytes(StandardCharsets.UTF_8));
+            long written;
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                if (binarySnapshot) {
+                    written = TodoSnapshot.write(out, items);
+                } else {
+                    byte[] json = pretty ? objectMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(items) : objectMapper.writeValueAsBytes(items);
+                    ByteBuffer buffer = ByteBuffer.wrap(json);
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer);
+                    }
+                    written = json.length;
+                }
+                out.force(true);
+            }
             Files.move(tmp, storagePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            snapshotBytesWritten.addAndGet(written);
         } catch (IOException e) {
             throw new IllegalStateException("failed to persist todos", e);
         }
     }
 
+    private static Timer persistTimer(MeterRegistry meterRegistry, Tags tags, String kind) {
+        return Timer.builder("todo.file.persist")
+                .description("Time spent persisting the file store")
+                .tags(tags)
+                .tag("kind", kind)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 注册写入字节数与文件大小：写入字节相对变更条数的比例即写放大。
+     */
+    private void registerFileMeters(MeterRegistry meterRegistry) {
+        FunctionCounter.builder("todo.file.bytes.written", snapshotBytesWritten, AtomicLong::get)
+                .description("Bytes written to the file store")
+                .tags(tags)
+                .baseUnit("bytes")
+                .tag("file", "snapshot")
+                .register(meterRegistry);
+        Gauge.builder("todo.file.size", storagePath, FileTodoRepository::fileSize)
+                .description("Current size of the file store")
+                .tags(tags)
+                .baseUnit("bytes")
+                .tag("file", "snapshot")
+                .register(meterRegistry);
+        if (journal != null) {
+            FunctionCounter.builder("todo.file.bytes.written", journal, TodoJournal::bytesWritten)
+                    .description("Bytes written to the file store")
+                    .tags(tags)
+                    .baseUnit("bytes")
+                    .tag("file", "journal")
+                    .register(meterRegistry);
+            Gauge.builder("todo.file.size", journal, TodoJournal::size)
+                    .description("Current size of the file store")
+                    .tags(tags)
+                    .baseUnit("bytes")
+                    .tag("file", "journal")
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * 写后落盘的积压与落盘指标：积压时长即崩溃时可能丢失的时间窗口。
+     */
+    private void registerWriteBehindMeters(MeterRegistry meterRegistry) {
+        Gauge.builder("todo.file.writebehind.pending", this, repository -> repository.dirtyCount)
+                .description("Changed todo ids not yet written by the write-behind flusher")
+                .tags(tags)
+                .register(meterRegistry);
+        Gauge.builder("todo.file.writebehind.lag", this, FileTodoRepository::writeBehindLagSeconds)
+                .description("Age of the oldest change not yet written by the write-behind flusher")
+                .tags(tags)
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        this.flushItems = DistributionSummary.builder("todo.file.writebehind.flush.items")
+                .description("Todo ids written per write-behind flush")
+                .tags(tags)
+                .register(meterRegistry);
+        this.flushFailures = Counter.builder("todo.file.writebehind.flush.failures")
+                .description("Write-behind flushes that failed and were retried")
+                .tags(tags)
+                .register(meterRegistry);
+    }
+
+    private double writeBehindLagSeconds() {
+        long since = dirtySinceNanos;
+        return since == 0L ? 0D : (System.nanoTime() - since) / 1_000_000_000D;
+    }
+
+    private static double fileSize(Path path) {
+        try {
+            return Files.exists(path) ? Files.size(path) : 0D;
+        } catch (IOException e) {
+            return Double.NaN;
+        }
+    }
+
     /**
      * 克隆一个待办对象，用于隔离内部缓存与外部引用。
      *
@@ -227,7 +983,6 @@ public class FileTodoRepository implements TodoRepository {
      * @return 深拷贝后的对象（字段级复制）
      */
     private TodoItem cloneItem(TodoItem item) {
-        return new TodoItem(item.getId(), item.getTitle(), item.getDescription(), item.getCategory(), item.getPriority(), item.getDueDate(),
-                item.isCompleted(), item.getCreatedAt(), item.getUpdatedAt());
+        return item.copy();
     }
 }
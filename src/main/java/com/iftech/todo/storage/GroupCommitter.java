@@ -0,0 +1,234 @@
+package com.iftech.todo.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按 {@link SyncPolicy} 把“已暂存的变更”变为持久化的协调器。
+ *
+ * <p>写入方先在存储的写锁内暂存变更（更新内存、把记录放进待写缓冲），释放写锁后再调用 {@link #commit()}。
+ * 等待持久化发生在锁外，因此组提交模式下同一窗口内的多个写入方可以由同一次 {@link Flusher#flush()} 一并落盘。
+ */
+final class GroupCommitter implements Closeable {
+    /**
+     * 一次落盘动作：把调用时刻之前暂存的全部变更写入磁盘并 fsync。
+     */
+    interface Flusher {
+        void flush() throws IOException;
+    }
+
+    private final SyncPolicy policy;
+    private final long windowMillis;
+    private final Flusher flusher;
+    private final Object flushLock = new Object();
+    private final Object queueLock = new Object();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final AtomicLong flushes = new AtomicLong();
+    private final ExecutorService groupThread;
+    private final ScheduledExecutorService intervalThread;
+
+    private List<CompletableFuture<Void>> pending = new ArrayList<CompletableFuture<Void>>();
+    private boolean closed;
+
+    /**
+     * 构造方法。
+     *
+     * @param name         后台线程名
+     * @param policy       落盘策略
+     * @param windowMillis 组提交的额外合并窗口（0 表示不额外等待，只合并 fsync 期间到达的写入），或定时/写后落盘的间隔（毫秒）
+     * @param flusher      落盘动作
+     */
+    GroupCommitter(String name, SyncPolicy policy, long windowMillis, Flusher flusher) {
+        this.policy = policy;
+        this.windowMillis = windowMillis;
+        this.flusher = flusher;
+        if (policy == SyncPolicy.GROUP) {
+            this.groupThread = Executors.newSingleThreadExecutor(runnable -> daemon(runnable, name));
+            this.groupThread.execute(this::runGroupLoop);
+            this.intervalThread = null;
+        } else if (policy.deferred()) {
+            this.groupThread = null;
+            this.intervalThread = Executors.newSingleThreadScheduledExecutor(runnable -> daemon(runnable, name));
+            this.intervalThread.scheduleWithFixedDelay(this::flushIfDirty, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.groupThread = null;
+            this.intervalThread = null;
+        }
+    }
+
+    /**
+     * 使调用前已暂存的变更按策略持久化；必须在释放存储写锁之后调用。
+     *
+     * <p>逐次落盘与组提交模式下，返回即表示变更已 fsync；定时与写后落盘模式下立即返回。
+     */
+    void commit() {
+        switch (policy) {
+            case PER_WRITE:
+                flushNow();
+                return;
+            case INTERVAL:
+            case WRITE_BEHIND:
+                dirty.set(true);
+                return;
+            case GROUP:
+            default:
+                CompletableFuture<Void> ticket = new CompletableFuture<Void>();
+                synchronized (queueLock) {
+                    if (closed) {
+                        flushNow();
+                        return;
+                    }
+                    pending.add(ticket);
+                    queueLock.notifyAll();
+                }
+                try {
+                    ticket.join();
+                } catch (CompletionException e) {
+                    throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+                            : new IllegalStateException("failed to sync todos", e.getCause());
+                }
+        }
+    }
+
+    /**
+     * 定时/写后落盘模式下请求后台线程尽快落盘一次，不等到下一个间隔（例如积压的变更达到阈值）；不阻塞调用方，
+     * 已有请求未执行时不重复提交。其他模式下不做任何事。
+     */
+    void flushSoon() {
+        if (intervalThread == null || !flushRequested.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            intervalThread.execute(() -> {
+                flushRequested.set(false);
+                flushIfDirty();
+            });
+        } catch (RejectedExecutionException e) {
+            // 已关闭，close() 会最后落盘
+            flushRequested.set(false);
+        }
+    }
+
+    /**
+     * 已执行的落盘次数（用于观察组提交的合并效果）。
+     *
+     * @return 次数
+     */
+    long flushCount() {
+        return flushes.get();
+    }
+
+    /**
+     * 停止后台线程，并把尚未落盘的变更最后落盘一次。
+     */
+    @Override
+    public void close() {
+        List<CompletableFuture<Void>> remaining;
+        synchronized (queueLock) {
+            closed = true;
+            remaining = pending;
+            pending = new ArrayList<CompletableFuture<Void>>();
+            queueLock.notifyAll();
+        }
+        shutdown(groupThread);
+        shutdown(intervalThread);
+        if (!remaining.isEmpty() || dirty.getAndSet(false)) {
+            completeAfterFlush(remaining);
+        }
+    }
+
+    private void runGroupLoop() {
+        while (true) {
+            List<CompletableFuture<Void>> batch;
+            try {
+                synchronized (queueLock) {
+                    while (pending.isEmpty() && !closed) {
+                        queueLock.wait();
+                    }
+                    if (closed) {
+                        return;
+                    }
+                }
+                if (windowMillis > 0) {
+                    // 留出窗口让并发写入方加入同一批
+                    Thread.sleep(windowMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            synchronized (queueLock) {
+                batch = pending;
+                pending = new ArrayList<CompletableFuture<Void>>();
+            }
+            completeAfterFlush(batch);
+        }
+    }
+
+    private void completeAfterFlush(List<CompletableFuture<Void>> batch) {
+        try {
+            flushNow();
+        } catch (RuntimeException e) {
+            for (CompletableFuture<Void> ticket : batch) {
+                ticket.completeExceptionally(e);
+            }
+            return;
+        }
+        for (CompletableFuture<Void> ticket : batch) {
+            ticket.complete(null);
+        }
+    }
+
+    private void flushIfDirty() {
+        if (!dirty.getAndSet(false)) {
+            return;
+        }
+        try {
+            flushNow();
+        } catch (RuntimeException e) {
+            // 下个周期重试
+            dirty.set(true);
+        }
+    }
+
+    private void flushNow() {
+        synchronized (flushLock) {
+            try {
+                flusher.flush();
+                flushes.incrementAndGet();
+            } catch (IOException e) {
+                throw new IllegalStateException("failed to sync todos", e);
+            }
+        }
+    }
+
+    private static void shutdown(ExecutorService executor) {
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
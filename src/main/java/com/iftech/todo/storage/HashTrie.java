@@ -0,0 +1,366 @@
+package com.iftech.todo.storage;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 不可变的哈希前缀树（HAMT），供 {@link TodoView} 作 id 索引与二级索引。
+ *
+ * <p>每层按哈希值的 5 位分成至多 32 个分支，节点用位图压缩存储；{@link #plus} 与 {@link #minus} 只复制从根到目标的一条路径
+ * （至多 7 个节点），其余节点由新旧两棵树共享，旧树保持不变，可被并发读取。哈希值完全相同的键放在同一个冲突节点中。
+ *
+ * @param <K> 键类型
+ * @param <V> 值类型
+ */
+final class HashTrie<K, V> {
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final int MAX_SHIFT = 30;
+    private static final HashTrie<Object, Object> EMPTY = new HashTrie<Object, Object>(null, 0);
+
+    private final Object root;
+    private final int size;
+
+    private HashTrie(Object root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * 空树。
+     */
+    @SuppressWarnings("unchecked")
+    static <K, V> HashTrie<K, V> empty() {
+        return (HashTrie<K, V>) EMPTY;
+    }
+
+    /**
+     * 一次性构建（启动载入时使用）：按哈希分组递归建树，每个节点只分配一次，耗时 O(n)。
+     *
+     * @param values 值（各自的键互不相同）
+     * @param keyOf  取键的函数
+     * @return 新树
+     */
+    static <K, V> HashTrie<K, V> of(Collection<? extends V> values, Function<? super V, ? extends K> keyOf) {
+        if (values.isEmpty()) {
+            return empty();
+        }
+        Leaf[] leaves = new Leaf[values.size()];
+        int i = 0;
+        for (V value : values) {
+            K key = keyOf.apply(value);
+            leaves[i++] = new Leaf(key, hash(key), value);
+        }
+        return new HashTrie<K, V>(build(leaves, 0, leaves.length, 0, new Leaf[leaves.length]), leaves.length);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 按键查询。
+     *
+     * @param key 键（非 null）
+     * @return 值；不存在返回 null
+     */
+    @SuppressWarnings("unchecked")
+    V get(Object key) {
+        int hash = hash(key);
+        Object node = root;
+        int shift = 0;
+        while (node != null) {
+            if (node instanceof Leaf) {
+                Leaf leaf = (Leaf) node;
+                return leaf.hash == hash && leaf.key.equals(key) ? (V) leaf.value : null;
+            }
+            if (node instanceof Collision) {
+                return (V) ((Collision) node).get(key, hash);
+            }
+            Branch branch = (Branch) node;
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((branch.bitmap & bit) == 0) {
+                return null;
+            }
+            node = branch.children[branch.index(bit)];
+            shift += BITS;
+        }
+        return null;
+    }
+
+    /**
+     * 返回新增或替换了一个键之后的树，本树不变。
+     *
+     * @param key   键（非 null）
+     * @param value 值
+     * @return 新树
+     */
+    HashTrie<K, V> plus(K key, V value) {
+        Leaf leaf = new Leaf(key, hash(key), value);
+        boolean[] added = new boolean[1];
+        Object next = root == null ? leaf : plus(root, leaf, 0, added);
+        return new HashTrie<K, V>(next, added[0] || root == null ? size + 1 : size);
+    }
+
+    /**
+     * 返回删除一个键之后的树；键不存在时返回本树。
+     *
+     * @param key 键
+     * @return 新树
+     */
+    HashTrie<K, V> minus(Object key) {
+        if (root == null) {
+            return this;
+        }
+        Object next = minus(root, key, hash(key), 0);
+        if (next == root) {
+            return this;
+        }
+        return next == null ? HashTrie.<K, V>empty() : new HashTrie<K, V>(next, size - 1);
+    }
+
+    /**
+     * 按哈希顺序遍历全部值。
+     *
+     * @param consumer 接收值
+     */
+    @SuppressWarnings("unchecked")
+    void forEachValue(Consumer<? super V> consumer) {
+        forEach(root, (Consumer<Object>) consumer);
+    }
+
+    private static void forEach(Object node, Consumer<Object> consumer) {
+        if (node == null) {
+            return;
+        }
+        if (node instanceof Leaf) {
+            consumer.accept(((Leaf) node).value);
+        } else if (node instanceof Collision) {
+            for (Leaf leaf : ((Collision) node).leaves) {
+                consumer.accept(leaf.value);
+            }
+        } else {
+            for (Object child : ((Branch) node).children) {
+                forEach(child, consumer);
+            }
+        }
+    }
+
+    private static Object build(Leaf[] leaves, int from, int to, int shift, Leaf[] scratch) {
+        if (to - from == 1) {
+            return leaves[from];
+        }
+        if (shift > MAX_SHIFT) {
+            return new Collision(leaves[from].hash, Arrays.copyOfRange(leaves, from, to));
+        }
+        int[] starts = new int[MASK + 2];
+        for (int i = from; i < to; i++) {
+            starts[((leaves[i].hash >>> shift) & MASK) + 1]++;
+        }
+        int bitmap = 0;
+        int groups = 0;
+        for (int chunk = 0; chunk <= MASK; chunk++) {
+            if (starts[chunk + 1] > 0) {
+                bitmap |= 1 << chunk;
+                groups++;
+            }
+            starts[chunk + 1] += starts[chunk];
+        }
+        int[] next = Arrays.copyOf(starts, MASK + 1);
+        for (int i = from; i < to; i++) {
+            scratch[from + next[(leaves[i].hash >>> shift) & MASK]++] = leaves[i];
+        }
+        System.arraycopy(scratch, from, leaves, from, to - from);
+        Object[] children = new Object[groups];
+        int child = 0;
+        for (int chunk = 0; chunk <= MASK; chunk++) {
+            if (starts[chunk + 1] > starts[chunk]) {
+                children[child++] = build(leaves, from + starts[chunk], from + starts[chunk + 1], shift + BITS, scratch);
+            }
+        }
+        return new Branch(bitmap, children);
+    }
+
+    private static Object plus(Object node, Leaf leaf, int shift, boolean[] added) {
+        if (node instanceof Leaf) {
+            Leaf existing = (Leaf) node;
+            if (existing.hash == leaf.hash && existing.key.equals(leaf.key)) {
+                return leaf;
+            }
+            added[0] = true;
+            return join(existing, leaf, shift);
+        }
+        if (node instanceof Collision) {
+            Collision collision = (Collision) node;
+            if (collision.hash == leaf.hash) {
+                return collision.plus(leaf, added);
+            }
+            Branch wrapper = new Branch(1 << ((collision.hash >>> shift) & MASK), new Object[] {collision});
+            return plus(wrapper, leaf, shift, added);
+        }
+        Branch branch = (Branch) node;
+        int bit = 1 << ((leaf.hash >>> shift) & MASK);
+        int index = branch.index(bit);
+        if ((branch.bitmap & bit) == 0) {
+            added[0] = true;
+            Object[] children = new Object[branch.children.length + 1];
+            System.arraycopy(branch.children, 0, children, 0, index);
+            children[index] = leaf;
+            System.arraycopy(branch.children, index, children, index + 1, branch.children.length - index);
+            return new Branch(branch.bitmap | bit, children);
+        }
+        Object[] children = branch.children.clone();
+        children[index] = plus(branch.children[index], leaf, shift + BITS, added);
+        return new Branch(branch.bitmap, children);
+    }
+
+    /**
+     * 把两个哈希不同（或相同）的叶子合并为一个子树。
+     */
+    private static Object join(Leaf a, Leaf b, int shift) {
+        if (a.hash == b.hash) {
+            return new Collision(a.hash, new Leaf[] {a, b});
+        }
+        int bitA = 1 << ((a.hash >>> shift) & MASK);
+        int bitB = 1 << ((b.hash >>> shift) & MASK);
+        if (bitA == bitB) {
+            return new Branch(bitA, new Object[] {join(a, b, shift + BITS)});
+        }
+        Object[] children = Integer.compareUnsigned(bitA, bitB) < 0 ? new Object[] {a, b} : new Object[] {b, a};
+        return new Branch(bitA | bitB, children);
+    }
+
+    /**
+     * @return 删除后的子树：未找到时为原节点，子树为空时为 null，只剩一个叶子时收缩为该叶子
+     */
+    private static Object minus(Object node, Object key, int hash, int shift) {
+        if (node instanceof Leaf) {
+            Leaf leaf = (Leaf) node;
+            return leaf.hash == hash && leaf.key.equals(key) ? null : node;
+        }
+        if (node instanceof Collision) {
+            return ((Collision) node).minus(key, hash);
+        }
+        Branch branch = (Branch) node;
+        int bit = 1 << ((hash >>> shift) & MASK);
+        if ((branch.bitmap & bit) == 0) {
+            return node;
+        }
+        int index = branch.index(bit);
+        Object child = branch.children[index];
+        Object next = minus(child, key, hash, shift + BITS);
+        if (next == child) {
+            return node;
+        }
+        if (next == null) {
+            if (branch.children.length == 1) {
+                return null;
+            }
+            Object[] children = new Object[branch.children.length - 1];
+            System.arraycopy(branch.children, 0, children, 0, index);
+            System.arraycopy(branch.children, index + 1, children, index, children.length - index);
+            if (children.length == 1 && !(children[0] instanceof Branch) && shift > 0) {
+                return children[0];
+            }
+            return new Branch(branch.bitmap & ~bit, children);
+        }
+        if (branch.children.length == 1 && !(next instanceof Branch) && shift > 0) {
+            return next;
+        }
+        Object[] children = branch.children.clone();
+        children[index] = next;
+        return new Branch(branch.bitmap, children);
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Leaf {
+        final Object key;
+        final int hash;
+        final Object value;
+
+        Leaf(Object key, int hash, Object value) {
+            this.key = key;
+            this.hash = hash;
+            this.value = value;
+        }
+    }
+
+    private static final class Branch {
+        final int bitmap;
+        final Object[] children;
+
+        Branch(int bitmap, Object[] children) {
+            this.bitmap = bitmap;
+            this.children = children;
+        }
+
+        int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+    }
+
+    private static final class Collision {
+        final int hash;
+        final Leaf[] leaves;
+
+        Collision(int hash, Leaf[] leaves) {
+            this.hash = hash;
+            this.leaves = leaves;
+        }
+
+        Object get(Object key, int keyHash) {
+            if (keyHash != hash) {
+                return null;
+            }
+            for (Leaf leaf : leaves) {
+                if (leaf.key.equals(key)) {
+                    return leaf.value;
+                }
+            }
+            return null;
+        }
+
+        Collision plus(Leaf leaf, boolean[] added) {
+            for (int i = 0; i < leaves.length; i++) {
+                if (leaves[i].key.equals(leaf.key)) {
+                    Leaf[] copy = leaves.clone();
+                    copy[i] = leaf;
+                    return new Collision(hash, copy);
+                }
+            }
+            added[0] = true;
+            Leaf[] copy = new Leaf[leaves.length + 1];
+            System.arraycopy(leaves, 0, copy, 0, leaves.length);
+            copy[leaves.length] = leaf;
+            return new Collision(hash, copy);
+        }
+
+        Object minus(Object key, int keyHash) {
+            if (keyHash != hash) {
+                return this;
+            }
+            for (int i = 0; i < leaves.length; i++) {
+                if (leaves[i].key.equals(key)) {
+                    if (leaves.length == 2) {
+                        return leaves[1 - i];
+                    }
+                    Leaf[] copy = new Leaf[leaves.length - 1];
+                    System.arraycopy(leaves, 0, copy, 0, i);
+                    System.arraycopy(leaves, i + 1, copy, i, copy.length - i);
+                    return new Collision(hash, copy);
+                }
+            }
+            return this;
+        }
+    }
+}
@@ -1,21 +1,51 @@
 package com.iftech.todo.storage;
 
+import com.iftech.todo.domain.DueDates;
+import com.iftech.todo.domain.TodoCategoryCount;
+import com.iftech.todo.domain.TodoChanges;
+import com.iftech.todo.domain.TodoField;
 import com.iftech.todo.domain.TodoItem;
+import com.iftech.todo.domain.TodoSort;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Timestamp;
 import java.time.Instant;
-import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessResourceException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+/**
+ * MySQL 存储，通过 {@link JdbcTemplate} 直接读写 {@code todo_item}。
+ *
+ * <p>配置了只读副本（{@link ReplicaRouter}）时，列表、导出、按 id 查询与分类计数由路由决定走副本还是主库；
+ * 写入、写入路径上的回读与增量同步始终走主库（同步令牌按主库的更新时间推进，副本的复制延迟会让令牌越过尚未复制的行）。
+ *
+ * <p>聚合接口的变更标签取自 {@code todo_change_version}：{@code todo_item} 上的触发器在写入的同一事务内递增它，
+ * 其他实例与直接修改数据库的写入同样会推进。
+ */
+@Profile("!file & !mapped & !sharded")
 @Repository
 public class JdbcTodoRepository implements TodoRepository {
-    private static final DateTimeFormatter DUE_DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm");
     private static final RowMapper<TodoItem> ROW_MAPPER = new RowMapper<TodoItem>() {
         @Override
         public TodoItem mapRow(ResultSet rs, int rowNum) throws SQLException {
@@ -26,8 +56,9 @@ public class JdbcTodoRepository implements TodoRepository {
             item.setCategory(rs.getString("category"));
             item.setPriority(rs.getInt("priority"));
             Timestamp dueDate = rs.getTimestamp("due_date");
-            item.setDueDate(dueDate == null ? null : dueDate.toLocalDateTime().format(DUE_DATE_FORMATTER));
+            item.setDueMinute(dueDate == null ? DueDates.NONE : DueDates.of(dueDate.toLocalDateTime()));
             item.setCompleted(rs.getBoolean("completed"));
+            item.setVersion(rs.getLong("version"));
 
             Timestamp createdAt = rs.getTimestamp("created_at");
             Timestamp updatedAt = rs.getTimestamp("updated_at");
@@ -37,84 +68,613 @@ public class JdbcTodoRepository implements TodoRepository {
         }
     };
 
+    private static final ResultSetExtractor<String> CHANGE_TAG_EXTRACTOR =
+            rs -> rs.next() ? Long.toString(rs.getLong("epoch"), 36) + "-" + rs.getLong("version") : null;
+
+    private static final String SELECT_COLUMNS =
+            "SELECT id, title, description, category, priority, due_date, completed, version, created_at, updated_at";
+    private static final String INSERT_SQL =
+            "INSERT INTO todo_item (id, title, description, category, priority, due_date, completed, version, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_SQL =
+            "UPDATE todo_item SET title = ?, description = ?, category = ?, priority = ?, due_date = ?, completed = ?, updated_at = ?, version = version + 1 WHERE id = ? AND version = ?";
+    private static final String TOMBSTONE_SQL =
+            "INSERT INTO todo_tombstone (id, deleted_at) VALUES (?, ?) ON DUPLICATE KEY UPDATE deleted_at = VALUES(deleted_at)";
+    private static final String CHANGE_TAG_SQL = "SELECT epoch, version FROM todo_change_version WHERE id = 1";
+
+    /**
+     * 两次清理过期删除记录之间的最小间隔（毫秒）。
+     */
+    private static final long TOMBSTONE_PRUNE_INTERVAL_MILLIS = 60_000L;
+
     private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingTemplate;
+    private final ReplicaRouter replica;
+    private final JdbcTemplate replicaTemplate;
+    private final JdbcTemplate replicaStreamingTemplate;
+    private final long tombstoneRetentionMillis;
+    private final long syncOverlapMillis;
+    private final AtomicLong lastTombstonePrune = new AtomicLong();
 
-    public JdbcTodoRepository(JdbcTemplate jdbcTemplate) {
+    /**
+     * 构造方法。
+     *
+     * @param jdbcTemplate             JDBC 模板
+     * @param streamFetchSize          流式读取时的 fetch size（{@code todo.jdbc.stream-fetch-size}），
+     *                                 默认 {@link Integer#MIN_VALUE} 让 MySQL 驱动逐行读取；其他数据库可设为正数
+     * @param tombstoneRetentionMillis 删除记录的保留时间（毫秒），更早的同步令牌只能全量同步
+     * @param syncOverlapMillis        同步令牌相对当前时间的回退量（毫秒），覆盖“更新时间已取但事务尚未提交”的写入
+     * @param replica                  只读副本路由（{@code todo.jdbc.replica.enabled=true} 时存在）
+     */
+    public JdbcTodoRepository(JdbcTemplate jdbcTemplate, @Value("${todo.jdbc.stream-fetch-size:-2147483648}") int streamFetchSize,
+            @Value("${todo.sync.tombstone-retention-ms:604800000}") long tombstoneRetentionMillis,
+            @Value("${todo.sync.overlap-ms:5000}") long syncOverlapMillis, Optional<ReplicaRouter> replica) {
         this.jdbcTemplate = jdbcTemplate;
+        this.streamingTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.streamingTemplate.setFetchSize(streamFetchSize);
+        this.replica = replica.orElse(null);
+        if (this.replica != null) {
+            this.replicaTemplate = new JdbcTemplate(this.replica.dataSource());
+            this.replicaStreamingTemplate = new JdbcTemplate(this.replica.dataSource());
+            this.replicaStreamingTemplate.setFetchSize(streamFetchSize);
+        } else {
+            this.replicaTemplate = null;
+            this.replicaStreamingTemplate = null;
+        }
+        this.tombstoneRetentionMillis = tombstoneRetentionMillis;
+        this.syncOverlapMillis = syncOverlapMillis;
     }
 
     @Override
     public List<TodoItem> list() {
-        return jdbcTemplate.query(
-                "SELECT id, title, description, category, priority, due_date, completed, created_at, updated_at FROM todo_item ORDER BY created_at DESC",
-                ROW_MAPPER);
+        return read(template -> template.query(SELECT_COLUMNS + " FROM todo_item ORDER BY created_at DESC", ROW_MAPPER));
+    }
+
+    /**
+     * 按查询条件过滤、排序并分页。
+     *
+     * <p>过滤、排序与分页全部下推到一条 SQL 中，依赖 schema.sql 中与每种排序方式对应的组合索引，数据库只需读取要返回的行。
+     * 翻页条件是基于 (排序键, created_at, id) 的 seek 谓词，而不是 OFFSET。
+     *
+     * <p>按截止时间排序时，无截止时间的数据在升序中排最后、降序中排最前；为了让两部分都能走索引，
+     * 会把“有截止时间”和“无截止时间”拆成两个各自有序的子查询再 UNION ALL，外层只对至多 2*limit 行做归并排序。
+     *
+     * @param query 查询条件
+     * @return 待办列表
+     */
+    @Override
+    public List<TodoItem> list(TodoQuery query) {
+        List<Object> args = new ArrayList<Object>();
+        String sql = listSql(query, args);
+        if (sql == null) {
+            return new ArrayList<TodoItem>();
+        }
+        return read(template -> template.query(sql, ROW_MAPPER, args.toArray()));
+    }
+
+    /**
+     * 以流式结果集逐行读取满足条件的数据，SQL 与 {@link #list(TodoQuery)} 相同。
+     *
+     * <p>语句为只进只读，并设置 fetch size（MySQL 驱动下默认 {@link Integer#MIN_VALUE}，即逐行从服务端拉取），
+     * 驱动不会把整个结果集缓冲在内存里；每行映射后立即交给 consumer，不保留引用。
+     *
+     * <p>走副本时，只有在尚未交出任何一行之前失败才会改到主库重试，否则异常直接抛出，避免 consumer 收到重复数据。
+     *
+     * @param query    查询条件
+     * @param consumer 逐条接收数据
+     */
+    @Override
+    public void stream(TodoQuery query, Consumer<TodoItem> consumer) {
+        List<Object> args = new ArrayList<Object>();
+        String sql = listSql(query, args);
+        if (sql == null) {
+            return;
+        }
+        RowCallbackHandler handler = rs -> consumer.accept(ROW_MAPPER.mapRow(rs, 0));
+        if (replica == null || !replica.routeToReplica()) {
+            streamingTemplate.query(sql, handler, args.toArray());
+            return;
+        }
+        long[] delivered = new long[1];
+        try {
+            replicaStreamingTemplate.query(sql, (RowCallbackHandler) rs -> {
+                delivered[0]++;
+                handler.processRow(rs);
+            }, args.toArray());
+        } catch (DataAccessResourceFailureException | TransientDataAccessResourceException e) {
+            if (delivered[0] > 0) {
+                throw e;
+            }
+            replica.failed();
+            streamingTemplate.query(sql, handler, args.toArray());
+        }
+    }
+
+    /**
+     * 把查询条件编译为一条 SQL；游标与过滤条件导致结果必然为空时返回 null。
+     */
+    private String listSql(TodoQuery query, List<Object> args) {
+        TodoSort sort = query.getSort();
+        if (sort == TodoSort.DUE_DATE_ASC || sort == TodoSort.DUE_DATE_DESC) {
+            return dueDateSql(query, args);
+        }
+        StringBuilder where = new StringBuilder();
+        appendFilters(where, args, query);
+        if (query.getAfter() != null) {
+            where.append(" AND ");
+            if (sort == TodoSort.PRIORITY_DESC) {
+                where.append("(priority < ? OR (priority = ? AND ");
+                args.add(query.getAfter().getPriority());
+                args.add(query.getAfter().getPriority());
+                appendCreatedSeek(where, args, query.getAfter());
+                where.append("))");
+            } else {
+                appendCreatedSeek(where, args, query.getAfter());
+            }
+        }
+        String orderBy = sort == TodoSort.PRIORITY_DESC ? "priority DESC, created_at DESC, id DESC" : "created_at DESC, id DESC";
+        return SELECT_COLUMNS + " FROM todo_item WHERE 1 = 1" + where + " ORDER BY " + orderBy + limitClause(args, query);
+    }
+
+    /**
+     * 读取由 schema.sql 中触发器维护的分类计数表。
+     *
+     * @return 分类计数
+     */
+    @Override
+    public List<TodoCategoryCount> categoryCounts() {
+        return read(template -> template.query(
+                "SELECT category, open_count, completed_count FROM todo_category_count WHERE open_count + completed_count > 0 ORDER BY category",
+                (rs, rowNum) -> new TodoCategoryCount(rs.getString("category"), rs.getLong("open_count"), rs.getLong("completed_count"))));
     }
 
     @Override
     public TodoItem findById(String id) {
-        List<TodoItem> list = jdbcTemplate.query(
-                "SELECT id, title, description, category, priority, due_date, completed, created_at, updated_at FROM todo_item WHERE id = ?",
-                ROW_MAPPER,
-                id);
+        return read(template -> findById(template, id));
+    }
+
+    private static TodoItem findById(JdbcTemplate template, String id) {
+        List<TodoItem> list = template.query(SELECT_COLUMNS + " FROM todo_item WHERE id = ?", ROW_MAPPER, id);
         return list.isEmpty() ? null : list.get(0);
     }
 
+    /**
+     * 按 id 批量查询，一条 {@code WHERE id IN (...)} 完成。
+     *
+     * @param ids 待办 id
+     * @return id 到对象的映射
+     */
+    @Override
+    public Map<String, TodoItem> findByIds(Collection<String> ids) {
+        Map<String, TodoItem> found = new LinkedHashMap<String, TodoItem>();
+        if (ids.isEmpty()) {
+            return found;
+        }
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        for (TodoItem item : read(template -> template.query(SELECT_COLUMNS + " FROM todo_item WHERE id IN (" + placeholders + ")",
+                ROW_MAPPER, ids.toArray()))) {
+            found.put(item.getId(), item);
+        }
+        return found;
+    }
+
+    /**
+     * 增量同步：按 {@code updated_at} 索引读取令牌之后更新过的行，按删除时间读取删除记录。
+     *
+     * <p>令牌是毫秒时间戳。更新时间在写入前由应用取得，事务提交可能晚于它，因此新令牌取“当前时间 - 回退量”，
+     * 回退窗口内的数据下次会再返回一次，由客户端按 {@code version} 去重；令牌早于删除记录保留期时返回全量。
+     * 顺带按间隔清理过期的删除记录。
+     *
+     * @param since 上次返回的令牌（可为 null）
+     * @return 变化集合
+     */
+    @Override
+    public TodoChanges changes(String since) {
+        long now = System.currentTimeMillis();
+        long horizon = now - tombstoneRetentionMillis;
+        Long sinceMillis = null;
+        if (since != null) {
+            try {
+                sinceMillis = Long.parseLong(since, 36);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("invalid token", e);
+            }
+        }
+        pruneTombstones(now, horizon);
+        long next = now - syncOverlapMillis;
+        if (sinceMillis == null || sinceMillis < horizon) {
+            List<TodoItem> all = jdbcTemplate.query(SELECT_COLUMNS + " FROM todo_item ORDER BY created_at DESC", ROW_MAPPER);
+            return new TodoChanges(all, new ArrayList<String>(), Long.toString(next, 36), true);
+        }
+        Timestamp after = new Timestamp(sinceMillis);
+        List<TodoItem> items = jdbcTemplate.query(SELECT_COLUMNS + " FROM todo_item WHERE updated_at > ? ORDER BY updated_at, id",
+                ROW_MAPPER, after);
+        List<String> deleted = jdbcTemplate.queryForList("SELECT id FROM todo_tombstone WHERE deleted_at > ? ORDER BY deleted_at",
+                String.class, after);
+        return new TodoChanges(items, deleted, Long.toString(Math.max(sinceMillis, next), 36), false);
+    }
+
+    private void pruneTombstones(long now, long horizon) {
+        long last = lastTombstonePrune.get();
+        if (now - last >= TOMBSTONE_PRUNE_INTERVAL_MILLIS && lastTombstonePrune.compareAndSet(last, now)) {
+            jdbcTemplate.update("DELETE FROM todo_tombstone WHERE deleted_at < ?", new Timestamp(horizon));
+        }
+    }
+
+    /**
+     * 插入一行，直接返回入参的拷贝，不回读。
+     *
+     * @param item 待办对象
+     * @return 入参的拷贝
+     */
     @Override
     public TodoItem create(TodoItem item) {
-        jdbcTemplate.update(
-                "INSERT INTO todo_item (id, title, description, category, priority, due_date, completed, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)",
-                item.getId(),
-                item.getTitle(),
-                item.getDescription(),
-                item.getCategory(),
-                item.getPriority(),
-                toDueTimestamp(item.getDueDate()),
-                item.isCompleted(),
-                toTimestamp(item.getCreatedAt()),
-                toTimestamp(item.getUpdatedAt()));
-        return findById(item.getId());
+        stick();
+        jdbcTemplate.update(INSERT_SQL, insertArgs(item));
+        return item.copy();
     }
 
+    /**
+     * 一条 {@code UPDATE ... SET <变更列>, version = version + 1 WHERE id = ? AND version = ?} 完成更新，不回读。
+     *
+     * <p>未命中行时再查一次区分“不存在”与“版本冲突”，这只发生在失败路径上。
+     *
+     * @param item   合并了变更后的完整对象，版本号为读取时的版本
+     * @param fields 需要写入的字段
+     * @return 更新后的对象；目标不存在返回 null
+     */
     @Override
-    public TodoItem update(TodoItem item) {
-        jdbcTemplate.update(
-                "UPDATE todo_item SET title = ?, description = ?, category = ?, priority = ?, due_date = ?, completed = ?, created_at = ?, updated_at = ? WHERE id = ?",
-                item.getTitle(),
-                item.getDescription(),
-                item.getCategory(),
-                item.getPriority(),
-                toDueTimestamp(item.getDueDate()),
-                item.isCompleted(),
-                toTimestamp(item.getCreatedAt()),
-                toTimestamp(item.getUpdatedAt()),
-                item.getId());
-        return findById(item.getId());
+    public TodoItem update(TodoItem item, Set<TodoField> fields) {
+        stick();
+        StringBuilder sql = new StringBuilder("UPDATE todo_item SET ");
+        List<Object> args = new ArrayList<Object>();
+        for (TodoField field : fields) {
+            sql.append(column(field)).append(" = ?, ");
+            args.add(columnValue(item, field));
+        }
+        sql.append("updated_at = ?, version = version + 1 WHERE id = ? AND version = ?");
+        args.add(toTimestamp(item.getUpdatedAt()));
+        args.add(item.getId());
+        args.add(item.getVersion());
+        if (jdbcTemplate.update(sql.toString(), args.toArray()) == 0) {
+            if (findById(jdbcTemplate, item.getId()) == null) {
+                return null;
+            }
+            throw new TodoConflictException("todo modified concurrently");
+        }
+        TodoItem updated = item.copy();
+        updated.setVersion(item.getVersion() + 1);
+        return updated;
     }
 
+    /**
+     * 用一条 {@code SET completed = NOT completed} 原子切换，并发切换不会互相覆盖；随后在同一事务内读取一次以返回最新状态，
+     * 回读时仍持有更新语句加的行锁，返回的正是本次切换的结果，不会混入其后并发写入的值。
+     *
+     * @param id        待办 id
+     * @param updatedAt 更新时间
+     * @return 切换后的对象；目标不存在返回 null
+     */
     @Override
+    @Transactional
+    public TodoItem toggle(String id, Instant updatedAt) {
+        stick();
+        int affected = jdbcTemplate.update(
+                "UPDATE todo_item SET completed = NOT completed, updated_at = ?, version = version + 1 WHERE id = ?", toTimestamp(updatedAt), id);
+        return affected == 0 ? null : findById(jdbcTemplate, id);
+    }
+
+    /**
+     * 删除一行，并在同一事务中写入删除记录供增量同步使用。
+     *
+     * @param id 待办 id
+     * @return true 表示删除成功；false 表示目标不存在
+     */
+    @Override
+    @Transactional
     public boolean delete(String id) {
+        stick();
         int affected = jdbcTemplate.update("DELETE FROM todo_item WHERE id = ?", id);
-        return affected > 0;
+        if (affected == 0) {
+            return false;
+        }
+        jdbcTemplate.update(TOMBSTONE_SQL, id, toTimestamp(Instant.now()));
+        return true;
     }
 
-    private Timestamp toTimestamp(Instant instant) {
-        return instant == null ? null : Timestamp.from(instant);
+    /**
+     * 在一个事务中写入一组变更。
+     *
+     * <p>新增、更新、删除各用一次 {@link JdbcTemplate#batchUpdate(String, List)}（连接串开启 {@code rewriteBatchedStatements}
+     * 后驱动会把同一组合并为多值语句）；任何一条更新/删除未命中行都会抛出 {@link TodoConflictException} 并回滚整批。
+     * 删除前先以 {@code SELECT ... FOR UPDATE} 锁住并清点要删除的行；驱动不返回更新的影响行数时，在同一事务内按新版本号回查。
+     *
+     * @param batch 变更集合
+     */
+    @Override
+    @Transactional
+    public void apply(TodoBatch batch) {
+        stick();
+        if (!batch.getCreates().isEmpty()) {
+            List<Object[]> args = new ArrayList<Object[]>(batch.getCreates().size());
+            for (TodoItem item : batch.getCreates()) {
+                args.add(insertArgs(item));
+            }
+            jdbcTemplate.batchUpdate(INSERT_SQL, args);
+        }
+        if (!batch.getUpdates().isEmpty()) {
+            List<Object[]> args = new ArrayList<Object[]>(batch.getUpdates().size());
+            for (TodoItem item : batch.getUpdates()) {
+                args.add(updateArgs(item, batch.expectedVersion(item.getId())));
+            }
+            requireAllAffected(jdbcTemplate.batchUpdate(UPDATE_SQL, args), batch.getUpdates().size(), () -> countUpdated(batch));
+        }
+        if (!batch.getDeletes().isEmpty()) {
+            String placeholders = String.join(", ", Collections.nCopies(batch.getDeletes().size(), "?"));
+            List<String> present = jdbcTemplate.queryForList("SELECT id FROM todo_item WHERE id IN (" + placeholders + ") FOR UPDATE",
+                    String.class, batch.getDeletes().toArray());
+            if (present.size() < batch.getDeletes().size()) {
+                throw new TodoConflictException("todo modified concurrently");
+            }
+            List<Object[]> args = new ArrayList<Object[]>(batch.getDeletes().size());
+            for (String id : batch.getDeletes()) {
+                args.add(new Object[]{id});
+            }
+            jdbcTemplate.batchUpdate("DELETE FROM todo_item WHERE id = ?", args);
+            Timestamp deletedAt = toTimestamp(Instant.now());
+            List<Object[]> tombstones = new ArrayList<Object[]>(batch.getDeletes().size());
+            for (String id : batch.getDeletes()) {
+                tombstones.add(new Object[]{id, deletedAt});
+            }
+            jdbcTemplate.batchUpdate(TOMBSTONE_SQL, tombstones);
+        }
+    }
+
+    /**
+     * 数据库可能由多个实例共享，也可能被直接修改，进程内的变更版本号无法代表它的状态。
+     *
+     * @return false
+     */
+    @Override
+    public boolean exclusiveWriter() {
+        return false;
     }
 
-    private Timestamp toDueTimestamp(String dueDate) {
-        if (dueDate == null) {
+    /**
+     * 读取 {@code todo_change_version}。配置了副本时只从副本读取：列表等数据可能落在副本上，
+     * 从主库取标签会比随后读到的数据新，客户端拿着新标签缓存旧数据，之后便一直得到 304；
+     * 副本不健康或读取失败时不给出标签。
+     */
+    @Override
+    public String changeTag() {
+        if (replica == null) {
+            return jdbcTemplate.query(CHANGE_TAG_SQL, CHANGE_TAG_EXTRACTOR);
+        }
+        if (!replica.isHealthy()) {
             return null;
         }
-        String trimmed = dueDate.trim();
-        if (trimmed.isEmpty()) {
+        try {
+            return replicaTemplate.query(CHANGE_TAG_SQL, CHANGE_TAG_EXTRACTOR);
+        } catch (DataAccessResourceFailureException | TransientDataAccessResourceException e) {
             return null;
         }
-        LocalDateTime dt;
-        if (trimmed.length() == 10) {
-            dt = LocalDate.parse(trimmed).atStartOfDay();
-        } else {
-            dt = LocalDateTime.parse(trimmed);
+    }
+
+    /**
+     * 读取：配置了副本且路由允许时在副本上执行，副本出现连接类异常时标记不健康并改在主库上执行。
+     */
+    private <T> T read(Function<JdbcTemplate, T> query) {
+        if (replica == null || !replica.routeToReplica()) {
+            return query.apply(jdbcTemplate);
+        }
+        try {
+            return query.apply(replicaTemplate);
+        } catch (DataAccessResourceFailureException | TransientDataAccessResourceException e) {
+            replica.failed();
+            return query.apply(jdbcTemplate);
+        }
+    }
+
+    /**
+     * 写入开始时记录当前客户端，此后粘滞窗口内它的读取走主库；冲突等失败的写入同样记录，客户端重试前的回读能看到最新版本。
+     */
+    private void stick() {
+        if (replica != null) {
+            replica.wrote();
+        }
+    }
+
+    /**
+     * 校验批量语句的影响行数。
+     *
+     * <p>驱动改写为多值语句时只能返回 {@link Statement#SUCCESS_NO_INFO}，此时改用 {@code verify} 在同一事务内回查实际命中的行数。
+     */
+    private void requireAllAffected(int[] counts, int expected, IntSupplier verify) {
+        int affected = 0;
+        for (int count : counts) {
+            if (count == Statement.SUCCESS_NO_INFO) {
+                affected = verify.getAsInt();
+                break;
+            }
+            affected += count;
+        }
+        if (affected < expected) {
+            throw new TodoConflictException("todo modified concurrently");
+        }
+    }
+
+    /**
+     * 回查批量更新命中的行数：版本号为期望版本 + 1 且更新时间为本次写入的行。
+     * 只比较版本号时，并发写入方抢先提交的同一版本号会被误认为本次写入，因此同时比较更新时间。
+     */
+    private int countUpdated(TodoBatch batch) {
+        List<TodoItem> updates = batch.getUpdates();
+        List<Object> args = new ArrayList<Object>(updates.size() * 3);
+        for (TodoItem item : updates) {
+            args.add(item.getId());
+            args.add(batch.expectedVersion(item.getId()) + 1);
+            args.add(toTimestamp(item.getUpdatedAt()));
+        }
+        String where = String.join(" OR ", Collections.nCopies(updates.size(), "(id = ? AND version = ? AND updated_at = ?)"));
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM todo_item WHERE " + where, Integer.class, args.toArray());
+        return count == null ? 0 : count;
+    }
+
+    private Object[] insertArgs(TodoItem item) {
+        return new Object[]{item.getId(), item.getTitle(), item.getDescription(), item.getCategory(), item.getPriority(),
+                toDueTimestamp(item.getDueMinute()), item.isCompleted(), item.getVersion(), toTimestamp(item.getCreatedAt()),
+                toTimestamp(item.getUpdatedAt())};
+    }
+
+    private Object[] updateArgs(TodoItem item, long expectedVersion) {
+        return new Object[]{item.getTitle(), item.getDescription(), item.getCategory(), item.getPriority(),
+                toDueTimestamp(item.getDueMinute()), item.isCompleted(), toTimestamp(item.getUpdatedAt()), item.getId(), expectedVersion};
+    }
+
+    private static String column(TodoField field) {
+        switch (field) {
+            case TITLE:
+                return "title";
+            case DESCRIPTION:
+                return "description";
+            case CATEGORY:
+                return "category";
+            case PRIORITY:
+                return "priority";
+            case DUE_DATE:
+                return "due_date";
+            case COMPLETED:
+            default:
+                return "completed";
+        }
+    }
+
+    private Object columnValue(TodoItem item, TodoField field) {
+        switch (field) {
+            case TITLE:
+                return item.getTitle();
+            case DESCRIPTION:
+                return item.getDescription();
+            case CATEGORY:
+                return item.getCategory();
+            case PRIORITY:
+                return item.getPriority();
+            case DUE_DATE:
+                return toDueTimestamp(item.getDueMinute());
+            case COMPLETED:
+            default:
+                return item.isCompleted();
+        }
+    }
+
+    /**
+     * 生成按截止时间排序的 SQL；游标与过滤条件导致结果必然为空时返回 null。
+     */
+    private String dueDateSql(TodoQuery query, List<Object> args) {
+        boolean asc = query.getSort() == TodoSort.DUE_DATE_ASC;
+        TodoCursor after = query.getAfter();
+        boolean afterInNullPart = after != null && after.getDueMinute() == DueDates.NONE;
+        Timestamp afterDue = after == null ? null : toDueTimestamp(after.getDueMinute());
+
+        // 无截止时间的部分：指定了截止时间范围时不可能命中；升序中排在有截止时间部分之后，降序中排在之前
+        String nullPart = null;
+        List<Object> nullArgs = new ArrayList<Object>();
+        if (!query.hasDueRange() && (asc || after == null || afterInNullPart)) {
+            StringBuilder where = new StringBuilder(" AND due_date IS NULL");
+            List<Object> seekArgs = new ArrayList<Object>();
+            if (afterInNullPart) {
+                where.append(" AND ");
+                appendCreatedSeek(where, seekArgs, after);
+            }
+            nullPart = segment(query, where, seekArgs, "created_at DESC, id DESC", nullArgs);
+        }
+
+        String dueOrder = asc ? "due_date ASC, created_at DESC, id DESC" : "due_date DESC, created_at DESC, id DESC";
+        String duePart = null;
+        List<Object> dueArgs = new ArrayList<Object>();
+        if (!(asc && afterInNullPart)) {
+            StringBuilder where = new StringBuilder(" AND due_date IS NOT NULL");
+            List<Object> seekArgs = new ArrayList<Object>();
+            if (afterDue != null) {
+                where.append(asc ? " AND (due_date > ? OR (due_date = ? AND " : " AND (due_date < ? OR (due_date = ? AND ");
+                seekArgs.add(afterDue);
+                seekArgs.add(afterDue);
+                appendCreatedSeek(where, seekArgs, after);
+                where.append("))");
+            }
+            duePart = segment(query, where, seekArgs, dueOrder, dueArgs);
+        }
+
+        if (nullPart == null && duePart == null) {
+            return null;
+        }
+        if (nullPart == null || duePart == null) {
+            String only = nullPart == null ? duePart : nullPart;
+            args.addAll(nullPart == null ? dueArgs : nullArgs);
+            return only;
+        }
+        String first = asc ? duePart : nullPart;
+        String second = asc ? nullPart : duePart;
+        args.addAll(asc ? dueArgs : nullArgs);
+        args.addAll(asc ? nullArgs : dueArgs);
+        String outerOrder = asc ? "due_date IS NULL, " + dueOrder : "due_date IS NULL DESC, " + dueOrder;
+        return "SELECT * FROM ((" + first + ") UNION ALL (" + second + ")) t ORDER BY " + outerOrder + limitClause(args, query);
+    }
+
+    /**
+     * 生成一个带公共过滤条件、自身有序且带 LIMIT 的子查询，参数按占位符顺序写入 segmentArgs。
+     */
+    private String segment(TodoQuery query, StringBuilder extraWhere, List<Object> extraArgs, String orderBy, List<Object> segmentArgs) {
+        StringBuilder where = new StringBuilder();
+        appendFilters(where, segmentArgs, query);
+        where.append(extraWhere);
+        segmentArgs.addAll(extraArgs);
+        return SELECT_COLUMNS + " FROM todo_item WHERE 1 = 1" + where + " ORDER BY " + orderBy + limitClause(segmentArgs, query);
+    }
+
+    private void appendFilters(StringBuilder where, List<Object> args, TodoQuery query) {
+        if (query.getCategory() != null) {
+            where.append(" AND category = ?");
+            args.add(query.getCategory());
+        }
+        if (query.getCompleted() != null) {
+            where.append(" AND completed = ?");
+            args.add(query.getCompleted());
+        }
+        if (query.getPriority() != null) {
+            where.append(" AND priority = ?");
+            args.add(query.getPriority());
         }
-        return Timestamp.valueOf(dt);
+        if (query.getDueFrom() != null) {
+            where.append(" AND due_date >= ?");
+            args.add(Timestamp.valueOf(query.getDueFrom()));
+        }
+        if (query.getDueTo() != null) {
+            where.append(" AND due_date < ?");
+            args.add(Timestamp.valueOf(query.getDueTo()));
+        }
+    }
+
+    private String limitClause(List<Object> args, TodoQuery query) {
+        if (query.getLimit() == null) {
+            return "";
+        }
+        args.add(query.getLimit());
+        return " LIMIT ?";
+    }
+
+    private void appendCreatedSeek(StringBuilder sql, List<Object> args, TodoCursor after) {
+        Timestamp createdAt = toTimestamp(after.getCreatedAt());
+        sql.append("(created_at < ? OR (created_at = ? AND id < ?))");
+        args.add(createdAt);
+        args.add(createdAt);
+        args.add(after.getId());
+    }
+
+    private Timestamp toTimestamp(Instant instant) {
+        return instant == null ? null : Timestamp.from(instant);
+    }
+
+    private Timestamp toDueTimestamp(long dueMinute) {
+        return dueMinute == DueDates.NONE ? null : Timestamp.valueOf(DueDates.toLocalDateTime(dueMinute));
     }
 }
@@ -0,0 +1,457 @@
+package com.iftech.todo.storage;
+
+import com.iftech.todo.domain.TodoCategoryCount;
+import com.iftech.todo.domain.TodoChanges;
+import com.iftech.todo.domain.TodoField;
+import com.iftech.todo.domain.TodoItem;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+/**
+ * 基于内存映射记录文件（见 {@link TodoRecordFile}）的存储实现。
+ *
+ * <p>与 {@link FileTodoRepository} 一样在内存索引上完成查询、计数与增量同步，区别在于落盘方式：每条待办占用一个定长槽位，
+ * 写入只改动映射页中对应的几个字节，不再重写整个文件或追加整条日志记录。切换完成态只改写一个槽位内的 25 字节，
+ * 落盘时写回的是被改动的那一页。
+ *
+ * <p>文本被修改或待办被删除后溢出区留下垃圾，垃圾超过 {@code todo.storage.mapped.compact-garbage-bytes} 且多于仍被引用的文本时，
+ * 在写锁内把全部数据重写为新的一对文件。
+ */
+@Profile("mapped")
+@Repository
+public class MappedTodoRepository implements TodoRepository {
+    private final TimedReadWriteLock lock;
+    private final TodoRecordFile records;
+    private final TodoIndex cached = new TodoIndex();
+    private final long compactThreshold;
+    private final GroupCommitter committer;
+    private final TodoChangeLog changeLog;
+    private final Timer persistTimer;
+    private final Timer compactTimer;
+
+    /**
+     * 构造方法，打开记录文件并载入全部数据；文件损坏时启动失败。
+     *
+     * <p>记录文件路径来自 {@code todo.storage.path}（默认 {@code data/todos.slots}），溢出区为同目录下的
+     * {@code <记录文件>.overflow.<代号>}。落盘策略与 {@link FileTodoRepository} 相同，落盘动作为把映射区中被修改的页写回磁盘；
+     * 槽位本来就在请求线程上原地改写，{@code write-behind} 在这里等同于 {@code interval}。
+     *
+     * <p>指标沿用文件存储的名称：{@code todo.file.lock.*}、{@code todo.file.persist}（{@code kind=sync|compact}），
+     * {@code todo.file.bytes.written} 与 {@code todo.file.size} 按 {@code file=records|overflow} 区分。
+     *
+     * @param storagePath       记录文件路径
+     * @param compactThreshold  触发重写的溢出区垃圾字节数
+     * @param syncPolicy        落盘策略
+     * @param groupWindowMillis 组提交的额外合并窗口（毫秒）
+     * @param intervalMillis    定时/写后落盘间隔（毫秒）
+     * @param retentionMillis   变更日志（含删除记录）的保留时间（毫秒）
+     * @param meterRegistry     指标注册表
+     */
+    public MappedTodoRepository(@Value("${todo.storage.path:data/todos.slots}") String storagePath,
+            @Value("${todo.storage.mapped.compact-garbage-bytes:4194304}") long compactThreshold,
+            @Value("${todo.storage.sync.policy:group}") String syncPolicy,
+            @Value("${todo.storage.sync.group-window-ms:0}") long groupWindowMillis,
+            @Value("${todo.storage.sync.interval-ms:1000}") long intervalMillis,
+            @Value("${todo.sync.tombstone-retention-ms:604800000}") long retentionMillis, MeterRegistry meterRegistry) {
+        this.lock = new TimedReadWriteLock(meterRegistry, Tags.empty());
+        try {
+            this.records = new TodoRecordFile(Paths.get(storagePath));
+        } catch (IOException e) {
+            throw new IllegalStateException("failed to open record file " + storagePath, e);
+        }
+        this.cached.reset(records.load());
+        this.compactThreshold = compactThreshold;
+        SyncPolicy policy = SyncPolicy.parse(syncPolicy);
+        this.committer = new GroupCommitter("todo-mapped-sync", policy, policy.deferred() ? intervalMillis : groupWindowMillis,
+                this::persist);
+        this.changeLog = new TodoChangeLog(retentionMillis);
+        this.persistTimer = persistTimer(meterRegistry, "sync");
+        this.compactTimer = persistTimer(meterRegistry, "compact");
+        registerFileMeters(meterRegistry);
+    }
+
+    /**
+     * 查询待办列表，按创建时间倒序。
+     *
+     * @return 待办列表（副本）
+     */
+    @Override
+    public List<TodoItem> list() {
+        lock.readLock().lock();
+        try {
+            List<TodoItem> copy = new ArrayList<TodoItem>(cached.size());
+            for (TodoItem item : cached.all()) {
+                copy.add(item.copy());
+            }
+            copy.sort(Comparator.comparing(TodoItem::getCreatedAt, Comparator.nullsLast(Comparator.naturalOrder())).reversed());
+            return copy;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按查询条件过滤、排序并分页。
+     *
+     * @param query 查询条件
+     * @return 待办列表（副本）
+     */
+    @Override
+    public List<TodoItem> list(TodoQuery query) {
+        List<TodoItem> matched = select(query);
+        List<TodoItem> page = new ArrayList<TodoItem>(matched.size());
+        for (TodoItem item : matched) {
+            page.add(item.copy());
+        }
+        return page;
+    }
+
+    /**
+     * 按查询条件逐条输出内存索引中的对象，输出在锁外进行。
+     *
+     * @param query    查询条件
+     * @param consumer 逐条接收数据
+     */
+    @Override
+    public void stream(TodoQuery query, Consumer<TodoItem> consumer) {
+        for (TodoItem item : select(query)) {
+            consumer.accept(item);
+        }
+    }
+
+    private List<TodoItem> select(TodoQuery query) {
+        lock.readLock().lock();
+        try {
+            return cached.select(query);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<TodoCategoryCount> categoryCounts() {
+        lock.readLock().lock();
+        try {
+            return cached.categoryCounts();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public TodoItem findById(String id) {
+        lock.readLock().lock();
+        try {
+            TodoItem item = cached.get(id);
+            return item == null ? null : item.copy();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<String, TodoItem> findByIds(Collection<String> ids) {
+        Map<String, TodoItem> found = new LinkedHashMap<String, TodoItem>();
+        lock.readLock().lock();
+        try {
+            for (String id : ids) {
+                TodoItem item = cached.get(id);
+                if (item != null) {
+                    found.put(id, item.copy());
+                }
+            }
+            return found;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 新增待办：分配一个槽位整条写入。
+     *
+     * @param item 待办对象
+     * @return 新增后的对象副本
+     */
+    @Override
+    public TodoItem create(TodoItem item) {
+        lock.writeLock().lock();
+        try {
+            stagePut(item.copy());
+        } finally {
+            lock.writeLock().unlock();
+        }
+        committer.commit();
+        return item.copy();
+    }
+
+    /**
+     * 按版本号条件更新待办：定长字段原地改写，只有变化的文本追加到溢出区；{@code fields} 仅用于接口一致。
+     *
+     * @param item   合并了变更后的完整对象，版本号为读取时的版本
+     * @param fields 需要写入的字段
+     * @return 更新后的对象副本；目标不存在返回 null
+     */
+    @Override
+    public TodoItem update(TodoItem item, Set<TodoField> fields) {
+        TodoItem stored = item.copy();
+        lock.writeLock().lock();
+        try {
+            TodoItem current = cached.get(item.getId());
+            if (current == null) {
+                return null;
+            }
+            if (current.getVersion() != item.getVersion()) {
+                throw new TodoConflictException("todo modified concurrently");
+            }
+            stored.setVersion(current.getVersion() + 1);
+            stagePut(stored);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        committer.commit();
+        return stored.copy();
+    }
+
+    /**
+     * 切换完成态：只改写槽位内的完成标志、版本号、更新时间与校验和。
+     *
+     * @param id        待办 id
+     * @param updatedAt 更新时间
+     * @return 切换后的对象副本；目标不存在返回 null
+     */
+    @Override
+    public TodoItem toggle(String id, Instant updatedAt) {
+        TodoItem stored;
+        lock.writeLock().lock();
+        try {
+            TodoItem current = cached.get(id);
+            if (current == null) {
+                return null;
+            }
+            stored = current.copy();
+            stored.setCompleted(!current.isCompleted());
+            stored.setUpdatedAt(updatedAt);
+            stored.setVersion(current.getVersion() + 1);
+            stagePut(stored);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        committer.commit();
+        return stored.copy();
+    }
+
+    /**
+     * 删除待办：清除槽位状态字节，槽位进入空闲表供后续新增复用。
+     *
+     * @param id 待办 id
+     * @return true 表示删除成功；false 表示目标不存在
+     */
+    @Override
+    public boolean delete(String id) {
+        boolean removed;
+        lock.writeLock().lock();
+        try {
+            removed = cached.remove(id) != null;
+            if (removed) {
+                records.delete(id);
+                changeLog.record(id);
+                maybeCompact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (removed) {
+            committer.commit();
+        }
+        return removed;
+    }
+
+    /**
+     * 在一次写锁内校验并应用整批变更，只做一次落盘；任一校验不通过则整批不生效。
+     *
+     * @param batch 变更集合
+     */
+    @Override
+    public void apply(TodoBatch batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (TodoItem item : batch.getUpdates()) {
+                TodoItem current = cached.get(item.getId());
+                if (current == null || current.getVersion() != batch.expectedVersion(item.getId())) {
+                    throw new TodoConflictException("todo modified concurrently");
+                }
+            }
+            for (String id : batch.getDeletes()) {
+                if (cached.get(id) == null) {
+                    throw new TodoConflictException("todo modified concurrently");
+                }
+            }
+            for (TodoItem item : batch.getCreates()) {
+                stagePut(item.copy());
+            }
+            for (TodoItem item : batch.getUpdates()) {
+                stagePut(item.copy());
+            }
+            for (String id : batch.getDeletes()) {
+                cached.remove(id);
+                records.delete(id);
+                changeLog.record(id);
+            }
+            maybeCompact();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        committer.commit();
+    }
+
+    /**
+     * 增量同步，语义与 {@link FileTodoRepository#changes(String)} 相同。
+     *
+     * @param since 上次返回的令牌（可为 null）
+     * @return 变化集合
+     */
+    @Override
+    public TodoChanges changes(String since) {
+        lock.readLock().lock();
+        try {
+            List<String> ids = since == null ? null : changeLog.changedSince(since);
+            List<TodoItem> items = new ArrayList<TodoItem>();
+            List<String> deleted = new ArrayList<String>();
+            if (ids == null) {
+                for (TodoItem item : cached.all()) {
+                    items.add(item.copy());
+                }
+                items.sort(Comparator.comparing(TodoItem::getCreatedAt, Comparator.nullsLast(Comparator.naturalOrder())).reversed());
+                return new TodoChanges(items, deleted, changeLog.token(), true);
+            }
+            for (String id : ids) {
+                TodoItem item = cached.get(id);
+                if (item == null) {
+                    deleted.add(id);
+                } else {
+                    items.add(item.copy());
+                }
+            }
+            return new TodoChanges(items, deleted, changeLog.token(), false);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 已执行的落盘次数。
+     *
+     * @return 次数
+     */
+    long syncCount() {
+        return committer.flushCount();
+    }
+
+    /**
+     * 落盘尚未持久化的变更并关闭文件。
+     */
+    @PreDestroy
+    public void close() throws IOException {
+        committer.close();
+        lock.writeLock().lock();
+        try {
+            records.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 在写锁内更新内存索引并改写记录文件，同时登记到增量同步的变更日志。
+     *
+     * @param stored 新内容
+     */
+    private void stagePut(TodoItem stored) {
+        TodoItem previous = cached.put(stored);
+        records.write(previous, stored);
+        changeLog.record(stored.getId());
+        maybeCompact();
+    }
+
+    /**
+     * 溢出区垃圾超过阈值且多于有效文本时，在写锁内整体重写记录文件；耗时计入 {@code todo.file.persist{kind=compact}}。
+     */
+    private void maybeCompact() {
+        long garbage = records.garbageBytes();
+        if (garbage < compactThreshold || garbage <= records.liveTextBytes()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            records.rewrite(new ArrayList<TodoItem>(cached.all()));
+        } catch (IOException e) {
+            throw new IllegalStateException("failed to compact record file", e);
+        } finally {
+            compactTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 组提交的落盘动作：把映射区中被修改的页写回磁盘。
+     */
+    private void persist() throws IOException {
+        long start = System.nanoTime();
+        try {
+            records.sync();
+        } finally {
+            persistTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static Timer persistTimer(MeterRegistry meterRegistry, String kind) {
+        return Timer.builder("todo.file.persist")
+                .description("Time spent persisting the file store")
+                .tag("kind", kind)
+                .register(meterRegistry);
+    }
+
+    private void registerFileMeters(MeterRegistry meterRegistry) {
+        FunctionCounter.builder("todo.file.bytes.written", records, TodoRecordFile::slotBytesWritten)
+                .description("Bytes written to the file store")
+                .baseUnit("bytes")
+                .tag("file", "records")
+                .register(meterRegistry);
+        FunctionCounter.builder("todo.file.bytes.written", records, TodoRecordFile::overflowBytesWritten)
+                .description("Bytes written to the file store")
+                .baseUnit("bytes")
+                .tag("file", "overflow")
+                .register(meterRegistry);
+        Gauge.builder("todo.file.size", records, TodoRecordFile::slotFileSize)
+                .description("Current size of the file store")
+                .baseUnit("bytes")
+                .tag("file", "records")
+                .register(meterRegistry);
+        Gauge.builder("todo.file.size", records, TodoRecordFile::overflowFileSize)
+                .description("Current size of the file store")
+                .baseUnit("bytes")
+                .tag("file", "overflow")
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,224 @@
+package com.iftech.todo.storage;
+
+import com.iftech.todo.domain.TodoCategoryCount;
+import com.iftech.todo.domain.TodoChanges;
+import com.iftech.todo.domain.TodoField;
+import com.iftech.todo.domain.TodoItem;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 为存储接口的每个方法记录耗时与调用次数的装饰器。
+ *
+ * <p>指标 {@code todo.repository} 按 {@code operation}（方法名）、{@code backend}（file / mapped / sharded / jdbc / jdbc-cached）与
+ * {@code outcome}（success / not_found / conflict / error）区分；{@code todo.repository.list.rows} 记录每次列表查询返回的条数。
+ * Spring profile 由 {@code management.metrics.tags.profile} 作为公共标签加在所有指标上。
+ *
+ * <p>{@code stream} 的耗时包含调用方逐条消费（导出时即写响应）的时间。
+ */
+public class MeteredTodoRepository implements TodoRepository {
+    private static final String OUTCOME_SUCCESS = "success";
+    private static final String OUTCOME_NOT_FOUND = "not_found";
+    private static final String OUTCOME_CONFLICT = "conflict";
+    private static final String OUTCOME_ERROR = "error";
+
+    private final TodoRepository delegate;
+    private final MeterRegistry meterRegistry;
+    private final String backend;
+
+    private final Operation list = new Operation("list");
+    private final Operation listQuery = new Operation("list_query");
+    private final Operation stream = new Operation("stream");
+    private final Operation categoryCounts = new Operation("category_counts");
+    private final Operation findById = new Operation("find_by_id");
+    private final Operation findByIds = new Operation("find_by_ids");
+    private final Operation changes = new Operation("changes");
+    private final Operation create = new Operation("create");
+    private final Operation update = new Operation("update");
+    private final Operation toggle = new Operation("toggle");
+    private final Operation delete = new Operation("delete");
+    private final Operation apply = new Operation("apply");
+    private final DistributionSummary listRows;
+    private final DistributionSummary listQueryRows;
+
+    /**
+     * 构造方法。
+     *
+     * @param delegate      被装饰的存储
+     * @param meterRegistry 指标注册表
+     */
+    public MeteredTodoRepository(TodoRepository delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+        this.backend = backendOf(delegate);
+        this.listRows = rowsSummary(list.name);
+        this.listQueryRows = rowsSummary(listQuery.name);
+    }
+
+    @Override
+    public List<TodoItem> list() {
+        List<TodoItem> items = timed(list, delegate::list);
+        listRows.record(items.size());
+        return items;
+    }
+
+    @Override
+    public List<TodoItem> list(TodoQuery query) {
+        List<TodoItem> items = timed(listQuery, () -> delegate.list(query));
+        listQueryRows.record(items.size());
+        return items;
+    }
+
+    @Override
+    public void stream(TodoQuery query, Consumer<TodoItem> consumer) {
+        timed(stream, () -> {
+            delegate.stream(query, consumer);
+            return Boolean.TRUE;
+        });
+    }
+
+    @Override
+    public List<TodoCategoryCount> categoryCounts() {
+        return timed(categoryCounts, delegate::categoryCounts);
+    }
+
+    @Override
+    public TodoItem findById(String id) {
+        return timed(findById, () -> delegate.findById(id));
+    }
+
+    @Override
+    public Map<String, TodoItem> findByIds(Collection<String> ids) {
+        return timed(findByIds, () -> delegate.findByIds(ids));
+    }
+
+    @Override
+    public TodoChanges changes(String since) {
+        return timed(changes, () -> delegate.changes(since));
+    }
+
+    @Override
+    public TodoItem create(TodoItem item) {
+        return timed(create, () -> delegate.create(item));
+    }
+
+    @Override
+    public TodoItem update(TodoItem item, Set<TodoField> fields) {
+        return timed(update, () -> delegate.update(item, fields));
+    }
+
+    @Override
+    public TodoItem toggle(String id, Instant updatedAt) {
+        return timed(toggle, () -> delegate.toggle(id, updatedAt));
+    }
+
+    @Override
+    public boolean delete(String id) {
+        return timed(delete, () -> delegate.delete(id));
+    }
+
+    @Override
+    public void apply(TodoBatch batch) {
+        timed(apply, () -> {
+            delegate.apply(batch);
+            return Boolean.TRUE;
+        });
+    }
+
+    @Override
+    public boolean exclusiveWriter() {
+        return delegate.exclusiveWriter();
+    }
+
+    @Override
+    public String changeTag() {
+        return delegate.changeTag();
+    }
+
+    /**
+     * 执行并计时；返回 null 或 false 记为 not_found，版本冲突记为 conflict，其他异常记为 error。
+     */
+    private <T> T timed(Operation operation, Supplier<T> call) {
+        long start = System.nanoTime();
+        String outcome = OUTCOME_ERROR;
+        try {
+            T result = call.get();
+            outcome = result == null || Boolean.FALSE.equals(result) ? OUTCOME_NOT_FOUND : OUTCOME_SUCCESS;
+            return result;
+        } catch (TodoConflictException e) {
+            outcome = OUTCOME_CONFLICT;
+            throw e;
+        } finally {
+            operation.timer(outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private DistributionSummary rowsSummary(String operation) {
+        return DistributionSummary.builder("todo.repository.list.rows")
+                .description("Rows returned per list query")
+                .tag("operation", operation)
+                .tag("backend", backend)
+                .register(meterRegistry);
+    }
+
+    private static String backendOf(TodoRepository repository) {
+        if (repository instanceof FileTodoRepository) {
+            return "file";
+        }
+        if (repository instanceof MappedTodoRepository) {
+            return "mapped";
+        }
+        if (repository instanceof ShardedTodoRepository) {
+            return "sharded";
+        }
+        if (repository instanceof JdbcTodoRepository) {
+            return "jdbc";
+        }
+        if (repository instanceof CachingTodoRepository) {
+            return "jdbc-cached";
+        }
+        return "other";
+    }
+
+    /**
+     * 单个方法的计时器：成功的计时器首次使用后缓存在字段中（并发时重复注册得到的是同一个对象），其他结果较少出现，每次从注册表取得。
+     */
+    private final class Operation {
+        private final String name;
+        private Timer success;
+
+        Operation(String name) {
+            this.name = name;
+        }
+
+        Timer timer(String outcome) {
+            if (OUTCOME_SUCCESS.equals(outcome)) {
+                Timer timer = success;
+                if (timer == null) {
+                    timer = register(outcome);
+                    success = timer;
+                }
+                return timer;
+            }
+            return register(outcome);
+        }
+
+        private Timer register(String outcome) {
+            return Timer.builder("todo.repository")
+                    .description("TodoRepository call latency")
+                    .tag("operation", name)
+                    .tag("backend", backend)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry);
+        }
+    }
+}
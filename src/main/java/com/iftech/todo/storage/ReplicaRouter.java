@@ -0,0 +1,221 @@
+package com.iftech.todo.storage;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 只读副本的路由决策：{@link JdbcTodoRepository} 的列表、按 id 查询与分类计数在这里决定走副本还是主库。
+ *
+ * <p>以下情况读取走主库：
+ * <ul>
+ *     <li>当前客户端在 {@code todo.jdbc.replica.sticky-ms} 内写入过（读己之写）。客户端由 {@link #bind(String)} 绑定到请求线程，
+ *     未绑定的调用共用同一个匿名客户端；粘滞状态只保存在本进程内</li>
+ *     <li>副本不健康：后台线程每 {@code todo.jdbc.replica.health-check-ms} 取一次连接并校验，失败即标记为不健康；
+ *     读取副本时出现连接类异常也立即标记，并在主库上重试这次读取。下一次校验通过后恢复</li>
+ *     <li>处于事务中（事务内的读取须与写入使用同一连接）</li>
+ * </ul>
+ *
+ * <p>副本连接池由本类按 {@code todo.jdbc.replica.*} 创建，不注册为 Spring 的 {@link DataSource} Bean，
+ * 因此 {@code spring.datasource} 的自动配置（主库连接池、建表脚本、事务管理器）不受影响。
+ * 通过 {@code todo.jdbc.replica.enabled=true} 开启。
+ */
+@Profile("!file & !mapped & !sharded")
+@Component
+@ConditionalOnProperty(name = "todo.jdbc.replica.enabled", havingValue = "true")
+public class ReplicaRouter {
+    private static final String ANONYMOUS = "";
+
+    private final DataSource dataSource;
+    private final long stickyNanos;
+    private final long healthCheckMillis;
+    private final int validationTimeoutSeconds;
+    private final ThreadLocal<String> client = new ThreadLocal<String>();
+    private final ConcurrentMap<String, Long> stickyUntil = new ConcurrentHashMap<String, Long>();
+    private final ScheduledExecutorService healthThread;
+    private volatile boolean healthy;
+
+    private final Counter replicaReads;
+    private final Counter stickyReads;
+    private final Counter unhealthyReads;
+    private final Counter transactionReads;
+    private final Counter fallbackReads;
+
+    /**
+     * 构造方法，按配置创建副本连接池；健康检查在 {@link #start()} 中启动。
+     *
+     * @param url                 副本 JDBC 连接串
+     * @param username            用户名
+     * @param password            密码
+     * @param driverClassName     驱动类名，留空时按连接串推断
+     * @param stickyMillis        客户端写入后读取仍走主库的时长（毫秒），应大于副本的复制延迟；0 表示不粘滞
+     * @param healthCheckMillis   健康检查间隔（毫秒）
+     * @param meterRegistry       指标注册表
+     */
+    @Autowired
+    public ReplicaRouter(@Value("${todo.jdbc.replica.url}") String url, @Value("${todo.jdbc.replica.username:}") String username,
+            @Value("${todo.jdbc.replica.password:}") String password,
+            @Value("${todo.jdbc.replica.driver-class-name:}") String driverClassName,
+            @Value("${todo.jdbc.replica.sticky-ms:5000}") long stickyMillis,
+            @Value("${todo.jdbc.replica.health-check-ms:5000}") long healthCheckMillis, MeterRegistry meterRegistry) {
+        this(dataSource(url, username, password, driverClassName), stickyMillis, healthCheckMillis, meterRegistry);
+    }
+
+    ReplicaRouter(DataSource dataSource, long stickyMillis, long healthCheckMillis, MeterRegistry meterRegistry) {
+        this.dataSource = dataSource;
+        this.stickyNanos = TimeUnit.MILLISECONDS.toNanos(stickyMillis);
+        this.healthCheckMillis = healthCheckMillis;
+        this.validationTimeoutSeconds = (int) Math.max(1L, TimeUnit.MILLISECONDS.toSeconds(healthCheckMillis));
+        this.replicaReads = readCounter(meterRegistry, "replica");
+        this.stickyReads = readCounter(meterRegistry, "sticky");
+        this.unhealthyReads = readCounter(meterRegistry, "unhealthy");
+        this.transactionReads = readCounter(meterRegistry, "transaction");
+        this.fallbackReads = readCounter(meterRegistry, "fallback");
+        Gauge.builder("todo.jdbc.replica.healthy", this, router -> router.healthy ? 1.0 : 0.0)
+                .description("Whether reads are currently allowed on the replica")
+                .register(meterRegistry);
+        this.healthThread = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "todo-replica-health");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 启动后台健康检查。首次校验通过前读取走主库，副本不可用时应用照常启动。
+     */
+    @PostConstruct
+    public void start() {
+        healthThread.scheduleWithFixedDelay(this::checkHealth, 0L, healthCheckMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private static DataSource dataSource(String url, String username, String password, String driverClassName) {
+        DataSourceBuilder<?> builder = DataSourceBuilder.create().url(url).username(username).password(password);
+        if (!driverClassName.isEmpty()) {
+            builder.driverClassName(driverClassName);
+        }
+        return builder.build();
+    }
+
+    private static Counter readCounter(MeterRegistry meterRegistry, String route) {
+        return Counter.builder("todo.jdbc.reads")
+                .description("Routed JDBC reads by where they were served and why")
+                .tag("route", route)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 副本连接池。
+     */
+    DataSource dataSource() {
+        return dataSource;
+    }
+
+    /**
+     * 把当前线程上的读写归到一个客户端名下，请求结束时须调用 {@link #unbind()}。
+     *
+     * @param clientKey 客户端标识
+     */
+    public void bind(String clientKey) {
+        client.set(clientKey);
+    }
+
+    /**
+     * 解除 {@link #bind(String)} 的绑定。
+     */
+    public void unbind() {
+        client.remove();
+    }
+
+    /**
+     * 决定这次读取是否走副本，并按结果计数。
+     *
+     * @return true 表示走副本
+     */
+    boolean routeToReplica() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            transactionReads.increment();
+            return false;
+        }
+        if (!healthy) {
+            unhealthyReads.increment();
+            return false;
+        }
+        Long until = stickyUntil.get(clientKey());
+        if (until != null && until - System.nanoTime() > 0) {
+            stickyReads.increment();
+            return false;
+        }
+        replicaReads.increment();
+        return true;
+    }
+
+    /**
+     * 记录当前客户端刚刚写入（无论成功与否），之后 {@code sticky-ms} 内它的读取走主库。
+     */
+    void wrote() {
+        if (stickyNanos > 0) {
+            stickyUntil.put(clientKey(), System.nanoTime() + stickyNanos);
+        }
+    }
+
+    /**
+     * 副本读取出现连接类异常：立即标记为不健康，由调用方在主库上重试，等待下一次健康检查恢复。
+     */
+    void failed() {
+        healthy = false;
+        fallbackReads.increment();
+    }
+
+    boolean isHealthy() {
+        return healthy;
+    }
+
+    /**
+     * 取一次连接并校验，同时清理已过期的粘滞记录。
+     */
+    void checkHealth() {
+        boolean valid;
+        try (Connection connection = dataSource.getConnection()) {
+            valid = connection.isValid(validationTimeoutSeconds);
+        } catch (SQLException | RuntimeException e) {
+            valid = false;
+        }
+        healthy = valid;
+        long now = System.nanoTime();
+        stickyUntil.values().removeIf(until -> until - now <= 0);
+    }
+
+    private String clientKey() {
+        String key = client.get();
+        return key == null ? ANONYMOUS : key;
+    }
+
+    /**
+     * 停止健康检查并关闭副本连接池。
+     */
+    @PreDestroy
+    public void close() throws Exception {
+        healthThread.shutdownNow();
+        if (dataSource instanceof AutoCloseable) {
+            ((AutoCloseable) dataSource).close();
+        }
+    }
+}
@@ -0,0 +1,626 @@
+package com.iftech.todo.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iftech.todo.domain.TodoCategoryCount;
+import com.iftech.todo.domain.TodoChanges;
+import com.iftech.todo.domain.TodoField;
+import com.iftech.todo.domain.TodoItem;
+import com.iftech.todo.domain.TodoSort;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+/**
+ * 按 id 哈希分片的文件存储：每个分片是一个独立的 {@link FileTodoRepository}，各有自己的写锁、内存视图、日志文件与落盘线程，
+ * 写入不同分片的请求互不阻塞，并发 fsync 也分散到多个文件上，写入吞吐随分片数增长。
+ *
+ * <p>单条读写按 id 路由到所在分片；列表与导出由各分片各自过滤、排序并截取后，按请求的排序方式做 k 路归并；
+ * 分类计数为各分片计数之和。
+ *
+ * <p>跨分片的批量写入按分片号顺序同时持有涉及分片的写锁，全部校验通过后才应用。各分片的视图在发布锁的写锁内一起发布，
+ * 跨分片的读取（列表、导出、计数、增量同步）以乐观读取各分片视图、发布期间重读，因此看不到半批数据。
+ * 落盘前先把整批写入意图日志 {@code batches.log}（见 {@link TodoBatchLog}），涉及的分片都落盘后才释放写锁并标记完成；
+ * 进程在中途退出时，启动后按意图日志补齐尚未落盘的分片，整批要么全部生效、要么都不生效。
+ * 定时与写后落盘策略下写入本来就可能在崩溃时丢失，不写意图日志。
+ *
+ * <p>分片数决定数据放在哪个文件，已有数据后不能修改：启动时发现数据不在其 id 应在的分片或存在多余的分片文件即报错。
+ */
+@Profile("sharded")
+@Repository
+public class ShardedTodoRepository implements TodoRepository {
+    /**
+     * 增量同步令牌中各分片令牌之间的分隔符（分片令牌只含字母、数字与点）。
+     */
+    private static final String TOKEN_SEPARATOR = "~";
+
+    private static final Pattern SHARD_FILE = Pattern.compile("todos-(\\d+)\\.json(\\..*)?");
+
+    private final FileTodoRepository[] shards;
+
+    /**
+     * 跨分片批量写入的意图日志；定时与写后落盘策略下为 null。
+     */
+    private final TodoBatchLog batchLog;
+
+    /**
+     * 跨分片批量写入发布视图时持有写锁；跨分片的读取只做乐观读取并校验，不阻塞也不阻塞写入。
+     */
+    private final StampedLock publishing = new StampedLock();
+
+    /**
+     * 落盘失败、意图尚未标记完成的跨分片批次：批次号 → 涉及的分片号，在本对象上同步。
+     *
+     * <p>这些批次涉及的分片暂停写入（{@link FileTodoRepository#fence(String)}），直到 {@link #resolve()} 重新落盘成功并标记完成。
+     * 否则之后对同一待办的删除先于完成标记落盘时，重启补齐该批次会把已删除的待办重新建出来。
+     */
+    private final Map<Long, Collection<Integer>> unresolved = new LinkedHashMap<Long, Collection<Integer>>();
+    private volatile boolean suspended;
+
+    /**
+     * 构造方法，打开并载入全部分片。
+     *
+     * <p>分片文件放在目录 {@code todo.storage.path}（默认 {@code data/shards}）下，第 i 个分片为 {@code todos-<i>.json}
+     * （日志模式另有 {@code todos-<i>.json.log}）；分片数来自 {@code todo.storage.shards}（默认 8）。其余配置项与 file profile 相同，
+     * 对每个分片分别生效。{@code todo.file.*} 指标带 {@code shard} 标签。载入分片后补齐意图日志中未完成的跨分片批量写入。
+     *
+     * @param objectMapper      JSON 序列化工具
+     * @param storagePath       分片文件所在目录
+     * @param shardCount        分片数
+     * @param mode              写入方式
+     * @param snapshotFormat    快照格式
+     * @param compactThreshold  单个分片的日志压缩阈值（字节）
+     * @param syncPolicy        落盘策略
+     * @param groupWindowMillis 组提交的额外合并窗口（毫秒）
+     * @param intervalMillis    定时/写后落盘间隔（毫秒）
+     * @param maxDirty          写后落盘时单个分片触发立即落盘的脏 id 数
+     * @param retentionMillis   变更日志（含删除记录）的保留时间（毫秒）
+     * @param meterRegistry     指标注册表
+     * @throws IllegalStateException 分片数与已有数据不符
+     */
+    public ShardedTodoRepository(ObjectMapper objectMapper, @Value("${todo.storage.path:data/shards}") String storagePath,
+            @Value("${todo.storage.shards:8}") int shardCount,
+            @Value("${todo.storage.mode:" + FileTodoRepository.MODE_JOURNAL + "}") String mode,
+            @Value("${todo.storage.snapshot-format:" + FileTodoRepository.FORMAT_BINARY + "}") String snapshotFormat,
+            @Value("${todo.storage.journal.compact-threshold-bytes:4194304}") long compactThreshold,
+            @Value("${todo.storage.sync.policy:group}") String syncPolicy,
+            @Value("${todo.storage.sync.group-window-ms:0}") long groupWindowMillis,
+            @Value("${todo.storage.sync.interval-ms:1000}") long intervalMillis,
+            @Value("${todo.storage.sync.max-dirty:1000}") int maxDirty,
+            @Value("${todo.sync.tombstone-retention-ms:604800000}") long retentionMillis, MeterRegistry meterRegistry) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("todo.storage.shards must be positive");
+        }
+        Path dir = Paths.get(storagePath);
+        checkNoExtraShards(dir, shardCount);
+        this.shards = new FileTodoRepository[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new FileTodoRepository(objectMapper, dir.resolve("todos-" + i + ".json").toString(), mode, snapshotFormat,
+                    compactThreshold, syncPolicy, groupWindowMillis, intervalMillis, maxDirty, retentionMillis, meterRegistry,
+                    Integer.toString(i));
+        }
+        for (int i = 0; i < shardCount; i++) {
+            for (TodoItem item : shards[i].list()) {
+                int expected = shardOf(item.getId());
+                if (expected != i) {
+                    throw new IllegalStateException("todo " + item.getId() + " is stored in shard " + i + " but routes to shard " + expected
+                            + "; todo.storage.shards must not change once data exists");
+                }
+            }
+        }
+        this.batchLog = SyncPolicy.parse(syncPolicy).deferred() ? null : new TodoBatchLog(dir.resolve("batches.log"), objectMapper);
+        if (batchLog != null) {
+            for (TodoBatchLog.Pending pending : batchLog.pending()) {
+                redo(pending);
+            }
+            batchLog.clear();
+        }
+    }
+
+    /**
+     * 按创建时间倒序归并各分片的列表。
+     *
+     * @return 待办列表（对象与存储共享）
+     */
+    @Override
+    public List<TodoItem> list() {
+        List<List<TodoItem>> parts = consistent(() -> {
+            List<List<TodoItem>> lists = new ArrayList<List<TodoItem>>(shards.length);
+            for (FileTodoRepository shard : shards) {
+                lists.add(shard.list());
+            }
+            return lists;
+        });
+        int size = 0;
+        for (List<TodoItem> part : parts) {
+            size += part.size();
+        }
+        List<TodoItem> items = new ArrayList<TodoItem>(size);
+        merge(parts, TodoSort.CREATED_AT_DESC.comparator()).forEachRemaining(items::add);
+        return items;
+    }
+
+    /**
+     * 各分片按同一查询条件各自取至多 limit 条，再按排序方式归并并截取前 limit 条。
+     *
+     * @param query 查询条件
+     * @return 待办列表（对象与存储共享）
+     */
+    @Override
+    public List<TodoItem> list(TodoQuery query) {
+        List<TodoItem> items = new ArrayList<TodoItem>();
+        stream(query, items::add);
+        return items;
+    }
+
+    @Override
+    public void stream(TodoQuery query, Consumer<TodoItem> consumer) {
+        List<List<TodoItem>> parts = consistent(() -> {
+            List<List<TodoItem>> lists = new ArrayList<List<TodoItem>>(shards.length);
+            for (FileTodoRepository shard : shards) {
+                lists.add(shard.list(query));
+            }
+            return lists;
+        });
+        Iterator<TodoItem> merged = merge(parts, query.getSort().comparator());
+        int limit = query.getLimit() == null ? Integer.MAX_VALUE : query.getLimit();
+        for (int i = 0; i < limit && merged.hasNext(); i++) {
+            consumer.accept(merged.next());
+        }
+    }
+
+    /**
+     * 合并各分片的分类计数。
+     *
+     * @return 分类计数（按分类名排序）
+     */
+    @Override
+    public List<TodoCategoryCount> categoryCounts() {
+        List<List<TodoCategoryCount>> parts = consistent(() -> {
+            List<List<TodoCategoryCount>> lists = new ArrayList<List<TodoCategoryCount>>(shards.length);
+            for (FileTodoRepository shard : shards) {
+                lists.add(shard.categoryCounts());
+            }
+            return lists;
+        });
+        TreeMap<String, long[]> totals = new TreeMap<String, long[]>();
+        for (List<TodoCategoryCount> part : parts) {
+            for (TodoCategoryCount count : part) {
+                long[] total = totals.computeIfAbsent(count.getCategory(), key -> new long[2]);
+                total[0] += count.getOpen();
+                total[1] += count.getCompleted();
+            }
+        }
+        List<TodoCategoryCount> counts = new ArrayList<TodoCategoryCount>(totals.size());
+        for (Map.Entry<String, long[]> entry : totals.entrySet()) {
+            counts.add(new TodoCategoryCount(entry.getKey(), entry.getValue()[0], entry.getValue()[1]));
+        }
+        return counts;
+    }
+
+    @Override
+    public TodoItem findById(String id) {
+        return shardFor(id).findById(id);
+    }
+
+    /**
+     * 按分片分组后各查一次，结果按传入 id 的顺序排列。
+     *
+     * @param ids 待办 id
+     * @return id 到对象副本的映射
+     */
+    @Override
+    public Map<String, TodoItem> findByIds(Collection<String> ids) {
+        Map<Integer, List<String>> byShard = new TreeMap<Integer, List<String>>();
+        for (String id : ids) {
+            byShard.computeIfAbsent(shardOf(id), key -> new ArrayList<String>()).add(id);
+        }
+        Map<String, TodoItem> found = consistent(() -> {
+            Map<String, TodoItem> merged = new LinkedHashMap<String, TodoItem>();
+            for (Map.Entry<Integer, List<String>> entry : byShard.entrySet()) {
+                merged.putAll(shards[entry.getKey()].findByIds(entry.getValue()));
+            }
+            return merged;
+        });
+        Map<String, TodoItem> ordered = new LinkedHashMap<String, TodoItem>();
+        for (String id : ids) {
+            TodoItem item = found.get(id);
+            if (item != null) {
+                ordered.put(id, item);
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * 增量同步：令牌由各分片的令牌按分片号顺序拼接而成。任一分片需要全量时整体返回全量；
+     * 分片数与令牌不符（例如来自未分片的部署）时视为无法识别来源，返回全量。
+     *
+     * @param since 上次返回的令牌（可为 null）
+     * @return 变化集合
+     */
+    @Override
+    public TodoChanges changes(String since) {
+        return consistent(() -> changesOf(since));
+    }
+
+    private TodoChanges changesOf(String since) {
+        String[] tokens = since == null ? null : since.split(Pattern.quote(TOKEN_SEPARATOR), -1);
+        if (tokens != null && tokens.length == shards.length) {
+            List<TodoChanges> parts = new ArrayList<TodoChanges>(shards.length);
+            boolean full = false;
+            for (int i = 0; i < shards.length && !full; i++) {
+                TodoChanges part = shards[i].changes(tokens[i]);
+                parts.add(part);
+                full = part.isFull();
+            }
+            if (!full) {
+                return combine(parts, false);
+            }
+        }
+        List<TodoChanges> parts = new ArrayList<TodoChanges>(shards.length);
+        for (FileTodoRepository shard : shards) {
+            parts.add(shard.changes(null));
+        }
+        return combine(parts, true);
+    }
+
+    @Override
+    public TodoItem create(TodoItem item) {
+        resolve();
+        return shardFor(item.getId()).create(item);
+    }
+
+    @Override
+    public TodoItem update(TodoItem item, Set<TodoField> fields) {
+        resolve();
+        return shardFor(item.getId()).update(item, fields);
+    }
+
+    @Override
+    public TodoItem toggle(String id, Instant updatedAt) {
+        resolve();
+        return shardFor(id).toggle(id, updatedAt);
+    }
+
+    @Override
+    public boolean delete(String id) {
+        resolve();
+        return shardFor(id).delete(id);
+    }
+
+    /**
+     * 按分片拆分整批变更；只涉及一个分片时直接交给该分片。
+     *
+     * <p>涉及多个分片时按分片号从小到大取得写锁（单条写入只取一把锁，因此不会死锁），全部校验通过后先写入意图日志，
+     * 再在发布锁内逐个分片应用并发布，然后逐个分片落盘、标记意图完成，最后才释放写锁：
+     * 这些分片上之后的写入都排在整批持久化之后，启动时补齐未完成的批次不会覆盖它们。
+     * 某个分片落盘失败时调用方收到异常，整批已在内存中生效，意图留在日志中；释放写锁之前暂停涉及分片的写入，
+     * 之后的写入先由 {@link #resolve()} 重新落盘并标记意图完成，成功后才恢复，否则同样收到异常。
+     *
+     * @param batch 变更集合
+     * @throws TodoConflictException 待更新的数据版本号已变或待删除的数据已不存在，整批不生效
+     * @throws IllegalStateException 落盘失败，或之前失败的批次仍未能落盘
+     */
+    @Override
+    public void apply(TodoBatch batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        TreeMap<Integer, TodoBatch> byShard = new TreeMap<Integer, TodoBatch>();
+        for (TodoItem item : batch.getCreates()) {
+            byShard.computeIfAbsent(shardOf(item.getId()), key -> new TodoBatch()).create(item);
+        }
+        for (TodoItem item : batch.getUpdates()) {
+            byShard.computeIfAbsent(shardOf(item.getId()), key -> new TodoBatch()).update(item, batch.expectedVersion(item.getId()));
+        }
+        for (String id : batch.getDeletes()) {
+            byShard.computeIfAbsent(shardOf(id), key -> new TodoBatch()).delete(id);
+        }
+        resolve();
+        if (byShard.size() == 1) {
+            shards[byShard.firstKey()].apply(byShard.firstEntry().getValue());
+            return;
+        }
+        List<Integer> locked = new ArrayList<Integer>(byShard.size());
+        try {
+            for (Integer index : byShard.keySet()) {
+                shards[index].writeLock().lock();
+                locked.add(index);
+            }
+            for (Map.Entry<Integer, TodoBatch> entry : byShard.entrySet()) {
+                shards[entry.getKey()].check(entry.getValue());
+            }
+            long intent = 0L;
+            if (batchLog != null) {
+                List<TodoItem> puts = new ArrayList<TodoItem>(batch.getCreates());
+                puts.addAll(batch.getUpdates());
+                intent = batchLog.begin(puts, batch.getDeletes());
+            }
+            long stamp = publishing.writeLock();
+            try {
+                for (Map.Entry<Integer, TodoBatch> entry : byShard.entrySet()) {
+                    shards[entry.getKey()].stage(entry.getValue());
+                }
+            } finally {
+                publishing.unlockWrite(stamp);
+            }
+            try {
+                for (Integer index : byShard.keySet()) {
+                    shards[index].commit();
+                }
+            } catch (RuntimeException e) {
+                if (batchLog != null) {
+                    suspend(intent, byShard.keySet());
+                }
+                throw e;
+            }
+            if (batchLog != null) {
+                batchLog.end(intent);
+            }
+        } finally {
+            for (int i = locked.size() - 1; i >= 0; i--) {
+                shards[locked.get(i)].writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * 登记落盘失败的批次并暂停涉及分片的写入；调用方持有这些分片的写锁，释放之前不会有其他写入排到批次之后。
+     */
+    private synchronized void suspend(long intent, Collection<Integer> involved) {
+        for (Integer index : involved) {
+            shards[index].fence("cross-shard batch " + intent + " is not yet durable");
+        }
+        unresolved.put(intent, new ArrayList<Integer>(involved));
+        suspended = true;
+    }
+
+    /**
+     * 重新落盘之前失败的跨分片批次涉及的分片（之前暂存的变更由这次落盘一并持久化）、标记意图完成，并恢复不再涉及未完成批次的分片的写入。
+     *
+     * <p>没有未完成的批次时只读一次 volatile 字段；与批次失败并发时可能漏过，此时由分片自身的暂停拒绝写入。
+     *
+     * @throws IllegalStateException 仍然落盘失败，分片保持暂停
+     */
+    private void resolve() {
+        if (suspended) {
+            resolveSuspended();
+        }
+    }
+
+    private synchronized void resolveSuspended() {
+        Set<Integer> resumed = new HashSet<Integer>();
+        Iterator<Map.Entry<Long, Collection<Integer>>> it = unresolved.entrySet().iterator();
+        try {
+            while (it.hasNext()) {
+                Map.Entry<Long, Collection<Integer>> entry = it.next();
+                for (Integer index : entry.getValue()) {
+                    shards[index].commit();
+                }
+                batchLog.end(entry.getKey());
+                resumed.addAll(entry.getValue());
+                it.remove();
+            }
+        } finally {
+            for (Collection<Integer> involved : unresolved.values()) {
+                resumed.removeAll(involved);
+            }
+            for (Integer index : resumed) {
+                shards[index].unfence();
+            }
+            suspended = !unresolved.isEmpty();
+        }
+    }
+
+    /**
+     * 补齐意图日志中未完成的批次：按存储中的现状只写入还没落盘的部分——不存在的对象新建，版本号较旧的更新，
+     * 仍存在的删除；已是该版本或更新版本的对象保持不变。
+     *
+     * @param pending 未完成的批次
+     */
+    private void redo(TodoBatchLog.Pending pending) {
+        TreeMap<Integer, TodoBatch> byShard = new TreeMap<Integer, TodoBatch>();
+        for (TodoItem item : pending.getPuts()) {
+            TodoItem current = findById(item.getId());
+            if (current == null) {
+                byShard.computeIfAbsent(shardOf(item.getId()), key -> new TodoBatch()).create(item);
+            } else if (current.getVersion() < item.getVersion()) {
+                byShard.computeIfAbsent(shardOf(item.getId()), key -> new TodoBatch()).update(item, current.getVersion());
+            }
+        }
+        for (String id : pending.getDeletes()) {
+            if (findById(id) != null) {
+                byShard.computeIfAbsent(shardOf(id), key -> new TodoBatch()).delete(id);
+            }
+        }
+        for (Map.Entry<Integer, TodoBatch> entry : byShard.entrySet()) {
+            shards[entry.getKey()].apply(entry.getValue());
+        }
+    }
+
+    /**
+     * 以乐观读取执行一次跨分片读取；期间有跨分片批量写入发布视图时重读，保证结果不含半批数据。
+     *
+     * @param read 读取各分片并汇总的动作（无副作用，可能执行多次）
+     * @return 汇总结果
+     */
+    private <T> T consistent(Supplier<T> read) {
+        while (true) {
+            long stamp = publishing.tryOptimisticRead();
+            if (stamp != 0L) {
+                T value = read.get();
+                if (publishing.validate(stamp)) {
+                    return value;
+                }
+            }
+            Thread.yield();
+        }
+    }
+
+    /**
+     * 全部分片已执行的落盘（fsync）次数之和。
+     *
+     * @return 次数
+     */
+    long syncCount() {
+        long count = 0L;
+        for (FileTodoRepository shard : shards) {
+            count += shard.syncCount();
+        }
+        return count;
+    }
+
+    /**
+     * 落盘尚未持久化的变更并关闭全部分片；全部分片都成功落盘时清空意图日志。
+     */
+    @PreDestroy
+    public void close() throws IOException {
+        IOException failure = null;
+        for (FileTodoRepository shard : shards) {
+            try {
+                shard.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (batchLog != null) {
+            try {
+                if (failure == null) {
+                    batchLog.clear();
+                }
+            } finally {
+                batchLog.close();
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    int shardCount() {
+        return shards.length;
+    }
+
+    /**
+     * id 所在的分片号。
+     *
+     * @param id 待办 id
+     * @return 分片号
+     */
+    int shardOf(String id) {
+        int h = id.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), shards.length);
+    }
+
+    private FileTodoRepository shardFor(String id) {
+        return shards[shardOf(id)];
+    }
+
+    private TodoChanges combine(List<TodoChanges> parts, boolean full) {
+        List<TodoItem> items = new ArrayList<TodoItem>();
+        List<String> deleted = new ArrayList<String>();
+        StringBuilder token = new StringBuilder();
+        for (TodoChanges part : parts) {
+            items.addAll(part.getItems());
+            deleted.addAll(part.getDeleted());
+            if (token.length() > 0) {
+                token.append(TOKEN_SEPARATOR);
+            }
+            token.append(part.getToken());
+        }
+        return new TodoChanges(items, deleted, token.toString(), full);
+    }
+
+    /**
+     * 分片数减少后，编号超出范围的分片文件中的数据不会再被读到，启动时报错而不是静默丢弃。
+     */
+    private static void checkNoExtraShards(Path dir, int shardCount) {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            Iterator<Path> it = files.iterator();
+            while (it.hasNext()) {
+                Matcher matcher = SHARD_FILE.matcher(it.next().getFileName().toString());
+                if (matcher.matches() && Integer.parseInt(matcher.group(1)) >= shardCount) {
+                    throw new IllegalStateException("found data for shard " + matcher.group(1) + " in " + dir + " but todo.storage.shards is "
+                            + shardCount + "; todo.storage.shards must not change once data exists");
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("failed to list shard directory " + dir, e);
+        }
+    }
+
+    /**
+     * k 路归并：各个输入已按比较器排好序，用小顶堆每次取出最小的表头。
+     *
+     * @param parts      有序的输入
+     * @param comparator 比较器
+     * @return 按比较器顺序遍历全部输入的迭代器
+     */
+    static <T> Iterator<T> merge(List<? extends List<T>> parts, Comparator<? super T> comparator) {
+        PriorityQueue<Head<T>> heads = new PriorityQueue<Head<T>>(Math.max(1, parts.size()),
+                (a, b) -> comparator.compare(a.value, b.value));
+        for (List<T> part : parts) {
+            Iterator<T> it = part.iterator();
+            if (it.hasNext()) {
+                heads.add(new Head<T>(it.next(), it));
+            }
+        }
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                Head<T> head = heads.poll();
+                if (head == null) {
+                    throw new NoSuchElementException();
+                }
+                T value = head.value;
+                if (head.rest.hasNext()) {
+                    heads.add(new Head<T>(head.rest.next(), head.rest));
+                }
+                return value;
+            }
+        };
+    }
+
+    private static final class Head<T> {
+        final T value;
+        final Iterator<T> rest;
+
+        Head(T value, Iterator<T> rest) {
+            this.value = value;
+            this.rest = rest;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.iftech.todo.storage;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 不可变的有序集合（持久化 treap），供 {@link TodoView} 按创建时间倒序保存全部待办。
+ *
+ * <p>节点按比较器有序、按随机优先级成堆，期望深度 O(log n)。{@link #plus} 与 {@link #minus} 只复制从根到目标的路径，
+ * 其余子树由新旧两棵树共享；节点记录子树大小，{@link #asList()} 因而可以 O(log n) 按下标访问、O(1) 取得大小而不复制数据。
+ * 比较器必须是全序的（不同元素不相等）。
+ *
+ * @param <T> 元素类型
+ */
+final class SortedTreap<T> {
+    private final Comparator<? super T> comparator;
+    private final Node<T> root;
+
+    SortedTreap(Comparator<? super T> comparator) {
+        this(comparator, null);
+    }
+
+    private SortedTreap(Comparator<? super T> comparator, Node<T> root) {
+        this.comparator = comparator;
+        this.root = root;
+    }
+
+    /**
+     * 由已按比较器排好序的元素一次性构建平衡的树，耗时 O(n)。
+     *
+     * @param comparator 比较器
+     * @param sorted     有序且互不相等的元素
+     * @return 新树
+     */
+    static <T> SortedTreap<T> ofSorted(Comparator<? super T> comparator, List<T> sorted) {
+        return new SortedTreap<T>(comparator, build(sorted, 0, sorted.size(), 0));
+    }
+
+    int size() {
+        return sizeOf(root);
+    }
+
+    /**
+     * 返回加入一个元素之后的树；元素已存在（比较结果为 0）时替换。
+     *
+     * @param value 元素
+     * @return 新树
+     */
+    SortedTreap<T> plus(T value) {
+        return new SortedTreap<T>(comparator, insert(minus(root, value), value, ThreadLocalRandom.current().nextInt()));
+    }
+
+    /**
+     * 返回删除一个元素之后的树；不存在时返回本树。
+     *
+     * @param value 元素（按比较器定位）
+     * @return 新树
+     */
+    SortedTreap<T> minus(T value) {
+        Node<T> next = minus(root, value);
+        return next == root ? this : new SortedTreap<T>(comparator, next);
+    }
+
+    /**
+     * 按顺序只读访问全部元素的列表视图，不复制数据。
+     *
+     * @return 只读列表
+     */
+    List<T> asList() {
+        return new ListView();
+    }
+
+    /**
+     * 从严格排在 {@code after} 之后的第一个元素开始按顺序遍历；{@code after} 为 null 时从头开始。
+     *
+     * @param after 起点（不含）
+     * @return 迭代器
+     */
+    Iterator<T> iterator(T after) {
+        Deque<Node<T>> stack = new ArrayDeque<Node<T>>();
+        Node<T> node = root;
+        while (node != null) {
+            if (after == null || comparator.compare(node.value, after) > 0) {
+                stack.push(node);
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        return new InOrder<T>(stack);
+    }
+
+    private Node<T> insert(Node<T> node, T value, int priority) {
+        if (node == null) {
+            return new Node<T>(value, priority, null, null);
+        }
+        if (priority > node.priority) {
+            Node<T> left = splitLeft(node, value);
+            Node<T> right = splitRight(node, value);
+            return new Node<T>(value, priority, left, right);
+        }
+        if (comparator.compare(value, node.value) < 0) {
+            return node.with(insert(node.left, value, priority), node.right);
+        }
+        return node.with(node.left, insert(node.right, value, priority));
+    }
+
+    /**
+     * 子树中小于 value 的部分。
+     */
+    private Node<T> splitLeft(Node<T> node, T value) {
+        if (node == null) {
+            return null;
+        }
+        if (comparator.compare(node.value, value) < 0) {
+            return node.with(node.left, splitLeft(node.right, value));
+        }
+        return splitLeft(node.left, value);
+    }
+
+    /**
+     * 子树中大于 value 的部分。
+     */
+    private Node<T> splitRight(Node<T> node, T value) {
+        if (node == null) {
+            return null;
+        }
+        if (comparator.compare(node.value, value) > 0) {
+            return node.with(splitRight(node.left, value), node.right);
+        }
+        return splitRight(node.right, value);
+    }
+
+    private Node<T> minus(Node<T> node, T value) {
+        if (node == null) {
+            return null;
+        }
+        int c = comparator.compare(value, node.value);
+        if (c < 0) {
+            Node<T> left = minus(node.left, value);
+            return left == node.left ? node : node.with(left, node.right);
+        }
+        if (c > 0) {
+            Node<T> right = minus(node.right, value);
+            return right == node.right ? node : node.with(node.left, right);
+        }
+        return merge(node.left, node.right);
+    }
+
+    /**
+     * 合并两棵树（left 中的元素都小于 right 中的元素）。
+     */
+    private static <T> Node<T> merge(Node<T> left, Node<T> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            return left.with(left.left, merge(left.right, right));
+        }
+        return right.with(merge(left, right.left), right.right);
+    }
+
+    /**
+     * 中间元素为根递归构建；优先级随深度递减，满足堆序，之后随机优先级的插入几乎总是落在叶子附近。
+     */
+    private static <T> Node<T> build(List<T> sorted, int from, int to, int depth) {
+        if (from >= to) {
+            return null;
+        }
+        int middle = (from + to) >>> 1;
+        return new Node<T>(sorted.get(middle), Integer.MAX_VALUE - depth, build(sorted, from, middle, depth + 1),
+                build(sorted, middle + 1, to, depth + 1));
+    }
+
+    private static int sizeOf(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static final class Node<T> {
+        final T value;
+        final int priority;
+        final Node<T> left;
+        final Node<T> right;
+        final int size;
+
+        Node(T value, int priority, Node<T> left, Node<T> right) {
+            this.value = value;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            this.size = 1 + sizeOf(left) + sizeOf(right);
+        }
+
+        Node<T> with(Node<T> newLeft, Node<T> newRight) {
+            return new Node<T>(value, priority, newLeft, newRight);
+        }
+    }
+
+    private static final class InOrder<T> implements Iterator<T> {
+        private final Deque<Node<T>> stack;
+
+        InOrder(Deque<Node<T>> stack) {
+            this.stack = stack;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !stack.isEmpty();
+        }
+
+        @Override
+        public T next() {
+            if (stack.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            Node<T> node = stack.pop();
+            for (Node<T> child = node.right; child != null; child = child.left) {
+                stack.push(child);
+            }
+            return node.value;
+        }
+    }
+
+    private final class ListView extends AbstractList<T> {
+        @Override
+        public T get(int index) {
+            if (index < 0 || index >= sizeOf(root)) {
+                throw new IndexOutOfBoundsException("index " + index + ", size " + sizeOf(root));
+            }
+            Node<T> node = root;
+            while (true) {
+                int leftSize = sizeOf(node.left);
+                if (index < leftSize) {
+                    node = node.left;
+                } else if (index == leftSize) {
+                    return node.value;
+                } else {
+                    index -= leftSize + 1;
+                    node = node.right;
+                }
+            }
+        }
+
+        @Override
+        public int size() {
+            return sizeOf(root);
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return SortedTreap.this.iterator(null);
+        }
+    }
+}
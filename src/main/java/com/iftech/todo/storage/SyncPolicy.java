@@ -0,0 +1,55 @@
+package com.iftech.todo.storage;
+
+import java.util.Locale;
+
+/**
+ * 文件存储的落盘（fsync）策略。
+ */
+public enum SyncPolicy {
+    /**
+     * 每次写入各自落盘并 fsync，返回时数据已持久化。
+     */
+    PER_WRITE,
+
+    /**
+     * 组提交：短时间窗口内到达的写入合并为一次写入 + 一次 fsync，所有调用方在该批持久化后才返回。
+     */
+    GROUP,
+
+    /**
+     * 定时落盘：写入后立即返回，由后台按固定间隔统一 fsync；进程崩溃时可能丢失最近一个间隔内的写入。
+     */
+    INTERVAL,
+
+    /**
+     * 写后落盘：写入只更新内存并登记脏 id 后立即返回，请求线程上不做序列化与磁盘 I/O；后台按间隔或脏 id 数达到阈值时
+     * 把每个脏 id 的最新状态合并写出一次并 fsync，正常停机时最后落盘。进程崩溃时可能丢失尚未写出的变更。
+     */
+    WRITE_BEHIND;
+
+    /**
+     * 写入返回时是否可能尚未持久化（由后台按间隔落盘）。
+     *
+     * @return true 表示 {@link #INTERVAL} 或 {@link #WRITE_BEHIND}
+     */
+    boolean deferred() {
+        return this == INTERVAL || this == WRITE_BEHIND;
+    }
+
+    /**
+     * 解析配置值（{@code per-write} / {@code group} / {@code interval} / {@code write-behind}，不区分大小写）。
+     *
+     * @param raw 配置值
+     * @return 策略
+     * @throws IllegalArgumentException 配置值非法
+     */
+    public static SyncPolicy parse(String raw) {
+        String normalized = raw == null ? "" : raw.trim().toUpperCase(Locale.ROOT).replace('-', '_');
+        for (SyncPolicy policy : values()) {
+            if (policy.name().equals(normalized)) {
+                return policy;
+            }
+        }
+        throw new IllegalArgumentException("todo.storage.sync.policy must be per-write, group, interval or write-behind");
+    }
+}
@@ -0,0 +1,159 @@
+package com.iftech.todo.storage;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 记录等待与持有时间的读写锁，用于观察文件存储的锁竞争。
+ *
+ * <p>指标：{@code todo.file.lock.wait}（从调用 lock 到拿到锁）与 {@code todo.file.lock.hold}（从拿到锁到最外层 unlock），
+ * 均按 {@code mode=read|write} 区分。重入时只统计最外层的一次。
+ */
+final class TimedReadWriteLock {
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TimedLock readLock;
+    private final TimedLock writeLock;
+
+    /**
+     * 构造方法。
+     *
+     * @param meterRegistry 指标注册表
+     * @param tags          附加在指标上的标签（例如分片号）
+     */
+    TimedReadWriteLock(MeterRegistry meterRegistry, Tags tags) {
+        this.readLock = new ReadLock(meterRegistry, tags);
+        this.writeLock = new WriteLock(meterRegistry, tags);
+    }
+
+    TimedLock readLock() {
+        return readLock;
+    }
+
+    TimedLock writeLock() {
+        return writeLock;
+    }
+
+    /**
+     * 与 {@link java.util.concurrent.locks.Lock} 相同的加锁/解锁语义，只保留文件存储用到的两个方法。
+     */
+    abstract static class TimedLock {
+        private final Timer waitTimer;
+        private final Timer holdTimer;
+
+        TimedLock(MeterRegistry meterRegistry, Tags tags, String mode) {
+            this.waitTimer = Timer.builder("todo.file.lock.wait")
+                    .description("Time spent waiting to acquire the file store lock")
+                    .tags(tags)
+                    .tag("mode", mode)
+                    .register(meterRegistry);
+            this.holdTimer = Timer.builder("todo.file.lock.hold")
+                    .description("Time the file store lock was held")
+                    .tags(tags)
+                    .tag("mode", mode)
+                    .register(meterRegistry);
+        }
+
+        void lock() {
+            long start = System.nanoTime();
+            acquire();
+            long acquired = System.nanoTime();
+            if (holdCount() == 1) {
+                waitTimer.record(acquired - start, TimeUnit.NANOSECONDS);
+                markAcquired(acquired);
+            }
+        }
+
+        void unlock() {
+            long acquired = holdCount() == 1 ? acquiredAt() : -1L;
+            release();
+            if (acquired >= 0) {
+                holdTimer.record(System.nanoTime() - acquired, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        abstract void acquire();
+
+        abstract void release();
+
+        abstract int holdCount();
+
+        abstract void markAcquired(long nanos);
+
+        abstract long acquiredAt();
+    }
+
+    private final class ReadLock extends TimedLock {
+        /**
+         * 读锁可以被多个线程同时持有，拿到锁的时刻按线程记录。
+         */
+        private final ThreadLocal<long[]> acquiredAt = ThreadLocal.withInitial(() -> new long[1]);
+
+        ReadLock(MeterRegistry meterRegistry, Tags tags) {
+            super(meterRegistry, tags, "read");
+        }
+
+        @Override
+        void acquire() {
+            lock.readLock().lock();
+        }
+
+        @Override
+        void release() {
+            lock.readLock().unlock();
+        }
+
+        @Override
+        int holdCount() {
+            return lock.getReadHoldCount();
+        }
+
+        @Override
+        void markAcquired(long nanos) {
+            acquiredAt.get()[0] = nanos;
+        }
+
+        @Override
+        long acquiredAt() {
+            return acquiredAt.get()[0];
+        }
+    }
+
+    private final class WriteLock extends TimedLock {
+        /**
+         * 只由持有写锁的线程读写，锁本身保证了可见性。
+         */
+        private long acquiredAt;
+
+        WriteLock(MeterRegistry meterRegistry, Tags tags) {
+            super(meterRegistry, tags, "write");
+        }
+
+        @Override
+        void acquire() {
+            lock.writeLock().lock();
+        }
+
+        @Override
+        void release() {
+            lock.writeLock().unlock();
+        }
+
+        @Override
+        int holdCount() {
+            return lock.getWriteHoldCount();
+        }
+
+        @Override
+        void markAcquired(long nanos) {
+            acquiredAt = nanos;
+        }
+
+        @Override
+        long acquiredAt() {
+            return acquiredAt;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.iftech.todo.storage;
+
+import com.iftech.todo.domain.TodoItem;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一组需要在同一事务中写入的变更。
+ *
+ * <p>由服务层在内存中依次执行批量操作后得到，每个 id 只保留最终状态：批内新建的只出现在 {@link #getCreates()}，
+ * 已存在且被修改的只出现在 {@link #getUpdates()}，已存在且被删除的只出现在 {@link #getDeletes()}，
+ * 因此三组之间没有先后依赖，存储层可以各自成批写入。
+ *
+ * <p>更新项按版本号条件写入：{@link #getUpdates()} 中对象的版本号已经是写入后的新版本，
+ * {@link #expectedVersion(String)} 给出写入前应当看到的版本。
+ */
+public class TodoBatch {
+    private final List<TodoItem> creates = new ArrayList<TodoItem>();
+    private final List<TodoItem> updates = new ArrayList<TodoItem>();
+    private final List<String> deletes = new ArrayList<String>();
+    private final Map<String, Long> expectedVersions = new HashMap<String, Long>();
+
+    public void create(TodoItem item) {
+        creates.add(item);
+    }
+
+    /**
+     * 加入一条按版本号条件的更新。
+     *
+     * @param item            更新后的对象（版本号为新版本）
+     * @param expectedVersion 存储中应当仍为的旧版本号
+     */
+    public void update(TodoItem item, long expectedVersion) {
+        updates.add(item);
+        expectedVersions.put(item.getId(), expectedVersion);
+    }
+
+    public void delete(String id) {
+        deletes.add(id);
+    }
+
+    public List<TodoItem> getCreates() {
+        return Collections.unmodifiableList(creates);
+    }
+
+    public List<TodoItem> getUpdates() {
+        return Collections.unmodifiableList(updates);
+    }
+
+    public long expectedVersion(String id) {
+        return expectedVersions.get(id);
+    }
+
+    public List<String> getDeletes() {
+        return Collections.unmodifiableList(deletes);
+    }
+
+    public boolean isEmpty() {
+        return creates.isEmpty() && updates.isEmpty() && deletes.isEmpty();
+    }
+}
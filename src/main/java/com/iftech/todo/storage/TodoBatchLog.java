@@ -0,0 +1,235 @@
+package com.iftech.todo.storage;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.iftech.todo.domain.TodoItem;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 分片存储中跨分片批量写入的意图日志。
+ *
+ * <p>各分片落盘之前，先把整批的最终状态追加为一行 {@code {"batch":n,"puts":[...],"deletes":[...]}} 并 fsync；
+ * 涉及的分片都落盘后再追加 {@code {"done":n}}，此时已没有未完成的批次则直接把文件截空。
+ * 启动时 {@link #pending()} 给出只有开始记录、没有完成标记的批次，由分片存储补齐尚未落盘的分片。
+ *
+ * <p>开始记录在任何分片应用之前落盘，因此最后一个换行符之后的残缺内容只说明该批次没有生效，忽略即可；
+ * 以换行符结尾的完整记录无法解析时抛出异常拒绝启动。公开方法均在本对象上同步。
+ */
+final class TodoBatchLog implements Closeable {
+    private final Path path;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 已写入开始记录、尚未写入完成标记的批次号。
+     */
+    private final Set<Long> open = new HashSet<Long>();
+
+    private FileChannel channel;
+    private long sequence;
+
+    /**
+     * 构造方法。
+     *
+     * @param path         日志文件路径
+     * @param objectMapper JSON 序列化工具
+     */
+    TodoBatchLog(Path path, ObjectMapper objectMapper) {
+        this.path = path;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 读出没有完成标记的批次，按写入顺序排列。
+     *
+     * @return 未完成的批次
+     * @throws IllegalStateException 读取失败或有无法解析的完整记录
+     */
+    synchronized List<Pending> pending() {
+        if (!Files.exists(path)) {
+            return new ArrayList<Pending>();
+        }
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(path);
+        } catch (IOException e) {
+            throw new IllegalStateException("failed to read batch log " + path, e);
+        }
+        Map<Long, Pending> pending = new LinkedHashMap<Long, Pending>();
+        int start = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != '\n') {
+                continue;
+            }
+            String line = new String(bytes, start, i - start, StandardCharsets.UTF_8);
+            if (!line.trim().isEmpty()) {
+                read(line, start, pending);
+            }
+            start = i + 1;
+        }
+        return new ArrayList<Pending>(pending.values());
+    }
+
+    /**
+     * 追加一个批次的开始记录并 fsync；返回之后才能把该批次应用到任何分片。
+     *
+     * @param puts    新增与更新后的完整对象
+     * @param deletes 被删除的待办 id
+     * @return 批次号，交给 {@link #end(long)}
+     * @throws IllegalStateException 写入或 fsync 失败，批次不应生效
+     */
+    synchronized long begin(Collection<TodoItem> puts, Collection<String> deletes) {
+        long batch = ++sequence;
+        ObjectNode record = objectMapper.createObjectNode();
+        record.put("batch", batch);
+        ArrayNode items = record.putArray("puts");
+        for (TodoItem item : puts) {
+            items.add(objectMapper.<JsonNode>valueToTree(item));
+        }
+        ArrayNode ids = record.putArray("deletes");
+        for (String id : deletes) {
+            ids.add(id);
+        }
+        write(record);
+        open.add(batch);
+        return batch;
+    }
+
+    /**
+     * 涉及的分片都已落盘后标记批次完成：没有其他未完成的批次时把文件截空，否则追加完成标记。
+     *
+     * @param batch {@link #begin(Collection, Collection)} 返回的批次号
+     * @throws IllegalStateException 写入失败；批次留在日志中，下次启动时按版本号补齐，结果不变
+     */
+    synchronized void end(long batch) {
+        open.remove(batch);
+        if (open.isEmpty()) {
+            clear();
+            return;
+        }
+        ObjectNode record = objectMapper.createObjectNode();
+        record.put("done", batch);
+        write(record);
+    }
+
+    /**
+     * 把日志截空：启动时补齐未完成的批次之后，以及正常停机时各分片都已落盘之后调用。
+     *
+     * @throws IllegalStateException 截断失败
+     */
+    synchronized void clear() {
+        open.clear();
+        try {
+            if (channel == null && (!Files.exists(path) || Files.size(path) == 0L)) {
+                return;
+            }
+            FileChannel out = open();
+            out.truncate(0L);
+            out.force(true);
+        } catch (IOException e) {
+            throw new IllegalStateException("failed to truncate batch log " + path, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void write(ObjectNode record) {
+        long before = -1L;
+        try {
+            FileChannel out = open();
+            before = out.size();
+            byte[] line = objectMapper.writeValueAsBytes(record);
+            ByteBuffer bytes = ByteBuffer.allocate(line.length + 1);
+            bytes.put(line).put((byte) '\n').flip();
+            while (bytes.hasRemaining()) {
+                out.write(bytes);
+            }
+            out.force(false);
+        } catch (IOException e) {
+            if (before >= 0L) {
+                try {
+                    channel.truncate(before);
+                } catch (IOException truncateFailure) {
+                    e.addSuppressed(truncateFailure);
+                }
+            }
+            throw new IllegalStateException("failed to write batch log " + path, e);
+        }
+    }
+
+    private void read(String line, long offset, Map<Long, Pending> pending) {
+        try {
+            JsonNode record = objectMapper.readTree(line);
+            if (record.has("done")) {
+                pending.remove(record.get("done").asLong());
+                return;
+            }
+            long batch = record.path("batch").asLong();
+            sequence = Math.max(sequence, batch);
+            List<TodoItem> puts = new ArrayList<TodoItem>();
+            for (JsonNode item : record.path("puts")) {
+                puts.add(objectMapper.treeToValue(item, TodoItem.class));
+            }
+            List<String> deletes = new ArrayList<String>();
+            for (JsonNode id : record.path("deletes")) {
+                deletes.add(id.asText());
+            }
+            pending.put(batch, new Pending(puts, deletes));
+        } catch (IOException e) {
+            throw new IllegalStateException("corrupt batch log " + path + " at offset " + offset, e);
+        }
+    }
+
+    private FileChannel open() throws IOException {
+        if (channel == null) {
+            Path parent = path.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+
+    /**
+     * 没有完成标记的批次。
+     */
+    static final class Pending {
+        private final List<TodoItem> puts;
+        private final List<String> deletes;
+
+        Pending(List<TodoItem> puts, List<String> deletes) {
+            this.puts = puts;
+            this.deletes = deletes;
+        }
+
+        List<TodoItem> getPuts() {
+            return puts;
+        }
+
+        List<String> getDeletes() {
+            return deletes;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.iftech.todo.storage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.LongSupplier;
+
+/**
+ * 文件存储的内存变更日志，用于增量同步。
+ *
+ * <p>每次写入（新增/更新/删除）在存储的写锁内登记一个递增序号；同一 id 只保留最近一次登记，
+ * 因此日志大小与保留期内变化过的不同 id 数成正比，查询某个序号之后的变化只需读取这一段。
+ * 超过保留期的登记被清理，令牌早于已清理的序号时无法再给出完整的删除记录，调用方应退回全量同步。
+ *
+ * <p>令牌为 “进程纪元.序号”，重启后序号从头开始，旧令牌一律视为过期。本类不做同步，由存储的读写锁保护。
+ */
+final class TodoChangeLog {
+    private final long retentionMillis;
+    private final LongSupplier clock;
+    private final String epoch;
+    private final TreeMap<Long, Entry> bySequence = new TreeMap<Long, Entry>();
+    private final Map<String, Long> sequenceById = new HashMap<String, Long>();
+
+    private long sequence;
+    private long prunedThrough;
+
+    /**
+     * 构造方法。
+     *
+     * @param retentionMillis 登记的保留时间（毫秒）
+     */
+    TodoChangeLog(long retentionMillis) {
+        this(retentionMillis, System::currentTimeMillis);
+    }
+
+    TodoChangeLog(long retentionMillis, LongSupplier clock) {
+        if (retentionMillis < 1) {
+            throw new IllegalArgumentException("todo.sync.tombstone-retention-ms must be positive");
+        }
+        this.retentionMillis = retentionMillis;
+        this.clock = clock;
+        this.epoch = Long.toString(clock.getAsLong(), 36);
+    }
+
+    /**
+     * 登记一次写入（调用方持有写锁）。
+     *
+     * @param id 发生变化的待办 id
+     */
+    void record(String id) {
+        long now = clock.getAsLong();
+        prune(now);
+        Long previous = sequenceById.put(id, ++sequence);
+        if (previous != null) {
+            bySequence.remove(previous);
+        }
+        bySequence.put(sequence, new Entry(id, now));
+    }
+
+    /**
+     * @return 表示“当前为止的全部变化”的令牌
+     */
+    String token() {
+        return epoch + "." + Long.toString(sequence, 36);
+    }
+
+    /**
+     * 查询令牌之后变化过的 id（调用方持有读锁），按变化先后排列。
+     *
+     * @param token 之前返回的令牌
+     * @return 变化过的 id；令牌来自其他进程或早于保留期时返回 null，表示需要全量同步
+     * @throws IllegalArgumentException 令牌格式不正确
+     */
+    List<String> changedSince(String token) {
+        int dot = token.indexOf('.');
+        if (dot <= 0 || dot == token.length() - 1) {
+            throw new IllegalArgumentException("invalid token");
+        }
+        long since;
+        try {
+            since = Long.parseLong(token.substring(dot + 1), 36);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid token", e);
+        }
+        if (!epoch.equals(token.substring(0, dot)) || since < prunedThrough || since > sequence) {
+            return null;
+        }
+        List<String> ids = new ArrayList<String>();
+        for (Entry entry : bySequence.tailMap(since, false).values()) {
+            ids.add(entry.id);
+        }
+        return ids;
+    }
+
+    int size() {
+        return bySequence.size();
+    }
+
+    private void prune(long now) {
+        long horizon = now - retentionMillis;
+        while (!bySequence.isEmpty() && bySequence.firstEntry().getValue().at < horizon) {
+            Map.Entry<Long, Entry> oldest = bySequence.pollFirstEntry();
+            sequenceById.remove(oldest.getValue().id);
+            prunedThrough = oldest.getKey();
+        }
+    }
+
+    private static final class Entry {
+        private final String id;
+        private final long at;
+
+        private Entry(String id, long at) {
+            this.id = id;
+            this.at = at;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.iftech.todo.storage;
+
+/**
+ * 写入时发现目标数据已被并发请求修改或删除。
+ *
+ * <p>存储层抛出后整批变更回滚，由服务层转换为 409。
+ */
+public class TodoConflictException extends RuntimeException {
+    public TodoConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,117 @@
+package com.iftech.todo.storage;
+
+import com.iftech.todo.domain.DueDates;
+import com.iftech.todo.domain.TodoItem;
+import com.iftech.todo.domain.TodoSort;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * 列表分页游标：记录上一页最后一条数据在排序键上的取值。
+ *
+ * <p>下一页从“严格排在该位置之后”的数据开始读取（keyset/seek 分页），而不是 OFFSET 跳过前 N 行。
+ * 对客户端而言游标是不透明字符串，只能原样回传。
+ */
+public final class TodoCursor {
+    private static final String SEPARATOR = "|";
+
+    private final TodoSort sort;
+    private final int priority;
+    private final long dueMinute;
+    private final Instant createdAt;
+    private final String id;
+
+    private TodoCursor(TodoSort sort, int priority, long dueMinute, Instant createdAt, String id) {
+        this.sort = sort;
+        this.priority = priority;
+        this.dueMinute = dueMinute;
+        this.createdAt = createdAt;
+        this.id = id;
+    }
+
+    /**
+     * 以某条待办作为“上一页最后一条”构造游标。
+     *
+     * @param sort 当前排序方式
+     * @param last 上一页最后一条数据
+     * @return 游标
+     */
+    public static TodoCursor after(TodoSort sort, TodoItem last) {
+        return new TodoCursor(sort, last.getPriority(), last.getDueMinute(), last.getCreatedAt(), last.getId());
+    }
+
+    /**
+     * 解析客户端回传的游标字符串。
+     *
+     * @param raw 游标字符串
+     * @return 游标
+     * @throws IllegalArgumentException 游标格式非法
+     */
+    public static TodoCursor decode(String raw) {
+        String text;
+        try {
+            text = new String(Base64.getUrlDecoder().decode(raw), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("malformed cursor", e);
+        }
+        String[] parts = text.split("\\" + SEPARATOR, -1);
+        if (parts.length != 5 || parts[3].isEmpty() || parts[4].isEmpty()) {
+            throw new IllegalArgumentException("malformed cursor");
+        }
+        try {
+            return new TodoCursor(TodoSort.valueOf(parts[0]), Integer.parseInt(parts[1]), DueDates.parse(parts[2]),
+                    Instant.parse(parts[3]), parts[4]);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("malformed cursor", e);
+        }
+    }
+
+    /**
+     * 编码为不透明的 URL 安全字符串。
+     *
+     * @return 游标字符串
+     */
+    public String encode() {
+        String text = sort.name() + SEPARATOR + priority + SEPARATOR + (dueMinute == DueDates.NONE ? "" : DueDates.format(dueMinute)) + SEPARATOR + createdAt
+                + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 还原为一条仅包含排序键的待办，便于直接用 {@link TodoSort#comparator()} 做比较。
+     *
+     * @return 排序键探针对象
+     */
+    public TodoItem toProbe() {
+        TodoItem probe = new TodoItem();
+        probe.setId(id);
+        probe.setPriority(priority);
+        probe.setDueMinute(dueMinute);
+        probe.setCreatedAt(createdAt);
+        return probe;
+    }
+
+    public TodoSort getSort() {
+        return sort;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * @return 截止时间的纪元分钟数；上一页最后一条没有截止时间时为 {@link DueDates#NONE}
+     */
+    public long getDueMinute() {
+        return dueMinute;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+}
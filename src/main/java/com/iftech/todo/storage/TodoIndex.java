@@ -0,0 +1,223 @@
+package com.iftech.todo.storage;
+
+import com.iftech.todo.domain.TodoCategoryCount;
+import com.iftech.todo.domain.TodoItem;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 文件存储的内存索引：id 哈希索引 + 分类/完成态/优先级二级索引 + 按分类的完成态计数。
+ *
+ * <p>所有变更都通过 {@link #put(TodoItem)} 与 {@link #remove(String)} 完成，二级索引与计数随之同步维护。
+ * 本类不是线程安全的，由调用方持锁访问。
+ */
+final class TodoIndex {
+    private final Map<String, TodoItem> byId = new LinkedHashMap<String, TodoItem>();
+    private final Map<String, Set<String>> byCategory = new HashMap<String, Set<String>>();
+    private final Map<Boolean, Set<String>> byCompleted = new HashMap<Boolean, Set<String>>();
+    private final Map<Integer, Set<String>> byPriority = new HashMap<Integer, Set<String>>();
+    /**
+     * 分类 → {未完成数, 已完成数}，按分类名有序，计数归零时移除。
+     */
+    private final TreeMap<String, long[]> categoryCounts = new TreeMap<String, long[]>();
+
+    /**
+     * 按 id 查询（O(1)）。
+     *
+     * @param id 待办 id
+     * @return 内部持有的对象；不存在返回 null
+     */
+    TodoItem get(String id) {
+        return id == null ? null : byId.get(id);
+    }
+
+    /**
+     * 新增或替换一条待办，并更新二级索引。
+     *
+     * @param item 待办（由调用方保证不会再被外部修改）
+     * @return 被替换的旧对象；不存在返回 null
+     */
+    TodoItem put(TodoItem item) {
+        TodoItem previous = byId.put(item.getId(), item);
+        if (previous != null) {
+            unindex(previous);
+        }
+        index(item);
+        return previous;
+    }
+
+    /**
+     * 删除一条待办，并更新二级索引。
+     *
+     * @param id 待办 id
+     * @return 被删除的对象；不存在返回 null
+     */
+    TodoItem remove(String id) {
+        TodoItem removed = id == null ? null : byId.remove(id);
+        if (removed != null) {
+            unindex(removed);
+        }
+        return removed;
+    }
+
+    /**
+     * 获取全部待办（按插入顺序）。
+     *
+     * @return 只读视图
+     */
+    Collection<TodoItem> all() {
+        return Collections.unmodifiableCollection(byId.values());
+    }
+
+    int size() {
+        return byId.size();
+    }
+
+    /**
+     * 按分类名顺序返回各分类的未完成/已完成数量，耗时与分类数成正比。
+     *
+     * @return 分类计数
+     */
+    List<TodoCategoryCount> categoryCounts() {
+        List<TodoCategoryCount> counts = new ArrayList<TodoCategoryCount>(categoryCounts.size());
+        for (Map.Entry<String, long[]> entry : categoryCounts.entrySet()) {
+            counts.add(new TodoCategoryCount(entry.getKey(), entry.getValue()[0], entry.getValue()[1]));
+        }
+        return counts;
+    }
+
+    /**
+     * 根据查询条件选出候选集：在已指定的过滤字段中取最小的桶，调用方仍需逐条校验其余条件。
+     *
+     * @param query 查询条件
+     * @return 候选待办
+     */
+    Collection<TodoItem> candidates(TodoQuery query) {
+        Set<String> smallest = null;
+        if (query.getCategory() != null) {
+            smallest = bucket(byCategory, query.getCategory());
+        }
+        if (query.getCompleted() != null) {
+            smallest = smaller(smallest, bucket(byCompleted, query.getCompleted()));
+        }
+        if (query.getPriority() != null) {
+            smallest = smaller(smallest, bucket(byPriority, query.getPriority()));
+        }
+        if (smallest == null) {
+            return all();
+        }
+        List<TodoItem> items = new ArrayList<TodoItem>(smallest.size());
+        for (String id : smallest) {
+            items.add(byId.get(id));
+        }
+        return items;
+    }
+
+    /**
+     * 先用二级索引取出最小的候选桶，再过滤出满足条件且排在游标之后的数据，按排序方式排序后截取至多 limit 条。
+     *
+     * @param query 查询条件
+     * @return 内部持有的对象引用（调用方不得修改）
+     */
+    List<TodoItem> select(TodoQuery query) {
+        Comparator<TodoItem> comparator = query.getSort().comparator();
+        TodoItem probe = query.getAfter() == null ? null : query.getAfter().toProbe();
+        List<TodoItem> matched = new ArrayList<TodoItem>();
+        for (TodoItem item : candidates(query)) {
+            if (!query.matches(item)) {
+                continue;
+            }
+            if (probe != null && comparator.compare(item, probe) <= 0) {
+                continue;
+            }
+            matched.add(item);
+        }
+        matched.sort(comparator);
+        if (query.getLimit() != null && query.getLimit() < matched.size()) {
+            return matched.subList(0, query.getLimit());
+        }
+        return matched;
+    }
+
+    /**
+     * 清空并用给定数据重建全部索引。
+     *
+     * @param items 待办列表
+     */
+    void reset(Collection<TodoItem> items) {
+        byId.clear();
+        byCategory.clear();
+        byCompleted.clear();
+        byPriority.clear();
+        categoryCounts.clear();
+        for (TodoItem item : items) {
+            if (item.getId() != null) {
+                put(item);
+            }
+        }
+    }
+
+    private void index(TodoItem item) {
+        if (item.getCategory() != null) {
+            add(byCategory, item.getCategory(), item.getId());
+            count(item, 1);
+        }
+        add(byCompleted, item.isCompleted(), item.getId());
+        add(byPriority, item.getPriority(), item.getId());
+    }
+
+    private void unindex(TodoItem item) {
+        if (item.getCategory() != null) {
+            discard(byCategory, item.getCategory(), item.getId());
+            count(item, -1);
+        }
+        discard(byCompleted, item.isCompleted(), item.getId());
+        discard(byPriority, item.getPriority(), item.getId());
+    }
+
+    private void count(TodoItem item, int delta) {
+        long[] counts = categoryCounts.get(item.getCategory());
+        if (counts == null) {
+            counts = new long[2];
+            categoryCounts.put(item.getCategory(), counts);
+        }
+        counts[item.isCompleted() ? 1 : 0] += delta;
+        if (counts[0] == 0 && counts[1] == 0) {
+            categoryCounts.remove(item.getCategory());
+        }
+    }
+
+    private static <K> void add(Map<K, Set<String>> index, K key, String id) {
+        Set<String> ids = index.get(key);
+        if (ids == null) {
+            ids = new LinkedHashSet<String>();
+            index.put(key, ids);
+        }
+        ids.add(id);
+    }
+
+    private static <K> void discard(Map<K, Set<String>> index, K key, String id) {
+        Set<String> ids = index.get(key);
+        if (ids != null && ids.remove(id) && ids.isEmpty()) {
+            index.remove(key);
+        }
+    }
+
+    private static <K> Set<String> bucket(Map<K, Set<String>> index, K key) {
+        Set<String> ids = index.get(key);
+        return ids == null ? Collections.<String>emptySet() : ids;
+    }
+
+    private static Set<String> smaller(Set<String> current, Set<String> candidate) {
+        return current == null || candidate.size() < current.size() ? candidate : current;
+    }
+}
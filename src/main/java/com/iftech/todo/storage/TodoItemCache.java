@@ -0,0 +1,140 @@
+package com.iftech.todo.storage;
+
+import com.iftech.todo.domain.TodoItem;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 按 id 缓存待办的有界 LRU 缓存，条目超过存活时间后失效。
+ *
+ * <p>存取都复制对象，调用方修改拿到的对象不会影响缓存。
+ *
+ * <p>为避免“读到旧行 → 写入方失效缓存 → 读方把旧行放回缓存”的竞争，每次失效都会推进代数；
+ * 读方在回源前记下代数（{@link #generation()}），回源期间若有任何失效发生，{@link #putIfUnchanged} 会放弃写入。
+ */
+final class TodoItemCache {
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final LinkedHashMap<String, Entry> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private long generation;
+
+    /**
+     * 构造方法。
+     *
+     * @param maxSize   最大条目数
+     * @param ttlMillis 条目存活时间（毫秒）
+     */
+    TodoItemCache(int maxSize, long ttlMillis) {
+        this(maxSize, ttlMillis, System::nanoTime);
+    }
+
+    TodoItemCache(int maxSize, long ttlMillis, LongSupplier clock) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("todo.cache.max-size must be positive");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.clock = clock;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > TodoItemCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 读取缓存并计入命中/未命中；过期条目视为未命中并移除。
+     *
+     * @param id 待办 id
+     * @return 副本；未命中返回 null
+     */
+    synchronized TodoItem get(String id) {
+        Entry entry = entries.get(id);
+        if (entry != null && clock.getAsLong() - entry.loadedAt >= ttlNanos) {
+            entries.remove(id);
+            evictions.incrementAndGet();
+            entry = null;
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.item.copy();
+    }
+
+    /**
+     * 当前失效代数，回源前调用。
+     *
+     * @return 代数
+     */
+    synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * 自 {@code seenGeneration} 以来没有发生过失效时才写入缓存。
+     *
+     * @param item           回源读到的对象
+     * @param seenGeneration 回源前的代数
+     */
+    synchronized void putIfUnchanged(TodoItem item, long seenGeneration) {
+        if (generation == seenGeneration) {
+            entries.put(item.getId(), new Entry(item.copy(), clock.getAsLong()));
+        }
+    }
+
+    /**
+     * 失效一条缓存，写入路径上在写库之后调用。
+     *
+     * @param id 待办 id
+     */
+    synchronized void invalidate(String id) {
+        generation++;
+        entries.remove(id);
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    long hitCount() {
+        return hits.get();
+    }
+
+    long missCount() {
+        return misses.get();
+    }
+
+    /**
+     * 因容量淘汰或过期移除的条目数。
+     *
+     * @return 次数
+     */
+    long evictionCount() {
+        return evictions.get();
+    }
+
+    private static final class Entry {
+        private final TodoItem item;
+        private final long loadedAt;
+
+        private Entry(TodoItem item, long loadedAt) {
+            this.item = item;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
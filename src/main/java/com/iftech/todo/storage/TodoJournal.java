@@ -0,0 +1,325 @@
+package com.iftech.todo.storage;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.iftech.todo.domain.TodoItem;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 文件存储的追加式日志（write-ahead journal）。
+ *
+ * <p>每次变更追加一行紧凑 JSON 记录：{@code {"op":"put","item":{...}}} 或 {@code {"op":"del","id":"..."}}。
+ * 记录都是“最终状态”，重复回放是幂等的，因此快照与日志之间有重叠也不影响正确性。
+ *
+ * <p>追加的记录先暂存在内存缓冲中，由 {@link #sync()} 一次写入并 fsync，便于组提交把多次变更合并为一次磁盘往返。
+ * 写入或 fsync 失败时暂存的记录保留到下一次成功的 {@link #sync()}，文件截回写入前的长度，重试不会留下残缺或重复的行。
+ *
+ * <p>压缩时先把当前日志轮转为 {@code <日志>.1}，写完快照后再删除；启动时按 快照 → {@code .1} → 当前日志 的顺序回放。
+ * 暂存与落盘可能来自不同线程，公开方法均在本对象上同步。
+ */
+final class TodoJournal implements Closeable {
+    private static final String OP_PUT = "put";
+    private static final String OP_DELETE = "del";
+
+    private final Path logPath;
+    private final Path rotatedPath;
+    private final ObjectMapper objectMapper;
+
+    private final Buffer buffer = new Buffer();
+
+    private FileChannel channel;
+    /**
+     * 上一次失败的写入未能截掉时需要截回的长度；-1 表示没有。
+     */
+    private long truncateTo = -1L;
+    /**
+     * 累计写入日志文件的字节数，供指标读取。
+     */
+    private volatile long bytesWritten;
+
+    /**
+     * 构造方法。
+     *
+     * @param logPath      日志文件路径
+     * @param objectMapper JSON 序列化工具
+     */
+    TodoJournal(Path logPath, ObjectMapper objectMapper) {
+        this.logPath = logPath;
+        this.rotatedPath = logPath.resolveSibling(logPath.getFileName().toString() + ".1");
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 把日志中的变更按顺序回放到索引上（先回放未完成压缩的轮转日志，再回放当前日志）。
+     *
+     * <p>只有最后一个换行符之后的残缺内容（进程在写入中途退出）会被忽略，并从当前日志中截掉，避免后续追加的记录与残缺内容拼在同一行。
+     * 以换行符结尾的完整记录无法解析说明日志已损坏，抛出异常拒绝启动——否则损坏处之后已提交的记录会被静默丢弃。
+     *
+     * @param index 已载入快照的索引
+     * @throws IllegalStateException 读取失败或日志中有无法解析的完整记录
+     */
+    synchronized void replay(TodoIndex index) {
+        replayFile(rotatedPath, index);
+        long valid = replayFile(logPath, index);
+        try {
+            if (Files.exists(logPath) && Files.size(logPath) > valid) {
+                try (FileChannel out = FileChannel.open(logPath, StandardOpenOption.WRITE)) {
+                    out.truncate(valid);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("failed to truncate journal " + logPath, e);
+        }
+    }
+
+    /**
+     * 暂存一条新增/更新记录，{@link #sync()} 后才持久化。
+     *
+     * @param item 变更后的完整对象
+     */
+    synchronized void appendPut(TodoItem item) {
+        ObjectNode record = objectMapper.createObjectNode();
+        record.put("op", OP_PUT);
+        record.set("item", objectMapper.valueToTree(item));
+        append(record);
+    }
+
+    /**
+     * 暂存一条删除记录，{@link #sync()} 后才持久化。
+     *
+     * @param id 被删除的待办 id
+     */
+    synchronized void appendDelete(String id) {
+        ObjectNode record = objectMapper.createObjectNode();
+        record.put("op", OP_DELETE);
+        record.put("id", id);
+        append(record);
+    }
+
+    /**
+     * 把暂存的记录一次性写入日志并 fsync。
+     *
+     * <p>只有写入与 fsync 都成功后才清空暂存缓冲；失败时把文件截回写入前的长度并保留缓冲，由下一次调用重试。
+     *
+     * @throws IOException 写入或 fsync 失败
+     */
+    synchronized void sync() throws IOException {
+        if (buffer.size() == 0 && truncateTo < 0) {
+            return;
+        }
+        FileChannel out = open();
+        if (truncateTo >= 0) {
+            out.truncate(truncateTo);
+            out.force(false);
+            truncateTo = -1L;
+        }
+        if (buffer.size() == 0) {
+            return;
+        }
+        long before = out.size();
+        ByteBuffer bytes = buffer.bytes();
+        try {
+            while (bytes.hasRemaining()) {
+                out.write(bytes);
+            }
+            out.force(false);
+        } catch (IOException e) {
+            rollback(out, before, e);
+            throw e;
+        }
+        bytesWritten += bytes.limit();
+        buffer.reset();
+    }
+
+    /**
+     * 写入失败后把文件截回写入前的长度；截断也失败时关闭文件，记下长度留到下一次 {@link #sync()} 先截断再写入。
+     */
+    private void rollback(FileChannel out, long before, IOException cause) {
+        try {
+            out.truncate(before);
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+            truncateTo = before;
+            try {
+                out.close();
+            } catch (IOException closeFailure) {
+                cause.addSuppressed(closeFailure);
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * 当前暂存缓冲的长度，配合 {@link #unstage(int)} 撤回之后暂存的记录。
+     *
+     * @return 字节数
+     */
+    synchronized int staged() {
+        return buffer.size();
+    }
+
+    /**
+     * 撤回 {@link #staged()} 之后暂存、尚未落盘的记录（写后落盘在失败后改由脏 id 重试，避免同一批记录在缓冲中重复堆积）。
+     *
+     * @param mark {@link #staged()} 的返回值
+     */
+    synchronized void unstage(int mark) {
+        buffer.truncate(mark);
+    }
+
+    /**
+     * 当前日志大小（字节，含尚未写入的暂存记录）。
+     *
+     * @return 字节数
+     */
+    synchronized long size() {
+        try {
+            long written = channel == null ? (Files.exists(logPath) ? Files.size(logPath) : 0L) : channel.size();
+            return written + buffer.size();
+        } catch (IOException e) {
+            return buffer.size();
+        }
+    }
+
+    /**
+     * 累计写入日志文件的字节数（不含尚未落盘的暂存记录）。
+     *
+     * @return 字节数
+     */
+    long bytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * 把当前日志（连同暂存记录）落盘后轮转为 {@code .1}，之后的记录写入新日志，供压缩使用。
+     *
+     * @return true 表示已轮转；false 表示上一次压缩的轮转日志仍在，本次跳过
+     */
+    synchronized boolean rotate() {
+        if (Files.exists(rotatedPath)) {
+            return false;
+        }
+        try {
+            sync();
+            close();
+            if (Files.exists(logPath)) {
+                Files.move(logPath, rotatedPath, StandardCopyOption.ATOMIC_MOVE);
+            }
+            return true;
+        } catch (IOException e) {
+            throw new IllegalStateException("failed to rotate journal", e);
+        }
+    }
+
+    /**
+     * 快照落盘后删除已轮转的日志。
+     */
+    synchronized void discardRotated() {
+        try {
+            Files.deleteIfExists(rotatedPath);
+        } catch (IOException e) {
+            throw new IllegalStateException("failed to delete rotated journal", e);
+        }
+    }
+
+    /**
+     * 关闭日志文件；调用前应先 {@link #sync()}，否则暂存记录会被丢弃。
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void append(ObjectNode record) {
+        try {
+            buffer.write(objectMapper.writeValueAsBytes(record));
+            buffer.write('\n');
+        } catch (IOException e) {
+            throw new IllegalStateException("failed to append journal", e);
+        }
+    }
+
+    private FileChannel open() throws IOException {
+        if (channel == null) {
+            Path parent = logPath.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            channel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+
+    /**
+     * 暂存缓冲：可以截回到之前的长度，写出时不复制。
+     */
+    private static final class Buffer extends ByteArrayOutputStream {
+        ByteBuffer bytes() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+
+        void truncate(int length) {
+            count = Math.min(count, Math.max(0, length));
+        }
+    }
+
+    /**
+     * 回放单个日志文件。
+     *
+     * @return 最后一个换行符之后的字节偏移；其后的内容是未写完的残缺记录
+     * @throws IllegalStateException 有无法解析的完整记录
+     */
+    private long replayFile(Path path, TodoIndex index) {
+        if (!Files.exists(path)) {
+            return 0L;
+        }
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(path);
+        } catch (IOException e) {
+            throw new IllegalStateException("failed to read journal " + path, e);
+        }
+        int start = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != '\n') {
+                continue;
+            }
+            String line = new String(bytes, start, i - start, StandardCharsets.UTF_8);
+            if (!line.trim().isEmpty()) {
+                apply(line, index, path, start);
+            }
+            start = i + 1;
+        }
+        return start;
+    }
+
+    private void apply(String line, TodoIndex index, Path path, long offset) {
+        try {
+            JsonNode record = objectMapper.readTree(line);
+            String op = record.path("op").asText();
+            if (OP_PUT.equals(op)) {
+                TodoItem item = objectMapper.treeToValue(record.get("item"), TodoItem.class);
+                if (item != null && item.getId() != null) {
+                    index.put(item);
+                }
+            } else if (OP_DELETE.equals(op)) {
+                index.remove(record.path("id").asText(null));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("corrupt journal " + path + " at offset " + offset, e);
+        }
+    }
+}
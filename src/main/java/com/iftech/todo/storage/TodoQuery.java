@@ -0,0 +1,186 @@
+package com.iftech.todo.storage;
+
+import com.iftech.todo.domain.DueDates;
+import com.iftech.todo.domain.TodoItem;
+import com.iftech.todo.domain.TodoSort;
+import java.time.LocalDateTime;
+
+/**
+ * 列表查询条件。
+ *
+ * <p>所有过滤字段为 null 表示不按该字段过滤；由存储层负责一次性完成过滤、排序与分页，
+ * JDBC 实现会把它编译为一条走索引的 SQL。
+ */
+public class TodoQuery {
+    private String category;
+    private Boolean completed;
+    private Integer priority;
+    private LocalDateTime dueFrom;
+    private LocalDateTime dueTo;
+    private long dueFromMinute = DueDates.NONE;
+    private long dueToMinute = DueDates.NONE;
+    private TodoSort sort = TodoSort.CREATED_AT_DESC;
+    private TodoCursor after;
+    private Integer limit;
+
+    /**
+     * 获取分类过滤条件。
+     *
+     * @return 分类；为 null 表示不过滤
+     */
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(String category) {
+        this.category = category;
+    }
+
+    /**
+     * 获取完成态过滤条件。
+     *
+     * @return 完成态；为 null 表示不过滤
+     */
+    public Boolean getCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(Boolean completed) {
+        this.completed = completed;
+    }
+
+    /**
+     * 获取优先级过滤条件。
+     *
+     * @return 优先级；为 null 表示不过滤
+     */
+    public Integer getPriority() {
+        return priority;
+    }
+
+    public void setPriority(Integer priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * 获取截止时间下界（包含）。
+     *
+     * @return 下界；为 null 表示不限制
+     */
+    public LocalDateTime getDueFrom() {
+        return dueFrom;
+    }
+
+    public void setDueFrom(LocalDateTime dueFrom) {
+        this.dueFrom = dueFrom;
+        this.dueFromMinute = DueDates.of(dueFrom);
+    }
+
+    /**
+     * 截止时间下界的纪元分钟数，供内存过滤逐条比较。
+     *
+     * @return 纪元分钟数；不限制时为 {@link DueDates#NONE}
+     */
+    long dueFromMinute() {
+        return dueFromMinute;
+    }
+
+    /**
+     * 获取截止时间上界（不包含）。
+     *
+     * @return 上界；为 null 表示不限制
+     */
+    public LocalDateTime getDueTo() {
+        return dueTo;
+    }
+
+    public void setDueTo(LocalDateTime dueTo) {
+        this.dueTo = dueTo;
+        this.dueToMinute = DueDates.of(dueTo);
+    }
+
+    /**
+     * 截止时间上界的纪元分钟数，供内存过滤逐条比较。
+     *
+     * @return 纪元分钟数；不限制时为 {@link DueDates#NONE}
+     */
+    long dueToMinute() {
+        return dueToMinute;
+    }
+
+    public TodoSort getSort() {
+        return sort;
+    }
+
+    public void setSort(TodoSort sort) {
+        this.sort = sort == null ? TodoSort.CREATED_AT_DESC : sort;
+    }
+
+    /**
+     * 获取分页游标。
+     *
+     * @return 上一页游标；为 null 表示从第一页开始
+     */
+    public TodoCursor getAfter() {
+        return after;
+    }
+
+    public void setAfter(TodoCursor after) {
+        this.after = after;
+    }
+
+    /**
+     * 获取最多返回条数。
+     *
+     * @return 条数上限；为 null 表示不限制
+     */
+    public Integer getLimit() {
+        return limit;
+    }
+
+    public void setLimit(Integer limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * 是否按截止时间范围过滤。
+     *
+     * <p>指定范围时没有截止时间的数据一定不满足条件。
+     *
+     * @return true 表示存在截止时间范围
+     */
+    public boolean hasDueRange() {
+        return dueFrom != null || dueTo != null;
+    }
+
+    /**
+     * 判断待办是否满足过滤字段（分类、完成态、优先级、截止时间范围），供内存索引逐条校验候选数据。
+     *
+     * @param item 待办
+     * @return true 表示满足
+     */
+    boolean matches(TodoItem item) {
+        if (category != null && !category.equals(item.getCategory())) {
+            return false;
+        }
+        if (completed != null && completed != item.isCompleted()) {
+            return false;
+        }
+        if (priority != null && priority != item.getPriority()) {
+            return false;
+        }
+        if (hasDueRange()) {
+            long due = item.getDueMinute();
+            if (due == DueDates.NONE) {
+                return false;
+            }
+            if (dueFromMinute != DueDates.NONE && due < dueFromMinute) {
+                return false;
+            }
+            if (dueToMinute != DueDates.NONE && due >= dueToMinute) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,679 @@
+package com.iftech.todo.storage;
+
+import com.iftech.todo.domain.TodoItem;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 内存映射的定长槽位记录文件，供 {@link MappedTodoRepository} 使用。
+ *
+ * <pre>
+ * 记录文件 := 文件头（4096 字节） | 槽位*（每个 128 字节，一页恰好 32 个，槽位不跨页）
+ * 文件头   := 魔数 "TODOSLOT"（8 字节） | 版本号 u16 | 保留 u16 | 槽位大小 i32 | 溢出区代号 i64
+ * 槽位     := 状态 u8（1 占用，0 空闲） | completed u8 | 保留 u16 | priority i32 | dueMinute i64 | version i64 |
+ *             createdAt 纪元秒 i64 | createdAt 纳秒 i32 | updatedAt 纳秒 i32 | updatedAt 纪元秒 i64 |
+ *             id、title、description、category 在溢出区的偏移 i64 ×4 | 字节长度 i32 ×4 | 保留 | 槽位前 124 字节的 CRC32 i32
+ * </pre>
+ *
+ * <p>纳秒为 -1 表示时间为 null，长度为 -1 表示文本为 null。变长文本追加写入溢出区文件 {@code <记录文件>.overflow.<代号>}，
+ * 槽位只保存偏移与长度；文本变化时追加新内容并改写引用，旧内容成为垃圾，由调用方在垃圾足够多时调用 {@link #rewrite(Collection)}
+ * 整体重写为下一个代号的一对文件。定长字段原地改写：切换完成态只改动所在槽位的完成标志、版本号、更新时间与校验和，共 25 字节。
+ *
+ * <p>id → 槽位索引与空闲槽位表只在内存中维护，打开文件时扫描全部槽位重建；文件头只保存不随写入变化的信息，
+ * 进程中断不会留下与槽位不一致的文件头。文件头损坏时抛出 {@link IllegalStateException}；单个占用槽位的校验和不一致、
+ * 文本引用越界或 id 缺失/重复时，把该槽位隔离到 {@code <记录文件>.quarantine} 并记录错误日志，其余数据照常载入。
+ *
+ * <p>本类不是线程安全的，修改由调用方持写锁进行；{@link #sync()} 可以与修改并发执行。
+ */
+final class TodoRecordFile implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(TodoRecordFile.class);
+
+    /**
+     * 记录文件头魔数。
+     */
+    static final byte[] MAGIC = "TODOSLOT".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 4096;
+    static final int SLOT_BYTES = 128;
+
+    private static final int INITIAL_SLOTS = 1024;
+    private static final int INITIAL_OVERFLOW_BYTES = 64 * 1024;
+
+    private static final int STATE = 0;
+    private static final int COMPLETED = 1;
+    private static final int PRIORITY = 4;
+    private static final int DUE_MINUTE = 8;
+    private static final int ITEM_VERSION = 16;
+    private static final int CREATED_SECONDS = 24;
+    private static final int CREATED_NANOS = 32;
+    private static final int UPDATED_NANOS = 36;
+    private static final int UPDATED_SECONDS = 40;
+    private static final int TEXT_OFFSETS = 48;
+    private static final int TEXT_LENGTHS = 80;
+    private static final int CRC = SLOT_BYTES - 4;
+    private static final int TEXT_FIELDS = 4;
+
+    private static final byte FREE = 0;
+    private static final byte LIVE = 1;
+
+    private final Path path;
+    private final Map<String, Integer> slotById = new HashMap<String, Integer>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<Integer>();
+    private final CRC32 crc = new CRC32();
+
+    private FileChannel slotChannel;
+    private FileChannel overflowChannel;
+    private volatile MappedByteBuffer slots;
+    private volatile MappedByteBuffer overflow;
+    private volatile long generation;
+    private int highWater;
+    private long overflowEnd;
+    private long liveTextBytes;
+    private volatile long slotBytesWritten;
+    private volatile long overflowBytesWritten;
+
+    /**
+     * 打开（不存在时创建）记录文件，并清理上次重写中断留下的临时文件与旧代号的溢出区。
+     *
+     * @param path 记录文件路径
+     * @throws IOException 读写失败
+     * @throws IllegalStateException 文件头损坏、版本不支持或缺少溢出区
+     */
+    TodoRecordFile(Path path) throws IOException {
+        this.path = path;
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Files.deleteIfExists(tmpPath());
+        if (Files.exists(path) && Files.size(path) > 0) {
+            openExisting();
+        } else {
+            openFresh(path, 1L, INITIAL_SLOTS);
+        }
+        deleteStaleOverflow();
+    }
+
+    /**
+     * 读出全部占用槽位中的待办（打开后调用一次）。
+     *
+     * @return 待办列表，按槽位顺序
+     */
+    List<TodoItem> load() {
+        List<TodoItem> items = new ArrayList<TodoItem>(slotById.size());
+        for (int slot = 0; slot < highWater; slot++) {
+            if (slots.get(base(slot) + STATE) == LIVE) {
+                items.add(read(slot));
+            }
+        }
+        return items;
+    }
+
+    /**
+     * 写入一条待办：{@code previous} 为 null 时分配槽位整条写入，否则只改写与 {@code previous} 不同的字段。
+     *
+     * @param previous 同一 id 当前保存的内容（不存在为 null）
+     * @param item     新内容
+     */
+    void write(TodoItem previous, TodoItem item) {
+        Integer slot = slotById.get(item.getId());
+        if (previous == null || slot == null) {
+            insert(item);
+        } else {
+            update(slot, previous, item);
+        }
+    }
+
+    /**
+     * 释放 id 所在的槽位：只清除状态字节，槽位放回空闲表，文本成为垃圾。
+     *
+     * @param id 待办 id
+     * @return true 表示确有该记录
+     */
+    boolean delete(String id) {
+        Integer slot = slotById.remove(id);
+        if (slot == null) {
+            return false;
+        }
+        int base = base(slot);
+        liveTextBytes -= textBytes(base);
+        slots.put(base + STATE, FREE);
+        slotBytesWritten++;
+        freeSlots.push(slot);
+        return true;
+    }
+
+    /**
+     * 溢出区中已不被任何槽位引用的字节数。
+     *
+     * @return 字节数
+     */
+    long garbageBytes() {
+        return overflowEnd - liveTextBytes;
+    }
+
+    /**
+     * 溢出区中被槽位引用的字节数。
+     *
+     * @return 字节数
+     */
+    long liveTextBytes() {
+        return liveTextBytes;
+    }
+
+    /**
+     * 把给定数据整体重写为下一个代号的记录文件与溢出区：先写临时记录文件与新溢出区并 fsync，再原子替换记录文件，最后删除旧溢出区。
+     *
+     * <p>替换前中断时，重启后仍读旧代号的一对文件；替换后中断时，重启后读新代号，旧溢出区在打开时被清理。失败时保持原文件继续使用。
+     *
+     * @param items 全部待办
+     * @throws IOException 读写失败
+     */
+    void rewrite(Collection<TodoItem> items) throws IOException {
+        FileChannel oldSlotChannel = slotChannel;
+        FileChannel oldOverflowChannel = overflowChannel;
+        MappedByteBuffer oldSlots = slots;
+        MappedByteBuffer oldOverflow = overflow;
+        long oldGeneration = generation;
+        Map<String, Integer> oldSlotById = new HashMap<String, Integer>(slotById);
+        Deque<Integer> oldFreeSlots = new ArrayDeque<Integer>(freeSlots);
+        int oldHighWater = highWater;
+        long oldOverflowEnd = overflowEnd;
+        long oldLiveTextBytes = liveTextBytes;
+        try {
+            Path tmp = tmpPath();
+            Files.deleteIfExists(tmp);
+            Files.deleteIfExists(overflowPath(oldGeneration + 1));
+            openFresh(tmp, oldGeneration + 1, Math.max(INITIAL_SLOTS, items.size() + items.size() / 2));
+            for (TodoItem item : items) {
+                insert(item);
+            }
+            sync();
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            if (slotChannel != oldSlotChannel) {
+                closeQuietly(slotChannel);
+            }
+            if (overflowChannel != oldOverflowChannel) {
+                closeQuietly(overflowChannel);
+            }
+            slotChannel = oldSlotChannel;
+            overflowChannel = oldOverflowChannel;
+            slots = oldSlots;
+            overflow = oldOverflow;
+            generation = oldGeneration;
+            slotById.clear();
+            slotById.putAll(oldSlotById);
+            freeSlots.clear();
+            freeSlots.addAll(oldFreeSlots);
+            highWater = oldHighWater;
+            overflowEnd = oldOverflowEnd;
+            liveTextBytes = oldLiveTextBytes;
+            throw e;
+        }
+        closeQuietly(oldSlotChannel);
+        closeQuietly(oldOverflowChannel);
+        Files.deleteIfExists(overflowPath(oldGeneration));
+    }
+
+    /**
+     * 把映射区中已修改的页写回磁盘：先溢出区，再记录文件，使槽位引用的文本先于槽位持久化。
+     *
+     * @throws IOException 写回失败
+     */
+    void sync() throws IOException {
+        MappedByteBuffer text = overflow;
+        MappedByteBuffer records = slots;
+        text.force();
+        records.force();
+    }
+
+    /**
+     * 写入记录文件的累计字节数（整条写入计一个槽位，原地改写只计改动的字段）。
+     */
+    long slotBytesWritten() {
+        return slotBytesWritten;
+    }
+
+    /**
+     * 写入溢出区的累计字节数。
+     */
+    long overflowBytesWritten() {
+        return overflowBytesWritten;
+    }
+
+    /**
+     * 记录文件的当前大小。
+     */
+    long slotFileSize() {
+        return sizeOf(path);
+    }
+
+    /**
+     * 当前溢出区文件的大小。
+     */
+    long overflowFileSize() {
+        return sizeOf(overflowPath(generation));
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            closeQuietly(slotChannel);
+            closeQuietly(overflowChannel);
+        }
+    }
+
+    private void openExisting() throws IOException {
+        slotChannel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = slotChannel.size();
+        if (size < HEADER_BYTES || (size - HEADER_BYTES) % SLOT_BYTES != 0 || size > Integer.MAX_VALUE) {
+            throw corrupt("invalid size " + size);
+        }
+        slots = slotChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        byte[] magic = new byte[MAGIC.length];
+        ByteBuffer header = slots.duplicate();
+        header.get(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw corrupt("bad magic");
+        }
+        int version = header.getShort() & 0xFFFF;
+        header.getShort();
+        int slotBytes = header.getInt();
+        if (version != VERSION || slotBytes != SLOT_BYTES) {
+            throw corrupt("unsupported version " + version + " or slot size " + slotBytes);
+        }
+        generation = header.getLong();
+
+        int capacity = (int) ((size - HEADER_BYTES) / SLOT_BYTES);
+        for (int slot = 0; slot < capacity; slot++) {
+            if (slots.get(base(slot) + STATE) == LIVE) {
+                highWater = slot + 1;
+            }
+        }
+        Path overflowPath = overflowPath(generation);
+        if (!Files.exists(overflowPath) && highWater > 0) {
+            throw corrupt("missing overflow file " + overflowPath);
+        }
+        overflowChannel = FileChannel.open(overflowPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long overflowSize = overflowChannel.size();
+        if (overflowSize > Integer.MAX_VALUE) {
+            throw corrupt("overflow file too large");
+        }
+        overflow = overflowChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(overflowSize, INITIAL_OVERFLOW_BYTES));
+
+        int quarantined = 0;
+        for (int slot = highWater - 1; slot >= 0; slot--) {
+            int base = base(slot);
+            if (slots.get(base + STATE) != LIVE) {
+                freeSlots.push(slot);
+                continue;
+            }
+            String problem = validate(slot, overflowSize);
+            String id = problem == null ? text(base, 0) : null;
+            if (problem == null && id == null) {
+                problem = "missing id";
+            }
+            Integer other = id == null ? null : slotById.get(id);
+            if (other != null) {
+                // 同一 id 占了两个槽位：保留版本号较高的一个
+                if (slots.getLong(base(other) + ITEM_VERSION) >= slots.getLong(base + ITEM_VERSION)) {
+                    problem = "duplicate id " + id + ", kept slot " + other;
+                } else {
+                    liveTextBytes -= textBytes(base(other));
+                    slotById.remove(id);
+                    quarantine(other, "duplicate id " + id + ", kept slot " + slot);
+                    quarantined++;
+                }
+            }
+            if (problem != null) {
+                quarantine(slot, problem);
+                quarantined++;
+                continue;
+            }
+            for (int field = 0; field < TEXT_FIELDS; field++) {
+                int length = slots.getInt(base + TEXT_LENGTHS + field * 4);
+                if (length > 0) {
+                    overflowEnd = Math.max(overflowEnd, slots.getLong(base + TEXT_OFFSETS + field * 8) + length);
+                }
+            }
+            slotById.put(id, slot);
+            liveTextBytes += textBytes(base);
+        }
+        if (quarantined > 0) {
+            slots.force();
+            log.error("{}: quarantined {} corrupt slot(s) into {}; those todos are missing until restored by hand", path, quarantined,
+                    quarantinePath());
+        }
+    }
+
+    /**
+     * 校验占用槽位：校验和一致且文本引用都落在溢出区之内。
+     *
+     * @return 问题描述；没有问题返回 null
+     */
+    private String validate(int slot, long overflowSize) {
+        int base = base(slot);
+        if (checksum(base) != slots.getInt(base + CRC)) {
+            return "checksum mismatch";
+        }
+        for (int field = 0; field < TEXT_FIELDS; field++) {
+            long offset = slots.getLong(base + TEXT_OFFSETS + field * 8);
+            int length = slots.getInt(base + TEXT_LENGTHS + field * 4);
+            if (length < -1 || (length >= 0 && (offset < 0 || offset + length > overflowSize))) {
+                return "text reference outside the overflow file";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 隔离一个损坏的槽位：把原始字节追加到 {@code <记录文件>.quarantine} 并 fsync，记录错误日志，再把槽位释放为空闲。
+     *
+     * <p>原地改写没有重做日志，进程在页写回途中中断可能留下半新半旧的槽位；只丢弃这一条而不是拒绝启动，
+     * 原始字节留在隔离文件中供人工核对与恢复。
+     */
+    private void quarantine(int slot, String reason) throws IOException {
+        int base = base(slot);
+        byte[] raw = new byte[SLOT_BYTES];
+        ByteBuffer source = slots.duplicate();
+        source.position(base);
+        source.get(raw);
+        String line = Instant.now() + " generation=" + generation + " slot=" + slot + " reason=" + reason + " bytes="
+                + Base64.getEncoder().encodeToString(raw) + "\n";
+        try (FileChannel out = FileChannel.open(quarantinePath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            ByteBuffer bytes = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+            while (bytes.hasRemaining()) {
+                out.write(bytes);
+            }
+            out.force(false);
+        }
+        log.error("{}: slot {} is corrupt ({}), moved to {}", path, slot, reason, quarantinePath());
+        slots.put(base + STATE, FREE);
+        freeSlots.push(slot);
+    }
+
+    private Path quarantinePath() {
+        return path.resolveSibling(path.getFileName().toString() + ".quarantine");
+    }
+
+    /**
+     * 创建空的记录文件与溢出区并映射，重置内存中的索引。
+     */
+    private void openFresh(Path slotPath, long nextGeneration, int capacity) throws IOException {
+        long slotSize = HEADER_BYTES + (long) capacity * SLOT_BYTES;
+        Path overflowPath = overflowPath(nextGeneration);
+        slotChannel = FileChannel.open(slotPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        overflowChannel = FileChannel.open(overflowPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        slots = slotChannel.map(FileChannel.MapMode.READ_WRITE, 0, checkedSize(slotSize));
+        overflow = overflowChannel.map(FileChannel.MapMode.READ_WRITE, 0, INITIAL_OVERFLOW_BYTES);
+        ByteBuffer header = slots.duplicate();
+        header.put(MAGIC).putShort((short) VERSION).putShort((short) 0).putInt(SLOT_BYTES).putLong(nextGeneration);
+        slots.force();
+        slotBytesWritten += header.position();
+        generation = nextGeneration;
+        slotById.clear();
+        freeSlots.clear();
+        highWater = 0;
+        overflowEnd = 0;
+        liveTextBytes = 0;
+    }
+
+    private void insert(TodoItem item) {
+        int slot = freeSlots.isEmpty() ? highWater : freeSlots.pop();
+        ensureSlot(slot);
+        if (slot == highWater) {
+            highWater++;
+        }
+        int base = base(slot);
+        MappedByteBuffer records = slots;
+        records.put(base + COMPLETED, (byte) (item.isCompleted() ? 1 : 0));
+        records.putShort(base + 2, (short) 0);
+        records.putInt(base + PRIORITY, item.getPriority());
+        records.putLong(base + DUE_MINUTE, item.getDueMinute());
+        records.putLong(base + ITEM_VERSION, item.getVersion());
+        putInstant(base + CREATED_SECONDS, base + CREATED_NANOS, item.getCreatedAt());
+        putInstant(base + UPDATED_SECONDS, base + UPDATED_NANOS, item.getUpdatedAt());
+        putText(base, 0, item.getId());
+        putText(base, 1, item.getTitle());
+        putText(base, 2, item.getDescription());
+        putText(base, 3, item.getCategory());
+        for (int i = TEXT_LENGTHS + TEXT_FIELDS * 4; i < CRC; i++) {
+            records.put(base + i, (byte) 0);
+        }
+        records.put(base + STATE, LIVE);
+        records.putInt(base + CRC, checksum(base));
+        slotBytesWritten += SLOT_BYTES;
+        slotById.put(item.getId(), slot);
+    }
+
+    /**
+     * 原地改写与旧内容不同的字段并重算校验和。
+     */
+    private void update(int slot, TodoItem previous, TodoItem item) {
+        int base = base(slot);
+        MappedByteBuffer records = slots;
+        long written = 4;
+        if (previous.isCompleted() != item.isCompleted()) {
+            records.put(base + COMPLETED, (byte) (item.isCompleted() ? 1 : 0));
+            written += 1;
+        }
+        if (previous.getPriority() != item.getPriority()) {
+            records.putInt(base + PRIORITY, item.getPriority());
+            written += 4;
+        }
+        if (previous.getDueMinute() != item.getDueMinute()) {
+            records.putLong(base + DUE_MINUTE, item.getDueMinute());
+            written += 8;
+        }
+        if (previous.getVersion() != item.getVersion()) {
+            records.putLong(base + ITEM_VERSION, item.getVersion());
+            written += 8;
+        }
+        if (!Objects.equals(previous.getCreatedAt(), item.getCreatedAt())) {
+            putInstant(base + CREATED_SECONDS, base + CREATED_NANOS, item.getCreatedAt());
+            written += 12;
+        }
+        if (!Objects.equals(previous.getUpdatedAt(), item.getUpdatedAt())) {
+            putInstant(base + UPDATED_SECONDS, base + UPDATED_NANOS, item.getUpdatedAt());
+            written += 12;
+        }
+        written += replaceText(base, 1, previous.getTitle(), item.getTitle());
+        written += replaceText(base, 2, previous.getDescription(), item.getDescription());
+        written += replaceText(base, 3, previous.getCategory(), item.getCategory());
+        records.putInt(base + CRC, checksum(base));
+        slotBytesWritten += written;
+    }
+
+    private long replaceText(int base, int field, String previous, String value) {
+        if (Objects.equals(previous, value)) {
+            return 0;
+        }
+        int length = slots.getInt(base + TEXT_LENGTHS + field * 4);
+        liveTextBytes -= Math.max(length, 0);
+        putText(base, field, value);
+        return 12;
+    }
+
+    /**
+     * 文本追加到溢出区末尾，并把偏移与长度写入槽位。
+     */
+    private void putText(int base, int field, String value) {
+        byte[] bytes = value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+        long offset = overflowEnd;
+        if (bytes != null && bytes.length > 0) {
+            ensureOverflow(overflowEnd + bytes.length);
+            ByteBuffer target = overflow.duplicate();
+            target.position((int) offset);
+            target.put(bytes);
+            overflowEnd += bytes.length;
+            liveTextBytes += bytes.length;
+            overflowBytesWritten += bytes.length;
+        }
+        slots.putLong(base + TEXT_OFFSETS + field * 8, offset);
+        slots.putInt(base + TEXT_LENGTHS + field * 4, bytes == null ? -1 : bytes.length);
+    }
+
+    private TodoItem read(int slot) {
+        int base = base(slot);
+        MappedByteBuffer records = slots;
+        TodoItem item = new TodoItem(text(base, 0), text(base, 1), text(base, 2), text(base, 3), records.getInt(base + PRIORITY),
+                records.getLong(base + DUE_MINUTE), records.get(base + COMPLETED) != 0,
+                getInstant(base + CREATED_SECONDS, base + CREATED_NANOS), getInstant(base + UPDATED_SECONDS, base + UPDATED_NANOS));
+        item.setVersion(records.getLong(base + ITEM_VERSION));
+        return item;
+    }
+
+    private String text(int base, int field) {
+        int length = slots.getInt(base + TEXT_LENGTHS + field * 4);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        ByteBuffer source = overflow.duplicate();
+        source.position((int) slots.getLong(base + TEXT_OFFSETS + field * 8));
+        source.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private long textBytes(int base) {
+        long total = 0;
+        for (int field = 0; field < TEXT_FIELDS; field++) {
+            total += Math.max(slots.getInt(base + TEXT_LENGTHS + field * 4), 0);
+        }
+        return total;
+    }
+
+    private void putInstant(int secondsAt, int nanosAt, Instant value) {
+        slots.putLong(secondsAt, value == null ? 0L : value.getEpochSecond());
+        slots.putInt(nanosAt, value == null ? -1 : value.getNano());
+    }
+
+    private Instant getInstant(int secondsAt, int nanosAt) {
+        int nanos = slots.getInt(nanosAt);
+        return nanos < 0 ? null : Instant.ofEpochSecond(slots.getLong(secondsAt), nanos);
+    }
+
+    private int checksum(int base) {
+        ByteBuffer slot = slots.duplicate();
+        slot.limit(base + CRC).position(base);
+        crc.reset();
+        crc.update(slot);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * 槽位超出映射范围时把记录文件扩大一倍并重新映射（扩大前把旧映射写回，保证之后只需写回新映射）。
+     */
+    private void ensureSlot(int slot) {
+        long needed = HEADER_BYTES + (long) (slot + 1) * SLOT_BYTES;
+        if (needed <= slots.capacity()) {
+            return;
+        }
+        long size = HEADER_BYTES + Math.max((long) (slots.capacity() - HEADER_BYTES) * 2, needed - HEADER_BYTES);
+        slots = remap(slotChannel, slots, size);
+    }
+
+    private void ensureOverflow(long needed) {
+        if (needed <= overflow.capacity()) {
+            return;
+        }
+        overflow = remap(overflowChannel, overflow, Math.max((long) overflow.capacity() * 2, needed));
+    }
+
+    private static MappedByteBuffer remap(FileChannel channel, MappedByteBuffer current, long size) {
+        try {
+            current.force();
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, checkedSize(size));
+        } catch (IOException e) {
+            throw new IllegalStateException("failed to grow mapped file", e);
+        }
+    }
+
+    /**
+     * 单个映射区最大 2 GiB。
+     */
+    private static long checkedSize(long size) {
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("mapped file would exceed " + Integer.MAX_VALUE + " bytes");
+        }
+        return size;
+    }
+
+    private static int base(int slot) {
+        return HEADER_BYTES + slot * SLOT_BYTES;
+    }
+
+    private Path tmpPath() {
+        return path.resolveSibling(path.getFileName().toString() + ".tmp");
+    }
+
+    private Path overflowPath(long overflowGeneration) {
+        return path.resolveSibling(path.getFileName().toString() + ".overflow." + overflowGeneration);
+    }
+
+    private void deleteStaleOverflow() throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        String prefix = path.getFileName().toString() + ".overflow.";
+        Path current = overflowPath(generation).getFileName();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(parent)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(prefix) && !file.getFileName().equals(current)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.exists(file) ? Files.size(file) : 0L;
+        } catch (IOException e) {
+            return -1L;
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // 只在替换或关闭时调用，映射区不受通道关闭影响
+        }
+    }
+
+    private IllegalStateException corrupt(String reason) {
+        return new IllegalStateException("corrupt record file " + path + ": " + reason);
+    }
+}
@@ -1,16 +1,55 @@
 package com.iftech.todo.storage;
 
+import com.iftech.todo.domain.TodoCategoryCount;
+import com.iftech.todo.domain.TodoChanges;
+import com.iftech.todo.domain.TodoField;
 import com.iftech.todo.domain.TodoItem;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface TodoRepository {
     /**
      * 查询全部待办事项。
      *
+     * <p>返回的列表与其中的对象可能与存储共享，只能读取不能修改。
+     *
      * @return 待办列表
      */
     List<TodoItem> list();
 
+    /**
+     * 按查询条件过滤、排序并分页。
+     *
+     * <p>返回的对象可能与存储共享，只能读取不能修改。
+     *
+     * @param query 查询条件
+     * @return 满足条件且严格排在游标之后的数据，至多 {@link TodoQuery#getLimit()} 条
+     */
+    List<TodoItem> list(TodoQuery query);
+
+    /**
+     * 按查询条件逐条输出数据，不在内存中构造完整列表，用于导出等大结果集场景。
+     *
+     * <p>过滤、排序与 {@link #list(TodoQuery)} 一致。交给 consumer 的对象可能与存储共享，只能读取不能修改，也不应在回调之外保留。
+     *
+     * @param query    查询条件
+     * @param consumer 逐条接收数据
+     */
+    void stream(TodoQuery query, Consumer<TodoItem> consumer);
+
+    /**
+     * 按分类统计未完成/已完成数量（按分类名排序，不含无分类与数量为 0 的分类）。
+     *
+     * <p>计数随写入增量维护，耗时与分类数成正比，与待办总数无关。
+     *
+     * @return 分类计数
+     */
+    List<TodoCategoryCount> categoryCounts();
+
     /**
      * 按 id 查询单个待办事项。
      *
@@ -19,21 +58,54 @@ public interface TodoRepository {
      */
     TodoItem findById(String id);
 
+    /**
+     * 按 id 批量查询待办事项（一次往返）。
+     *
+     * @param ids 待办 id
+     * @return id 到对象的映射；不存在的 id 不出现在结果中
+     */
+    Map<String, TodoItem> findByIds(Collection<String> ids);
+
+    /**
+     * 增量同步：返回令牌之后变化过的待办、被删除的 id，以及新的令牌。
+     *
+     * <p>令牌的格式由实现决定，对调用方不透明；结果可能重复包含上次已返回过的数据，客户端按 {@code version} 去重。
+     * 令牌为 null、已超过删除记录的保留期或无法识别来源时返回全量。
+     *
+     * @param since 上次返回的令牌（可为 null）
+     * @return 变化集合
+     * @throws IllegalArgumentException 令牌格式不正确
+     */
+    TodoChanges changes(String since);
+
     /**
      * 新增待办事项。
      *
      * @param item 待办对象
-     * @return 持久化后的对象（通常等于入参的拷贝）
+     * @return 持久化后的对象（入参的拷贝，不回读）
      */
     TodoItem create(TodoItem item);
 
     /**
-     * 更新待办事项。
+     * 按版本号条件更新待办事项：只有存储中的版本号仍等于 {@code item.getVersion()} 时才写入，写入后版本号加一。
      *
-     * @param item 待办对象
-     * @return 更新后的对象
+     * <p>只写入 {@code fields} 中列出的字段与更新时间，不回读。
+     *
+     * @param item   合并了变更后的完整对象，版本号为读取时的版本
+     * @param fields 需要写入的字段
+     * @return 更新后的对象（版本号已加一）；目标不存在返回 null
+     * @throws TodoConflictException 版本号不一致（已被其他请求修改）
      */
-    TodoItem update(TodoItem item);
+    TodoItem update(TodoItem item, Set<TodoField> fields);
+
+    /**
+     * 原子地切换完成态并把版本号加一。
+     *
+     * @param id        待办 id
+     * @param updatedAt 更新时间
+     * @return 切换后的对象；目标不存在返回 null
+     */
+    TodoItem toggle(String id, Instant updatedAt);
 
     /**
      * 删除待办事项。
@@ -42,4 +114,35 @@ public interface TodoRepository {
      * @return true 表示删除成功；false 表示目标不存在
      */
     boolean delete(String id);
+
+    /**
+     * 在同一事务中写入一组变更：要么全部生效，要么全部不生效。
+     *
+     * @param batch 变更集合（每个 id 只出现一次）
+     * @throws TodoConflictException 待更新或删除的数据已被其他请求修改或删除，整批回滚
+     */
+    void apply(TodoBatch batch);
+
+    /**
+     * 是否只有本进程写入这份数据。
+     *
+     * <p>为 true 时服务层的进程内变更版本号覆盖全部写入，可以用作聚合接口的 ETag；多个实例共享的数据库返回 false，
+     * 其他实例的写入不会推进本进程的版本号，此时聚合 ETag 改用 {@link #changeTag()}。
+     *
+     * @return true 表示本进程是唯一的写入方
+     */
+    default boolean exclusiveWriter() {
+        return true;
+    }
+
+    /**
+     * 存储自身维护的变更标签，覆盖所有写入方（包括其他实例与直接修改存储）的写入。
+     *
+     * <p>标签不能比随后读到的数据新：先取标签再读数据时，读到的数据至少包含标签所代表的全部写入。
+     *
+     * @return 变更标签；存储不维护或暂时无法给出时返回 null
+     */
+    default String changeTag() {
+        return null;
+    }
 }
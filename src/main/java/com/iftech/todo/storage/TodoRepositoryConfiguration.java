@@ -0,0 +1,57 @@
+package com.iftech.todo.storage;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * 存储装饰链的装配：按 profile 选出的存储 → 按 id 缓存（仅 MySQL，见 {@link #todoRepository}）→ 指标。
+ *
+ * <p>各存储实现仍是独立的 bean，自行管理文件、线程与连接的生命周期；服务层注入的是这里组装出的 {@code @Primary} 存储，
+ * 因此所有调用都经过同一个 {@link MeteredTodoRepository}，缓存命中也计入 {@code todo.repository} 指标。
+ */
+@Configuration
+public class TodoRepositoryConfiguration {
+    private static final Logger log = LoggerFactory.getLogger(TodoRepositoryConfiguration.class);
+
+    /**
+     * 服务层使用的存储。
+     *
+     * <p>按 id 缓存只能由本进程的写入失效，因此只在 {@code todo.cache.enabled} 与 {@code todo.cache.single-instance} 都为 true、
+     * 且未开启只读副本时装配；其他组合下忽略缓存配置并记录警告。
+     *
+     * @param backend             按 profile 选出的存储实现（不会注入本方法自身创建的 bean）
+     * @param cacheEnabled        是否在 MySQL 存储前加按 id 缓存
+     * @param cacheSingleInstance 部署方确认本实例是数据库唯一的写入方（没有其他实例，也没有直接改库）
+     * @param cacheMaxSize        缓存最多保存的条目数
+     * @param cacheTtlMillis      缓存条目存活时间（毫秒），即确认有误时读到旧数据的最长时间
+     * @param replica             只读副本路由（{@code todo.jdbc.replica.enabled=true} 时存在）
+     * @param meterRegistry       指标注册表
+     * @return 装饰后的存储
+     */
+    @Bean
+    @Primary
+    public MeteredTodoRepository todoRepository(TodoRepository backend, @Value("${todo.cache.enabled:false}") boolean cacheEnabled,
+            @Value("${todo.cache.single-instance:false}") boolean cacheSingleInstance,
+            @Value("${todo.cache.max-size:10000}") int cacheMaxSize, @Value("${todo.cache.ttl-ms:5000}") long cacheTtlMillis,
+            Optional<ReplicaRouter> replica, MeterRegistry meterRegistry) {
+        TodoRepository repository = backend;
+        if (cacheEnabled && backend instanceof JdbcTodoRepository) {
+            if (!cacheSingleInstance) {
+                // 其他实例的写入与直接改库不会失效本进程的缓存
+                log.warn("todo.cache.enabled is ignored unless todo.cache.single-instance is set");
+            } else if (replica.isPresent()) {
+                // 未命中时按 id 的读取可能落在复制延迟中的副本上，旧版本进入缓存后在存活时间内对所有客户端可见，更新时按旧版本号冲突
+                log.warn("todo.cache.enabled is ignored because todo.jdbc.replica.enabled is set");
+            } else {
+                repository = new CachingTodoRepository((JdbcTodoRepository) backend, cacheMaxSize, cacheTtlMillis, meterRegistry);
+            }
+        }
+        return new MeteredTodoRepository(repository, meterRegistry);
+    }
+}
@@ -0,0 +1,327 @@
+package com.iftech.todo.storage;
+
+import com.iftech.todo.domain.TodoItem;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * 文件存储的二进制快照格式。
+ *
+ * <pre>
+ * 文件   := 文件头 数据块* 结束块
+ * 文件头 := 魔数 "TODOSNAP"（8 字节） | 版本号 u16 | 保留 u16
+ * 数据块 := 负载长度 i32（&gt; 0） | 条数 i32 | 负载的 CRC32 i32 | 负载
+ * 结束块 := 0 i32 | 总条数 i64 | 总条数 8 字节的 CRC32 i32
+ * </pre>
+ *
+ * <p>负载由若干条记录顺序拼接，每条记录为：id、title、description、category（字符串）| priority i32 | dueMinute i64 |
+ * completed u8 | version i64 | createdAt、updatedAt（时间）。字符串为 长度 i32（-1 表示 null）+ UTF-8 字节；
+ * 时间为 存在标志 u8 + 纪元秒 i64 + 纳秒 i32。整数均为大端序。
+ *
+ * <p>读写都经由 {@link FileChannel} 按块进行，内存中只保留一个块的缓冲，不把整个文件读成字符串。
+ * 校验和不一致、长度越界、缺少结束块或总条数对不上时抛出 {@link IllegalStateException}，不会把损坏的文件当成空数据继续运行。
+ */
+final class TodoSnapshot {
+    /**
+     * 文件头魔数，读取时据此区分二进制快照与旧的 JSON 文件。
+     */
+    static final byte[] MAGIC = "TODOSNAP".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+
+    /**
+     * 单个数据块负载的目标大小：攒够即写出一块。
+     */
+    private static final int BLOCK_BYTES = 64 * 1024;
+    /**
+     * 读取时允许的最大块长度，超过视为损坏（单条记录超大时块会超过目标大小，但不会到这个量级）。
+     */
+    private static final int MAX_BLOCK_BYTES = 64 * 1024 * 1024;
+    private static final int HEADER_BYTES = MAGIC.length + 4;
+    private static final int BLOCK_HEADER_BYTES = 12;
+
+    private TodoSnapshot() {
+    }
+
+    /**
+     * 判断文件头是否为二进制快照的魔数。
+     *
+     * @param head 文件开头的若干字节
+     * @param length 有效字节数
+     * @return true 表示二进制快照
+     */
+    static boolean isSnapshot(byte[] head, int length) {
+        if (length < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (head[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 把待办写入通道（从当前位置开始），调用方负责 fsync 与原子替换。
+     *
+     * @param out   目标通道
+     * @param items 待办
+     * @return 写入的字节数
+     * @throws IOException 写入失败
+     */
+    static long write(FileChannel out, Collection<TodoItem> items) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.BIG_ENDIAN);
+        header.put(MAGIC).putShort((short) VERSION).putShort((short) 0).flip();
+        long written = writeFully(out, header);
+
+        ByteBuffer payload = ByteBuffer.allocate(BLOCK_BYTES + BLOCK_BYTES / 4);
+        ByteBuffer blockHeader = ByteBuffer.allocate(BLOCK_HEADER_BYTES);
+        CRC32 crc = new CRC32();
+        int count = 0;
+        for (TodoItem item : items) {
+            payload = encode(payload, item);
+            count++;
+            if (payload.position() >= BLOCK_BYTES) {
+                written += writeBlock(out, payload, count, blockHeader, crc);
+                count = 0;
+            }
+        }
+        if (count > 0) {
+            written += writeBlock(out, payload, count, blockHeader, crc);
+        }
+
+        ByteBuffer total = ByteBuffer.allocate(8).putLong(items.size());
+        crc.reset();
+        crc.update(total.array(), 0, 8);
+        ByteBuffer footer = ByteBuffer.allocate(16);
+        footer.putInt(0).putLong(items.size()).putInt((int) crc.getValue()).flip();
+        return written + writeFully(out, footer);
+    }
+
+    /**
+     * 从文件读取全部待办。
+     *
+     * @param path 快照文件
+     * @return 待办列表
+     * @throws IllegalStateException 文件损坏、版本不支持或读取失败
+     */
+    static List<TodoItem> read(Path path) {
+        try (FileChannel in = FileChannel.open(path)) {
+            return read(in, path.toString());
+        } catch (IOException e) {
+            throw new IllegalStateException("failed to read snapshot " + path, e);
+        }
+    }
+
+    private static List<TodoItem> read(FileChannel in, String name) throws IOException {
+        long size = in.size();
+        ByteBuffer header = readFully(in, ByteBuffer.allocate(HEADER_BYTES), name);
+        byte[] magic = new byte[MAGIC.length];
+        header.get(magic);
+        if (!isSnapshot(magic, magic.length)) {
+            throw corrupt(name, "bad magic");
+        }
+        int version = header.getShort() & 0xFFFF;
+        if (version != VERSION) {
+            throw corrupt(name, "unsupported version " + version);
+        }
+
+        List<TodoItem> items = new ArrayList<TodoItem>((int) Math.min(size / 64, 1 << 20));
+        ByteBuffer blockHeader = ByteBuffer.allocate(BLOCK_HEADER_BYTES);
+        ByteBuffer payload = ByteBuffer.allocate(BLOCK_BYTES + BLOCK_BYTES / 4);
+        CRC32 crc = new CRC32();
+        int block = 0;
+        while (true) {
+            blockHeader.clear().limit(4);
+            readFully(in, blockHeader, name);
+            int length = blockHeader.getInt();
+            if (length == 0) {
+                break;
+            }
+            blockHeader.clear().position(4);
+            readFully(in, blockHeader, name);
+            blockHeader.position(4);
+            int count = blockHeader.getInt();
+            int expectedCrc = blockHeader.getInt();
+            if (length < 0 || length > MAX_BLOCK_BYTES || length > size - in.position() || count <= 0) {
+                throw corrupt(name, "block " + block + " has invalid length " + length + " or count " + count);
+            }
+            if (payload.capacity() < length) {
+                payload = ByteBuffer.allocate(length);
+            }
+            payload.clear().limit(length);
+            readFully(in, payload, name);
+            crc.reset();
+            crc.update(payload.array(), 0, length);
+            if ((int) crc.getValue() != expectedCrc) {
+                throw corrupt(name, "block " + block + " checksum mismatch");
+            }
+            try {
+                for (int i = 0; i < count; i++) {
+                    items.add(decode(payload));
+                }
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                throw corrupt(name, "block " + block + " has malformed records");
+            }
+            if (payload.hasRemaining()) {
+                throw corrupt(name, "block " + block + " has trailing bytes");
+            }
+            block++;
+        }
+
+        ByteBuffer footer = readFully(in, ByteBuffer.allocate(12), name);
+        long total = footer.getLong();
+        crc.reset();
+        crc.update(footer.array(), 0, 8);
+        if ((int) crc.getValue() != footer.getInt() || total != items.size()) {
+            throw corrupt(name, "footer expects " + total + " items, read " + items.size());
+        }
+        if (in.position() != size) {
+            throw corrupt(name, "trailing bytes after footer");
+        }
+        return items;
+    }
+
+    private static long writeBlock(FileChannel out, ByteBuffer payload, int count, ByteBuffer blockHeader, CRC32 crc) throws IOException {
+        payload.flip();
+        crc.reset();
+        crc.update(payload.array(), 0, payload.limit());
+        blockHeader.clear();
+        blockHeader.putInt(payload.limit()).putInt(count).putInt((int) crc.getValue()).flip();
+        long written = writeFully(out, blockHeader) + writeFully(out, payload);
+        payload.clear();
+        return written;
+    }
+
+    /**
+     * 把一条记录追加到缓冲，空间不足时换成更大的缓冲。
+     *
+     * @return 写入后的缓冲（可能是新对象）
+     */
+    private static ByteBuffer encode(ByteBuffer buffer, TodoItem item) {
+        byte[] id = bytes(item.getId());
+        byte[] title = bytes(item.getTitle());
+        byte[] description = bytes(item.getDescription());
+        byte[] category = bytes(item.getCategory());
+        int needed = 4 * 4 + length(id) + length(title) + length(description) + length(category) + 4 + 8 + 1 + 8 + 2 * 13;
+        if (buffer.remaining() < needed) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + needed));
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+        }
+        putString(buffer, id);
+        putString(buffer, title);
+        putString(buffer, description);
+        putString(buffer, category);
+        buffer.putInt(item.getPriority());
+        buffer.putLong(item.getDueMinute());
+        buffer.put((byte) (item.isCompleted() ? 1 : 0));
+        buffer.putLong(item.getVersion());
+        putInstant(buffer, item.getCreatedAt());
+        putInstant(buffer, item.getUpdatedAt());
+        return buffer;
+    }
+
+    private static TodoItem decode(ByteBuffer buffer) {
+        String id = getString(buffer);
+        String title = getString(buffer);
+        String description = getString(buffer);
+        String category = getString(buffer);
+        int priority = buffer.getInt();
+        long dueMinute = buffer.getLong();
+        boolean completed = buffer.get() != 0;
+        long version = buffer.getLong();
+        Instant createdAt = getInstant(buffer);
+        Instant updatedAt = getInstant(buffer);
+        TodoItem item = new TodoItem(id, title, description, category, priority, dueMinute, completed, createdAt, updatedAt);
+        item.setVersion(version);
+        return item;
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] value) {
+        return value == null ? 0 : value.length;
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(value.length).put(value);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("string length " + length);
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static void putInstant(ByteBuffer buffer, Instant value) {
+        if (value == null) {
+            buffer.put((byte) 0);
+        } else {
+            buffer.put((byte) 1).putLong(value.getEpochSecond()).putInt(value.getNano());
+        }
+    }
+
+    private static Instant getInstant(ByteBuffer buffer) {
+        if (buffer.get() == 0) {
+            return null;
+        }
+        long seconds = buffer.getLong();
+        int nanos = buffer.getInt();
+        if (nanos < 0 || nanos > 999_999_999) {
+            throw new IllegalArgumentException("nanos " + nanos);
+        }
+        return Instant.ofEpochSecond(seconds, nanos);
+    }
+
+    private static long writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        long written = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        return written;
+    }
+
+    private static ByteBuffer readFully(FileChannel in, ByteBuffer buffer, String name) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer) < 0) {
+                throw corrupt(name, "truncated", new EOFException());
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static IllegalStateException corrupt(String name, String reason) {
+        return new IllegalStateException("corrupt snapshot " + name + ": " + reason);
+    }
+
+    private static IllegalStateException corrupt(String name, String reason, Throwable cause) {
+        return new IllegalStateException("corrupt snapshot " + name + ": " + reason, cause);
+    }
+}
@@ -0,0 +1,280 @@
+package com.iftech.todo.storage;
+
+import com.iftech.todo.domain.TodoCategoryCount;
+import com.iftech.todo.domain.TodoItem;
+import com.iftech.todo.domain.TodoSort;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 文件存储某一时刻的不可变数据视图：id 索引、按创建时间倒序排好的全部待办、分类/完成态/优先级二级索引与分类计数。
+ *
+ * <p>写入方调用 {@link #with(TodoItem)} / {@link #without(String)} 得到下一个版本，只复制变化路径上的节点，其余结构与上一版本共享；
+ * 发布后任何字段都不再修改，读取方拿到引用后无需加锁、无需复制即可看到一致的数据。视图内的待办对象同样不会被原地修改。
+ */
+final class TodoView {
+    /**
+     * 全部待办的顺序，与 {@link TodoSort#CREATED_AT_DESC} 一致。
+     */
+    private static final Comparator<TodoItem> ORDER = TodoSort.CREATED_AT_DESC.comparator();
+
+    /**
+     * 指定排序与视图顺序一致、候选桶大于总数的该比例时，直接顺序扫描并在凑够 limit 条后停止，不再排序。
+     */
+    private static final int SCAN_RATIO = 8;
+
+    static final TodoView EMPTY = new TodoView(0L, HashTrie.<String, TodoItem>empty(), new SortedTreap<TodoItem>(ORDER),
+            Collections.<String, HashTrie<String, TodoItem>>emptyMap(), Collections.<Boolean, HashTrie<String, TodoItem>>emptyMap(),
+            Collections.<Integer, HashTrie<String, TodoItem>>emptyMap(), new TreeMap<String, long[]>());
+
+    private final long version;
+    private final HashTrie<String, TodoItem> byId;
+    private final SortedTreap<TodoItem> ordered;
+    private final Map<String, HashTrie<String, TodoItem>> byCategory;
+    private final Map<Boolean, HashTrie<String, TodoItem>> byCompleted;
+    private final Map<Integer, HashTrie<String, TodoItem>> byPriority;
+    /**
+     * 分类 → {未完成数, 已完成数}，按分类名有序；数组发布后不再修改，变化时替换为新数组。
+     */
+    private final TreeMap<String, long[]> categoryCounts;
+
+    private TodoView(long version, HashTrie<String, TodoItem> byId, SortedTreap<TodoItem> ordered,
+            Map<String, HashTrie<String, TodoItem>> byCategory, Map<Boolean, HashTrie<String, TodoItem>> byCompleted,
+            Map<Integer, HashTrie<String, TodoItem>> byPriority, TreeMap<String, long[]> categoryCounts) {
+        this.version = version;
+        this.byId = byId;
+        this.ordered = ordered;
+        this.byCategory = byCategory;
+        this.byCompleted = byCompleted;
+        this.byPriority = byPriority;
+        this.categoryCounts = categoryCounts;
+    }
+
+    /**
+     * 由全部待办一次性构建视图（启动载入时使用）：先排序，再按分组一次性建树，不走逐条写入的路径复制。
+     *
+     * @param items 待办（id 互不相同且非 null）
+     * @return 版本号为 0 的视图
+     */
+    static TodoView of(Collection<TodoItem> items) {
+        List<TodoItem> sorted = new ArrayList<TodoItem>(items);
+        sorted.sort(ORDER);
+        Map<String, List<TodoItem>> categoryGroups = new HashMap<String, List<TodoItem>>();
+        Map<Boolean, List<TodoItem>> completedGroups = new HashMap<Boolean, List<TodoItem>>();
+        Map<Integer, List<TodoItem>> priorityGroups = new HashMap<Integer, List<TodoItem>>();
+        TreeMap<String, long[]> counts = new TreeMap<String, long[]>();
+        for (TodoItem item : sorted) {
+            if (item.getCategory() != null) {
+                categoryGroups.computeIfAbsent(item.getCategory(), key -> new ArrayList<TodoItem>()).add(item);
+                counts.computeIfAbsent(item.getCategory(), key -> new long[2])[item.isCompleted() ? 1 : 0]++;
+            }
+            completedGroups.computeIfAbsent(item.isCompleted(), key -> new ArrayList<TodoItem>()).add(item);
+            priorityGroups.computeIfAbsent(item.getPriority(), key -> new ArrayList<TodoItem>()).add(item);
+        }
+        return new TodoView(0L, HashTrie.of(sorted, TodoItem::getId), SortedTreap.ofSorted(ORDER, sorted), buckets(categoryGroups),
+                buckets(completedGroups), buckets(priorityGroups), counts);
+    }
+
+    private static <K> Map<K, HashTrie<String, TodoItem>> buckets(Map<K, List<TodoItem>> groups) {
+        Map<K, HashTrie<String, TodoItem>> buckets = new HashMap<K, HashTrie<String, TodoItem>>();
+        for (Map.Entry<K, List<TodoItem>> entry : groups.entrySet()) {
+            buckets.put(entry.getKey(), HashTrie.of(entry.getValue(), TodoItem::getId));
+        }
+        return buckets;
+    }
+
+    /**
+     * 视图版本号：每次 {@link #with} / {@link #without} 加一。
+     *
+     * @return 版本号
+     */
+    long version() {
+        return version;
+    }
+
+    /**
+     * 按 id 查询（O(1)）。
+     *
+     * @param id 待办 id
+     * @return 视图内的对象；不存在返回 null
+     */
+    TodoItem get(String id) {
+        return id == null ? null : byId.get(id);
+    }
+
+    int size() {
+        return byId.size();
+    }
+
+    /**
+     * 按创建时间倒序的全部待办，只读且不复制。
+     *
+     * @return 只读列表
+     */
+    List<TodoItem> all() {
+        return ordered.asList();
+    }
+
+    /**
+     * 按分类名顺序返回各分类的未完成/已完成数量，耗时与分类数成正比。
+     *
+     * @return 分类计数
+     */
+    List<TodoCategoryCount> categoryCounts() {
+        List<TodoCategoryCount> counts = new ArrayList<TodoCategoryCount>(categoryCounts.size());
+        for (Map.Entry<String, long[]> entry : categoryCounts.entrySet()) {
+            counts.add(new TodoCategoryCount(entry.getKey(), entry.getValue()[0], entry.getValue()[1]));
+        }
+        return counts;
+    }
+
+    /**
+     * 按查询条件过滤、排序并截取至多 limit 条。
+     *
+     * <p>按创建时间倒序且没有更小的候选桶时，从游标位置起顺序扫描已排好序的视图，凑够 limit 条即停止；
+     * 其他情况取最小的候选桶过滤后排序。
+     *
+     * @param query 查询条件
+     * @return 视图内的对象引用（调用方不得修改）
+     */
+    List<TodoItem> select(TodoQuery query) {
+        TodoItem probe = query.getAfter() == null ? null : query.getAfter().toProbe();
+        HashTrie<String, TodoItem> bucket = smallestBucket(query);
+        if (query.getSort() == TodoSort.CREATED_AT_DESC && (bucket == null || bucket.size() > size() / SCAN_RATIO)) {
+            int limit = query.getLimit() == null ? Integer.MAX_VALUE : query.getLimit();
+            List<TodoItem> matched = new ArrayList<TodoItem>(Math.min(limit, 256));
+            for (Iterator<TodoItem> it = ordered.iterator(probe); it.hasNext() && matched.size() < limit; ) {
+                TodoItem item = it.next();
+                if (query.matches(item)) {
+                    matched.add(item);
+                }
+            }
+            return matched;
+        }
+        Comparator<TodoItem> comparator = query.getSort().comparator();
+        List<TodoItem> matched = new ArrayList<TodoItem>();
+        (bucket == null ? byId : bucket).forEachValue(item -> {
+            if (query.matches(item) && (probe == null || comparator.compare(item, probe) > 0)) {
+                matched.add(item);
+            }
+        });
+        matched.sort(comparator);
+        if (query.getLimit() != null && query.getLimit() < matched.size()) {
+            return matched.subList(0, query.getLimit());
+        }
+        return matched;
+    }
+
+    /**
+     * 返回新增或替换一条待办之后的视图，本视图不变。
+     *
+     * @param item 待办（之后不再被修改）
+     * @return 下一个版本
+     */
+    TodoView with(TodoItem item) {
+        TodoItem previous = byId.get(item.getId());
+        SortedTreap<TodoItem> nextOrdered = previous == null ? ordered : ordered.minus(previous);
+        Map<String, HashTrie<String, TodoItem>> nextCategory = byCategory;
+        Map<Boolean, HashTrie<String, TodoItem>> nextCompleted = byCompleted;
+        Map<Integer, HashTrie<String, TodoItem>> nextPriority = byPriority;
+        TreeMap<String, long[]> nextCounts = categoryCounts;
+        if (previous != null) {
+            nextCategory = discard(nextCategory, previous.getCategory(), previous.getId());
+            nextCompleted = discard(nextCompleted, previous.isCompleted(), previous.getId());
+            nextPriority = discard(nextPriority, previous.getPriority(), previous.getId());
+            nextCounts = count(nextCounts, previous, -1);
+        }
+        return new TodoView(version + 1, byId.plus(item.getId(), item), nextOrdered.plus(item),
+                add(nextCategory, item.getCategory(), item), add(nextCompleted, item.isCompleted(), item),
+                add(nextPriority, item.getPriority(), item), count(nextCounts, item, 1));
+    }
+
+    /**
+     * 返回删除一条待办之后的视图；不存在时返回本视图。
+     *
+     * @param id 待办 id
+     * @return 下一个版本
+     */
+    TodoView without(String id) {
+        TodoItem previous = get(id);
+        if (previous == null) {
+            return this;
+        }
+        return new TodoView(version + 1, byId.minus(id), ordered.minus(previous), discard(byCategory, previous.getCategory(), id),
+                discard(byCompleted, previous.isCompleted(), id), discard(byPriority, previous.getPriority(), id),
+                count(categoryCounts, previous, -1));
+    }
+
+    private HashTrie<String, TodoItem> smallestBucket(TodoQuery query) {
+        HashTrie<String, TodoItem> smallest = null;
+        if (query.getCategory() != null) {
+            smallest = bucket(byCategory, query.getCategory());
+        }
+        if (query.getCompleted() != null) {
+            smallest = smaller(smallest, bucket(byCompleted, query.getCompleted()));
+        }
+        if (query.getPriority() != null) {
+            smallest = smaller(smallest, bucket(byPriority, query.getPriority()));
+        }
+        return smallest;
+    }
+
+    private static HashTrie<String, TodoItem> smaller(HashTrie<String, TodoItem> current, HashTrie<String, TodoItem> candidate) {
+        return current == null || candidate.size() < current.size() ? candidate : current;
+    }
+
+    private static <K> HashTrie<String, TodoItem> bucket(Map<K, HashTrie<String, TodoItem>> index, K key) {
+        HashTrie<String, TodoItem> ids = index.get(key);
+        return ids == null ? HashTrie.<String, TodoItem>empty() : ids;
+    }
+
+    /**
+     * 复制外层映射（键的个数很少），替换其中一个桶。
+     */
+    private static <K> Map<K, HashTrie<String, TodoItem>> add(Map<K, HashTrie<String, TodoItem>> index, K key, TodoItem item) {
+        if (key == null) {
+            return index;
+        }
+        Map<K, HashTrie<String, TodoItem>> copy = new HashMap<K, HashTrie<String, TodoItem>>(index);
+        copy.put(key, bucket(index, key).plus(item.getId(), item));
+        return copy;
+    }
+
+    private static <K> Map<K, HashTrie<String, TodoItem>> discard(Map<K, HashTrie<String, TodoItem>> index, K key, String id) {
+        HashTrie<String, TodoItem> ids = key == null ? null : index.get(key);
+        if (ids == null) {
+            return index;
+        }
+        Map<K, HashTrie<String, TodoItem>> copy = new HashMap<K, HashTrie<String, TodoItem>>(index);
+        HashTrie<String, TodoItem> next = ids.minus(id);
+        if (next.isEmpty()) {
+            copy.remove(key);
+        } else {
+            copy.put(key, next);
+        }
+        return copy;
+    }
+
+    private static TreeMap<String, long[]> count(TreeMap<String, long[]> counts, TodoItem item, int delta) {
+        if (item.getCategory() == null) {
+            return counts;
+        }
+        TreeMap<String, long[]> copy = new TreeMap<String, long[]>(counts);
+        long[] current = counts.get(item.getCategory());
+        long[] next = current == null ? new long[2] : current.clone();
+        next[item.isCompleted() ? 1 : 0] += delta;
+        if (next[0] == 0 && next[1] == 0) {
+            copy.remove(item.getCategory());
+        } else {
+            copy.put(item.getCategory(), next);
+        }
+        return copy;
+    }
+}
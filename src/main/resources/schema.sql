@@ -6,13 +6,19 @@ CREATE TABLE IF NOT EXISTS todo_item (
   priority TINYINT NOT NULL DEFAULT 2,
   due_date DATETIME(3),
   completed BOOLEAN NOT NULL,
+  version BIGINT NOT NULL DEFAULT 0,
   created_at DATETIME(3) NOT NULL,
   updated_at DATETIME(3) NOT NULL,
-  INDEX idx_todo_item_created_at (created_at),
   INDEX idx_todo_item_completed (completed),
-  INDEX idx_todo_item_category (category),
-  INDEX idx_todo_item_priority (priority),
-  INDEX idx_todo_item_due_date (due_date)
+  INDEX idx_todo_item_created (created_at, id),
+  INDEX idx_todo_item_priority_created (priority, created_at, id),
+  INDEX idx_todo_item_due_asc (due_date, created_at DESC, id DESC),
+  INDEX idx_todo_item_due_desc (due_date, created_at, id),
+  INDEX idx_todo_item_category_created (category, created_at, id),
+  INDEX idx_todo_item_category_priority (category, priority, created_at, id),
+  INDEX idx_todo_item_category_due_asc (category, due_date, created_at DESC, id DESC),
+  INDEX idx_todo_item_category_due_desc (category, due_date, created_at, id),
+  INDEX idx_todo_item_updated (updated_at, id)
 );
 
 SET @col_exists_category := (
@@ -53,38 +59,243 @@ DEALLOCATE PREPARE stmt_due_date;
 
 ALTER TABLE todo_item MODIFY COLUMN due_date DATETIME(3) NULL;
 
-SET @idx_exists_category := (
+SET @col_exists_version := (
+  SELECT COUNT(*)
+  FROM information_schema.COLUMNS
+  WHERE TABLE_SCHEMA = DATABASE()
+    AND TABLE_NAME = 'todo_item'
+    AND COLUMN_NAME = 'version'
+);
+SET @sql_version := IF(@col_exists_version = 0, 'ALTER TABLE todo_item ADD COLUMN version BIGINT NOT NULL DEFAULT 0 AFTER completed', 'SELECT 1');
+PREPARE stmt_version FROM @sql_version;
+EXECUTE stmt_version;
+DEALLOCATE PREPARE stmt_version;
+
+-- 每种排序方式对应一组组合索引（带/不带分类前缀），列顺序与方向和 JdbcTodoRepository 生成的 ORDER BY 一致；
+-- 升序截止时间排序的次级键是 created_at/id 倒序，需要 MySQL 8 的降序索引。
+SET @idx_exists_created := (
+  SELECT COUNT(*)
+  FROM information_schema.STATISTICS
+  WHERE TABLE_SCHEMA = DATABASE()
+    AND TABLE_NAME = 'todo_item'
+    AND INDEX_NAME = 'idx_todo_item_created'
+);
+SET @sql_idx_created := IF(@idx_exists_created = 0, 'CREATE INDEX idx_todo_item_created ON todo_item (created_at, id)', 'SELECT 1');
+PREPARE stmt_idx_created FROM @sql_idx_created;
+EXECUTE stmt_idx_created;
+DEALLOCATE PREPARE stmt_idx_created;
+
+SET @idx_exists_priority_created := (
+  SELECT COUNT(*)
+  FROM information_schema.STATISTICS
+  WHERE TABLE_SCHEMA = DATABASE()
+    AND TABLE_NAME = 'todo_item'
+    AND INDEX_NAME = 'idx_todo_item_priority_created'
+);
+SET @sql_idx_priority_created := IF(@idx_exists_priority_created = 0, 'CREATE INDEX idx_todo_item_priority_created ON todo_item (priority, created_at, id)', 'SELECT 1');
+PREPARE stmt_idx_priority_created FROM @sql_idx_priority_created;
+EXECUTE stmt_idx_priority_created;
+DEALLOCATE PREPARE stmt_idx_priority_created;
+
+SET @idx_exists_due_asc := (
+  SELECT COUNT(*)
+  FROM information_schema.STATISTICS
+  WHERE TABLE_SCHEMA = DATABASE()
+    AND TABLE_NAME = 'todo_item'
+    AND INDEX_NAME = 'idx_todo_item_due_asc'
+);
+SET @sql_idx_due_asc := IF(@idx_exists_due_asc = 0, 'CREATE INDEX idx_todo_item_due_asc ON todo_item (due_date, created_at DESC, id DESC)', 'SELECT 1');
+PREPARE stmt_idx_due_asc FROM @sql_idx_due_asc;
+EXECUTE stmt_idx_due_asc;
+DEALLOCATE PREPARE stmt_idx_due_asc;
+
+SET @idx_exists_due_desc := (
+  SELECT COUNT(*)
+  FROM information_schema.STATISTICS
+  WHERE TABLE_SCHEMA = DATABASE()
+    AND TABLE_NAME = 'todo_item'
+    AND INDEX_NAME = 'idx_todo_item_due_desc'
+);
+SET @sql_idx_due_desc := IF(@idx_exists_due_desc = 0, 'CREATE INDEX idx_todo_item_due_desc ON todo_item (due_date, created_at, id)', 'SELECT 1');
+PREPARE stmt_idx_due_desc FROM @sql_idx_due_desc;
+EXECUTE stmt_idx_due_desc;
+DEALLOCATE PREPARE stmt_idx_due_desc;
+
+SET @idx_exists_category_created := (
+  SELECT COUNT(*)
+  FROM information_schema.STATISTICS
+  WHERE TABLE_SCHEMA = DATABASE()
+    AND TABLE_NAME = 'todo_item'
+    AND INDEX_NAME = 'idx_todo_item_category_created'
+);
+SET @sql_idx_category_created := IF(@idx_exists_category_created = 0, 'CREATE INDEX idx_todo_item_category_created ON todo_item (category, created_at, id)', 'SELECT 1');
+PREPARE stmt_idx_category_created FROM @sql_idx_category_created;
+EXECUTE stmt_idx_category_created;
+DEALLOCATE PREPARE stmt_idx_category_created;
+
+SET @idx_exists_category_priority := (
+  SELECT COUNT(*)
+  FROM information_schema.STATISTICS
+  WHERE TABLE_SCHEMA = DATABASE()
+    AND TABLE_NAME = 'todo_item'
+    AND INDEX_NAME = 'idx_todo_item_category_priority'
+);
+SET @sql_idx_category_priority := IF(@idx_exists_category_priority = 0, 'CREATE INDEX idx_todo_item_category_priority ON todo_item (category, priority, created_at, id)', 'SELECT 1');
+PREPARE stmt_idx_category_priority FROM @sql_idx_category_priority;
+EXECUTE stmt_idx_category_priority;
+DEALLOCATE PREPARE stmt_idx_category_priority;
+
+SET @idx_exists_category_due_asc := (
+  SELECT COUNT(*)
+  FROM information_schema.STATISTICS
+  WHERE TABLE_SCHEMA = DATABASE()
+    AND TABLE_NAME = 'todo_item'
+    AND INDEX_NAME = 'idx_todo_item_category_due_asc'
+);
+SET @sql_idx_category_due_asc := IF(@idx_exists_category_due_asc = 0, 'CREATE INDEX idx_todo_item_category_due_asc ON todo_item (category, due_date, created_at DESC, id DESC)', 'SELECT 1');
+PREPARE stmt_idx_category_due_asc FROM @sql_idx_category_due_asc;
+EXECUTE stmt_idx_category_due_asc;
+DEALLOCATE PREPARE stmt_idx_category_due_asc;
+
+SET @idx_exists_category_due_desc := (
+  SELECT COUNT(*)
+  FROM information_schema.STATISTICS
+  WHERE TABLE_SCHEMA = DATABASE()
+    AND TABLE_NAME = 'todo_item'
+    AND INDEX_NAME = 'idx_todo_item_category_due_desc'
+);
+SET @sql_idx_category_due_desc := IF(@idx_exists_category_due_desc = 0, 'CREATE INDEX idx_todo_item_category_due_desc ON todo_item (category, due_date, created_at, id)', 'SELECT 1');
+PREPARE stmt_idx_category_due_desc FROM @sql_idx_category_due_desc;
+EXECUTE stmt_idx_category_due_desc;
+DEALLOCATE PREPARE stmt_idx_category_due_desc;
+
+SET @idx_exists_updated := (
+  SELECT COUNT(*)
+  FROM information_schema.STATISTICS
+  WHERE TABLE_SCHEMA = DATABASE()
+    AND TABLE_NAME = 'todo_item'
+    AND INDEX_NAME = 'idx_todo_item_updated'
+);
+SET @sql_idx_updated := IF(@idx_exists_updated = 0, 'CREATE INDEX idx_todo_item_updated ON todo_item (updated_at, id)', 'SELECT 1');
+PREPARE stmt_idx_updated FROM @sql_idx_updated;
+EXECUTE stmt_idx_updated;
+DEALLOCATE PREPARE stmt_idx_updated;
+
+-- 旧的单列索引已被上面组合索引的前缀覆盖，删除以减少写放大。
+SET @old_idx_exists_created_at := (
+  SELECT COUNT(*)
+  FROM information_schema.STATISTICS
+  WHERE TABLE_SCHEMA = DATABASE()
+    AND TABLE_NAME = 'todo_item'
+    AND INDEX_NAME = 'idx_todo_item_created_at'
+);
+SET @sql_drop_idx_created_at := IF(@old_idx_exists_created_at > 0, 'DROP INDEX idx_todo_item_created_at ON todo_item', 'SELECT 1');
+PREPARE stmt_drop_idx_created_at FROM @sql_drop_idx_created_at;
+EXECUTE stmt_drop_idx_created_at;
+DEALLOCATE PREPARE stmt_drop_idx_created_at;
+
+SET @old_idx_exists_category := (
   SELECT COUNT(*)
   FROM information_schema.STATISTICS
   WHERE TABLE_SCHEMA = DATABASE()
     AND TABLE_NAME = 'todo_item'
     AND INDEX_NAME = 'idx_todo_item_category'
 );
-SET @sql_idx_category := IF(@idx_exists_category = 0, 'CREATE INDEX idx_todo_item_category ON todo_item (category)', 'SELECT 1');
-PREPARE stmt_idx_category FROM @sql_idx_category;
-EXECUTE stmt_idx_category;
-DEALLOCATE PREPARE stmt_idx_category;
+SET @sql_drop_idx_category := IF(@old_idx_exists_category > 0, 'DROP INDEX idx_todo_item_category ON todo_item', 'SELECT 1');
+PREPARE stmt_drop_idx_category FROM @sql_drop_idx_category;
+EXECUTE stmt_drop_idx_category;
+DEALLOCATE PREPARE stmt_drop_idx_category;
 
-SET @idx_exists_priority := (
+SET @old_idx_exists_priority := (
   SELECT COUNT(*)
   FROM information_schema.STATISTICS
   WHERE TABLE_SCHEMA = DATABASE()
     AND TABLE_NAME = 'todo_item'
     AND INDEX_NAME = 'idx_todo_item_priority'
 );
-SET @sql_idx_priority := IF(@idx_exists_priority = 0, 'CREATE INDEX idx_todo_item_priority ON todo_item (priority)', 'SELECT 1');
-PREPARE stmt_idx_priority FROM @sql_idx_priority;
-EXECUTE stmt_idx_priority;
-DEALLOCATE PREPARE stmt_idx_priority;
+SET @sql_drop_idx_priority := IF(@old_idx_exists_priority > 0, 'DROP INDEX idx_todo_item_priority ON todo_item', 'SELECT 1');
+PREPARE stmt_drop_idx_priority FROM @sql_drop_idx_priority;
+EXECUTE stmt_drop_idx_priority;
+DEALLOCATE PREPARE stmt_drop_idx_priority;
 
-SET @idx_exists_due_date := (
+SET @old_idx_exists_due_date := (
   SELECT COUNT(*)
   FROM information_schema.STATISTICS
   WHERE TABLE_SCHEMA = DATABASE()
     AND TABLE_NAME = 'todo_item'
     AND INDEX_NAME = 'idx_todo_item_due_date'
 );
-SET @sql_idx_due_date := IF(@idx_exists_due_date = 0, 'CREATE INDEX idx_todo_item_due_date ON todo_item (due_date)', 'SELECT 1');
-PREPARE stmt_idx_due_date FROM @sql_idx_due_date;
-EXECUTE stmt_idx_due_date;
-DEALLOCATE PREPARE stmt_idx_due_date;
+SET @sql_drop_idx_due_date := IF(@old_idx_exists_due_date > 0, 'DROP INDEX idx_todo_item_due_date ON todo_item', 'SELECT 1');
+PREPARE stmt_drop_idx_due_date FROM @sql_drop_idx_due_date;
+EXECUTE stmt_drop_idx_due_date;
+DEALLOCATE PREPARE stmt_drop_idx_due_date;
+
+-- 分类计数表：由 todo_item 上的触发器在同一事务内增量维护，分类接口只需读取 O(分类数) 行。
+-- 触发器体都是单条语句，便于 spring.sql.init 按分号拆分执行；启动时按 todo_item 重新校准一次计数。
+-- 校准的清空与重建放在同一个事务里：其他实例此时并发读取不会看到空表，并发写入的触发器等待校准提交后再累加，不会被清空覆盖。
+CREATE TABLE IF NOT EXISTS todo_category_count (
+  category VARCHAR(64) PRIMARY KEY,
+  open_count INT NOT NULL DEFAULT 0,
+  completed_count INT NOT NULL DEFAULT 0
+);
+
+DROP TRIGGER IF EXISTS trg_todo_item_category_insert;
+CREATE TRIGGER trg_todo_item_category_insert AFTER INSERT ON todo_item FOR EACH ROW
+  INSERT INTO todo_category_count (category, open_count, completed_count)
+  SELECT NEW.category, IF(NEW.completed, 0, 1), IF(NEW.completed, 1, 0) FROM DUAL WHERE NEW.category IS NOT NULL
+  ON DUPLICATE KEY UPDATE open_count = open_count + IF(NEW.completed, 0, 1), completed_count = completed_count + IF(NEW.completed, 1, 0);
+
+DROP TRIGGER IF EXISTS trg_todo_item_category_update_old;
+CREATE TRIGGER trg_todo_item_category_update_old AFTER UPDATE ON todo_item FOR EACH ROW
+  UPDATE todo_category_count
+  SET open_count = open_count - IF(OLD.completed, 0, 1), completed_count = completed_count - IF(OLD.completed, 1, 0)
+  WHERE category = OLD.category AND (NOT (OLD.category <=> NEW.category) OR OLD.completed <> NEW.completed);
+
+DROP TRIGGER IF EXISTS trg_todo_item_category_update_new;
+CREATE TRIGGER trg_todo_item_category_update_new AFTER UPDATE ON todo_item FOR EACH ROW FOLLOWS trg_todo_item_category_update_old
+  INSERT INTO todo_category_count (category, open_count, completed_count)
+  SELECT NEW.category, IF(NEW.completed, 0, 1), IF(NEW.completed, 1, 0) FROM DUAL
+  WHERE NEW.category IS NOT NULL AND (NOT (OLD.category <=> NEW.category) OR OLD.completed <> NEW.completed)
+  ON DUPLICATE KEY UPDATE open_count = open_count + IF(NEW.completed, 0, 1), completed_count = completed_count + IF(NEW.completed, 1, 0);
+
+DROP TRIGGER IF EXISTS trg_todo_item_category_delete;
+CREATE TRIGGER trg_todo_item_category_delete AFTER DELETE ON todo_item FOR EACH ROW
+  UPDATE todo_category_count
+  SET open_count = open_count - IF(OLD.completed, 0, 1), completed_count = completed_count - IF(OLD.completed, 1, 0)
+  WHERE category = OLD.category;
+
+START TRANSACTION;
+DELETE FROM todo_category_count;
+INSERT INTO todo_category_count (category, open_count, completed_count)
+SELECT category, SUM(completed = 0), SUM(completed = 1) FROM todo_item WHERE category IS NOT NULL GROUP BY category;
+COMMIT;
+
+-- 全库变更版本号：todo_item 的每一行写入都由触发器在同一事务内加一，其他实例与直接修改数据库的写入同样会推进它，
+-- 列表、分类等聚合接口据此给出 ETag。表里只有一行，写事务会在这一行的行锁上排队直到提交，写入并发很高时需留意。
+-- epoch 取建表时的毫秒数，表被重建、版本号从 0 重新开始时不会与旧的 ETag 撞上。
+CREATE TABLE IF NOT EXISTS todo_change_version (
+  id TINYINT PRIMARY KEY,
+  epoch BIGINT NOT NULL,
+  version BIGINT NOT NULL
+);
+
+INSERT IGNORE INTO todo_change_version (id, epoch, version) VALUES (1, CAST(UNIX_TIMESTAMP(NOW(3)) * 1000 AS UNSIGNED), 0);
+
+DROP TRIGGER IF EXISTS trg_todo_item_version_insert;
+CREATE TRIGGER trg_todo_item_version_insert AFTER INSERT ON todo_item FOR EACH ROW
+  UPDATE todo_change_version SET version = version + 1 WHERE id = 1;
+
+DROP TRIGGER IF EXISTS trg_todo_item_version_update;
+CREATE TRIGGER trg_todo_item_version_update AFTER UPDATE ON todo_item FOR EACH ROW
+  UPDATE todo_change_version SET version = version + 1 WHERE id = 1;
+
+DROP TRIGGER IF EXISTS trg_todo_item_version_delete;
+CREATE TRIGGER trg_todo_item_version_delete AFTER DELETE ON todo_item FOR EACH ROW
+  UPDATE todo_change_version SET version = version + 1 WHERE id = 1;
+
+-- 删除记录（增量同步用）：删除时在同一事务内写入，超过 todo.sync.tombstone-retention-ms 后清理。
+CREATE TABLE IF NOT EXISTS todo_tombstone (
+  id VARCHAR(64) PRIMARY KEY,
+  deleted_at DATETIME(3) NOT NULL,
+  INDEX idx_todo_tombstone_deleted (deleted_at)
+);
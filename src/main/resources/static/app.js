@@ -15,6 +15,24 @@ const elSort = document.getElementById('sort');
 const REMINDER_ADVANCE_MS = 10 * 60 * 1000;
 const reminderTimersById = new Map();
 const remindedStorageKey = 'todo_reminded_v1';
+const clientIdStorageKey = 'todo_client_id_v1';
+
+/**
+ * 本浏览器的客户端标识，随每个 API 请求以 X-Client-Id 发送；服务端配置了只读副本时，
+ * 同一客户端写入后的短时间内读取走主库，保证能读到自己刚写入的数据。
+ */
+const clientId = (() => {
+  try {
+    let id = localStorage.getItem(clientIdStorageKey);
+    if (!id) {
+      id = window.crypto && crypto.randomUUID ? crypto.randomUUID() : `${Date.now()}-${Math.random().toString(36).slice(2)}`;
+      localStorage.setItem(clientIdStorageKey, id);
+    }
+    return id;
+  } catch {
+    return `${Date.now()}-${Math.random().toString(36).slice(2)}`;
+  }
+})();
 
 function parseLocalDateTime(raw) {
   if (!raw || typeof raw !== 'string') return null;
@@ -166,7 +184,7 @@ function setStatus(text, type = 'info') {
  */
 async function apiRequest(path, options = {}) {
   const res = await fetch(path, {
-    headers: { 'Content-Type': 'application/json' },
+    headers: { 'Content-Type': 'application/json', 'X-Client-Id': clientId },
     ...options,
   });
   if (res.status === 204) return null;
@@ -178,6 +196,36 @@ async function apiRequest(path, options = {}) {
   return body;
 }
 
+/**
+ * 上一次 GET 得到的 ETag 与响应体，按请求路径缓存。
+ *
+ * @type {Map<string, {etag: string, body: any}>}
+ */
+const etagCache = new Map();
+
+/**
+ * 带 ETag 条件请求的 GET：服务端返回 304 时复用上次的响应体。
+ *
+ * @param {string} path 请求路径
+ * @returns {Promise<{body: any, changed: boolean}>} 响应体，以及相比上次是否有变化
+ */
+async function apiGetCached(path) {
+  const cached = etagCache.get(path);
+  const res = await fetch(path, {
+    headers: cached ? { 'If-None-Match': cached.etag, 'X-Client-Id': clientId } : { 'X-Client-Id': clientId },
+    cache: 'no-store',
+  });
+  if (res.status === 304 && cached) return { body: cached.body, changed: false };
+  const body = await res.json().catch(() => null);
+  if (!res.ok) {
+    const message = body && body.message ? body.message : `HTTP ${res.status}`;
+    throw new Error(message);
+  }
+  const etag = res.headers.get('ETag');
+  if (etag) etagCache.set(path, { etag, body });
+  return { body, changed: true };
+}
+
 /**
  * 将单个待办对象渲染为列表项 DOM 节点，并绑定按钮事件。
  *
@@ -222,7 +270,7 @@ function renderItem(item) {
     try {
       requestNotificationPermissionIfNeeded();
       await apiRequest(`${apiBase}/${item.id}/toggle`, { method: 'PATCH' });
-      await loadTodos();
+      await refreshAfterWrite();
     } catch (e) {
       setStatus(e.message, 'error');
     }
@@ -236,7 +284,7 @@ function renderItem(item) {
     try {
       requestNotificationPermissionIfNeeded();
       await apiRequest(`${apiBase}/${item.id}`, { method: 'DELETE' });
-      await loadTodos();
+      await refreshAfterWrite();
     } catch (e) {
       setStatus(e.message, 'error');
     }
@@ -250,50 +298,88 @@ function renderItem(item) {
   return li;
 }
 
+/**
+ * 当前列表（与筛选/排序条件一致），事件流据此在本地增量更新。
+ *
+ * @type {Array<object>}
+ */
+let currentItems = [];
+
+/**
+ * 事件流是否处于连接状态；连接期间写操作后不再整表刷新，由事件回推更新。
+ */
+let streamConnected = false;
+
+function selectedCategory() {
+  return elCategoryFilter && elCategoryFilter.value ? elCategoryFilter.value : '';
+}
+
+/**
+ * 用列表数据重建 DOM，并同步提醒定时器。
+ *
+ * @param {Array<object>} list 待办列表
+ */
+function renderList(list) {
+  currentItems = Array.isArray(list) ? list : [];
+  syncReminders(currentItems);
+  elList.innerHTML = '';
+  if (currentItems.length === 0) {
+    const empty = document.createElement('li');
+    empty.className = 'empty';
+    empty.textContent = '暂无待办事项';
+    elList.appendChild(empty);
+  } else {
+    for (const item of currentItems) {
+      elList.appendChild(renderItem(item));
+    }
+  }
+}
+
+/**
+ * 重建分类下拉框，保留当前选中项。
+ *
+ * @param {string[]} categories 分类列表
+ */
+function renderCategories(categories) {
+  if (!elCategoryFilter) return;
+  const keep = elCategoryFilter.value;
+  elCategoryFilter.innerHTML = '';
+  const all = document.createElement('option');
+  all.value = '';
+  all.textContent = '全部分类';
+  elCategoryFilter.appendChild(all);
+  for (const c of categories || []) {
+    const opt = document.createElement('option');
+    opt.value = c;
+    opt.textContent = c;
+    elCategoryFilter.appendChild(opt);
+  }
+  elCategoryFilter.value = keep;
+}
+
 /**
  * 从后端拉取待办列表并刷新页面展示。
  *
- * - 先清空列表再重建
+ * - 列表与分类都通过 ETag 条件请求获取，未变化时不重建 DOM
  * - 空列表展示占位文案
  * - 捕获异常并显示错误提示
  */
 async function loadTodos() {
   setStatus('加载中…');
   try {
-    const selectedCategory = elCategoryFilter && elCategoryFilter.value ? elCategoryFilter.value : '';
     const selectedSort = elSort && elSort.value ? elSort.value : '';
     const params = new URLSearchParams();
-    if (selectedCategory) params.set('category', selectedCategory);
+    if (selectedCategory()) params.set('category', selectedCategory());
     if (selectedSort) params.set('sort', selectedSort);
     const listUrl = params.toString() ? `${apiBase}?${params.toString()}` : apiBase;
-    const list = await apiRequest(listUrl);
-    syncReminders(list);
-    elList.innerHTML = '';
-    if (!list || list.length === 0) {
-      const empty = document.createElement('li');
-      empty.className = 'empty';
-      empty.textContent = '暂无待办事项';
-      elList.appendChild(empty);
-    } else {
-      for (const item of list) {
-        elList.appendChild(renderItem(item));
-      }
+    const { body: list, changed } = await apiGetCached(listUrl);
+    if (changed || elList.dataset.source !== listUrl) {
+      elList.dataset.source = listUrl;
+      renderList(list);
     }
-    if (elCategoryFilter) {
-      const categories = await apiRequest(`${apiBase}/categories`);
-      const keep = elCategoryFilter.value;
-      elCategoryFilter.innerHTML = '';
-      const all = document.createElement('option');
-      all.value = '';
-      all.textContent = '全部分类';
-      elCategoryFilter.appendChild(all);
-      for (const c of categories || []) {
-        const opt = document.createElement('option');
-        opt.value = c;
-        opt.textContent = c;
-        elCategoryFilter.appendChild(opt);
-      }
-      elCategoryFilter.value = keep;
+    const categoryResult = elCategoryFilter ? await apiGetCached(`${apiBase}/categories`) : null;
+    if (categoryResult && categoryResult.changed) {
+      renderCategories(categoryResult.body);
     }
     setStatus('');
   } catch (e) {
@@ -301,6 +387,101 @@ async function loadTodos() {
   }
 }
 
+/**
+ * 写操作完成后的刷新：事件流已连接时由事件更新列表，否则整表刷新。
+ */
+async function refreshAfterWrite() {
+  if (!streamConnected) {
+    await loadTodos();
+  }
+}
+
+function createdAtMs(item) {
+  const t = item && item.createdAt ? Date.parse(item.createdAt) : NaN;
+  return Number.isNaN(t) ? -Infinity : t;
+}
+
+/**
+ * 与服务端 TodoSort 一致的本地比较函数（并列时按创建时间、id 倒序）。
+ *
+ * @param {string} sort 排序方式（createdAt/priority/dueDate）
+ * @returns {(a: object, b: object) => number} 比较函数
+ */
+function comparatorFor(sort) {
+  const createdDesc = (a, b) => createdAtMs(b) - createdAtMs(a) || String(b.id).localeCompare(String(a.id));
+  if (sort === 'priority') {
+    return (a, b) => (Number(b.priority) || 0) - (Number(a.priority) || 0) || createdDesc(a, b);
+  }
+  if (sort === 'dueDate') {
+    return (a, b) => {
+      if (a.dueDate !== b.dueDate) {
+        if (!a.dueDate) return 1;
+        if (!b.dueDate) return -1;
+        return a.dueDate < b.dueDate ? -1 : 1;
+      }
+      return createdDesc(a, b);
+    };
+  }
+  return createdDesc;
+}
+
+/**
+ * 按一条变更事件在本地更新列表：删除直接移除；新增/更新按版本号去重后替换，
+ * 不再符合当前分类筛选的移出列表，然后按当前排序方式重排。
+ *
+ * @param {{type: string, id: string, item?: object}} event 变更事件
+ */
+function applyTodoEvent(event) {
+  if (!event || !event.id) return;
+  const index = currentItems.findIndex((i) => i.id === event.id);
+  const next = currentItems.slice();
+  if (event.type === 'delete') {
+    if (index < 0) return;
+    next.splice(index, 1);
+  } else {
+    const item = event.item;
+    if (!item) return;
+    if (index >= 0 && Number(next[index].version) > Number(item.version)) return;
+    if (index >= 0) next.splice(index, 1);
+    const category = selectedCategory();
+    if (!category || item.category === category) next.push(item);
+    if (item.category && elCategoryFilter && !Array.from(elCategoryFilter.options).some((o) => o.value === item.category)) {
+      const categories = Array.from(elCategoryFilter.options).map((o) => o.value).filter(Boolean);
+      categories.push(item.category);
+      categories.sort();
+      renderCategories(categories);
+    }
+  }
+  next.sort(comparatorFor(elSort && elSort.value ? elSort.value : ''));
+  // 本地列表已不再对应 ETag 缓存中的响应，下次整表刷新时需要重建
+  elList.dataset.source = '';
+  renderList(next);
+}
+
+/**
+ * 订阅服务端事件流。每次（重新）连上都先整表刷新一次，补上断线期间错过的变更；
+ * 浏览器不支持 EventSource 时退回为写操作后整表刷新。
+ */
+function connectEventStream() {
+  if (!('EventSource' in window)) return;
+  const source = new EventSource(`${apiBase}/stream`);
+  source.addEventListener('open', () => {
+    streamConnected = true;
+    loadTodos();
+  });
+  source.addEventListener('error', () => {
+    streamConnected = false;
+  });
+  for (const type of ['create', 'update', 'toggle', 'delete']) {
+    source.addEventListener(type, (e) => {
+      try {
+        applyTodoEvent(JSON.parse(e.data));
+      } catch {
+      }
+    });
+  }
+}
+
 /**
  * 处理“新增待办”表单提交。
  *
@@ -327,7 +508,7 @@ elForm.addEventListener('submit', async (e) => {
     if (elCategory) elCategory.value = '';
     if (elPriority) elPriority.value = '';
     if (elDueDate) elDueDate.value = '';
-    await loadTodos();
+    await refreshAfterWrite();
     setStatus('已添加', 'success');
     setTimeout(() => setStatus(''), 1200);
   } catch (err) {
@@ -358,6 +539,7 @@ if (elSort) {
 }
 
 /**
- * 页面初始化：首次加载列表。
+ * 页面初始化：首次加载列表并订阅事件流。
  */
 loadTodos();
+connectEventStream();
@@ -9,12 +9,18 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -36,6 +42,7 @@ class TodoControllerTest {
     @BeforeEach
     void clean() throws Exception {
         jdbcTemplate.update("DELETE FROM todo_item");
+        jdbcTemplate.update("DELETE FROM todo_tombstone");
     }
 
     /**
@@ -117,6 +124,13 @@ class TodoControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.completed").value(true));
 
+        mockMvc.perform(get("/api/todos/categories/counts"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].category").value("学习"))
+                .andExpect(jsonPath("$[0].open").value(1))
+                .andExpect(jsonPath("$[0].completed").value(1));
+
         mockMvc.perform(delete("/api/todos/" + id1))
                 .andExpect(status().isNoContent());
 
@@ -124,6 +138,11 @@ class TodoControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.length()").value(1));
 
+        mockMvc.perform(get("/api/todos/categories/counts"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].open").value(1))
+                .andExpect(jsonPath("$[0].completed").value(0));
+
         mockMvc.perform(delete("/api/todos/" + id2))
                 .andExpect(status().isNoContent());
 
@@ -131,4 +150,344 @@ class TodoControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.length()").value(0));
     }
+
+    /**
+     * 覆盖游标分页：按页读取直到没有下一页游标，且各页之间不重不漏。
+     */
+    @Test
+    void list_with_cursor_pagination() throws Exception {
+        for (int i = 1; i <= 5; i++) {
+            final String itemTitle = "p" + i;
+            final int itemPriority = i % 3 + 1;
+            final String itemDueDate = "2026-01-0" + i + "T10:00";
+            String body = objectMapper.writeValueAsString(new Object() {
+                public final String title = itemTitle;
+                public final int priority = itemPriority;
+                public final String dueDate = itemDueDate;
+            });
+            mockMvc.perform(post("/api/todos").contentType(MediaType.APPLICATION_JSON).content(body))
+                    .andExpect(status().isCreated());
+        }
+
+        String page1 = mockMvc.perform(get("/api/todos").queryParam("sort", "priority").queryParam("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(header().exists(TodoController.NEXT_CURSOR_HEADER))
+                .andReturn()
+                .getResponse()
+                .getHeader(TodoController.NEXT_CURSOR_HEADER);
+
+        String page2 = mockMvc.perform(get("/api/todos").queryParam("sort", "priority").queryParam("limit", "2").queryParam("cursor", page1))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andReturn()
+                .getResponse()
+                .getHeader(TodoController.NEXT_CURSOR_HEADER);
+
+        mockMvc.perform(get("/api/todos").queryParam("sort", "priority").queryParam("limit", "2").queryParam("cursor", page2))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(header().doesNotExist(TodoController.NEXT_CURSOR_HEADER));
+
+        mockMvc.perform(get("/api/todos").queryParam("sort", "dueDate").queryParam("limit", "2").queryParam("cursor", page1))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/api/todos").queryParam("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * 覆盖下推到存储层的过滤与截止时间排序：无截止时间的数据升序排最后、降序排最前，跨越两部分翻页不重不漏。
+     */
+    @Test
+    void list_with_filters_and_due_date_sort() throws Exception {
+        String[] ids = new String[3];
+        for (int i = 0; i < 3; i++) {
+            final String itemTitle = "f" + i;
+            final int itemPriority = i + 1;
+            final String itemDueDate = "2026-02-0" + (i + 1) + "T08:00";
+            String body = objectMapper.writeValueAsString(new Object() {
+                public final String title = itemTitle;
+                public final String category = "工作";
+                public final int priority = itemPriority;
+                public final String dueDate = itemDueDate;
+            });
+            String created = mockMvc.perform(post("/api/todos").contentType(MediaType.APPLICATION_JSON).content(body))
+                    .andExpect(status().isCreated())
+                    .andReturn()
+                    .getResponse()
+                    .getContentAsString();
+            ids[i] = objectMapper.readTree(created).get("id").asText();
+        }
+        mockMvc.perform(patch("/api/todos/" + ids[0]).contentType(MediaType.APPLICATION_JSON).content("{\"dueDate\":\"\"}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(patch("/api/todos/" + ids[2] + "/toggle"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/todos").queryParam("completed", "false"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2));
+
+        mockMvc.perform(get("/api/todos").queryParam("priority", "2").queryParam("category", "工作"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(ids[1]));
+
+        mockMvc.perform(get("/api/todos").queryParam("dueFrom", "2026-02-02T00:00").queryParam("dueTo", "2026-02-03T08:00"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(ids[1]));
+
+        mockMvc.perform(get("/api/todos").queryParam("sort", "dueDate"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(ids[1]))
+                .andExpect(jsonPath("$[1].id").value(ids[2]))
+                .andExpect(jsonPath("$[2].id").value(ids[0]));
+
+        String cursor = mockMvc.perform(get("/api/todos").queryParam("sort", "due_date_desc").queryParam("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(ids[0]))
+                .andExpect(jsonPath("$[1].id").value(ids[2]))
+                .andReturn()
+                .getResponse()
+                .getHeader(TodoController.NEXT_CURSOR_HEADER);
+
+        mockMvc.perform(get("/api/todos").queryParam("sort", "due_date_desc").queryParam("limit", "2").queryParam("cursor", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(ids[1]));
+
+        mockMvc.perform(get("/api/todos").queryParam("priority", "5"))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * 覆盖批量接口：整批成功时逐条返回结果；任一条失败时整批不生效。
+     */
+    @Test
+    void batch_applies_all_or_nothing() throws Exception {
+        String created = mockMvc.perform(post("/api/todos").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"b0\",\"dueDate\":\"2026-03-01T09:00\"}"))
+                .andExpect(status().isCreated())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        String id = objectMapper.readTree(created).get("id").asText();
+
+        String batch = "[{\"op\":\"create\",\"title\":\"b1\",\"category\":\"批量\",\"dueDate\":\"2026-03-02T09:00\"},"
+                + "{\"op\":\"update\",\"id\":\"" + id + "\",\"title\":\"b0-renamed\"},"
+                + "{\"op\":\"toggle\",\"id\":\"" + id + "\"}]";
+        mockMvc.perform(post("/api/todos/batch").contentType(MediaType.APPLICATION_JSON).content(batch))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.applied").value(true))
+                .andExpect(jsonPath("$.results.length()").value(3))
+                .andExpect(jsonPath("$.results[0].status").value(201))
+                .andExpect(jsonPath("$.results[1].item.title").value("b0-renamed"))
+                .andExpect(jsonPath("$.results[1].item.completed").value(false))
+                .andExpect(jsonPath("$.results[2].item.completed").value(true));
+
+        mockMvc.perform(get("/api/todos"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2));
+
+        String rejected = "[{\"op\":\"delete\",\"id\":\"" + id + "\"},"
+                + "{\"op\":\"update\",\"id\":\"missing\",\"title\":\"x\"},"
+                + "{\"op\":\"create\",\"title\":\" \",\"dueDate\":\"2026-03-02T09:00\"}]";
+        mockMvc.perform(post("/api/todos/batch").contentType(MediaType.APPLICATION_JSON).content(rejected))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.applied").value(false))
+                .andExpect(jsonPath("$.results[0].status").value(204))
+                .andExpect(jsonPath("$.results[1].status").value(404))
+                .andExpect(jsonPath("$.results[2].status").value(400));
+
+        mockMvc.perform(get("/api/todos"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2));
+    }
+
+    /**
+     * 覆盖乐观并发控制：每次写入版本号加一，带着过期版本号更新返回 409。
+     */
+    @Test
+    void update_with_stale_version_conflicts() throws Exception {
+        String created = mockMvc.perform(post("/api/todos").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"v0\",\"dueDate\":\"2026-04-01T09:00\"}"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.version").value(0))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        String id = objectMapper.readTree(created).get("id").asText();
+
+        mockMvc.perform(patch("/api/todos/" + id).contentType(MediaType.APPLICATION_JSON).content("{\"title\":\"v1\",\"version\":0}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.title").value("v1"))
+                .andExpect(jsonPath("$.dueDate").value("2026-04-01T09:00"))
+                .andExpect(jsonPath("$.version").value(1));
+
+        mockMvc.perform(patch("/api/todos/" + id + "/toggle"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.completed").value(true))
+                .andExpect(jsonPath("$.version").value(2));
+
+        mockMvc.perform(patch("/api/todos/" + id).contentType(MediaType.APPLICATION_JSON).content("{\"title\":\"stale\",\"version\":1}"))
+                .andExpect(status().isConflict());
+
+        mockMvc.perform(patch("/api/todos/missing/toggle"))
+                .andExpect(status().isNotFound());
+    }
+
+    /**
+     * 覆盖流式导出：过滤与排序与列表接口一致，响应为完整的 JSON 数组。
+     */
+    @Test
+    void export_streams_filtered_list() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            final String itemTitle = "e" + i;
+            final int itemPriority = i + 1;
+            String body = objectMapper.writeValueAsString(new Object() {
+                public final String title = itemTitle;
+                public final String category = "导出";
+                public final int priority = itemPriority;
+                public final String dueDate = "2026-05-01T09:00";
+            });
+            mockMvc.perform(post("/api/todos").contentType(MediaType.APPLICATION_JSON).content(body))
+                    .andExpect(status().isCreated());
+        }
+
+        MvcResult result = mockMvc.perform(get("/api/todos/export").queryParam("category", "导出").queryParam("sort", "priority"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].title").value("e2"))
+                .andExpect(jsonPath("$[2].title").value("e0"));
+
+        mockMvc.perform(get("/api/todos/export").queryParam("sort", "nope"))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * 覆盖条件请求：单条待办的 ETag 取自其版本号；列表与分类的 ETag 取自数据库中的变更版本号，
+     * 本实例的写入与直接修改数据库都会使其变化，未变时返回 304。
+     */
+    @Test
+    void conditional_get_returns_not_modified_until_changed() throws Exception {
+        String created = mockMvc.perform(post("/api/todos").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"etag\",\"category\":\"工作\",\"dueDate\":\"2026-05-01T09:00\"}"))
+                .andExpect(status().isCreated())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        String id = objectMapper.readTree(created).get("id").asText();
+
+        String listTag = mockMvc.perform(get("/api/todos"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn()
+                .getResponse()
+                .getHeader("ETag");
+        mockMvc.perform(get("/api/todos").header("If-None-Match", listTag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/todos/categories").header("If-None-Match", listTag))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(get("/api/todos/" + id))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"0\""))
+                .andExpect(jsonPath("$.title").value("etag"));
+        mockMvc.perform(get("/api/todos/" + id).header("If-None-Match", "\"0\""))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(patch("/api/todos/" + id + "/toggle"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/todos/" + id).header("If-None-Match", "\"0\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1\""));
+        String toggledTag = mockMvc.perform(get("/api/todos").header("If-None-Match", listTag))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getHeader("ETag");
+        assertNotEquals(listTag, toggledTag);
+
+        jdbcTemplate.update("UPDATE todo_item SET completed = FALSE WHERE id = ?", id);
+        mockMvc.perform(get("/api/todos/categories/counts").header("If-None-Match", toggledTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].open").value(1));
+        mockMvc.perform(get("/api/todos/missing"))
+                .andExpect(status().isNotFound());
+    }
+
+    /**
+     * 覆盖事件流：订阅后新增与删除都会以 SSE 事件推送。
+     */
+    @Test
+    void stream_pushes_mutation_events() throws Exception {
+        MvcResult stream = mockMvc.perform(get("/api/todos/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String created = mockMvc.perform(post("/api/todos").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"sse\",\"dueDate\":\"2026-06-01T09:00\"}"))
+                .andExpect(status().isCreated())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        String id = objectMapper.readTree(created).get("id").asText();
+        mockMvc.perform(delete("/api/todos/" + id))
+                .andExpect(status().isNoContent());
+
+        String content = "";
+        long deadline = System.currentTimeMillis() + 5_000L;
+        while (!content.contains("event:delete") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            content = stream.getResponse().getContentAsString();
+        }
+        assertTrue(content.contains("event:create"), content);
+        assertTrue(content.contains("\"title\":\"sse\""), content);
+        assertTrue(content.contains("event:delete"), content);
+    }
+
+    /**
+     * 覆盖增量同步：首次为全量，之后返回令牌之后的新增/更新与删除记录。
+     */
+    @Test
+    void changes_since_token_returns_updates_and_tombstones() throws Exception {
+        String first = mockMvc.perform(get("/api/todos/changes"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.full").value(true))
+                .andExpect(jsonPath("$.items.length()").value(0))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        String token = objectMapper.readTree(first).get("token").asText();
+
+        String kept = mockMvc.perform(post("/api/todos").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"kept\",\"dueDate\":\"2026-07-01T09:00\"}"))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        String removed = mockMvc.perform(post("/api/todos").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"removed\",\"dueDate\":\"2026-07-01T09:00\"}"))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        String removedId = objectMapper.readTree(removed).get("id").asText();
+        mockMvc.perform(delete("/api/todos/" + removedId))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/api/todos/changes").queryParam("since", token))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.full").value(false))
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.items[0].id").value(objectMapper.readTree(kept).get("id").asText()))
+                .andExpect(jsonPath("$.deleted[0]").value(removedId))
+                .andExpect(jsonPath("$.token").isString());
+
+        mockMvc.perform(get("/api/todos/changes").queryParam("since", "not a token"))
+                .andExpect(status().isBadRequest());
+    }
 }
@@ -0,0 +1,71 @@
+package com.iftech.todo.domain;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DueDatesTest {
+
+    /**
+     * 规范写法、只有日期、带秒的写法都解析到同一分钟，格式化回规范写法；随机时间往返不变。
+     */
+    @Test
+    void parses_and_formats_round_trip() {
+        assertEquals("2026-03-15T18:45", DueDates.format(DueDates.parse("2026-03-15T18:45")));
+        assertEquals("2026-03-15T00:00", DueDates.format(DueDates.parse(" 2026-03-15 ")));
+        assertEquals("2026-03-15T18:45", DueDates.format(DueDates.parse("2026-03-15T18:45:59")));
+        assertEquals("1969-12-31T23:59", DueDates.format(DueDates.parse("1969-12-31T23:59")));
+        assertEquals(DueDates.NONE, DueDates.parse(null));
+        assertEquals(DueDates.NONE, DueDates.parse("  "));
+        assertNull(DueDates.format(DueDates.NONE));
+
+        Random random = new Random(42);
+        LocalDateTime base = LocalDateTime.of(1900, 1, 1, 0, 0);
+        for (int i = 0; i < 10000; i++) {
+            LocalDateTime dateTime = base.plusMinutes(random.nextInt(200 * 365 * 1440));
+            String text = String.format("%04d-%02d-%02dT%02d:%02d", dateTime.getYear(), dateTime.getMonthValue(), dateTime.getDayOfMonth(),
+                    dateTime.getHour(), dateTime.getMinute());
+            long minute = DueDates.parse(text);
+            assertEquals(DueDates.of(dateTime), minute);
+            assertEquals(text, DueDates.format(minute));
+            assertEquals(dateTime, DueDates.toLocalDateTime(minute));
+        }
+    }
+
+    @Test
+    void rejects_invalid_text() {
+        assertThrows(DateTimeException.class, () -> DueDates.parse("2026-02-30T10:00"));
+        assertThrows(DateTimeException.class, () -> DueDates.parse("2026-03-15T24:00"));
+        assertThrows(DateTimeException.class, () -> DueDates.parse("tomorrow"));
+    }
+
+    /**
+     * JSON 边界上的 dueDate 文本不变；按截止时间排序时无截止时间的升序排最后、降序排最前。
+     */
+    @Test
+    void item_exposes_text_and_sorts_on_minutes() {
+        Instant now = Instant.parse("2026-01-01T00:00:00Z");
+        TodoItem late = new TodoItem("late", "t", null, null, 2, "2026-03-15T18:45", false, now, now);
+        TodoItem early = new TodoItem("early", "t", null, null, 2, "2026-03-15", false, now, now);
+        TodoItem none = new TodoItem("none", "t", null, null, 2, null, false, now, now);
+        assertEquals("2026-03-15T18:45", late.getDueDate());
+        assertEquals("2026-03-15T00:00", early.getDueDate());
+        assertNull(none.getDueDate());
+        assertEquals(late.getDueMinute(), late.copy().getDueMinute());
+
+        List<TodoItem> items = new ArrayList<TodoItem>(Arrays.asList(none, late, early));
+        items.sort(TodoSort.DUE_DATE_ASC.comparator());
+        assertEquals(Arrays.asList(early, late, none), items);
+        items.sort(TodoSort.DUE_DATE_DESC.comparator());
+        assertEquals(Arrays.asList(none, late, early), items);
+    }
+}
@@ -0,0 +1,371 @@
+package com.iftech.todo.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iftech.todo.TodoApplication;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * 端到端压测：在本机启动完整应用（Tomcat → Jackson → TodoController → TodoService → 存储），
+ * 按开放模型（请求按泊松过程到达，与响应快慢无关）发送列表/新增/切换/更新/删除请求，输出各接口的吞吐与 p50/p99/p999 延迟。
+ *
+ * <p>延迟从“计划发出时刻”算起，客户端排队也计入，避免协调遗漏（coordinated omission）低估尾延迟。
+ * 文件存储使用临时目录，JDBC 存储使用内存 H2（MySQL 兼容模式，见 {@code application-h2.yml}），不需要网络与外部数据库。
+ *
+ * <p>默认不执行，运行方式：{@code mvn test -Dtest=TodoLoadTest -Dloadtest=true}，可选参数：
+ * <ul>
+ *     <li>{@code loadtest.rate}：每秒请求数，默认 500</li>
+ *     <li>{@code loadtest.durationSec} / {@code loadtest.warmupSec}：统计时长与预热时长（秒），默认 30 / 5</li>
+ *     <li>{@code loadtest.mix}：各请求的权重，默认 {@code list=60,create=10,toggle=10,patch=15,delete=5}</li>
+ *     <li>{@code loadtest.seed}：预置数据条数，默认 1000</li>
+ *     <li>{@code loadtest.listQuery}：列表请求的查询参数，默认 {@code limit=50&sort=dueDate}</li>
+ *     <li>{@code loadtest.clients}：客户端并发连接上限，默认 256</li>
+ * </ul>
+ * 结果同时写入 {@code target/loadtest-<存储>.json}。
+ */
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+class TodoLoadTest {
+    private static final String[] CATEGORIES = {"工作", "学习", "生活", "运动"};
+
+    private static final int RATE = Integer.getInteger("loadtest.rate", 500);
+    private static final int DURATION_SEC = Integer.getInteger("loadtest.durationSec", 30);
+    private static final int WARMUP_SEC = Integer.getInteger("loadtest.warmupSec", 5);
+    private static final int SEED = Integer.getInteger("loadtest.seed", 1000);
+    private static final int CLIENTS = Integer.getInteger("loadtest.clients", 256);
+    private static final String MIX = System.getProperty("loadtest.mix", "list=60,create=10,toggle=10,patch=15,delete=5");
+    private static final String LIST_QUERY = System.getProperty("loadtest.listQuery", "limit=50&sort=dueDate");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void file_store() throws Exception {
+        run("file", "todo.storage.path=" + dir.resolve("todos.json"));
+    }
+
+    @Test
+    void mapped_store() throws Exception {
+        run("mapped", "todo.storage.path=" + dir.resolve("todos.slots"));
+    }
+
+    @Test
+    void sharded_store() throws Exception {
+        run("sharded", "todo.storage.path=" + dir.resolve("shards"));
+    }
+
+    @Test
+    void jdbc_h2() throws Exception {
+        run("h2");
+    }
+
+    private void run(String profile, String... properties) throws Exception {
+        List<String> props = new ArrayList<String>(Arrays.asList("server.port=0", "spring.main.banner-mode=off", "logging.level.root=WARN"));
+        props.addAll(Arrays.asList(properties));
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(TodoApplication.class)
+                .profiles(profile)
+                .properties(props.toArray(new String[0]))
+                .run()) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            try (Client client = new Client("http://localhost:" + port + "/api/todos")) {
+                IdPool ids = new IdPool();
+                seed(client, ids);
+                report(profile, drive(client, ids));
+            }
+        }
+    }
+
+    /**
+     * 通过批量接口预置数据。
+     */
+    private void seed(Client client, IdPool ids) throws IOException {
+        for (int done = 0; done < SEED; done += 500) {
+            StringBuilder body = new StringBuilder("[");
+            for (int i = done; i < Math.min(SEED, done + 500); i++) {
+                if (i > done) {
+                    body.append(',');
+                }
+                body.append("{\"op\":\"create\",").append(itemFields(i)).append('}');
+            }
+            body.append(']');
+            Response response = client.send("POST", "/batch", body.toString());
+            if (response.status != 200) {
+                throw new IllegalStateException("seed failed: HTTP " + response.status);
+            }
+            for (JsonNode result : objectMapper.readTree(response.body).get("results")) {
+                ids.add(result.get("id").asText());
+            }
+        }
+    }
+
+    /**
+     * 开放模型发压：调度线程按指数分布的间隔安排请求，交给工作线程执行；预热期内的请求不计入统计。
+     */
+    private Map<Endpoint, Recorder> drive(Client client, IdPool ids) throws InterruptedException {
+        Map<Endpoint, Recorder> recorders = new EnumMap<Endpoint, Recorder>(Endpoint.class);
+        for (Endpoint endpoint : Endpoint.values()) {
+            recorders.put(endpoint, new Recorder());
+        }
+        Endpoint[] wheel = mixWheel();
+        ExecutorService workers = Executors.newFixedThreadPool(CLIENTS);
+        Random random = new Random(7L);
+        AtomicLong sequence = new AtomicLong();
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(WARMUP_SEC);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(DURATION_SEC);
+        long next = start;
+        while (next < end) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            long intended = next;
+            Endpoint endpoint = wheel[random.nextInt(wheel.length)];
+            workers.execute(() -> {
+                boolean ok;
+                try {
+                    ok = execute(client, ids, endpoint, sequence.incrementAndGet());
+                } catch (IOException | RuntimeException e) {
+                    ok = false;
+                }
+                if (intended >= measureFrom) {
+                    recorders.get(endpoint).record(System.nanoTime() - intended, ok);
+                }
+            });
+            next += (long) (-Math.log(1 - random.nextDouble()) / RATE * 1_000_000_000L);
+        }
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.MINUTES);
+        return recorders;
+    }
+
+    private boolean execute(Client client, IdPool ids, Endpoint endpoint, long n) throws IOException {
+        switch (endpoint) {
+            case LIST:
+                return client.send("GET", "?" + LIST_QUERY, null).ok();
+            case CREATE: {
+                Response response = client.send("POST", "", "{" + itemFields(n) + "}");
+                if (response.ok()) {
+                    ids.add(objectMapper.readTree(response.body).get("id").asText());
+                }
+                return response.ok();
+            }
+            case TOGGLE: {
+                String id = ids.random();
+                return id != null && client.send("PATCH", "/" + id + "/toggle", null).ok();
+            }
+            case PATCH: {
+                String id = ids.random();
+                return id != null && client.send("PATCH", "/" + id, "{\"title\":\"更新 " + n + "\",\"priority\":" + (1 + n % 3) + "}").ok();
+            }
+            case DELETE: {
+                String id = ids.take();
+                return id != null && client.send("DELETE", "/" + id, null).ok();
+            }
+            default:
+                throw new IllegalStateException(endpoint.name());
+        }
+    }
+
+    private static String itemFields(long n) {
+        int day = 1 + (int) (n % 28);
+        return "\"title\":\"压测 " + n + "\",\"category\":\"" + CATEGORIES[(int) (n % CATEGORIES.length)] + "\",\"priority\":" + (1 + n % 3)
+                + ",\"dueDate\":\"2026-03-" + (day < 10 ? "0" + day : String.valueOf(day)) + "T09:00\"";
+    }
+
+    /**
+     * 按权重展开为一个数组，随机取下标即按权重抽样。
+     */
+    private static Endpoint[] mixWheel() {
+        List<Endpoint> wheel = new ArrayList<Endpoint>();
+        for (String part : MIX.split(",")) {
+            String[] kv = part.trim().split("=");
+            Endpoint endpoint = Endpoint.valueOf(kv[0].trim().toUpperCase());
+            for (int i = Integer.parseInt(kv[1].trim()); i > 0; i--) {
+                wheel.add(endpoint);
+            }
+        }
+        if (wheel.isEmpty()) {
+            throw new IllegalArgumentException("loadtest.mix must contain at least one positive weight");
+        }
+        return wheel.toArray(new Endpoint[0]);
+    }
+
+    private void report(String profile, Map<Endpoint, Recorder> recorders) throws IOException {
+        System.out.printf("%n[%s] rate=%d/s duration=%ds seed=%d mix=%s%n", profile, RATE, DURATION_SEC, SEED, MIX);
+        System.out.printf("%-8s %8s %7s %10s %9s %9s %9s %9s%n", "endpoint", "count", "errors", "req/s", "p50(ms)", "p99(ms)", "p999(ms)", "max(ms)");
+        Map<String, Object> json = new LinkedHashMap<String, Object>();
+        json.put("profile", profile);
+        json.put("rate", RATE);
+        json.put("durationSec", DURATION_SEC);
+        json.put("seed", SEED);
+        json.put("mix", MIX);
+        Map<String, Object> endpoints = new LinkedHashMap<String, Object>();
+        for (Map.Entry<Endpoint, Recorder> entry : recorders.entrySet()) {
+            long[] latencies = entry.getValue().sorted();
+            if (latencies.length == 0) {
+                continue;
+            }
+            Map<String, Object> stats = new LinkedHashMap<String, Object>();
+            stats.put("count", latencies.length);
+            stats.put("errors", entry.getValue().errors());
+            stats.put("throughput", (double) latencies.length / DURATION_SEC);
+            stats.put("p50Ms", millis(percentile(latencies, 0.50)));
+            stats.put("p99Ms", millis(percentile(latencies, 0.99)));
+            stats.put("p999Ms", millis(percentile(latencies, 0.999)));
+            stats.put("maxMs", millis(latencies[latencies.length - 1]));
+            endpoints.put(entry.getKey().name().toLowerCase(), stats);
+            System.out.printf("%-8s %8d %7d %10.1f %9.2f %9.2f %9.2f %9.2f%n", entry.getKey().name().toLowerCase(), latencies.length,
+                    entry.getValue().errors(), stats.get("throughput"), stats.get("p50Ms"), stats.get("p99Ms"), stats.get("p999Ms"),
+                    stats.get("maxMs"));
+        }
+        json.put("endpoints", endpoints);
+        Path target = Paths.get("target");
+        Files.createDirectories(target);
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(target.resolve("loadtest-" + profile + ".json").toFile(), json);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private enum Endpoint {
+        LIST, CREATE, TOGGLE, PATCH, DELETE
+    }
+
+    /**
+     * 单个接口的延迟样本。
+     */
+    private static final class Recorder {
+        private long[] samples = new long[1024];
+        private int size;
+        private long errors;
+
+        synchronized void record(long nanos, boolean ok) {
+            if (size == samples.length) {
+                samples = Arrays.copyOf(samples, size * 2);
+            }
+            samples[size++] = nanos;
+            if (!ok) {
+                errors++;
+            }
+        }
+
+        synchronized long[] sorted() {
+            long[] copy = Arrays.copyOf(samples, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+
+        synchronized long errors() {
+            return errors;
+        }
+    }
+
+    /**
+     * 压测期间已知存在的 id：切换/更新随机取用，删除取出后移除。
+     */
+    private static final class IdPool {
+        private final List<String> ids = new ArrayList<String>();
+
+        synchronized void add(String id) {
+            ids.add(id);
+        }
+
+        synchronized String random() {
+            return ids.isEmpty() ? null : ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+        }
+
+        synchronized String take() {
+            if (ids.isEmpty()) {
+                return null;
+            }
+            int index = ThreadLocalRandom.current().nextInt(ids.size());
+            String last = ids.remove(ids.size() - 1);
+            return index == ids.size() ? last : ids.set(index, last);
+        }
+    }
+
+    private static final class Response {
+        private final int status;
+        private final byte[] body;
+
+        private Response(int status, byte[] body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        boolean ok() {
+            return status >= 200 && status < 300;
+        }
+    }
+
+    /**
+     * 基于连接池的 HTTP 客户端（HttpURLConnection 不支持 PATCH），每次读完响应体以复用长连接。
+     */
+    private static final class Client implements Closeable {
+        private final String base;
+        private final CloseableHttpClient http;
+
+        private Client(String base) {
+            this.base = base;
+            PoolingHttpClientConnectionManager connections = new PoolingHttpClientConnectionManager();
+            connections.setMaxTotal(CLIENTS);
+            connections.setDefaultMaxPerRoute(CLIENTS);
+            this.http = HttpClients.custom().setConnectionManager(connections).disableAutomaticRetries().build();
+        }
+
+        Response send(String method, String path, String json) throws IOException {
+            RequestBuilder request = RequestBuilder.create(method).setUri(base + path).setHeader("Accept", "application/json");
+            if (json != null) {
+                request.setEntity(new StringEntity(json, ContentType.APPLICATION_JSON));
+            }
+            try (CloseableHttpResponse response = http.execute(request.build())) {
+                HttpEntity entity = response.getEntity();
+                return new Response(response.getStatusLine().getStatusCode(), entity == null ? new byte[0] : EntityUtils.toByteArray(entity));
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            http.close();
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.iftech.todo.service;
+
+import com.iftech.todo.domain.DueDates;
+import com.iftech.todo.domain.TodoItem;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 时钟由测试推进，不挂定时线程，到期处理由测试调用 {@link TodoDueIndex#fire()} 模拟定时任务触发。
+ */
+class TodoDueIndexTest {
+    private static final long NOW = DueDates.parse("2026-01-02T10:00");
+
+    private final AtomicLong localMillis = new AtomicLong(NOW * 60_000L + 30_000L);
+    private final List<String> notified = new ArrayList<String>();
+    private final TodoDueIndex index = new TodoDueIndex(localMillis::get, null, item -> notified.add(item.getId()));
+
+    /**
+     * 逾期与即将到期按截止时间从早到晚；当前分钟到期的算逾期；已完成与未设置截止时间的不在索引中。
+     */
+    @Test
+    void lists_overdue_and_due_within_window() {
+        index.put(item("late", "2026-01-01T09:00", false));
+        index.put(item("now", "2026-01-02T10:00", false));
+        index.put(item("soon", "2026-01-02T10:20", false));
+        index.put(item("later", "2026-01-02T12:00", false));
+        index.put(item("done", "2026-01-01T08:00", true));
+        index.put(item("none", null, false));
+
+        assertEquals(Arrays.asList("late", "now"), ids(index.overdue(10)));
+        assertEquals(Arrays.asList("late"), ids(index.overdue(1)));
+        assertEquals(Arrays.asList("soon"), ids(index.dueWithin(30, 10)));
+        assertEquals(Arrays.asList("soon", "later"), ids(index.dueWithin(120, 10)));
+        assertEquals(4, index.size());
+    }
+
+    /**
+     * 定时任务挂在最早一个尚未逾期的截止分钟上，触发时只通知这段时间内新到期的待办；写入更早的截止时间会改挂。
+     */
+    @Test
+    void fires_each_item_once_when_it_becomes_overdue() {
+        index.put(item("late", "2026-01-01T09:00", false));
+        index.put(item("b", "2026-01-02T10:30", false));
+        index.put(item("c", "2026-01-02T11:00", false));
+        assertEquals(DueDates.parse("2026-01-02T10:30"), index.armedMinute());
+        index.put(item("a", "2026-01-02T10:10", false));
+        assertEquals(DueDates.parse("2026-01-02T10:10"), index.armedMinute());
+
+        index.fire();
+        assertEquals(new ArrayList<String>(), notified);
+
+        advanceTo("2026-01-02T10:30");
+        index.fire();
+        assertEquals(Arrays.asList("a", "b"), notified);
+        assertEquals(DueDates.parse("2026-01-02T11:00"), index.armedMinute());
+
+        index.fire();
+        assertEquals(Arrays.asList("a", "b"), notified);
+        assertEquals(Arrays.asList("late", "a", "b"), ids(index.overdue(10)));
+    }
+
+    /**
+     * 切换完成、改截止时间与删除后，索引与下一次通知随之变化；重新打开已逾期的待办不补发通知。
+     */
+    @Test
+    void follows_toggle_update_and_delete() {
+        TodoItem a = item("a", "2026-01-02T10:10", false);
+        TodoItem b = item("b", "2026-01-02T10:20", false);
+        TodoItem c = item("c", "2026-01-02T10:40", false);
+        index.put(a);
+        index.put(b);
+        index.put(c);
+
+        index.put(next(a, "2026-01-02T10:10", true));
+        index.put(next(b, "2026-01-02T13:00", false));
+        index.remove("c");
+        assertEquals(Arrays.asList("b"), ids(index.dueWithin(180, 10)));
+
+        advanceTo("2026-01-02T11:00");
+        index.fire();
+        assertEquals(new ArrayList<String>(), notified);
+        assertEquals(DueDates.parse("2026-01-02T13:00"), index.armedMinute());
+
+        index.put(next(next(a, "2026-01-02T10:10", true), "2026-01-02T10:10", false));
+        index.put(a);
+        assertEquals(Arrays.asList("a"), ids(index.overdue(10)));
+        advanceTo("2026-01-02T13:00");
+        index.fire();
+        assertEquals(Arrays.asList("b"), notified);
+    }
+
+    /**
+     * 并发更新的索引调用迟于删除到达时被忽略：已删除的待办不出现在逾期列表中，到期时也不通知。
+     */
+    @Test
+    void ignores_late_put_after_delete() {
+        TodoItem a = item("a", "2026-01-02T10:10", false);
+        index.put(a);
+        TodoItem written = next(a, "2026-01-02T10:20", false);
+
+        index.remove("a");
+        index.put(written);
+        assertEquals(0, index.size());
+
+        advanceTo("2026-01-02T10:30");
+        index.fire();
+        assertEquals(new ArrayList<String>(), notified);
+        assertEquals(new ArrayList<String>(), ids(index.overdue(10)));
+    }
+
+    private void advanceTo(String dueDate) {
+        localMillis.set(DueDates.parse(dueDate) * 60_000L);
+    }
+
+    private static List<String> ids(List<TodoItem> items) {
+        return items.stream().map(TodoItem::getId).collect(Collectors.toList());
+    }
+
+    /**
+     * 模拟一次写入：版本号加一。
+     */
+    private static TodoItem next(TodoItem item, String dueDate, boolean completed) {
+        TodoItem written = item.copy();
+        written.setDueMinute(DueDates.parse(dueDate));
+        written.setCompleted(completed);
+        written.setVersion(item.getVersion() + 1);
+        return written;
+    }
+
+    private static TodoItem item(String id, String dueDate, boolean completed) {
+        Instant created = Instant.ofEpochSecond(1_700_000_000L);
+        return new TodoItem(id, "title " + id, null, "工作", 2, dueDate, completed, created, created);
+    }
+}
@@ -0,0 +1,103 @@
+package com.iftech.todo.service;
+
+import com.iftech.todo.domain.TodoEvent;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TodoEventHubTest {
+    private final TodoEventHub hub = new TodoEventHub(4, 2, 0);
+
+    @AfterEach
+    void close() {
+        hub.close();
+    }
+
+    /**
+     * 事件按发布顺序送达每个订阅方；取消订阅后不再收到。
+     */
+    @Test
+    void delivers_in_order_until_unsubscribed() throws Exception {
+        RecordingSink sink = new RecordingSink(null);
+        Runnable unsubscribe = hub.subscribe(sink);
+        for (int i = 0; i < 3; i++) {
+            hub.publish(TodoEvent.deleted("t" + i));
+        }
+        sink.await(3);
+        assertEquals("t0", sink.ids.get(0));
+        assertEquals("t2", sink.ids.get(2));
+
+        unsubscribe.run();
+        hub.publish(TodoEvent.deleted("t3"));
+        assertEquals(0, hub.subscriberCount());
+        assertEquals(3, sink.ids.size());
+    }
+
+    /**
+     * 消费过慢的订阅方在缓冲溢出时被断开，不影响其它订阅方，发布方也不被阻塞。
+     */
+    @Test
+    void evicts_slow_consumer_without_blocking_others() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingSink slow = new RecordingSink(release);
+        RecordingSink fast = new RecordingSink(null);
+        hub.subscribe(slow);
+        hub.subscribe(fast);
+
+        for (int i = 0; i < 10; i++) {
+            hub.publish(TodoEvent.deleted("t" + i));
+            fast.await(i + 1);
+        }
+        assertTrue(slow.closed.await(5, TimeUnit.SECONDS));
+        assertEquals(1, hub.subscriberCount());
+        assertEquals(1, hub.evictionCount());
+        release.countDown();
+    }
+
+    private static final class RecordingSink implements TodoEventHub.Sink {
+        private final CountDownLatch block;
+        private final List<String> ids = new CopyOnWriteArrayList<String>();
+        private final CountDownLatch closed = new CountDownLatch(1);
+
+        private RecordingSink(CountDownLatch block) {
+            this.block = block;
+        }
+
+        @Override
+        public void send(TodoEvent event) throws IOException {
+            if (block != null) {
+                try {
+                    block.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+            ids.add(event.getId());
+        }
+
+        @Override
+        public void heartbeat() {
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+
+        void await(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5_000L;
+            while (ids.size() < count && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(count, ids.size());
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.iftech.todo.service;
+
+import com.iftech.todo.domain.TodoItem;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TodoSearchIndexTest {
+    private static final long EPOCH = 1_700_000_000L;
+
+    private final TodoSearchIndex index = new TodoSearchIndex();
+
+    /**
+     * 中文按单字与 bigram 切分，字母数字连写为一个词，全角字符与大小写先规范化。
+     */
+    @Test
+    void tokenizes_cjk_runs_and_words() {
+        Set<String> terms = TodoSearchIndex.indexTerms("复习Ｓｐｒｉｎｇ Boot2，准备面试");
+        assertTrue(terms.containsAll(Arrays.asList("复", "习", "复习", "spring", "boot2", "准备", "备面", "面试", "试")), terms.toString());
+        assertTrue(!terms.contains("习s") && !terms.contains("，"), terms.toString());
+    }
+
+    /**
+     * 中文查询按子串命中，字母数字词按前缀命中；标题命中排在描述命中之前，标题包含整个查询串的更靠前。
+     */
+    @Test
+    void matches_cjk_substrings_and_word_prefixes_by_rank() {
+        index.put(item("plan", "周末学习计划", null, "学习", 1));
+        index.put(item("java", "学习 Java 并发", "线程池与锁", "学习", 2));
+        index.put(item("shop", "买菜", "周末去超市", "生活", 3));
+        index.put(item("gym", "健身", "学习一下新动作", "运动", 4));
+
+        assertEquals(Arrays.asList("plan"), index.search("习计", null, 10));
+        assertEquals(Arrays.asList("java"), index.search("jav", null, 10));
+        assertEquals(Arrays.asList("java"), index.search("ＪＡＶＡ 线程", null, 10));
+        assertEquals(Arrays.asList("plan", "shop"), index.search("周末", null, 10));
+        assertEquals(Arrays.asList("java", "plan", "gym"), index.search("学习", null, 10));
+        assertEquals(Arrays.asList("java"), index.search("学习", null, 1));
+        assertEquals(Collections.emptyList(), index.search("学习 python", null, 10));
+        assertEquals(Collections.emptyList(), index.search("！？", null, 10));
+    }
+
+    /**
+     * 分类过滤与查询同时生效；分类比查询词更有选择性时以分类为候选集，结果不变。
+     */
+    @Test
+    void combines_with_category_filter() {
+        for (int i = 0; i < 50; i++) {
+            index.put(item("work-" + i, "整理周报 " + i, null, "工作", i));
+        }
+        index.put(item("life", "整理房间", null, "生活", 100));
+
+        assertEquals(Arrays.asList("life"), index.search("整理", "生活", 10));
+        assertEquals(10, index.search("整理", "工作", 10).size());
+        assertEquals(Collections.emptyList(), index.search("整理", "不存在", 10));
+        assertEquals(51, index.search("整理", null, 100).size());
+    }
+
+    /**
+     * 更新后旧词不再命中；乱序到达的旧版本被忽略；删除后不再命中。
+     */
+    @Test
+    void follows_updates_and_deletes() {
+        TodoItem item = item("a", "写周报", null, "工作", 1);
+        index.put(item);
+        TodoItem renamed = item.copy();
+        renamed.setTitle("写月报");
+        renamed.setVersion(1);
+        index.put(renamed);
+        index.put(item);
+
+        assertEquals(Collections.emptyList(), index.search("周报", null, 10));
+        assertEquals(Arrays.asList("a"), index.search("月报", null, 10));
+
+        index.remove("a");
+        assertEquals(Collections.emptyList(), index.search("月报", null, 10));
+        assertEquals(0, index.size());
+    }
+
+    /**
+     * 并发更新的索引调用迟于删除到达时被忽略，已删除的待办不会重新出现在搜索结果中。
+     */
+    @Test
+    void ignores_late_put_after_delete() {
+        TodoItem item = item("a", "写周报", null, "工作", 1);
+        index.put(item);
+        TodoItem renamed = item.copy();
+        renamed.setTitle("写月报");
+        renamed.setVersion(item.getVersion() + 1);
+
+        index.remove("a");
+        index.put(renamed);
+
+        assertEquals(Collections.emptyList(), index.search("月报", null, 10));
+        assertEquals(0, index.size());
+    }
+
+    private static TodoItem item(String id, String title, String description, String category, long createdSecond) {
+        Instant created = Instant.ofEpochSecond(EPOCH + createdSecond);
+        return new TodoItem(id, title, description, category, 2, "2026-01-02T10:30", false, created, created);
+    }
+}
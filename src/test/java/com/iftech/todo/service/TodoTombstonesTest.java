@@ -0,0 +1,35 @@
+package com.iftech.todo.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TodoTombstonesTest {
+    private final AtomicLong nanos = new AtomicLong();
+    private final TodoTombstones tombstones = new TodoTombstones(nanos::get);
+
+    /**
+     * 墓碑保留期内有效；之后的登记顺带清理过期的墓碑，重复删除的 id 按最近一次删除计时。
+     */
+    @Test
+    void expires_after_retention() {
+        tombstones.add("a");
+        tombstones.add("b");
+        nanos.addAndGet(TodoTombstones.RETENTION_NANOS / 2);
+        tombstones.add("a");
+        assertTrue(tombstones.contains("a"));
+        assertTrue(tombstones.contains("b"));
+
+        nanos.addAndGet(TodoTombstones.RETENTION_NANOS / 2 + 1);
+        tombstones.add("c");
+        assertFalse(tombstones.contains("b"));
+        assertTrue(tombstones.contains("a"));
+        assertEquals(2, tombstones.size());
+
+        tombstones.clear();
+        assertFalse(tombstones.contains("a"));
+    }
+}
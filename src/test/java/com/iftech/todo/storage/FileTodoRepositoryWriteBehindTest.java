@@ -0,0 +1,137 @@
+package com.iftech.todo.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iftech.todo.domain.TodoField;
+import com.iftech.todo.domain.TodoItem;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileTodoRepositoryWriteBehindTest {
+    private static final long HOUR_MILLIS = 3_600_000L;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private MeterRegistry registry = new SimpleMeterRegistry();
+
+    @TempDir
+    Path dir;
+
+    private FileTodoRepository repository;
+
+    @AfterEach
+    void close() throws Exception {
+        if (repository != null) {
+            repository.close();
+        }
+    }
+
+    /**
+     * 写入只更新内存，不触碰日志文件；同一条待办的多次修改在落盘时合并为一条记录，停机时最后落盘，重启后数据完整。
+     */
+    @Test
+    void acknowledges_in_memory_and_flushes_latest_state_on_close() throws Exception {
+        repository = open(FileTodoRepository.MODE_JOURNAL, 1000);
+        repository.create(item("a"));
+        repository.create(item("b"));
+        for (int i = 0; i < 50; i++) {
+            TodoItem current = repository.findById("a");
+            current.setTitle("第 " + i + " 次");
+            repository.update(current, EnumSet.of(TodoField.TITLE));
+        }
+        repository.create(item("c"));
+        assertTrue(repository.delete("c"));
+
+        assertEquals("第 49 次", repository.findById("a").getTitle());
+        assertFalse(Files.exists(journal()));
+        assertEquals(3.0, registry.get("todo.file.writebehind.pending").gauge().value());
+        assertTrue(registry.get("todo.file.writebehind.lag").gauge().value() >= 0.0);
+        assertEquals(0L, repository.syncCount());
+
+        repository.close();
+        List<String> lines = Files.readAllLines(journal());
+        assertEquals(3, lines.size());
+        assertEquals(1, registry.get("todo.file.writebehind.flush.items").summary().count());
+        assertEquals(3.0, registry.get("todo.file.writebehind.flush.items").summary().totalAmount());
+        assertEquals(0.0, registry.get("todo.file.writebehind.pending").gauge().value());
+
+        reopen(FileTodoRepository.MODE_JOURNAL, 1000);
+        assertEquals(2, repository.list().size());
+        assertEquals("第 49 次", repository.findById("a").getTitle());
+        assertEquals(50, repository.findById("a").getVersion());
+        assertNull(repository.findById("c"));
+    }
+
+    /**
+     * 积压的 id 数达到阈值时不等间隔，由后台线程提前落盘。
+     */
+    @Test
+    void flushes_early_when_dirty_threshold_reached() throws Exception {
+        repository = open(FileTodoRepository.MODE_JOURNAL, 10);
+        for (int i = 0; i < 9; i++) {
+            repository.create(item("id-" + i));
+        }
+        assertEquals(0L, repository.syncCount());
+
+        repository.create(item("id-9"));
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (repository.syncCount() == 0L && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+
+        assertEquals(1L, repository.syncCount());
+        assertEquals(10, Files.readAllLines(journal()).size());
+        assertEquals(0.0, registry.get("todo.file.writebehind.lag").gauge().value());
+    }
+
+    /**
+     * 快照模式下整批变更合并为一次快照重写。
+     */
+    @Test
+    void snapshot_mode_rewrites_once_per_flush() throws Exception {
+        repository = open(FileTodoRepository.MODE_SNAPSHOT, 1000);
+        for (int i = 0; i < 20; i++) {
+            repository.create(item("id-" + i));
+        }
+        assertFalse(Files.exists(dir.resolve("todos.json")));
+
+        repository.close();
+        assertEquals(1L, repository.syncCount());
+        assertEquals(1, registry.get("todo.file.persist").tag("kind", "sync").timer().count());
+
+        reopen(FileTodoRepository.MODE_SNAPSHOT, 1000);
+        assertEquals(20, repository.list().size());
+    }
+
+    private FileTodoRepository open(String mode, int maxDirty) {
+        return new FileTodoRepository(objectMapper, dir.resolve("todos.json").toString(), mode, FileTodoRepository.FORMAT_BINARY,
+                Long.MAX_VALUE, SyncPolicy.WRITE_BEHIND.name(), 0L, HOUR_MILLIS, maxDirty, 604_800_000L, registry);
+    }
+
+    private void reopen(String mode, int maxDirty) throws Exception {
+        repository.close();
+        registry = new SimpleMeterRegistry();
+        repository = open(mode, maxDirty);
+    }
+
+    private Path journal() {
+        return dir.resolve("todos.json.log");
+    }
+
+    private static TodoItem item(String id) {
+        Instant now = Instant.parse("2026-01-01T08:00:00Z");
+        return new TodoItem(id, "标题 " + id, null, "工作", TodoItem.DEFAULT_PRIORITY, "2026-03-15T18:45", false, now, now);
+    }
+}
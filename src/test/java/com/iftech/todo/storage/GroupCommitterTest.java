@@ -0,0 +1,214 @@
+package com.iftech.todo.storage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 落盘动作由测试提供：用闩锁卡住第一次落盘，让其他写入方在这期间排队，从而确定地观察合并、失败传播与重试。
+ */
+class GroupCommitterTest {
+    private static final long TIMEOUT_SECONDS = 10L;
+
+    private GroupCommitter committer;
+
+    @AfterEach
+    void close() {
+        if (committer != null) {
+            committer.close();
+        }
+    }
+
+    /**
+     * 逐次落盘：每次提交各自落盘一次，落盘失败直接抛给调用方。
+     */
+    @Test
+    void per_write_flushes_on_every_commit() {
+        AtomicInteger failures = new AtomicInteger();
+        committer = new GroupCommitter("test-commit", SyncPolicy.PER_WRITE, 0L, () -> {
+            if (failures.getAndDecrement() > 0) {
+                throw new IOException("disk full");
+            }
+        });
+        committer.commit();
+        committer.commit();
+        assertEquals(2L, committer.flushCount());
+
+        failures.set(1);
+        assertThrows(IllegalStateException.class, committer::commit);
+        assertEquals(2L, committer.flushCount());
+    }
+
+    /**
+     * 组提交：落盘完成之前调用方一直阻塞；落盘期间到达的写入方合并为下一次落盘。
+     */
+    @Test
+    void group_acknowledges_after_flush_and_coalesces_waiters() throws Exception {
+        BlockingFlusher flusher = new BlockingFlusher(false);
+        committer = new GroupCommitter("test-commit", SyncPolicy.GROUP, 0L, flusher);
+
+        Writer first = start(1).get(0);
+        assertTrue(flusher.entered.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        List<Writer> waiters = start(8);
+        awaitWaiting(waiters);
+        assertFalse(first.done.await(50, TimeUnit.MILLISECONDS));
+        assertEquals(0L, committer.flushCount());
+
+        flusher.release.countDown();
+        first.await();
+        for (Writer waiter : waiters) {
+            waiter.await();
+            assertNull(waiter.failure);
+        }
+        assertNull(first.failure);
+        assertEquals(2L, committer.flushCount());
+    }
+
+    /**
+     * 组提交：落盘失败时同一批的每个写入方都收到异常，而不是只有触发落盘的那一个。
+     */
+    @Test
+    void group_failure_reaches_every_waiter() throws Exception {
+        BlockingFlusher flusher = new BlockingFlusher(true);
+        committer = new GroupCommitter("test-commit", SyncPolicy.GROUP, 0L, flusher);
+
+        Writer first = start(1).get(0);
+        assertTrue(flusher.entered.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        List<Writer> waiters = start(4);
+        awaitWaiting(waiters);
+        flusher.release.countDown();
+
+        first.await();
+        assertTrue(first.failure instanceof IllegalStateException);
+        for (Writer waiter : waiters) {
+            waiter.await();
+            assertTrue(waiter.failure instanceof IllegalStateException);
+        }
+        assertEquals(0L, committer.flushCount());
+    }
+
+    /**
+     * 定时落盘：提交立即返回；间隔未到时关闭，最后落盘一次。
+     */
+    @Test
+    void close_flushes_pending_interval_changes() {
+        AtomicInteger flushes = new AtomicInteger();
+        committer = new GroupCommitter("test-commit", SyncPolicy.INTERVAL, 60_000L, flushes::incrementAndGet);
+        committer.commit();
+        assertEquals(0, flushes.get());
+
+        committer.close();
+        assertEquals(1, flushes.get());
+        committer = null;
+    }
+
+    /**
+     * 定时落盘：落盘失败后保留脏标记，后续周期重试直到成功；成功之后不再重复落盘。
+     */
+    @Test
+    void interval_retries_failed_flush() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        committer = new GroupCommitter("test-commit", SyncPolicy.INTERVAL, 10L, () -> {
+            if (attempts.incrementAndGet() <= 2) {
+                throw new IOException("disk full");
+            }
+        });
+        committer.commit();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (committer.flushCount() == 0L && System.nanoTime() < deadline) {
+            Thread.sleep(5L);
+        }
+        assertEquals(1L, committer.flushCount());
+        assertEquals(3, attempts.get());
+
+        Thread.sleep(50L);
+        committer.close();
+        assertEquals(3, attempts.get());
+        committer = null;
+    }
+
+    private List<Writer> start(int count) {
+        List<Writer> writers = new ArrayList<Writer>();
+        for (int i = 0; i < count; i++) {
+            Writer writer = new Writer();
+            writer.start();
+            writers.add(writer);
+        }
+        return writers;
+    }
+
+    /**
+     * 等待写入方都进入 {@code ticket.join()} 的阻塞状态，即已加入下一批。
+     */
+    private static void awaitWaiting(List<Writer> writers) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        for (Writer writer : writers) {
+            while (writer.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+                Thread.sleep(1L);
+            }
+        }
+    }
+
+    private final class Writer extends Thread {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile RuntimeException failure;
+
+        Writer() {
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                committer.commit();
+            } catch (RuntimeException e) {
+                failure = e;
+            } finally {
+                done.countDown();
+            }
+        }
+
+        void await() throws InterruptedException {
+            assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * 第一次落盘停在闩锁上直到测试放行；{@code fail} 为 true 时每次落盘都失败。
+     */
+    private static final class BlockingFlusher implements GroupCommitter.Flusher {
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final boolean fail;
+
+        BlockingFlusher(boolean fail) {
+            this.fail = fail;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted", e);
+            }
+            if (fail) {
+                throw new IOException("disk full");
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.iftech.todo.storage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import org.h2.api.Trigger;
+
+/**
+ * {@code schema-h2.sql} 中 {@code todo_item} 的行级触发器，与 MySQL 版 {@code schema.sql} 的三个版本号触发器等价：
+ * 每插入、更新或删除一行，在同一事务内把 {@code todo_change_version} 加一。
+ */
+public class H2ChangeVersionTrigger implements Trigger {
+    @Override
+    public void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
+        try (PreparedStatement statement = conn.prepareStatement("UPDATE todo_change_version SET version = version + 1 WHERE id = 1")) {
+            statement.executeUpdate();
+        }
+    }
+}
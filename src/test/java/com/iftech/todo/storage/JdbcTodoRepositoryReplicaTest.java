@@ -0,0 +1,220 @@
+package com.iftech.todo.storage;
+
+import com.iftech.todo.domain.TodoItem;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import javax.sql.DataSource;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 主库与副本各用一个内存 H2 实例（MySQL 兼容模式，表结构见 {@code schema-h2.sql}），复制由测试显式拷贝数据模拟，
+ * 副本尚未拷贝时的读取结果即可区分读取落在哪个库上。不启动后台健康检查，由测试显式调用 {@link ReplicaRouter#checkHealth()}。
+ */
+class JdbcTodoRepositoryReplicaTest {
+    private static final long EPOCH = 1_700_000_000L;
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private JdbcTemplate primary;
+    private HikariDataSource replicaDataSource;
+    private ReplicaRouter router;
+    private JdbcTodoRepository repository;
+
+    @BeforeEach
+    void open() {
+        JdbcDataSource primaryDataSource = new JdbcDataSource();
+        primaryDataSource.setURL(h2Url("primary"));
+        primaryDataSource.setUser("sa");
+        replicaDataSource = new HikariDataSource();
+        replicaDataSource.setJdbcUrl(h2Url("replica"));
+        replicaDataSource.setUsername("sa");
+        createSchema(primaryDataSource);
+        createSchema(replicaDataSource);
+        primary = new JdbcTemplate(primaryDataSource);
+    }
+
+    @AfterEach
+    void close() throws Exception {
+        if (router != null) {
+            router.close();
+        }
+        replicaDataSource.close();
+    }
+
+    /**
+     * 列表、单条与分类计数在副本上执行，写入落在主库；副本追上之后其他客户端才能读到。
+     */
+    @Test
+    void routes_reads_to_replica_and_writes_to_primary() {
+        start(60_000L);
+        router.bind("writer");
+        repository.create(item("a", "工作"));
+        repository.create(item("b", "学习"));
+        assertEquals(2, primary.queryForObject("SELECT COUNT(*) FROM todo_item", Integer.class));
+
+        router.bind("reader");
+        assertTrue(repository.list().isEmpty());
+        assertNull(repository.findById("a"));
+        assertTrue(repository.categoryCounts().isEmpty());
+
+        replicate();
+        assertEquals(2, repository.list().size());
+        assertNotNull(repository.findById("a"));
+        assertEquals(2, repository.categoryCounts().size());
+        assertEquals(2, repository.findByIds(Arrays.asList("a", "b", "c")).size());
+        assertEquals(7.0, reads("replica"));
+    }
+
+    /**
+     * 写入后的粘滞窗口内，同一客户端的读取走主库（读己之写），其他客户端不受影响；窗口过后恢复走副本。
+     */
+    @Test
+    void reads_own_writes_within_sticky_window() throws Exception {
+        start(300L);
+        router.bind("writer");
+        repository.create(item("a", "工作"));
+        assertNotNull(repository.findById("a"));
+        assertEquals(1, repository.list().size());
+        assertEquals(2.0, reads("sticky"));
+
+        router.bind("reader");
+        assertNull(repository.findById("a"));
+
+        Thread.sleep(400L);
+        router.bind("writer");
+        assertNull(repository.findById("a"));
+        router.unbind();
+    }
+
+    /**
+     * 副本不可用时当次读取改到主库重试并标记为不健康，之后的读取直接走主库，健康检查通过前不再尝试副本。
+     */
+    @Test
+    void falls_back_to_primary_when_replica_is_down() {
+        start(0L);
+        repository.create(item("a", "工作"));
+        assertTrue(repository.list().isEmpty());
+
+        replicaDataSource.close();
+        assertEquals(1, repository.list().size());
+        assertFalse(router.isHealthy());
+        assertEquals(1.0, reads("fallback"));
+        assertNotNull(repository.findById("a"));
+        assertEquals(1.0, reads("unhealthy"));
+
+        router.checkHealth();
+        assertFalse(router.isHealthy());
+        assertEquals(0.0, registry.get("todo.jdbc.replica.healthy").gauge().value());
+    }
+
+    /**
+     * 变更标签由数据库触发器维护：绕过本仓库直接修改数据库同样会使其变化。
+     */
+    @Test
+    void change_tag_moves_with_direct_database_writes() {
+        JdbcTodoRepository primaryOnly = new JdbcTodoRepository(primary, 500, 604_800_000L, 5000L, Optional.empty());
+        String initial = primaryOnly.changeTag();
+        assertNotNull(initial);
+        primaryOnly.create(item("a", "工作"));
+        String created = primaryOnly.changeTag();
+        assertNotEquals(initial, created);
+
+        primary.update("UPDATE todo_item SET title = ? WHERE id = ?", "edited", "a");
+        assertNotEquals(created, primaryOnly.changeTag());
+    }
+
+    /**
+     * 配置了副本时变更标签从副本读取，副本追上之前不变，不会比副本上的列表新；副本不可用时不给出标签。
+     */
+    @Test
+    void change_tag_is_read_from_replica() {
+        start(0L);
+        String initial = repository.changeTag();
+        assertNotNull(initial);
+        repository.create(item("a", "工作"));
+        assertEquals(initial, repository.changeTag());
+
+        replicate();
+        assertNotEquals(initial, repository.changeTag());
+
+        replicaDataSource.close();
+        router.checkHealth();
+        assertNull(repository.changeTag());
+    }
+
+    /**
+     * 同时开启按 id 缓存与只读副本时不装配缓存：副本追上之后按 id 的读取立即看到新版本，不会被缓存里复制延迟期间读入的旧版本挡住。
+     */
+    @Test
+    void cache_is_not_installed_in_front_of_replica() {
+        start(0L);
+        TodoRepository configured = new TodoRepositoryConfiguration().todoRepository(repository, true, true, 100, 60_000L,
+                Optional.of(router), registry);
+        configured.create(item("a", "工作"));
+        replicate();
+        assertEquals(0L, configured.findById("a").getVersion());
+
+        configured.toggle("a", Instant.ofEpochSecond(EPOCH + 60));
+        assertEquals(0L, configured.findById("a").getVersion());
+        replicate();
+        assertEquals(1L, configured.findById("a").getVersion());
+        assertNull(registry.find("todo.cache.hits").functionCounter());
+    }
+
+    private void start(long stickyMillis) {
+        router = new ReplicaRouter(replicaDataSource, stickyMillis, 5000L, registry);
+        router.checkHealth();
+        assertTrue(router.isHealthy());
+        repository = new JdbcTodoRepository(primary, 500, 604_800_000L, 5000L, Optional.of(router));
+    }
+
+    /**
+     * 把主库的 todo_item 整表拷贝到副本。
+     */
+    private void replicate() {
+        JdbcTemplate replica = new JdbcTemplate(replicaDataSource);
+        replica.update("DELETE FROM todo_item");
+        for (Map<String, Object> row : primary.queryForList("SELECT * FROM todo_item")) {
+            replica.update("INSERT INTO todo_item (id, title, description, category, priority, due_date, completed, version, created_at, updated_at)"
+                            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", row.get("id"), row.get("title"), row.get("description"),
+                    row.get("category"), row.get("priority"), row.get("due_date"), row.get("completed"), row.get("version"),
+                    row.get("created_at"), row.get("updated_at"));
+        }
+    }
+
+    private double reads(String route) {
+        return registry.get("todo.jdbc.reads").tag("route", route).counter().count();
+    }
+
+    private static void createSchema(DataSource dataSource) {
+        new ResourceDatabasePopulator(new ClassPathResource("schema-h2.sql")).execute(dataSource);
+    }
+
+    private static String h2Url(String name) {
+        return "jdbc:h2:mem:" + name + "-" + UUID.randomUUID() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    }
+
+    private static TodoItem item(String id, String category) {
+        Instant created = Instant.ofEpochSecond(EPOCH);
+        return new TodoItem(id, "title " + id, null, category, 2, "2026-01-02T10:30", false, created, created);
+    }
+}
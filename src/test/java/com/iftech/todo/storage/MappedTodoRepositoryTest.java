@@ -0,0 +1,184 @@
+package com.iftech.todo.storage;
+
+import com.iftech.todo.domain.TodoField;
+import com.iftech.todo.domain.TodoItem;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedTodoRepositoryTest {
+    private MeterRegistry registry = new SimpleMeterRegistry();
+
+    @TempDir
+    Path dir;
+
+    private MappedTodoRepository repository;
+
+    @AfterEach
+    void close() throws Exception {
+        if (repository != null) {
+            repository.close();
+        }
+    }
+
+    /**
+     * 切换完成态只改写槽位内的 25 字节，不写溢出区；重新打开后数据与版本号不变。
+     */
+    @Test
+    void toggle_updates_slot_in_place() throws Exception {
+        repository = open(Long.MAX_VALUE);
+        for (int i = 0; i < 100; i++) {
+            repository.create(item("id-" + i, "描述 " + i));
+        }
+        double records = written("records");
+        double overflow = written("overflow");
+        long size = Files.size(dir.resolve("todos.slots"));
+
+        TodoItem toggled = repository.toggle("id-42", Instant.parse("2026-05-01T00:00:00Z"));
+
+        assertTrue(toggled.isCompleted());
+        assertEquals(25.0, written("records") - records);
+        assertEquals(0.0, written("overflow") - overflow);
+        assertEquals(size, Files.size(dir.resolve("todos.slots")));
+
+        TodoItem changed = repository.findById("id-7");
+        changed.setTitle("新标题");
+        changed.setPriority(1);
+        repository.update(changed, EnumSet.of(TodoField.TITLE, TodoField.PRIORITY));
+        assertTrue(repository.delete("id-8"));
+        reopen(Long.MAX_VALUE);
+
+        assertEquals(99, repository.list().size());
+        assertTrue(repository.findById("id-42").isCompleted());
+        assertEquals(toggled.getVersion(), repository.findById("id-42").getVersion());
+        assertEquals(Instant.parse("2026-05-01T00:00:00Z"), repository.findById("id-42").getUpdatedAt());
+        assertEquals("新标题", repository.findById("id-7").getTitle());
+        assertEquals(1, repository.findById("id-7").getPriority());
+        assertEquals("描述 7", repository.findById("id-7").getDescription());
+        assertNull(repository.findById("id-8"));
+        assertEquals("2026-03-15T18:45", repository.findById("id-1").getDueDate());
+    }
+
+    /**
+     * 删除释放的槽位被新增复用，文件不增长；版本号不一致时拒绝更新。
+     */
+    @Test
+    void reuses_free_slots_and_checks_versions() throws Exception {
+        repository = open(Long.MAX_VALUE);
+        for (int i = 0; i < 1024; i++) {
+            repository.create(item("id-" + i, null));
+        }
+        long size = Files.size(dir.resolve("todos.slots"));
+        for (int i = 0; i < 10; i++) {
+            assertTrue(repository.delete("id-" + i));
+            repository.create(item("new-" + i, null));
+        }
+        assertEquals(size, Files.size(dir.resolve("todos.slots")));
+        assertFalse(repository.delete("missing"));
+
+        TodoItem stale = repository.findById("new-3");
+        stale.setVersion(stale.getVersion() + 1);
+        assertThrows(TodoConflictException.class, () -> repository.update(stale, EnumSet.of(TodoField.TITLE)));
+
+        reopen(Long.MAX_VALUE);
+        assertEquals(1024, repository.list().size());
+        assertNull(repository.findById("id-3"));
+    }
+
+    /**
+     * 溢出区垃圾超过阈值后重写为下一代号的文件，旧溢出区被删除，重新打开后数据完整。
+     */
+    @Test
+    void compacts_overflow_into_next_generation() throws Exception {
+        repository = open(1024);
+        repository.create(item("a", "初始描述"));
+        repository.create(item("b", "保留"));
+        for (int i = 0; i < 200; i++) {
+            TodoItem current = repository.findById("a");
+            current.setDescription("第 " + i + " 次修改的描述");
+            repository.update(current, EnumSet.of(TodoField.DESCRIPTION));
+        }
+        assertTrue(registry.get("todo.file.persist").tag("kind", "compact").timer().count() >= 1);
+        List<String> overflow = overflowFiles();
+        assertEquals(1, overflow.size());
+        assertFalse(overflow.contains("todos.slots.overflow.1"));
+
+        reopen(1024);
+        assertEquals("第 199 次修改的描述", repository.findById("a").getDescription());
+        assertEquals("保留", repository.findById("b").getDescription());
+        assertEquals(200, repository.findById("a").getVersion());
+    }
+
+    /**
+     * 槽位内容被改动时只隔离这一条：原始字节写入隔离文件，其余数据照常载入，空出的槽位可以复用。
+     */
+    @Test
+    void quarantines_corrupt_slot() throws Exception {
+        repository = open(Long.MAX_VALUE);
+        repository.create(item("a", null));
+        repository.create(item("b", "保留"));
+        repository.close();
+        repository = null;
+
+        Path path = dir.resolve("todos.slots");
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[TodoRecordFile.HEADER_BYTES + 8] ^= 0x01;
+        Files.write(path, bytes);
+
+        repository = open(Long.MAX_VALUE);
+        assertNull(repository.findById("a"));
+        assertEquals("保留", repository.findById("b").getDescription());
+        List<String> quarantine = Files.readAllLines(dir.resolve("todos.slots.quarantine"));
+        assertEquals(1, quarantine.size());
+        assertTrue(quarantine.get(0).contains("slot=0 reason=checksum mismatch"), quarantine.get(0));
+
+        repository.create(item("c", null));
+        reopen(Long.MAX_VALUE);
+        assertEquals(2, repository.list().size());
+        assertEquals(1, Files.readAllLines(dir.resolve("todos.slots.quarantine")).size());
+    }
+
+    private MappedTodoRepository open(long compactThreshold) {
+        return new MappedTodoRepository(dir.resolve("todos.slots").toString(), compactThreshold, SyncPolicy.PER_WRITE.name(), 0L, 1000L,
+                604_800_000L, registry);
+    }
+
+    private void reopen(long compactThreshold) throws IOException {
+        repository.close();
+        registry = new SimpleMeterRegistry();
+        repository = open(compactThreshold);
+    }
+
+    private double written(String file) {
+        return registry.get("todo.file.bytes.written").tag("file", file).functionCounter().count();
+    }
+
+    private List<String> overflowFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith("todos.slots.overflow."))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static TodoItem item(String id, String description) {
+        Instant now = Instant.parse("2026-01-01T08:00:00.123456789Z");
+        return new TodoItem(id, "标题 " + id, description, "工作", TodoItem.DEFAULT_PRIORITY, "2026-03-15T18:45", false, now, now);
+    }
+}
@@ -0,0 +1,91 @@
+package com.iftech.todo.storage;
+
+import com.iftech.todo.domain.TodoField;
+import com.iftech.todo.domain.TodoItem;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.EnumSet;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MeteredTodoRepositoryTest {
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    @TempDir
+    Path dir;
+
+    private FileTodoRepository file;
+
+    @AfterEach
+    void close() throws Exception {
+        if (file != null) {
+            file.close();
+        }
+    }
+
+    /**
+     * 每次调用按方法与结果计时：找不到记为 not_found，版本冲突记为 conflict；列表记录返回条数。
+     */
+    @Test
+    void records_calls_by_operation_and_outcome() {
+        TodoRepository repository = new MeteredTodoRepository(open(FileTodoRepository.MODE_SNAPSHOT), registry);
+        TodoItem created = repository.create(item("a"));
+        repository.create(item("b"));
+        repository.findById("a");
+        repository.findById("missing");
+        TodoItem stale = created.copy();
+        stale.setVersion(created.getVersion() + 1);
+        assertThrows(TodoConflictException.class, () -> repository.update(stale, EnumSet.of(TodoField.TITLE)));
+        repository.list();
+
+        assertEquals(2, timerCount("create", "success"));
+        assertEquals(1, timerCount("find_by_id", "success"));
+        assertEquals(1, timerCount("find_by_id", "not_found"));
+        assertEquals(1, timerCount("update", "conflict"));
+        assertEquals(1, registry.get("todo.repository.list.rows").tag("operation", "list").summary().count());
+        assertEquals(2.0, registry.get("todo.repository.list.rows").tag("operation", "list").summary().totalAmount());
+    }
+
+    /**
+     * 文件存储记录锁等待/持有、落盘耗时、写入字节与文件大小；普通读取不加锁，只有增量同步取读锁。
+     */
+    @Test
+    void file_store_records_lock_and_persist_metrics() {
+        TodoRepository repository = open(FileTodoRepository.MODE_JOURNAL);
+        repository.create(item("a"));
+        repository.findById("a");
+        assertEquals(0, registry.get("todo.file.lock.hold").tag("mode", "read").timer().count());
+        repository.changes(null);
+
+        assertTrue(registry.get("todo.file.lock.wait").tag("mode", "write").timer().count() >= 1);
+        assertTrue(registry.get("todo.file.lock.hold").tag("mode", "write").timer().count() >= 1);
+        assertTrue(registry.get("todo.file.lock.hold").tag("mode", "read").timer().count() >= 1);
+        assertEquals(1, registry.get("todo.file.persist").tag("kind", "sync").timer().count());
+        double written = registry.get("todo.file.bytes.written").tag("file", "journal").functionCounter().count();
+        assertTrue(written > 0);
+        assertEquals(written, registry.get("todo.file.size").tag("file", "journal").gauge().value());
+    }
+
+    private FileTodoRepository open(String mode) {
+        file = new FileTodoRepository(Jackson2ObjectMapperBuilder.json().build(), dir.resolve("todos.json").toString(), mode,
+                FileTodoRepository.FORMAT_BINARY, Long.MAX_VALUE, SyncPolicy.PER_WRITE.name(), 0L, 1000L, 1000, 604_800_000L, registry);
+        return file;
+    }
+
+    private long timerCount(String operation, String outcome) {
+        return registry.get("todo.repository").tag("operation", operation).tag("backend", "file").tag("outcome", outcome).timer().count();
+    }
+
+    private static TodoItem item(String id) {
+        Instant now = Instant.now();
+        return new TodoItem(id, "标题 " + id, null, "工作", TodoItem.DEFAULT_PRIORITY, null, false, now, now);
+    }
+}
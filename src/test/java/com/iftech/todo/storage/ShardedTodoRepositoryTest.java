@@ -0,0 +1,298 @@
+package com.iftech.todo.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iftech.todo.domain.TodoCategoryCount;
+import com.iftech.todo.domain.TodoChanges;
+import com.iftech.todo.domain.TodoField;
+import com.iftech.todo.domain.TodoItem;
+import com.iftech.todo.domain.TodoSort;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import static com.iftech.todo.storage.TodoFixtures.item;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardedTodoRepositoryTest {
+    private static final String[] CATEGORIES = {"学习", "工作", "生活", null};
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    @TempDir
+    Path dir;
+
+    private ShardedTodoRepository repository;
+
+    @AfterEach
+    void close() throws Exception {
+        if (repository != null) {
+            repository.close();
+        }
+    }
+
+    /**
+     * 数据分散在各分片，列表、查询（含游标分页）与分类计数的归并结果与单个索引上的结果一致，重启后不变。
+     */
+    @Test
+    void merges_shards_like_a_single_index() throws Exception {
+        repository = open(4);
+        Random random = new Random(11);
+        TodoIndex expected = new TodoIndex();
+        for (int i = 0; i < 300; i++) {
+            TodoItem item = item("id-" + i, CATEGORIES[random.nextInt(CATEGORIES.length)], 1 + random.nextInt(3), random.nextBoolean(),
+                    random.nextInt(1000));
+            repository.create(item);
+            expected.put(item);
+        }
+        Set<Integer> used = new HashSet<Integer>();
+        for (TodoItem item : expected.all()) {
+            used.add(repository.shardOf(item.getId()));
+        }
+        assertEquals(4, used.size());
+
+        assertMatches(expected, random);
+        reopen(4);
+        assertMatches(expected, random);
+        assertEquals(Arrays.asList("id-7", "id-3"), new ArrayList<String>(repository.findByIds(Arrays.asList("id-7", "missing", "id-3")).keySet()));
+    }
+
+    /**
+     * 跨分片的批量写入：任一分片校验失败时所有分片都不生效；通过时全部生效。
+     */
+    @Test
+    void applies_cross_shard_batches_atomically() throws Exception {
+        repository = open(4);
+        for (int i = 0; i < 20; i++) {
+            repository.create(item("id-" + i, "工作", 2, false, i));
+        }
+        TodoBatch failing = new TodoBatch();
+        failing.create(item("new-1", "学习", 1, false, 100));
+        failing.delete("id-1");
+        TodoItem stale = repository.findById("id-2");
+        stale.setVersion(stale.getVersion() + 1);
+        failing.update(stale, stale.getVersion());
+        assertThrows(TodoConflictException.class, () -> repository.apply(failing));
+        assertNull(repository.findById("new-1"));
+        assertTrue(repository.findById("id-1") != null);
+
+        TodoBatch batch = new TodoBatch();
+        Set<Integer> shards = new HashSet<Integer>();
+        for (int i = 0; i < 8; i++) {
+            batch.create(item("new-" + i, "学习", 1, false, 100 + i));
+            shards.add(repository.shardOf("new-" + i));
+        }
+        TodoItem changed = repository.findById("id-2");
+        changed.setTitle("改");
+        changed.setVersion(changed.getVersion() + 1);
+        batch.update(changed, changed.getVersion() - 1);
+        batch.delete("id-1");
+        repository.apply(batch);
+        assertTrue(shards.size() > 1);
+
+        reopen(4);
+        assertEquals(27, repository.list().size());
+        assertEquals("改", repository.findById("id-2").getTitle());
+        assertNull(repository.findById("id-1"));
+    }
+
+    /**
+     * 意图日志中未完成的跨分片批次在启动时补齐：没落盘的新建、更新与删除被补上，已是更新版本的对象不会被改回，
+     * 补齐后日志被清空。
+     */
+    @Test
+    void completes_unfinished_cross_shard_batch_on_open() throws Exception {
+        repository = open(4);
+        for (int i = 0; i < 10; i++) {
+            repository.create(item("id-" + i, "工作", 2, false, i));
+        }
+        TodoItem lost = repository.findById("id-2");
+        lost.setTitle("批量");
+        lost.setVersion(lost.getVersion() + 1);
+        TodoItem applied = repository.findById("id-3");
+        applied.setTitle("批量");
+        applied = repository.update(applied, EnumSet.of(TodoField.TITLE));
+        TodoItem later = repository.findById("id-3");
+        later.setTitle("之后");
+        repository.update(later, EnumSet.of(TodoField.TITLE));
+        repository.close();
+        repository = null;
+
+        List<TodoItem> puts = new ArrayList<TodoItem>();
+        for (int i = 0; i < 8; i++) {
+            puts.add(item("new-" + i, "学习", 1, false, 100 + i));
+        }
+        puts.add(lost);
+        puts.add(applied);
+        try (TodoBatchLog log = new TodoBatchLog(dir.resolve("batches.log"), objectMapper)) {
+            log.begin(puts, Arrays.asList("id-1"));
+        }
+
+        repository = open(4);
+        assertEquals(17, repository.list().size());
+        assertNull(repository.findById("id-1"));
+        assertEquals("批量", repository.findById("id-2").getTitle());
+        assertEquals("之后", repository.findById("id-3").getTitle());
+        assertEquals(0L, Files.size(dir.resolve("batches.log")));
+
+        reopen(4);
+        assertEquals(17, repository.list().size());
+        assertEquals("批量", repository.findById("id-2").getTitle());
+    }
+
+    /**
+     * 跨分片批次有分片落盘失败时，涉及的分片暂停写入；磁盘恢复后下一次写入先补上落盘并标记意图完成。
+     * 之后删除批次中新建的待办再崩溃，重启补齐不会把它重新建出来。
+     */
+    @Test
+    void suspends_writes_until_failed_batch_is_durable() throws Exception {
+        repository = open(2, FileTodoRepository.MODE_SNAPSHOT);
+        List<String> first = new ArrayList<String>();
+        List<String> second = new ArrayList<String>();
+        for (int i = 0; first.size() < 1 || second.size() < 2; i++) {
+            (repository.shardOf("id-" + i) == 0 ? first : second).add("id-" + i);
+        }
+        repository.create(item(first.get(0), "工作", 2, false, 0));
+        repository.create(item(second.get(0), "工作", 2, false, 1));
+
+        // 快照改名到非空目录上必然失败，模拟第二个分片的磁盘故障
+        Path snapshot = dir.resolve("todos-1.json");
+        Files.delete(snapshot);
+        Files.createDirectories(snapshot.resolve("blocked"));
+        TodoBatch batch = new TodoBatch();
+        TodoItem changed = repository.findById(first.get(0));
+        changed.setTitle("批量");
+        changed.setVersion(changed.getVersion() + 1);
+        batch.update(changed, changed.getVersion() - 1);
+        batch.create(item(second.get(1), "学习", 1, false, 2));
+        assertThrows(IllegalStateException.class, () -> repository.apply(batch));
+        assertThrows(IllegalStateException.class, () -> repository.delete(first.get(0)));
+        assertThrows(IllegalStateException.class, () -> repository.delete(second.get(1)));
+        assertEquals("批量", repository.findById(first.get(0)).getTitle());
+
+        Files.delete(snapshot.resolve("blocked"));
+        Files.delete(snapshot);
+        assertTrue(repository.delete(second.get(1)));
+        assertEquals(0L, Files.size(dir.resolve("batches.log")));
+
+        ShardedTodoRepository crashed = repository;
+        repository = open(2, FileTodoRepository.MODE_SNAPSHOT);
+        assertNull(repository.findById(second.get(1)));
+        assertEquals("批量", repository.findById(first.get(0)).getTitle());
+        assertEquals(2, repository.list().size());
+        crashed.close();
+    }
+
+    /**
+     * 增量同步令牌由各分片令牌组成：之后只返回变化过的数据；分片数不符的令牌返回全量。
+     */
+    @Test
+    void syncs_changes_across_shards() {
+        repository = open(4);
+        for (int i = 0; i < 10; i++) {
+            repository.create(item("id-" + i, "工作", 2, false, i));
+        }
+        TodoChanges first = repository.changes(null);
+        assertTrue(first.isFull());
+        assertEquals(10, first.getItems().size());
+
+        TodoItem changed = repository.findById("id-4");
+        changed.setTitle("改");
+        repository.update(changed, EnumSet.of(TodoField.TITLE));
+        repository.delete("id-5");
+        TodoChanges next = repository.changes(first.getToken());
+
+        assertFalse(next.isFull());
+        assertEquals(1, next.getItems().size());
+        assertEquals("id-4", next.getItems().get(0).getId());
+        assertEquals(Arrays.asList("id-5"), next.getDeleted());
+        assertTrue(repository.changes(next.getToken().substring(next.getToken().indexOf('~') + 1)).isFull());
+        assertThrows(IllegalArgumentException.class, () -> repository.changes("a~b~c~d"));
+    }
+
+    /**
+     * 已有数据后修改分片数时启动失败，而不是读丢数据或写到错误的分片。
+     */
+    @Test
+    void refuses_changed_shard_count() throws Exception {
+        repository = open(4);
+        for (int i = 0; i < 50; i++) {
+            repository.create(item("id-" + i, null, 2, false, i));
+        }
+        repository.close();
+        repository = null;
+
+        assertTrue(Files.exists(dir.resolve("todos-3.json.log")));
+        IllegalStateException fewer = assertThrows(IllegalStateException.class, () -> open(2));
+        assertTrue(fewer.getMessage().contains("shard 3"), fewer.getMessage());
+        assertThrows(IllegalStateException.class, () -> open(8));
+    }
+
+    private void assertMatches(TodoIndex expected, Random random) {
+        List<TodoItem> all = new ArrayList<TodoItem>(expected.all());
+        all.sort(TodoSort.CREATED_AT_DESC.comparator());
+        assertEquals(ids(all), ids(repository.list()));
+        assertEquals(counts(expected.categoryCounts()), counts(repository.categoryCounts()));
+        for (int i = 0; i < 200; i++) {
+            TodoQuery query = new TodoQuery();
+            query.setCategory(random.nextInt(2) == 0 ? null : CATEGORIES[random.nextInt(CATEGORIES.length - 1)]);
+            query.setCompleted(random.nextInt(3) == 0 ? Boolean.valueOf(random.nextBoolean()) : null);
+            query.setSort(TodoSort.values()[random.nextInt(TodoSort.values().length)]);
+            query.setLimit(random.nextInt(3) == 0 ? null : Integer.valueOf(1 + random.nextInt(40)));
+            List<TodoItem> page = expected.select(query);
+            if (!page.isEmpty() && random.nextBoolean()) {
+                query.setAfter(TodoCursor.after(query.getSort(), page.get(random.nextInt(page.size()))));
+            }
+            assertEquals(ids(expected.select(query)), ids(repository.list(query)));
+            List<TodoItem> streamed = new ArrayList<TodoItem>();
+            repository.stream(query, streamed::add);
+            assertEquals(ids(expected.select(query)), ids(streamed));
+        }
+    }
+
+    private ShardedTodoRepository open(int shards) {
+        return open(shards, FileTodoRepository.MODE_JOURNAL);
+    }
+
+    private ShardedTodoRepository open(int shards, String mode) {
+        return new ShardedTodoRepository(objectMapper, dir.toString(), shards, mode,
+                FileTodoRepository.FORMAT_BINARY, Long.MAX_VALUE, SyncPolicy.PER_WRITE.name(), 0L, 1000L, 1000, 604_800_000L, registry);
+    }
+
+    private void reopen(int shards) throws Exception {
+        repository.close();
+        repository = open(shards);
+    }
+
+    private static List<String> ids(List<TodoItem> items) {
+        List<String> ids = new ArrayList<String>(items.size());
+        for (TodoItem item : items) {
+            ids.add(item.getId());
+        }
+        return ids;
+    }
+
+    private static Set<String> counts(List<TodoCategoryCount> counts) {
+        Set<String> values = new HashSet<String>();
+        for (TodoCategoryCount count : counts) {
+            values.add(count.getCategory() + ":" + count.getOpen() + "/" + count.getCompleted());
+        }
+        return values;
+    }
+}
@@ -0,0 +1,48 @@
+package com.iftech.todo.storage;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TodoChangeLogTest {
+    private final AtomicLong now = new AtomicLong(1_000_000L);
+
+    /**
+     * 只返回令牌之后变化的 id；同一 id 多次变化只保留最后一次的位置。
+     */
+    @Test
+    void returns_ids_changed_after_token() {
+        TodoChangeLog log = new TodoChangeLog(60_000L, now::get);
+        log.record("a");
+        String token = log.token();
+        log.record("b");
+        log.record("c");
+        log.record("b");
+
+        assertEquals(Arrays.asList("c", "b"), log.changedSince(token));
+        assertEquals(0, log.changedSince(log.token()).size());
+        assertEquals(3, log.size());
+    }
+
+    /**
+     * 登记超过保留期被清理后，早于清理位置的令牌需要全量同步；其他进程的令牌同样如此。
+     */
+    @Test
+    void expired_or_foreign_token_requires_full_sync() {
+        TodoChangeLog log = new TodoChangeLog(1_000L, now::get);
+        String initial = log.token();
+        log.record("a");
+        String afterA = log.token();
+        now.addAndGet(2_000L);
+        log.record("b");
+
+        assertNull(log.changedSince(initial));
+        assertEquals(Arrays.asList("b"), log.changedSince(afterA));
+        assertNull(log.changedSince("other.1"));
+        assertThrows(IllegalArgumentException.class, () -> log.changedSince("garbage"));
+    }
+}
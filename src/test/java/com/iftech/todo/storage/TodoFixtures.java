@@ -0,0 +1,23 @@
+package com.iftech.todo.storage;
+
+import com.iftech.todo.domain.TodoItem;
+import java.time.Instant;
+
+/**
+ * 存储层测试共用的测试数据。
+ */
+final class TodoFixtures {
+    static final long EPOCH = 1_700_000_000L;
+    static final String DUE_DATE = "2026-01-02T10:30";
+
+    private TodoFixtures() {
+    }
+
+    /**
+     * 标题为 {@code "title " + id}、截止时间为 {@link #DUE_DATE} 的待办，创建与更新时间为 {@link #EPOCH} 之后第 {@code createdSecond} 秒。
+     */
+    static TodoItem item(String id, String category, int priority, boolean completed, long createdSecond) {
+        Instant created = Instant.ofEpochSecond(EPOCH + createdSecond);
+        return new TodoItem(id, "title " + id, null, category, priority, DUE_DATE, completed, created, created);
+    }
+}
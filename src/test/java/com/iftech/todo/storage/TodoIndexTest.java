@@ -0,0 +1,145 @@
+package com.iftech.todo.storage;
+
+import com.iftech.todo.domain.TodoCategoryCount;
+import com.iftech.todo.domain.TodoItem;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+
+import static com.iftech.todo.storage.TodoFixtures.item;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class TodoIndexTest {
+    private static final String[] CATEGORIES = {"学习", "工作", "生活", null};
+
+    /**
+     * 随机新增、修改（换分类/完成态/优先级）与删除之后，二级索引的桶都与逐条计算的结果一致，且与一次性重建的索引相同。
+     */
+    @Test
+    void buckets_follow_random_writes() {
+        Random random = new Random(42);
+        Map<String, TodoItem> expected = new LinkedHashMap<String, TodoItem>();
+        TodoIndex index = new TodoIndex();
+        for (int step = 0; step < 3000; step++) {
+            String id = "id-" + random.nextInt(200);
+            if (random.nextInt(4) == 0) {
+                assertSame(expected.remove(id), index.remove(id));
+            } else {
+                TodoItem item = item(id, CATEGORIES[random.nextInt(CATEGORIES.length)], 1 + random.nextInt(3), random.nextBoolean(), step);
+                assertSame(expected.put(id, item), index.put(item));
+            }
+        }
+        assertMatches(expected.values(), index);
+        TodoIndex rebuilt = new TodoIndex();
+        rebuilt.reset(new ArrayList<TodoItem>(expected.values()));
+        assertMatches(expected.values(), rebuilt);
+    }
+
+    /**
+     * 同时按多个字段过滤时，候选集取已指定字段中最小的那个桶；不指定过滤字段时返回全部。
+     */
+    @Test
+    void candidates_come_from_smallest_bucket() {
+        TodoIndex index = new TodoIndex();
+        for (int i = 0; i < 30; i++) {
+            index.put(item("id-" + i, i < 3 ? "工作" : "学习", 1 + i % 3, i % 2 == 0, i));
+        }
+        TodoQuery query = new TodoQuery();
+        query.setCategory("工作");
+        query.setCompleted(true);
+        assertEquals(3, index.candidates(query).size());
+
+        query.setCategory("学习");
+        query.setPriority(1);
+        assertEquals(10, index.candidates(query).size());
+
+        assertEquals(30, index.candidates(new TodoQuery()).size());
+    }
+
+    /**
+     * 重建时忽略 id 为 null 的数据，重复 id 以后出现的为准。
+     */
+    @Test
+    void reset_skips_null_ids_and_keeps_last_duplicate() {
+        TodoItem first = item("a", "学习", 1, false, 1);
+        TodoItem last = item("a", "工作", 2, true, 1);
+        TodoIndex index = new TodoIndex();
+        index.put(item("old", "学习", 1, false, 0));
+        index.reset(Arrays.asList(first, item(null, "学习", 1, false, 2), last));
+
+        assertEquals(1, index.size());
+        assertSame(last, index.get("a"));
+        assertNull(index.get("old"));
+        assertNull(index.get(null));
+        TodoQuery query = new TodoQuery();
+        query.setCategory("学习");
+        assertEquals(0, index.candidates(query).size());
+    }
+
+    private static void assertMatches(Collection<TodoItem> items, TodoIndex index) {
+        assertEquals(items.size(), index.size());
+        assertEquals(new ArrayList<TodoItem>(items), new ArrayList<TodoItem>(index.all()));
+        for (TodoItem item : items) {
+            assertSame(item, index.get(item.getId()));
+        }
+        for (String category : CATEGORIES) {
+            if (category != null) {
+                TodoQuery query = new TodoQuery();
+                query.setCategory(category);
+                assertBucket(items, index, query);
+            }
+        }
+        Map<String, long[]> expectedCounts = new TreeMap<String, long[]>();
+        for (TodoItem item : items) {
+            if (item.getCategory() != null) {
+                long[] counts = expectedCounts.computeIfAbsent(item.getCategory(), key -> new long[2]);
+                counts[item.isCompleted() ? 1 : 0]++;
+            }
+        }
+        List<String> actualCounts = new ArrayList<String>();
+        for (TodoCategoryCount count : index.categoryCounts()) {
+            actualCounts.add(count.getCategory() + ":" + count.getOpen() + "/" + count.getCompleted());
+        }
+        List<String> wantedCounts = new ArrayList<String>();
+        for (Map.Entry<String, long[]> entry : expectedCounts.entrySet()) {
+            wantedCounts.add(entry.getKey() + ":" + entry.getValue()[0] + "/" + entry.getValue()[1]);
+        }
+        assertEquals(wantedCounts, actualCounts);
+        for (boolean completed : new boolean[] {true, false}) {
+            TodoQuery query = new TodoQuery();
+            query.setCompleted(completed);
+            assertBucket(items, index, query);
+        }
+        for (int priority = 1; priority <= 3; priority++) {
+            TodoQuery query = new TodoQuery();
+            query.setPriority(priority);
+            assertBucket(items, index, query);
+        }
+    }
+
+    private static void assertBucket(Collection<TodoItem> items, TodoIndex index, TodoQuery query) {
+        Set<String> expected = new HashSet<String>();
+        for (TodoItem item : items) {
+            if ((query.getCategory() == null || query.getCategory().equals(item.getCategory()))
+                    && (query.getCompleted() == null || query.getCompleted() == item.isCompleted())
+                    && (query.getPriority() == null || query.getPriority() == item.getPriority())) {
+                expected.add(item.getId());
+            }
+        }
+        Set<String> actual = new HashSet<String>();
+        for (TodoItem item : index.candidates(query)) {
+            actual.add(item.getId());
+        }
+        assertEquals(expected, actual);
+    }
+}
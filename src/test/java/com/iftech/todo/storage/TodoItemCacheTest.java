@@ -0,0 +1,68 @@
+package com.iftech.todo.storage;
+
+import com.iftech.todo.domain.TodoItem;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TodoItemCacheTest {
+    private final AtomicLong now = new AtomicLong();
+
+    /**
+     * 超过容量时淘汰最久未访问的条目，最近读过的条目保留。
+     */
+    @Test
+    void evicts_least_recently_used() {
+        TodoItemCache cache = new TodoItemCache(2, 60_000L, now::get);
+        cache.putIfUnchanged(item("a"), cache.generation());
+        cache.putIfUnchanged(item("b"), cache.generation());
+        assertNotNull(cache.get("a"));
+        cache.putIfUnchanged(item("c"), cache.generation());
+
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+        assertEquals(1, cache.evictionCount());
+        assertEquals(3, cache.hitCount());
+        assertEquals(1, cache.missCount());
+    }
+
+    /**
+     * 条目超过存活时间后视为未命中。
+     */
+    @Test
+    void expires_after_ttl() {
+        TodoItemCache cache = new TodoItemCache(10, 1_000L, now::get);
+        cache.putIfUnchanged(item("a"), cache.generation());
+        now.addAndGet(999_000_000L);
+        assertNotNull(cache.get("a"));
+        now.addAndGet(1_000_000L);
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * 回源期间发生过失效时，回源结果不会被放进缓存；拿到的对象被修改也不影响缓存。
+     */
+    @Test
+    void skips_put_after_concurrent_invalidation() {
+        TodoItemCache cache = new TodoItemCache(10, 60_000L, now::get);
+        long generation = cache.generation();
+        cache.invalidate("a");
+        cache.putIfUnchanged(item("a"), generation);
+        assertNull(cache.get("a"));
+
+        cache.putIfUnchanged(item("a"), cache.generation());
+        cache.get("a").setTitle("changed");
+        assertEquals("title a", cache.get("a").getTitle());
+    }
+
+    private static TodoItem item(String id) {
+        Instant created = Instant.ofEpochSecond(1_700_000_000L);
+        return new TodoItem(id, "title " + id, null, null, TodoItem.DEFAULT_PRIORITY, "2026-01-02T10:30", false, created, created);
+    }
+}
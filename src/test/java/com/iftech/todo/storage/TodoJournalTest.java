@@ -0,0 +1,167 @@
+package com.iftech.todo.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iftech.todo.domain.TodoItem;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TodoJournalTest {
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @TempDir
+    Path dir;
+
+    private TodoJournal journal;
+
+    @AfterEach
+    void close() throws Exception {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /**
+     * 暂存的记录在 sync 之前不写入文件；回放按顺序应用新增、更新与删除。
+     */
+    @Test
+    void replays_synced_records_in_order() throws Exception {
+        journal = open();
+        journal.appendPut(item("a", "第一版"));
+        journal.appendPut(item("b", "b"));
+        assertTrue(!Files.exists(log()) || Files.size(log()) == 0L);
+
+        journal.sync();
+        journal.appendPut(item("a", "第二版"));
+        journal.appendDelete("b");
+        journal.sync();
+
+        TodoIndex index = replay();
+        assertEquals(1, index.size());
+        assertEquals("第二版", index.get("a").getTitle());
+        assertNull(index.get("b"));
+    }
+
+    /**
+     * 最后一个换行符之后的残缺记录被忽略并从日志中截掉，之后追加的记录不会与它拼在同一行。
+     */
+    @Test
+    void truncates_torn_tail() throws Exception {
+        journal = open();
+        journal.appendPut(item("a", "a"));
+        journal.sync();
+        journal.close();
+        long committed = Files.size(log());
+        Files.write(log(), "{\"op\":\"put\",\"item\":{\"id\":\"b\"".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        TodoIndex index = replay();
+        assertEquals(1, index.size());
+        assertEquals(committed, Files.size(log()));
+
+        journal.appendPut(item("c", "c"));
+        journal.sync();
+        assertEquals(2, replay().size());
+    }
+
+    /**
+     * 中间一条以换行符结尾的完整记录损坏时拒绝回放，日志原样保留，不会截掉其后已提交的记录。
+     */
+    @Test
+    void fails_on_corrupt_complete_record() throws Exception {
+        journal = open();
+        journal.appendPut(item("a", "a"));
+        journal.sync();
+        journal.close();
+        Files.write(log(), "{\"op\":\"put\",\"item\":{\"id\":\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        journal.appendPut(item("b", "b"));
+        journal.sync();
+        journal.close();
+        long size = Files.size(log());
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, this::replay);
+        assertTrue(e.getMessage().startsWith("corrupt journal"), e.getMessage());
+        assertEquals(size, Files.size(log()));
+    }
+
+    /**
+     * 写入失败时暂存的记录保留到下一次成功的 sync；撤回只去掉标记之后暂存的记录。
+     */
+    @Test
+    void keeps_staged_records_until_sync_succeeds() throws Exception {
+        journal = open();
+        journal.appendPut(item("a", "a"));
+        Files.createDirectories(log());
+        assertThrows(IOException.class, journal::sync);
+        assertTrue(journal.staged() > 0);
+
+        int mark = journal.staged();
+        journal.appendPut(item("b", "b"));
+        journal.unstage(mark);
+        assertEquals(mark, journal.staged());
+
+        Files.delete(log());
+        journal.sync();
+        assertEquals(0, journal.staged());
+        TodoIndex index = replay();
+        assertEquals(1, index.size());
+        assertEquals("a", index.get("a").getTitle());
+    }
+
+    /**
+     * 轮转后新记录写入新日志；快照落盘前回放轮转日志与新日志，删除轮转日志后只剩新日志。
+     */
+    @Test
+    void rotates_and_discards_after_snapshot() throws Exception {
+        journal = open();
+        journal.appendPut(item("a", "a"));
+        assertTrue(journal.rotate());
+        assertTrue(Files.exists(rotated()));
+        assertFalse(journal.rotate());
+
+        journal.appendPut(item("b", "b"));
+        journal.sync();
+        assertEquals(2, replay().size());
+
+        journal.discardRotated();
+        TodoIndex index = replay();
+        assertEquals(1, index.size());
+        assertNull(index.get("a"));
+        assertTrue(journal.rotate());
+    }
+
+    private TodoJournal open() {
+        return new TodoJournal(log(), objectMapper);
+    }
+
+    private TodoIndex replay() {
+        TodoIndex index = new TodoIndex();
+        open().replay(index);
+        return index;
+    }
+
+    private Path log() {
+        return dir.resolve("todos.json.log");
+    }
+
+    private Path rotated() {
+        return dir.resolve("todos.json.log.1");
+    }
+
+    private static TodoItem item(String id, String title) {
+        Instant now = Instant.parse("2026-01-01T08:00:00Z");
+        return new TodoItem(id, title, null, "工作", TodoItem.DEFAULT_PRIORITY, "2026-03-15T18:45", false, now, now);
+    }
+}
@@ -0,0 +1,36 @@
+package com.iftech.todo.storage;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Optional;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 存储装饰链的装配。只检查缓存是否装配，不访问数据库。
+ */
+class TodoRepositoryConfigurationTest {
+
+    /**
+     * 按 id 缓存只能由本进程的写入失效，只开启 {@code todo.cache.enabled} 而未确认单实例部署时不装配。
+     */
+    @Test
+    void cache_requires_single_instance() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        new TodoRepositoryConfiguration().todoRepository(jdbc(), true, false, 100, 5000L, Optional.empty(), registry);
+        assertNull(registry.find("todo.cache.hits").functionCounter());
+
+        new TodoRepositoryConfiguration().todoRepository(jdbc(), true, true, 100, 5000L, Optional.empty(), registry);
+        assertNotNull(registry.find("todo.cache.hits").functionCounter());
+    }
+
+    private static JdbcTodoRepository jdbc() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:unused");
+        return new JdbcTodoRepository(new JdbcTemplate(dataSource), 500, 604_800_000L, 5000L, Optional.empty());
+    }
+}
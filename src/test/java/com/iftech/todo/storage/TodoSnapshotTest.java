@@ -0,0 +1,124 @@
+package com.iftech.todo.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.iftech.todo.domain.TodoItem;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TodoSnapshotTest {
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @TempDir
+    Path dir;
+
+    /**
+     * 多个数据块、null 字段、中文与超过单块大小的描述都能原样读回。
+     */
+    @Test
+    void round_trips_items_across_blocks() throws IOException {
+        List<TodoItem> items = new ArrayList<TodoItem>();
+        for (int i = 0; i < 5000; i++) {
+            TodoItem item = item("id-" + i, i % 7 == 0 ? null : "2026-03-15T18:45");
+            item.setDescription(i % 3 == 0 ? null : "描述 " + i);
+            item.setCategory(i % 5 == 0 ? null : "工作");
+            item.setVersion(i);
+            items.add(item);
+        }
+        char[] large = new char[200_000];
+        Arrays.fill(large, '长');
+        items.get(10).setDescription(new String(large));
+        items.get(11).setCreatedAt(null);
+
+        Path path = write(items);
+        List<TodoItem> read = TodoSnapshot.read(path);
+
+        assertEquals(objectMapper.writeValueAsString(items), objectMapper.writeValueAsString(read));
+        assertEquals(items.get(4).getVersion(), read.get(4).getVersion());
+    }
+
+    /**
+     * 任意一个字节被改动或文件被截断都会被发现，而不是读出空数据。
+     */
+    @Test
+    void detects_corruption_and_truncation() throws IOException {
+        List<TodoItem> items = new ArrayList<TodoItem>();
+        for (int i = 0; i < 100; i++) {
+            items.add(item("id-" + i, "2026-03-15T18:45"));
+        }
+        Path path = write(items);
+        byte[] bytes = Files.readAllBytes(path);
+
+        byte[] flipped = bytes.clone();
+        flipped[bytes.length / 2] ^= 0x10;
+        Files.write(path, flipped);
+        IllegalStateException corrupt = assertThrows(IllegalStateException.class, () -> TodoSnapshot.read(path));
+        assertTrue(corrupt.getMessage().contains("checksum"), corrupt.getMessage());
+
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 5));
+        assertThrows(IllegalStateException.class, () -> TodoSnapshot.read(path));
+
+        Files.write(path, Arrays.copyOf(bytes, 40));
+        assertThrows(IllegalStateException.class, () -> TodoSnapshot.read(path));
+    }
+
+    /**
+     * 旧的 JSON 文件可以直接载入，落盘后转为二进制快照；损坏的文件让启动失败，不会被当作空数据覆盖。
+     */
+    @Test
+    void repository_imports_json_and_fails_loudly_on_corruption() throws Exception {
+        Path path = dir.resolve("todos.json");
+        Files.write(path, objectMapper.writeValueAsBytes(Arrays.asList(item("a", "2026-01-02T10:30"), item("b", null))));
+
+        FileTodoRepository repository = open(path);
+        assertEquals(2, repository.list().size());
+        repository.create(item("c", null));
+        repository.close();
+        byte[] head = Arrays.copyOf(Files.readAllBytes(path), TodoSnapshot.MAGIC.length);
+        assertTrue(TodoSnapshot.isSnapshot(head, head.length));
+
+        FileTodoRepository reopened = open(path);
+        assertEquals("2026-01-02T10:30", reopened.findById("a").getDueDate());
+        assertEquals(3, reopened.list().size());
+        reopened.close();
+
+        Files.write(path, "[{\"id\":".getBytes(StandardCharsets.UTF_8));
+        FileTodoRepository broken = open(path);
+        assertThrows(IllegalStateException.class, broken::list);
+        broken.close();
+    }
+
+    private Path write(List<TodoItem> items) throws IOException {
+        Path path = dir.resolve("snapshot.bin");
+        try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            assertEquals(TodoSnapshot.write(out, items), out.size());
+        }
+        return path;
+    }
+
+    private FileTodoRepository open(Path path) {
+        return new FileTodoRepository(objectMapper, path.toString(), FileTodoRepository.MODE_SNAPSHOT, FileTodoRepository.FORMAT_BINARY,
+                Long.MAX_VALUE, SyncPolicy.PER_WRITE.name(), 0L, 1000L, 1000, 604_800_000L, new SimpleMeterRegistry());
+    }
+
+    private static TodoItem item(String id, String dueDate) {
+        Instant now = Instant.parse("2026-01-01T08:00:00.123456789Z");
+        return new TodoItem(id, "标题 " + id, null, "学习", TodoItem.DEFAULT_PRIORITY, dueDate, false, now, now);
+    }
+}
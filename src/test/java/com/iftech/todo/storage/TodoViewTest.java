@@ -0,0 +1,133 @@
+package com.iftech.todo.storage;
+
+import com.iftech.todo.domain.TodoCategoryCount;
+import com.iftech.todo.domain.TodoItem;
+import com.iftech.todo.domain.TodoSort;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+import static com.iftech.todo.storage.TodoFixtures.item;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TodoViewTest {
+    private static final String[] CATEGORIES = {"学习", "工作", "生活", null};
+
+    /**
+     * 随机新增、修改与删除之后，视图的排序、查询结果与分类计数都与可变索引一致；更早的视图保持写入前的内容。
+     */
+    @Test
+    void follows_random_writes_and_keeps_old_versions() {
+        Random random = new Random(7);
+        TodoIndex expected = new TodoIndex();
+        TodoView view = TodoView.EMPTY;
+        List<TodoView> history = new ArrayList<TodoView>();
+        List<List<TodoItem>> historyItems = new ArrayList<List<TodoItem>>();
+        for (int step = 0; step < 4000; step++) {
+            String id = "id-" + random.nextInt(300);
+            if (random.nextInt(4) == 0) {
+                expected.remove(id);
+                view = view.without(id);
+            } else {
+                TodoItem item = item(id, CATEGORIES[random.nextInt(CATEGORIES.length)], 1 + random.nextInt(3), random.nextBoolean(),
+                        random.nextInt(500));
+                expected.put(item);
+                view = view.with(item);
+            }
+            if (step % 500 == 0) {
+                history.add(view);
+                historyItems.add(sorted(expected));
+            }
+        }
+        assertMatches(expected, view, random);
+        assertMatches(expected, TodoView.of(expected.all()), random);
+        for (int i = 0; i < history.size(); i++) {
+            assertEquals(historyItems.get(i), new ArrayList<TodoItem>(history.get(i).all()));
+        }
+    }
+
+    /**
+     * 删除不存在的 id 返回同一个视图；版本号随每次写入加一。
+     */
+    @Test
+    void versions_advance_per_write() {
+        TodoView empty = TodoView.EMPTY;
+        TodoView one = empty.with(item("a", "学习", 1, false, 1));
+        TodoView two = one.with(item("a", "工作", 2, true, 2));
+
+        assertSame(two, two.without("missing"));
+        assertEquals(2, two.version());
+        assertEquals(1, two.size());
+        assertEquals("学习", one.get("a").getCategory());
+        assertEquals("工作", two.get("a").getCategory());
+        assertNull(two.without("a").get("a"));
+        assertEquals(0, two.without("a").categoryCounts().size());
+        assertThrows(UnsupportedOperationException.class, () -> two.all().add(item("b", null, 1, false, 3)));
+    }
+
+    /**
+     * 哈希值相同的键各自保存、各自删除。
+     */
+    @Test
+    void hash_trie_handles_collisions() {
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        HashTrie<String, Integer> trie = HashTrie.<String, Integer>empty().plus("Aa", 1).plus("BB", 2).plus("C", 3);
+        assertEquals(3, trie.size());
+        assertEquals(Integer.valueOf(1), trie.get("Aa"));
+        assertEquals(Integer.valueOf(2), trie.get("BB"));
+
+        HashTrie<String, Integer> removed = trie.minus("Aa");
+        assertEquals(2, removed.size());
+        assertNull(removed.get("Aa"));
+        assertEquals(Integer.valueOf(2), removed.get("BB"));
+        assertEquals(Integer.valueOf(1), trie.get("Aa"));
+        assertSame(removed, removed.minus("Aa"));
+        assertEquals(0, removed.minus("BB").minus("C").size());
+    }
+
+    private static void assertMatches(TodoIndex expected, TodoView view, Random random) {
+        assertEquals(expected.size(), view.size());
+        assertEquals(sorted(expected), new ArrayList<TodoItem>(view.all()));
+        List<TodoItem> all = view.all();
+        for (int i = 0; i < all.size(); i += 17) {
+            assertSame(all.get(i), new ArrayList<TodoItem>(all).get(i));
+        }
+        for (TodoItem item : expected.all()) {
+            assertSame(item, view.get(item.getId()));
+        }
+        assertEquals(counts(expected.categoryCounts()), counts(view.categoryCounts()));
+        for (int i = 0; i < 300; i++) {
+            TodoQuery query = new TodoQuery();
+            query.setCategory(random.nextInt(2) == 0 ? null : CATEGORIES[random.nextInt(CATEGORIES.length - 1)]);
+            query.setCompleted(random.nextInt(3) == 0 ? Boolean.valueOf(random.nextBoolean()) : null);
+            query.setPriority(random.nextInt(3) == 0 ? Integer.valueOf(1 + random.nextInt(3)) : null);
+            query.setSort(TodoSort.values()[random.nextInt(TodoSort.values().length)]);
+            query.setLimit(random.nextInt(3) == 0 ? null : Integer.valueOf(1 + random.nextInt(40)));
+            List<TodoItem> page = expected.select(query);
+            if (!page.isEmpty() && random.nextBoolean()) {
+                query.setAfter(TodoCursor.after(query.getSort(), page.get(random.nextInt(page.size()))));
+            }
+            assertEquals(expected.select(query), view.select(query));
+        }
+    }
+
+    private static List<TodoItem> sorted(TodoIndex index) {
+        List<TodoItem> items = new ArrayList<TodoItem>(index.all());
+        items.sort(TodoSort.CREATED_AT_DESC.comparator());
+        return items;
+    }
+
+    private static Set<String> counts(List<TodoCategoryCount> counts) {
+        Set<String> values = new HashSet<String>();
+        for (TodoCategoryCount count : counts) {
+            values.add(count.getCategory() + ":" + count.getOpen() + "/" + count.getCompleted());
+        }
+        return values;
+    }
+}
@@ -0,0 +1,52 @@
+-- H2（MySQL 兼容模式）版本的表结构，供压测使用；索引与 MySQL 版 schema.sql 保持一致。
+CREATE TABLE IF NOT EXISTS todo_item (
+  id VARCHAR(64) PRIMARY KEY,
+  title VARCHAR(120) NOT NULL,
+  description VARCHAR(500),
+  category VARCHAR(64),
+  priority TINYINT NOT NULL DEFAULT 2,
+  due_date DATETIME(3),
+  completed BOOLEAN NOT NULL,
+  version BIGINT NOT NULL DEFAULT 0,
+  created_at DATETIME(3) NOT NULL,
+  updated_at DATETIME(3) NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_todo_item_completed ON todo_item (completed);
+CREATE INDEX IF NOT EXISTS idx_todo_item_created ON todo_item (created_at, id);
+CREATE INDEX IF NOT EXISTS idx_todo_item_priority_created ON todo_item (priority, created_at, id);
+CREATE INDEX IF NOT EXISTS idx_todo_item_due_asc ON todo_item (due_date, created_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_todo_item_due_desc ON todo_item (due_date, created_at, id);
+CREATE INDEX IF NOT EXISTS idx_todo_item_category_created ON todo_item (category, created_at, id);
+CREATE INDEX IF NOT EXISTS idx_todo_item_category_priority ON todo_item (category, priority, created_at, id);
+CREATE INDEX IF NOT EXISTS idx_todo_item_category_due_asc ON todo_item (category, due_date, created_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_todo_item_category_due_desc ON todo_item (category, due_date, created_at, id);
+CREATE INDEX IF NOT EXISTS idx_todo_item_updated ON todo_item (updated_at, id);
+
+-- MySQL 下由触发器维护的计数表，H2 中以视图代替（结果相同，只是按需聚合）
+CREATE VIEW IF NOT EXISTS todo_category_count AS
+SELECT category,
+       SUM(CASE WHEN completed THEN 0 ELSE 1 END) AS open_count,
+       SUM(CASE WHEN completed THEN 1 ELSE 0 END) AS completed_count
+FROM todo_item
+WHERE category IS NOT NULL
+GROUP BY category;
+
+-- 全库变更版本号，MySQL 下由三个触发器维护，H2 中由一个 Java 触发器（H2ChangeVersionTrigger）在同一事务内递增
+CREATE TABLE IF NOT EXISTS todo_change_version (
+  id TINYINT PRIMARY KEY,
+  epoch BIGINT NOT NULL,
+  version BIGINT NOT NULL
+);
+
+INSERT IGNORE INTO todo_change_version (id, epoch, version) VALUES (1, DATEDIFF(MILLISECOND, TIMESTAMP '1970-01-01 00:00:00', CURRENT_TIMESTAMP), 0);
+
+CREATE TRIGGER IF NOT EXISTS trg_todo_item_version AFTER INSERT, UPDATE, DELETE ON todo_item FOR EACH ROW
+  CALL 'com.iftech.todo.storage.H2ChangeVersionTrigger';
+
+CREATE TABLE IF NOT EXISTS todo_tombstone (
+  id VARCHAR(64) PRIMARY KEY,
+  deleted_at DATETIME(3) NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_todo_tombstone_deleted ON todo_tombstone (deleted_at);